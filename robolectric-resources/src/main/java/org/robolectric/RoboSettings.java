@@ -8,11 +8,13 @@ public class RoboSettings {
   private static String mavenRepositoryId;
   private static String mavenRepositoryUrl;
   private static boolean useGlobalScheduler;
+  private static int backgroundThreadCount;
 
   static {
     mavenRepositoryId = System.getProperty("robolectric.dependency.repo.id", "sonatype");
     mavenRepositoryUrl = System.getProperty("robolectric.dependency.repo.url", "https://oss.sonatype.org/content/groups/public/");
     useGlobalScheduler = Boolean.getBoolean("robolectric.scheduling.global");
+    backgroundThreadCount = Integer.getInteger("robolectric.scheduling.backgroundThreads", 0);
   }
 
   public static String getMavenRepositoryId() {
@@ -38,4 +40,16 @@ public class RoboSettings {
   public static void setUseGlobalScheduler(boolean useGlobalScheduler) {
     RoboSettings.useGlobalScheduler = useGlobalScheduler;
   }
+
+  /**
+   * @return the number of real threads {@code AsyncTask} work runs on, or 0 (the default) if it runs on the
+   *     background scheduler instead.
+   */
+  public static int getBackgroundThreadCount() {
+    return backgroundThreadCount;
+  }
+
+  public static void setBackgroundThreadCount(int backgroundThreadCount) {
+    RoboSettings.backgroundThreadCount = backgroundThreadCount;
+  }
 }
@@ -0,0 +1,137 @@
+package org.robolectric.manifest;
+
+import org.robolectric.res.FsFile;
+import org.robolectric.util.Logger;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Cache of parsed {@code AndroidManifest.xml} files, keyed by a hash of their contents.
+ *
+ * Parsed manifests are shared within the JVM, and also written in a compact binary form to
+ * {@code robolectric.manifestCache.dir} (by default {@code robolectric-manifests} in the temp directory), so forked
+ * test workers of a multi-module build only parse each manifest once between them. Setting
+ * {@code robolectric.manifestCache.enabled} to false turns the on-disk cache off.
+ */
+class ManifestCache {
+  // Bump this whenever the snapshot format or the set of elements kept by ManifestElement changes.
+  private static final int FORMAT_VERSION = 1;
+  private static final int MAGIC = 0x52414d43; // "RAMC"
+
+  private static final ManifestCache instance = fromSystemProperties();
+
+  private final File directory;
+  private final ConcurrentMap<String, ManifestElement> parsedManifests = new ConcurrentHashMap<>();
+
+  ManifestCache(File directory) {
+    this.directory = directory;
+  }
+
+  static ManifestCache getInstance() {
+    return instance;
+  }
+
+  private static ManifestCache fromSystemProperties() {
+    if (!Boolean.parseBoolean(System.getProperty("robolectric.manifestCache.enabled", "true"))) {
+      return new ManifestCache(null);
+    }
+    String directory = System.getProperty("robolectric.manifestCache.dir");
+    return new ManifestCache(directory == null
+        ? new File(System.getProperty("java.io.tmpdir"), "robolectric-manifests")
+        : new File(directory));
+  }
+
+  /**
+   * @return the root element of the given manifest, parsing it only if no manifest with the same contents has been
+   *     parsed before.
+   */
+  ManifestElement get(FsFile manifestFile) throws IOException, XMLStreamException {
+    byte[] bytes = manifestFile.getBytes();
+    String key = hash(bytes);
+
+    ManifestElement manifest = parsedManifests.get(key);
+    if (manifest != null) {
+      return manifest;
+    }
+
+    File file = directory == null ? null : new File(directory, key + ".bin");
+    manifest = file == null ? null : read(file);
+    if (manifest == null) {
+      manifest = ManifestElement.parse(new ByteArrayInputStream(bytes));
+      if (file != null) {
+        write(file, manifest);
+      }
+    }
+    parsedManifests.putIfAbsent(key, manifest);
+    return manifest;
+  }
+
+  private static String hash(byte[] bytes) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-1");
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+    digest.update(bytes);
+
+    StringBuilder key = new StringBuilder();
+    for (byte b : digest.digest()) {
+      key.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+    }
+    return key.toString();
+  }
+
+  private static ManifestElement read(File file) {
+    if (!file.isFile()) return null;
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+        return null;
+      }
+      return ManifestElement.read(in);
+    } catch (IOException | RuntimeException e) {
+      Logger.debug("Ignoring unreadable manifest cache %s: %s", file, e);
+      return null;
+    }
+  }
+
+  private void write(File file, ManifestElement manifest) {
+    try {
+      if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+        throw new IOException("couldn't create " + directory);
+      }
+      // write to a temporary file first, so concurrent test processes never see a partial snapshot
+      File tempFile = File.createTempFile(file.getName(), ".tmp", directory);
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        manifest.write(out);
+      }
+      try {
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      } finally {
+        Files.deleteIfExists(tempFile.toPath());
+      }
+    } catch (IOException e) {
+      Logger.debug("Couldn't write manifest cache %s: %s", file, e);
+    }
+  }
+}
@@ -0,0 +1,170 @@
+package org.robolectric.manifest;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable element of a parsed {@code AndroidManifest.xml}. Attributes are keyed by their qualified names, e.g.
+ * {@code android:name}, as they're written in the file.
+ *
+ * <p>Only the elements {@link AndroidManifest} reads are kept; everything else (and everything inside it) is skipped
+ * while parsing.
+ */
+final class ManifestElement {
+  private static final Set<String> CONSUMED_ELEMENTS = new HashSet<>(Arrays.asList(
+      "manifest", "uses-sdk", "uses-permission", "application",
+      "activity", "activity-alias", "service", "receiver", "provider",
+      "meta-data", "intent-filter", "action", "category", "data", "path-permission"));
+
+  private static final XMLInputFactory xmlInputFactory;
+  static {
+    xmlInputFactory = XMLInputFactory.newInstance();
+    xmlInputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+    xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+  }
+
+  private final String name;
+  private final Map<String, String> attributes;
+  private final List<ManifestElement> children;
+
+  private ManifestElement(String name, Map<String, String> attributes, List<ManifestElement> children) {
+    this.name = name;
+    this.attributes = Collections.unmodifiableMap(attributes);
+    this.children = Collections.unmodifiableList(children);
+  }
+
+  /**
+   * Parses a manifest, returning its root element.
+   */
+  static ManifestElement parse(InputStream inputStream) throws XMLStreamException {
+    XMLStreamReader reader;
+    synchronized (xmlInputFactory) {
+      reader = xmlInputFactory.createXMLStreamReader(inputStream);
+    }
+    try {
+      while (reader.next() != XMLStreamConstants.START_ELEMENT) {
+        if (reader.getEventType() == XMLStreamConstants.END_DOCUMENT) {
+          throw new XMLStreamException("no root element");
+        }
+      }
+      return readElement(reader);
+    } finally {
+      reader.close();
+    }
+  }
+
+  private static ManifestElement readElement(XMLStreamReader reader) throws XMLStreamException {
+    String name = qualifiedName(reader.getPrefix(), reader.getLocalName());
+    Map<String, String> attributes = new LinkedHashMap<>();
+    for (int i = 0; i < reader.getAttributeCount(); i++) {
+      attributes.put(qualifiedName(reader.getAttributePrefix(i), reader.getAttributeLocalName(i)), reader.getAttributeValue(i));
+    }
+
+    List<ManifestElement> children = new ArrayList<>();
+    int depth = 0;
+    while (true) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        if (depth == 0 && CONSUMED_ELEMENTS.contains(reader.getLocalName())) {
+          children.add(readElement(reader));
+        } else {
+          depth++;
+        }
+      } else if (event == XMLStreamConstants.END_ELEMENT) {
+        if (depth == 0) {
+          return new ManifestElement(name, attributes, children);
+        }
+        depth--;
+      } else if (event == XMLStreamConstants.END_DOCUMENT) {
+        throw new XMLStreamException("unexpected end of document in <" + name + ">");
+      }
+    }
+  }
+
+  private static String qualifiedName(String prefix, String localName) {
+    return prefix == null || prefix.isEmpty() ? localName : prefix + ":" + localName;
+  }
+
+  static ManifestElement read(DataInputStream in) throws IOException {
+    String name = in.readUTF();
+    int attributeCount = in.readInt();
+    Map<String, String> attributes = new LinkedHashMap<>();
+    for (int i = 0; i < attributeCount; i++) {
+      attributes.put(in.readUTF(), in.readUTF());
+    }
+    int childCount = in.readInt();
+    List<ManifestElement> children = new ArrayList<>(childCount);
+    for (int i = 0; i < childCount; i++) {
+      children.add(read(in));
+    }
+    return new ManifestElement(name, attributes, children);
+  }
+
+  void write(DataOutputStream out) throws IOException {
+    out.writeUTF(name);
+    out.writeInt(attributes.size());
+    for (Map.Entry<String, String> entry : attributes.entrySet()) {
+      out.writeUTF(entry.getKey());
+      out.writeUTF(entry.getValue());
+    }
+    out.writeInt(children.size());
+    for (ManifestElement child : children) {
+      child.write(out);
+    }
+  }
+
+  String getName() {
+    return name;
+  }
+
+  /**
+   * @return the value of the attribute with the given qualified name, or null if there isn't one.
+   */
+  String getAttribute(String name) {
+    return attributes.get(name);
+  }
+
+  Map<String, String> getAttributes() {
+    return attributes;
+  }
+
+  /**
+   * @return the child elements with the given tag name, ignoring case.
+   */
+  List<ManifestElement> getChildren(String tagName) {
+    List<ManifestElement> matches = new ArrayList<>();
+    for (ManifestElement child : children) {
+      if (child.name.equalsIgnoreCase(tagName)) {
+        matches.add(child);
+      }
+    }
+    return matches;
+  }
+
+  /**
+   * @return the first child element with the given tag name, or null if there isn't one.
+   */
+  ManifestElement getChild(String tagName) {
+    for (ManifestElement child : children) {
+      if (child.name.equals(tagName)) {
+        return child;
+      }
+    }
+    return null;
+  }
+}
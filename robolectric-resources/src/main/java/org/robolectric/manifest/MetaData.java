@@ -21,17 +21,36 @@ public final class MetaData {
   public MetaData(List<Node> nodes) {
     for (Node metaNode : nodes) {
       NamedNodeMap attributes = metaNode.getAttributes();
-      Node nameAttr = attributes.getNamedItem("android:name");
-      Node valueAttr = attributes.getNamedItem("android:value");
-      Node resourceAttr = attributes.getNamedItem("android:resource");
+      add(nodeValue(attributes.getNamedItem("android:name")),
+          nodeValue(attributes.getNamedItem("android:value")),
+          nodeValue(attributes.getNamedItem("android:resource")));
+    }
+  }
 
-      if (valueAttr != null) {
-        valueMap.put(nameAttr.getNodeValue(), valueAttr.getNodeValue());
-        typeMap.put(nameAttr.getNodeValue(), VALUE_TYPE.VALUE);
-      } else if (resourceAttr != null) {
-        valueMap.put(nameAttr.getNodeValue(), resourceAttr.getNodeValue());
-        typeMap.put(nameAttr.getNodeValue(), VALUE_TYPE.RESOURCE);
-      }
+  private MetaData() {
+  }
+
+  static MetaData fromElements(List<ManifestElement> elements) {
+    MetaData metaData = new MetaData();
+    for (ManifestElement element : elements) {
+      metaData.add(element.getAttribute("android:name"),
+          element.getAttribute("android:value"),
+          element.getAttribute("android:resource"));
+    }
+    return metaData;
+  }
+
+  private static String nodeValue(Node node) {
+    return node == null ? null : node.getNodeValue();
+  }
+
+  private void add(String name, String value, String resource) {
+    if (value != null) {
+      valueMap.put(name, value);
+      typeMap.put(name, VALUE_TYPE.VALUE);
+    } else if (resource != null) {
+      valueMap.put(name, resource);
+      typeMap.put(name, VALUE_TYPE.RESOURCE);
     }
   }
 
@@ -0,0 +1,146 @@
+package org.robolectric.res;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An immutable listing of a directory, with the attributes of each entry captured in the same pass, so
+ * {@link FileFsFile} can answer {@code listFiles}, {@code isDirectory}, {@code isFile} and {@code exists} without a
+ * stat call per question.
+ *
+ * Snapshots are shared between all loaders. By default each one is checked against its directory's modification
+ * time before it's reused, which costs a single stat per listing. Setting {@code robolectric.fileSnapshots.revalidate}
+ * to false skips that check and trusts snapshots for the life of the JVM, which is only safe if nothing adds or
+ * removes resource files while tests run.
+ */
+class DirectorySnapshot {
+  // Directories modified this recently may still be changing within the file system's timestamp granularity.
+  private static final long RACY_INTERVAL_MILLIS = 2000;
+  private static final int MAX_SNAPSHOTS = 10000;
+
+  private static final boolean revalidate =
+      Boolean.parseBoolean(System.getProperty("robolectric.fileSnapshots.revalidate", "true"));
+  private static final ConcurrentMap<File, DirectorySnapshot> snapshots = new ConcurrentHashMap<>();
+
+  private final long lastModified;
+  private final List<String> names;
+  private final Map<String, Entry> entries;
+
+  private DirectorySnapshot(long lastModified, List<String> names, Map<String, Entry> entries) {
+    this.lastModified = lastModified;
+    this.names = Collections.unmodifiableList(names);
+    this.entries = entries;
+  }
+
+  /**
+   * @return the snapshot of {@code directory}, scanning it if need be, or null if it isn't a readable directory.
+   */
+  static DirectorySnapshot of(File directory) {
+    File key = directory.getAbsoluteFile();
+    DirectorySnapshot snapshot = snapshots.get(key);
+    if (snapshot != null && (!revalidate || snapshot.lastModified == key.lastModified())) {
+      return snapshot;
+    }
+
+    snapshot = scan(key.toPath());
+    if (snapshot == null) {
+      snapshots.remove(key);
+    } else if (!revalidate || System.currentTimeMillis() - snapshot.lastModified >= RACY_INTERVAL_MILLIS) {
+      if (snapshots.size() >= MAX_SNAPSHOTS) {
+        snapshots.clear();
+      }
+      snapshots.put(key, snapshot);
+    }
+    return snapshot;
+  }
+
+  /**
+   * @return the entry for {@code file} if its directory has already been scanned, without touching the file system
+   *     unless snapshots are being revalidated.
+   */
+  static Entry cachedEntry(File file) {
+    String name = file.getName();
+    File parent = file.getAbsoluteFile().getParentFile();
+    if (parent == null || name.isEmpty() || name.equals(".") || name.equals("..")) return null;
+    DirectorySnapshot snapshot = snapshots.get(parent);
+    if (snapshot == null || (revalidate && snapshot.lastModified != parent.lastModified())) {
+      return null;
+    }
+    Entry entry = snapshot.entries.get(name);
+    return entry == null ? Entry.MISSING : entry;
+  }
+
+  private static DirectorySnapshot scan(final Path directory) {
+    final long lastModified;
+    final List<String> names = new ArrayList<>();
+    final Map<String, Entry> entries = new HashMap<>();
+    try {
+      BasicFileAttributes attributes = Files.readAttributes(directory, BasicFileAttributes.class);
+      if (!attributes.isDirectory()) return null;
+      lastModified = attributes.lastModifiedTime().toMillis();
+
+      // At a depth of one, every child (directories included) is handed to visitFile along with its attributes.
+      Files.walkFileTree(directory, EnumSet.of(FileVisitOption.FOLLOW_LINKS), 1, new SimpleFileVisitor<Path>() {
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+          String name = file.getFileName().toString();
+          names.add(name);
+          entries.put(name, new Entry(true, attrs.isDirectory(), attrs.isRegularFile()));
+          return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
+          if (file.equals(directory)) throw exc;
+          // e.g. a child we may not read; File.listFiles() would still list it
+          String name = file.getFileName().toString();
+          names.add(name);
+          entries.put(name, Entry.MISSING);
+          return FileVisitResult.CONTINUE;
+        }
+      });
+    } catch (IOException e) {
+      return null;
+    }
+    return new DirectorySnapshot(lastModified, names, entries);
+  }
+
+  /**
+   * @return the names of the directory's entries, in the order the file system listed them.
+   */
+  List<String> getNames() {
+    return names;
+  }
+
+  Entry getEntry(String name) {
+    return entries.get(name);
+  }
+
+  static class Entry {
+    static final Entry MISSING = new Entry(false, false, false);
+
+    final boolean exists;
+    final boolean isDirectory;
+    final boolean isFile;
+
+    Entry(boolean exists, boolean isDirectory, boolean isFile) {
+      this.exists = exists;
+      this.isDirectory = isDirectory;
+      this.isFile = isFile;
+    }
+  }
+}
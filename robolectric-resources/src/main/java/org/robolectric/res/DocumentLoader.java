@@ -4,6 +4,17 @@ import com.ximpleware.VTDGen;
 import com.ximpleware.VTDNav;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
 public class DocumentLoader {
   private static final FsFile.Filter ENDS_WITH_XML = new FsFile.Filter() {
     @Override public boolean accept(@NotNull FsFile fsFile) {
@@ -11,34 +22,96 @@ public class DocumentLoader {
     }
   };
 
+  private static final ThreadLocal<VTDGen> vtdGen = new ThreadLocal<VTDGen>() {
+    @Override protected VTDGen initialValue() {
+      return new VTDGen();
+    }
+  };
+
+  // Shared by all loaders, so packages which are loaded concurrently don't multiply the number of threads.
+  private static final ExecutorService executorService = Executors.newFixedThreadPool(
+      Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(@NotNull Runnable runnable) {
+          Thread thread = new Thread(runnable, "robolectric-resource-loader-" + threadCount.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+
+  /**
+   * Creates the loaders to run over a single resource file, writing into the given tables.
+   */
+  public interface XmlLoaders {
+    XmlLoader[] create(ResBunch data, ResBundle xmlDocuments);
+  }
+
   private final FsFile resourceBase;
   private final String packageName;
-  private final VTDGen vtdGen;
 
   public DocumentLoader(ResourcePath resourcePath) {
     this.resourceBase = resourcePath.getResourceBase();
     this.packageName = resourcePath.getPackageName();
-    vtdGen = new VTDGen();
   }
 
   public void load(String folderBaseName, XmlLoader... xmlLoaders) throws Exception {
-    FsFile[] files = resourceBase.listFiles(new StartsWithFilter(folderBaseName));
-    if (files == null) {
-      throw new RuntimeException(resourceBase.join(folderBaseName) + " is not a directory");
+    for (FsFile file : listXmlFiles(folderBaseName)) {
+      loadResourceXmlFile(file, xmlLoaders);
     }
-    for (FsFile dir : files) {
-      loadFile(dir, xmlLoaders);
+  }
+
+  /**
+   * Loads all the files in the given folders concurrently. Each file is loaded into tables of its own, which are then
+   * merged into {@code data} and {@code xmlDocuments} in file order, so the result is the same as loading the files
+   * one after the other.
+   */
+  public void load(String folderBaseName, ResBunch data, ResBundle xmlDocuments, final XmlLoaders xmlLoaders) throws Exception {
+    List<Future<FileTables>> futures = new ArrayList<>();
+    for (final FsFile file : listXmlFiles(folderBaseName)) {
+      futures.add(executorService.submit(new Callable<FileTables>() {
+        @Override
+        public FileTables call() throws Exception {
+          FileTables fileTables = new FileTables();
+          loadResourceXmlFile(file, xmlLoaders.create(fileTables.data, fileTables.xmlDocuments));
+          return fileTables;
+        }
+      }));
+    }
+
+    try {
+      for (Future<FileTables> future : futures) {
+        FileTables fileTables = future.get();
+        data.putAll(fileTables.data);
+        xmlDocuments.putAll(fileTables.xmlDocuments);
+      }
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof Exception) throw (Exception) cause;
+      if (cause instanceof Error) throw (Error) cause;
+      throw e;
+    } finally {
+      for (Future<FileTables> future : futures) {
+        future.cancel(false);
+      }
     }
   }
 
-  private void loadFile(FsFile dir, XmlLoader[] xmlLoaders) throws Exception {
-    if (!dir.exists()) {
-      throw new RuntimeException("no such directory " + dir);
+  private List<FsFile> listXmlFiles(String folderBaseName) {
+    FsFile[] dirs = resourceBase.listFiles(new StartsWithFilter(folderBaseName));
+    if (dirs == null) {
+      throw new RuntimeException(resourceBase.join(folderBaseName) + " is not a directory");
     }
 
-    for (FsFile file : dir.listFiles(ENDS_WITH_XML)) {
-      loadResourceXmlFile(file, xmlLoaders);
+    List<FsFile> files = new ArrayList<>();
+    for (FsFile dir : dirs) {
+      if (!dir.exists()) {
+        throw new RuntimeException("no such directory " + dir);
+      }
+      Collections.addAll(files, dir.listFiles(ENDS_WITH_XML));
     }
+    return files;
   }
 
   private void loadResourceXmlFile(FsFile fsFile, XmlLoader... xmlLoaders) throws Exception {
@@ -50,9 +123,15 @@ public class DocumentLoader {
 
   private VTDNav parse(FsFile xmlFile) throws Exception {
     byte[] bytes = xmlFile.getBytes();
+    VTDGen vtdGen = DocumentLoader.vtdGen.get();
     vtdGen.setDoc(bytes);
     vtdGen.parse(true);
 
     return vtdGen.getNav();
   }
+
+  private static class FileTables {
+    final ResBunch data = new ResBunch();
+    final ResBundle xmlDocuments = new ResBundle();
+  }
 }
@@ -4,62 +4,78 @@ import org.robolectric.util.Util;
 
 import java.io.BufferedInputStream;
 import java.io.File;
-import java.io.FileFilter;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 
 public class FileFsFile implements FsFile {
   private File canonicalFile;
   private final File file;
+  // What was known about the file when its directory was listed, if that's where it came from.
+  private final DirectorySnapshot.Entry entry;
 
   FileFsFile(File file) {
-    this.file = file;
+    this(file, null);
   }
 
   FileFsFile(String path) {
-    this.file = new File(path);
+    this(new File(path), null);
+  }
+
+  private FileFsFile(File file, DirectorySnapshot.Entry entry) {
+    this.file = file;
+    this.entry = entry;
   }
 
   @Override
   public boolean exists() {
-    return file.exists();
+    DirectorySnapshot.Entry entry = getEntry();
+    return entry == null ? file.exists() : entry.exists;
   }
 
   @Override
   public boolean isDirectory() {
-    return file.isDirectory();
+    DirectorySnapshot.Entry entry = getEntry();
+    return entry == null ? file.isDirectory() : entry.isDirectory;
   }
 
   @Override
   public boolean isFile() {
-    return file.isFile();
+    DirectorySnapshot.Entry entry = getEntry();
+    return entry == null ? file.isFile() : entry.isFile;
+  }
+
+  private DirectorySnapshot.Entry getEntry() {
+    return entry != null ? entry : DirectorySnapshot.cachedEntry(file);
   }
 
   @Override
   public FsFile[] listFiles() {
-    return asFsFiles(file.listFiles());
+    return listFiles(null);
   }
 
   @Override
-  public FsFile[] listFiles(final Filter filter) {
-    return asFsFiles(file.listFiles(new FileFilter() {
-      @Override
-      public boolean accept(File pathname) {
-        return filter.accept(new FileFsFile(pathname));
+  public FsFile[] listFiles(Filter filter) {
+    DirectorySnapshot snapshot = DirectorySnapshot.of(file);
+    if (snapshot == null) return null;
+    List<FsFile> fsFiles = new ArrayList<>(snapshot.getNames().size());
+    for (String name : snapshot.getNames()) {
+      FsFile fsFile = new FileFsFile(new File(file, name), snapshot.getEntry(name));
+      if (filter == null || filter.accept(fsFile)) {
+        fsFiles.add(fsFile);
       }
-    }));
+    }
+    return fsFiles.toArray(new FsFile[fsFiles.size()]);
   }
 
   @Override
   public String[] listFileNames() {
-    File[] files = file.listFiles();
-    if (files == null) return null;
-    String[] strings = new String[files.length];
-    for (int i = 0; i < files.length; i++) {
-      strings[i] = files[i].getName();
-    }
-    return strings;
+    DirectorySnapshot snapshot = DirectorySnapshot.of(file);
+    if (snapshot == null) return null;
+    List<String> names = snapshot.getNames();
+    return names.toArray(new String[names.size()]);
   }
 
   @Override
@@ -133,15 +149,6 @@ public class FileFsFile implements FsFile {
     return file.getPath();
   }
 
-  private FsFile[] asFsFiles(File[] files) {
-    if (files == null) return null;
-    FsFile[] fsFiles = new FsFile[files.length];
-    for (int i = 0; i < files.length; i++) {
-      fsFiles[i] = Fs.newFile(files[i]);
-    }
-    return fsFiles;
-  }
-
   /**
    * Canonical file queries can be expensive, so perform them lazily. In
    * practice, this should only happen for raw resources, AndroidManifest.xml,
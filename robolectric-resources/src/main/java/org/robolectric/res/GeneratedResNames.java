@@ -0,0 +1,43 @@
+package org.robolectric.res;
+
+import java.util.Arrays;
+
+/**
+ * Names of the ids handed out, one after another, to resources that aren't in any R class or symbol file. Lookups
+ * don't box the id or take a lock; calls to {@link #add(ResName)} must be serialized by the owner.
+ */
+class GeneratedResNames {
+  private final int firstId;
+  private volatile ResName[] resNames = new ResName[16];
+  private volatile int count;
+
+  GeneratedResNames(int firstId) {
+    this.firstId = firstId;
+  }
+
+  /**
+   * Assigns the next id to the given name.
+   *
+   * @return The new id.
+   */
+  int add(ResName resName) {
+    int index = count;
+    ResName[] resNames = this.resNames;
+    if (index == resNames.length) {
+      resNames = Arrays.copyOf(resNames, index * 2);
+    }
+    resNames[index] = resName;
+    this.resNames = resNames;
+    // publishing the count last makes the name visible to readers that see the new count
+    count = index + 1;
+    return firstId + index;
+  }
+
+  ResName get(int id) {
+    int index = id - firstId;
+    if (index < 0 || index >= count) {
+      return null;
+    }
+    return resNames[index];
+  }
+}
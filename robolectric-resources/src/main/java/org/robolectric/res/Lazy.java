@@ -0,0 +1,44 @@
+package org.robolectric.res;
+
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A value which is created the first time it's needed, by whichever thread gets there first.
+ */
+abstract class Lazy<T> {
+  private volatile T value;
+
+  T get() {
+    T value = this.value;
+    if (value == null) {
+      synchronized (this) {
+        value = this.value;
+        if (value == null) {
+          this.value = value = create();
+        }
+      }
+    }
+    return value;
+  }
+
+  boolean isCreated() {
+    return value != null;
+  }
+
+  /**
+   * Forgets the value, so it's created again if it's ever needed.
+   */
+  void release() {
+    value = null;
+  }
+
+  abstract T create();
+
+  /**
+   * @return the value for {@code key}, created with {@code newValue} if nobody has asked for it before.
+   */
+  static <T> T get(ConcurrentMap<String, Lazy<T>> values, String key, Lazy<T> newValue) {
+    Lazy<T> value = values.putIfAbsent(key, newValue);
+    return (value == null ? newValue : value).get();
+  }
+}
@@ -14,7 +14,6 @@ public class MergedResourceIndex extends ResourceIndex {
     for (ResourceIndex subIndex : subIndexes) {
       actualPackageNames.addAll(subIndex.getPackages());
       merge(resourceNameToId, subIndex.resourceNameToId, "resourceNameToId");
-      merge(resourceIdToResName, subIndex.resourceIdToResName, "resourceIdToResName");
     }
   }
 
@@ -41,15 +40,11 @@ public class MergedResourceIndex extends ResourceIndex {
 
   @Override
   public ResName getResName(int resourceId) {
-    // todo: this is pretty silly...
-    ResName resName = resourceIdToResName.get(resourceId);
-    if (resName == null) {
-      for (ResourceIndex subIndex : subIndexes) {
-        resName = subIndex.getResName(resourceId);
-        if (resName != null) return resName;
-      }
+    for (ResourceIndex subIndex : subIndexes) {
+      ResName resName = subIndex.getResName(resourceId);
+      if (resName != null) return resName;
     }
-    return resName;
+    return null;
   }
 
   @Override public Collection<String> getPackages() {
@@ -1,11 +1,13 @@
 package org.robolectric.res;
 
 import java.util.Collection;
-import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Logger;
 
 class OverlayResourceIndex extends ResourceIndex {
@@ -14,7 +16,9 @@ class OverlayResourceIndex extends ResourceIndex {
 
   private final String packageName;
   private final Set<String> actualPackageNames = new HashSet<>();
-  private Integer maxUsedInt = null;
+  private final ResourceIdTable resNamesById;
+  private final ConcurrentMap<ResName, Integer> generatedIds = new ConcurrentHashMap<>();
+  private final GeneratedResNames generatedResNames;
 
   public OverlayResourceIndex(String packageName, List<PackageResourceLoader> subResourceLoaders) {
     this(packageName, map(subResourceLoaders));
@@ -32,6 +36,7 @@ class OverlayResourceIndex extends ResourceIndex {
     this.packageName = packageName;
     actualPackageNames.add(packageName);
 
+    Map<Integer, ResName> resNames = new HashMap<>();
     for (ResourceIndex subResourceIndex : subResourceIndexes) {
       actualPackageNames.addAll(subResourceIndex.getPackages());
 
@@ -41,10 +46,12 @@ class OverlayResourceIndex extends ResourceIndex {
         ResName localResName = resName.withPackageName(packageName);
         if (!resourceNameToId.containsKey(localResName)) {
           resourceNameToId.put(localResName, value);
-          resourceIdToResName.put(value, localResName);
+          resNames.put(value, localResName);
         }
       }
     }
+    resNamesById = new ResourceIdTable(resNames);
+    generatedResNames = new GeneratedResNames(resNamesById.getMaxId() + 1);
   }
 
   @Override
@@ -52,14 +59,22 @@ class OverlayResourceIndex extends ResourceIndex {
     if (!actualPackageNames.contains(resName.packageName)) {
       return null;
     }
-    Integer id = resourceNameToId.get(resName.withPackageName(packageName));
+    ResName localResName = resName.withPackageName(packageName);
+    Integer id = resourceNameToId.get(localResName);
     if (id == null) {
-      if (maxUsedInt == null) {
-        maxUsedInt = resourceIdToResName.isEmpty() ? 0 : Collections.max(resourceIdToResName.keySet());
-      }
-      id = ++maxUsedInt;
-      resourceNameToId.put(resName, id);
-      resourceIdToResName.put(id, resName);
+      id = generatedIds.get(localResName);
+    }
+    if (id == null) {
+      id = generateId(localResName);
+    }
+    return id;
+  }
+
+  private synchronized int generateId(ResName resName) {
+    Integer id = generatedIds.get(resName);
+    if (id == null) {
+      id = generatedResNames.add(resName);
+      generatedIds.put(resName, id);
       LOGGER.fine("no id mapping found for " + resName.getFullyQualifiedName() + "; assigning ID #0x" + Integer.toHexString(id));
     }
     return id;
@@ -67,7 +82,10 @@ class OverlayResourceIndex extends ResourceIndex {
 
   @Override
   public ResName getResName(int resourceId) {
-    ResName resName = resourceIdToResName.get(resourceId);
+    ResName resName = resNamesById.get(resourceId);
+    if (resName == null) {
+      resName = generatedResNames.get(resourceId);
+    }
     return resName == null ? null : resName.withPackageName(packageName);
   }
 
@@ -3,6 +3,7 @@ package org.robolectric.res;
 import org.jetbrains.annotations.NotNull;
 import org.robolectric.res.builder.XmlBlock;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
@@ -14,6 +15,9 @@ public class OverlayResourceLoader extends XResourceLoader {
 
   private final String packageName;
   private final List<PackageResourceLoader> subResourceLoaders;
+  private final ConcurrentMap<String, Lazy<ResBunch>> lazyData = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Lazy<ResBundle>> lazyXmlDocuments = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Lazy<ResBundle>> lazyRawResources = new ConcurrentHashMap<>();
 
   public OverlayResourceLoader(String packageName, List<PackageResourceLoader> subResourceLoaders) {
     super(new OverlayResourceIndex(packageName, subResourceLoaders));
@@ -25,6 +29,9 @@ public class OverlayResourceLoader extends XResourceLoader {
   void doInitialize() {
     initialiseResourceLoaders();
     mergeResources();
+    lazyData.clear();
+    lazyXmlDocuments.clear();
+    lazyRawResources.clear();
   }
 
   /**
@@ -106,16 +113,75 @@ public class OverlayResourceLoader extends XResourceLoader {
     }
   }
 
+  /**
+   * Until something needs every resource, lookups merge just the requested type from each sub loader, so sub loaders
+   * which load one type at a time aren't made to load everything.
+   */
   @Override public InputStream getRawValue(ResName resName, String qualifiers) {
-    return super.getRawValue(resName.withPackageName(packageName), qualifiers);
+    resName = resName.withPackageName(packageName);
+    if (isInitialized()) return super.getRawValue(resName, qualifiers);
+    TypedResource typedResource = lazyRawResources(resName.type).get(resName, qualifiers);
+    FsFile file = typedResource == null ? null : (FsFile) typedResource.getData();
+    try {
+      return file == null ? null : file.getInputStream();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
   }
 
   @Override public TypedResource getValue(@NotNull ResName resName, String qualifiers) {
-    return super.getValue(resName.withPackageName(packageName), qualifiers);
+    resName = resName.withPackageName(packageName);
+    if (isInitialized()) return super.getValue(resName, qualifiers);
+    return lazyData(resName.type).get(resName, qualifiers);
   }
 
   @Override public XmlBlock getXml(ResName resName, String qualifiers) {
-    return super.getXml(resName.withPackageName(packageName), qualifiers);
+    resName = resName.withPackageName(packageName);
+    if (isInitialized()) return super.getXml(resName, qualifiers);
+    TypedResource typedResource = lazyXmlDocuments(resName.type).get(resName, qualifiers);
+    return typedResource == null ? null : (XmlBlock) typedResource.getData();
+  }
+
+  private ResBunch lazyData(final String type) {
+    return Lazy.get(lazyData, type, new Lazy<ResBunch>() {
+      @Override
+      ResBunch create() {
+        ResBunch bunch = new ResBunch();
+        for (PackageResourceLoader subResourceLoader : subResourceLoaders) {
+          bunch.mergeLibraryStyle(type, subResourceLoader.dataFor(type), packageName);
+        }
+        bunch.makeImmutable();
+        return bunch;
+      }
+    });
+  }
+
+  private ResBundle lazyXmlDocuments(final String type) {
+    return Lazy.get(lazyXmlDocuments, type, new Lazy<ResBundle>() {
+      @Override
+      ResBundle create() {
+        ResBundle bundle = new ResBundle();
+        for (PackageResourceLoader subResourceLoader : subResourceLoaders) {
+          bundle.mergeLibraryStyle(type, subResourceLoader.xmlDocumentsFor(type), packageName);
+        }
+        bundle.makeImmutable();
+        return bundle;
+      }
+    });
+  }
+
+  private ResBundle lazyRawResources(final String type) {
+    return Lazy.get(lazyRawResources, type, new Lazy<ResBundle>() {
+      @Override
+      ResBundle create() {
+        ResBundle bundle = new ResBundle();
+        for (PackageResourceLoader subResourceLoader : subResourceLoaders) {
+          bundle.mergeLibraryStyle(type, subResourceLoader.rawResourcesFor(type), packageName);
+        }
+        bundle.makeImmutable();
+        return bundle;
+      }
+    });
   }
 
   @Override public boolean providesFor(String namespace) {
@@ -137,6 +203,51 @@ public class OverlayResourceLoader extends XResourceLoader {
     super.receive(visitor);
   }
 
+  @Override
+  public long estimateRetainedSize() {
+    long size = super.estimateRetainedSize();
+    for (PackageResourceLoader subResourceLoader : subResourceLoaders) {
+      size += subResourceLoader.estimateRetainedSize();
+    }
+    return size;
+  }
+
+  @Override
+  public long getPickCacheHits() {
+    long hits = super.getPickCacheHits();
+    for (PackageResourceLoader subResourceLoader : subResourceLoaders) {
+      hits += subResourceLoader.getPickCacheHits();
+    }
+    for (Lazy<ResBunch> table : lazyData.values()) {
+      if (table.isCreated()) hits += table.get().getPickCacheHits();
+    }
+    for (Lazy<ResBundle> table : lazyXmlDocuments.values()) {
+      if (table.isCreated()) hits += table.get().getPickCacheHits();
+    }
+    for (Lazy<ResBundle> table : lazyRawResources.values()) {
+      if (table.isCreated()) hits += table.get().getPickCacheHits();
+    }
+    return hits;
+  }
+
+  @Override
+  public long getPickCacheMisses() {
+    long misses = super.getPickCacheMisses();
+    for (PackageResourceLoader subResourceLoader : subResourceLoaders) {
+      misses += subResourceLoader.getPickCacheMisses();
+    }
+    for (Lazy<ResBunch> table : lazyData.values()) {
+      if (table.isCreated()) misses += table.get().getPickCacheMisses();
+    }
+    for (Lazy<ResBundle> table : lazyXmlDocuments.values()) {
+      if (table.isCreated()) misses += table.get().getPickCacheMisses();
+    }
+    for (Lazy<ResBundle> table : lazyRawResources.values()) {
+      if (table.isCreated()) misses += table.get().getPickCacheMisses();
+    }
+    return misses;
+  }
+
   @Override
   public String toString() {
     return "OverlayResourceLoader for " + packageName + " with " + subResourceLoaders.size() + " sub loaders";
@@ -1,69 +1,320 @@
 package org.robolectric.res;
 
+import org.jetbrains.annotations.NotNull;
+import org.robolectric.res.builder.XmlBlock;
 import org.robolectric.util.Logger;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 public class PackageResourceLoader extends XResourceLoader {
+  private static final Set<String> VALUE_TYPES = new HashSet<>(Arrays.asList(
+      "bool", "color", "drawable", "dimen", "integer", "array", "fraction", "layout", "plurals", "string", "attr", "style"));
+  private static final Set<String> NONE = Collections.emptySet();
+
   private final ResourcePath resourcePath;
+  private final ResourceTableCache resourceTableCache;
+  // Where each type of resource comes from, in the order their values are put into the tables.
+  private final List<Section> sections;
+  private final ConcurrentMap<String, Lazy<ResBunch>> lazyData = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Lazy<ResBundle>> lazyXmlDocuments = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Lazy<ResBundle>> lazyRawResources = new ConcurrentHashMap<>();
+  private volatile Boolean cacheable;
 
   public PackageResourceLoader(ResourcePath resourcePath) {
     this(resourcePath, new ResourceExtractor(resourcePath));
   }
 
   public PackageResourceLoader(ResourcePath resourcePath, ResourceIndex resourceIndex) {
+    this(resourcePath, resourceIndex, ResourceTableCache.fromSystemProperties());
+  }
+
+  PackageResourceLoader(ResourcePath resourcePath, ResourceIndex resourceIndex, ResourceTableCache resourceTableCache) {
     super(resourceIndex);
     this.resourcePath = resourcePath;
+    this.resourceTableCache = resourceTableCache;
+    this.sections = createSections();
   }
 
   void doInitialize() {
+    if (resourceTableCache != null && resourceTableCache.load(resourcePath, data, xmlDocuments, rawResources)) {
+      Logger.debug("Loaded resources for %s from cache", resourcePath.getPackageName());
+      return;
+    }
+
+    loadEverything();
+
+    if (resourceTableCache != null) {
+      resourceTableCache.save(resourcePath, data, xmlDocuments, rawResources);
+    }
+  }
+
+  private void loadEverything() {
+    Logger.debug("Loading resources for %s from %s...", resourcePath.getPackageName(), resourcePath.getResourceBase());
+
+    for (Section section : sections) {
+      Tables tables = section.get();
+      data.putAll(tables.data);
+      xmlDocuments.putAll(tables.xmlDocuments);
+      rawResources.putAll(tables.rawResources);
+      section.release();
+    }
+    lazyData.clear();
+    lazyXmlDocuments.clear();
+    lazyRawResources.clear();
+  }
+
+  /**
+   * Packages whose tables can be cached on disk are loaded in full, from their snapshot or by parsing everything and
+   * then writing one. Other packages are loaded one type at a time, parsing only the folders which can hold that type.
+   */
+  @Override
+  public TypedResource getValue(@NotNull ResName resName, String qualifiers) {
+    return dataFor(resName.type).get(resName, qualifiers);
+  }
+
+  @Override
+  public XmlBlock getXml(ResName resName, String qualifiers) {
+    TypedResource typedResource = xmlDocumentsFor(resName.type).get(resName, qualifiers);
+    return typedResource == null ? null : (XmlBlock) typedResource.getData();
+  }
+
+  @Override
+  public InputStream getRawValue(ResName resName, String qualifiers) {
+    TypedResource typedResource = rawResourcesFor(resName.type).get(resName, qualifiers);
+    FsFile file = typedResource == null ? null : (FsFile) typedResource.getData();
     try {
-      loadEverything();
-    } catch (RuntimeException e) {
-      throw e;
-    } catch (Exception e) {
+      return file == null ? null : file.getInputStream();
+    } catch (IOException e) {
       throw new RuntimeException(e);
     }
   }
 
-  private void loadEverything() throws Exception {
-    Logger.debug("Loading resources for %s from %s...", resourcePath.getPackageName(), resourcePath.getResourceBase());
+  /**
+   * @return an immutable table holding at least all the values of the given type.
+   */
+  ResBunch dataFor(String type) {
+    if (!loadsEverything()) return lazyData(type);
+    initialize();
+    return data;
+  }
+
+  /**
+   * @return an immutable table holding at least all the XML documents of the given type.
+   */
+  ResBundle xmlDocumentsFor(String type) {
+    if (!loadsEverything()) return lazyXmlDocuments(type);
+    initialize();
+    return xmlDocuments;
+  }
+
+  /**
+   * @return an immutable table holding at least all the raw files of the given type.
+   */
+  ResBundle rawResourcesFor(String type) {
+    if (!loadsEverything()) return lazyRawResources(type);
+    initialize();
+    return rawResources;
+  }
+
+  private boolean loadsEverything() {
+    if (isInitialized()) return true;
+    Boolean cacheable = this.cacheable;
+    if (cacheable == null) {
+      this.cacheable = cacheable = resourceTableCache != null && resourceTableCache.fileFor(resourcePath) != null;
+    }
+    return cacheable;
+  }
+
+  private ResBunch lazyData(final String type) {
+    return Lazy.get(lazyData, type, new Lazy<ResBunch>() {
+      @Override
+      ResBunch create() {
+        ResBunch bunch = new ResBunch();
+        for (Section section : sections) {
+          if (section.dataTypes.contains(type)) {
+            bunch.putAll(type, section.get().data);
+          }
+        }
+        // ResBunch.get() adds a missing type's bundle, which mustn't happen once the table is shared
+        bunch.putAll(type, new ResBunch());
+        bunch.makeImmutable();
+        return bunch;
+      }
+    });
+  }
+
+  private ResBundle lazyXmlDocuments(final String type) {
+    return Lazy.get(lazyXmlDocuments, type, new Lazy<ResBundle>() {
+      @Override
+      ResBundle create() {
+        ResBundle bundle = new ResBundle();
+        for (Section section : sections) {
+          if (section.xmlTypes.contains(type)) {
+            bundle.putAll(type, section.get().xmlDocuments);
+          }
+        }
+        bundle.makeImmutable();
+        return bundle;
+      }
+    });
+  }
 
-    DocumentLoader documentLoader = new DocumentLoader(resourcePath);
-
-    documentLoader.load("values",
-        new ValueResourceLoader(data, "/resources/bool", "bool", ResType.BOOLEAN),
-        new ValueResourceLoader(data, "/resources/item[@type='bool']", "bool", ResType.BOOLEAN),
-        new ValueResourceLoader(data, "/resources/color", "color", ResType.COLOR),
-        new ValueResourceLoader(data, "/resources/drawable", "drawable", ResType.DRAWABLE),
-        new ValueResourceLoader(data, "/resources/item[@type='color']", "color", ResType.COLOR),
-        new ValueResourceLoader(data, "/resources/item[@type='drawable']", "drawable", ResType.DRAWABLE),
-        new ValueResourceLoader(data, "/resources/dimen", "dimen", ResType.DIMEN),
-        new ValueResourceLoader(data, "/resources/item[@type='dimen']", "dimen", ResType.DIMEN),
-        new ValueResourceLoader(data, "/resources/integer", "integer", ResType.INTEGER),
-        new ValueResourceLoader(data, "/resources/item[@type='integer']", "integer", ResType.INTEGER),
-        new ValueResourceLoader(data, "/resources/integer-array", "array", ResType.INTEGER_ARRAY),
-        new ValueResourceLoader(data, "/resources/fraction", "fraction", ResType.FRACTION),
-        new ValueResourceLoader(data, "/resources/item[@type='fraction']", "fraction", ResType.FRACTION),
-        new ValueResourceLoader(data, "/resources/item", "layout", ResType.LAYOUT),
-        new PluralResourceLoader(data),
-        new ValueResourceLoader(data, "/resources/string", "string", ResType.CHAR_SEQUENCE),
-        new ValueResourceLoader(data, "/resources/item[@type='string']", "string", ResType.CHAR_SEQUENCE),
-        new ValueResourceLoader(data, "/resources/string-array", "array", ResType.CHAR_SEQUENCE_ARRAY),
-        new AttrResourceLoader(data),
-        new StyleResourceLoader(data)
-    );
-
-    documentLoader.load("layout", new OpaqueFileLoader(data, "layout"), new XmlBlockLoader(xmlDocuments, "layout"));
-    documentLoader.load("menu", new OpaqueFileLoader(data, "menu"), new XmlBlockLoader(xmlDocuments, "menu"));
-    documentLoader.load("drawable", new OpaqueFileLoader(data, "drawable", ResType.DRAWABLE), new XmlBlockLoader(xmlDocuments, "drawable"));
-    documentLoader.load("anim", new OpaqueFileLoader(data, "anim"), new XmlBlockLoader(xmlDocuments, "anim"));
-    documentLoader.load("animator", new OpaqueFileLoader(data, "animator"), new XmlBlockLoader(xmlDocuments, "animator"));
-    documentLoader.load("color", new ColorResourceLoader(data), new XmlBlockLoader(xmlDocuments, "color"));
-    documentLoader.load("xml", new OpaqueFileLoader(data, "xml"), new XmlBlockLoader(xmlDocuments, "xml"));
-    documentLoader.load("transition", new OpaqueFileLoader(data, "transition"), new XmlBlockLoader(xmlDocuments, "transition"));
-    documentLoader.load("interpolator", new OpaqueFileLoader(data, "interpolator"), new XmlBlockLoader(xmlDocuments, "interpolator"));
-
-    new DrawableResourceLoader(data).findDrawableResources(resourcePath);
-    new RawResourceLoader(resourcePath).loadTo(rawResources);
+  private ResBundle lazyRawResources(final String type) {
+    return Lazy.get(lazyRawResources, type, new Lazy<ResBundle>() {
+      @Override
+      ResBundle create() {
+        ResBundle bundle = new ResBundle();
+        for (Section section : sections) {
+          if (section.rawTypes.contains(type)) {
+            bundle.putAll(type, section.get().rawResources);
+          }
+        }
+        bundle.makeImmutable();
+        return bundle;
+      }
+    });
+  }
+
+  @Override
+  public long estimateRetainedSize() {
+    if (isInitialized()) return super.estimateRetainedSize();
+    long valueCount = 0;
+    long xmlDocumentCount = 0;
+    for (Lazy<ResBunch> table : lazyData.values()) {
+      if (table.isCreated()) valueCount += table.get().size();
+    }
+    for (Lazy<ResBundle> table : lazyRawResources.values()) {
+      if (table.isCreated()) valueCount += table.get().size();
+    }
+    for (Lazy<ResBundle> table : lazyXmlDocuments.values()) {
+      if (table.isCreated()) xmlDocumentCount += table.get().size();
+    }
+    return estimateRetainedSize(valueCount, xmlDocumentCount);
+  }
+
+  @Override
+  public long getPickCacheHits() {
+    long hits = super.getPickCacheHits();
+    for (Lazy<ResBunch> table : lazyData.values()) {
+      if (table.isCreated()) hits += table.get().getPickCacheHits();
+    }
+    for (Lazy<ResBundle> table : lazyXmlDocuments.values()) {
+      if (table.isCreated()) hits += table.get().getPickCacheHits();
+    }
+    for (Lazy<ResBundle> table : lazyRawResources.values()) {
+      if (table.isCreated()) hits += table.get().getPickCacheHits();
+    }
+    return hits;
+  }
+
+  @Override
+  public long getPickCacheMisses() {
+    long misses = super.getPickCacheMisses();
+    for (Lazy<ResBunch> table : lazyData.values()) {
+      if (table.isCreated()) misses += table.get().getPickCacheMisses();
+    }
+    for (Lazy<ResBundle> table : lazyXmlDocuments.values()) {
+      if (table.isCreated()) misses += table.get().getPickCacheMisses();
+    }
+    for (Lazy<ResBundle> table : lazyRawResources.values()) {
+      if (table.isCreated()) misses += table.get().getPickCacheMisses();
+    }
+    return misses;
+  }
+
+  private List<Section> createSections() {
+    final DocumentLoader documentLoader = new DocumentLoader(resourcePath);
+    List<Section> sections = new ArrayList<>();
+
+    sections.add(new Section(VALUE_TYPES, NONE, NONE) {
+      @Override
+      void load(Tables tables) throws Exception {
+        documentLoader.load("values", tables.data, tables.xmlDocuments, new DocumentLoader.XmlLoaders() {
+          @Override
+          public XmlLoader[] create(ResBunch data, ResBundle xmlDocuments) {
+            return new XmlLoader[] {
+                new ValueResourceLoader(data, "/resources/bool", "bool", ResType.BOOLEAN),
+                new ValueResourceLoader(data, "/resources/item[@type='bool']", "bool", ResType.BOOLEAN),
+                new ValueResourceLoader(data, "/resources/color", "color", ResType.COLOR),
+                new ValueResourceLoader(data, "/resources/drawable", "drawable", ResType.DRAWABLE),
+                new ValueResourceLoader(data, "/resources/item[@type='color']", "color", ResType.COLOR),
+                new ValueResourceLoader(data, "/resources/item[@type='drawable']", "drawable", ResType.DRAWABLE),
+                new ValueResourceLoader(data, "/resources/dimen", "dimen", ResType.DIMEN),
+                new ValueResourceLoader(data, "/resources/item[@type='dimen']", "dimen", ResType.DIMEN),
+                new ValueResourceLoader(data, "/resources/integer", "integer", ResType.INTEGER),
+                new ValueResourceLoader(data, "/resources/item[@type='integer']", "integer", ResType.INTEGER),
+                new ValueResourceLoader(data, "/resources/integer-array", "array", ResType.INTEGER_ARRAY),
+                new ValueResourceLoader(data, "/resources/fraction", "fraction", ResType.FRACTION),
+                new ValueResourceLoader(data, "/resources/item[@type='fraction']", "fraction", ResType.FRACTION),
+                new ValueResourceLoader(data, "/resources/item", "layout", ResType.LAYOUT),
+                new PluralResourceLoader(data),
+                new ValueResourceLoader(data, "/resources/string", "string", ResType.CHAR_SEQUENCE),
+                new ValueResourceLoader(data, "/resources/item[@type='string']", "string", ResType.CHAR_SEQUENCE),
+                new ValueResourceLoader(data, "/resources/string-array", "array", ResType.CHAR_SEQUENCE_ARRAY),
+                new AttrResourceLoader(data),
+                new StyleResourceLoader(data)
+            };
+          }
+        });
+      }
+    });
+
+    sections.add(xmlFiles(documentLoader, "layout", ResType.LAYOUT));
+    sections.add(xmlFiles(documentLoader, "menu", ResType.LAYOUT));
+    sections.add(xmlFiles(documentLoader, "drawable", ResType.DRAWABLE));
+    sections.add(xmlFiles(documentLoader, "anim", ResType.LAYOUT));
+    sections.add(xmlFiles(documentLoader, "animator", ResType.LAYOUT));
+    sections.add(new Section(Collections.singleton("color"), Collections.singleton("color"), NONE) {
+      @Override
+      void load(Tables tables) throws Exception {
+        documentLoader.load("color", tables.data, tables.xmlDocuments, new DocumentLoader.XmlLoaders() {
+          @Override
+          public XmlLoader[] create(ResBunch data, ResBundle xmlDocuments) {
+            return new XmlLoader[] { new ColorResourceLoader(data), new XmlBlockLoader(xmlDocuments, "color") };
+          }
+        });
+      }
+    });
+    sections.add(xmlFiles(documentLoader, "xml", ResType.LAYOUT));
+    sections.add(xmlFiles(documentLoader, "transition", ResType.LAYOUT));
+    sections.add(xmlFiles(documentLoader, "interpolator", ResType.LAYOUT));
+
+    sections.add(new Section(new HashSet<>(Arrays.asList("drawable", "mipmap")), NONE, NONE) {
+      @Override
+      void load(Tables tables) {
+        new DrawableResourceLoader(tables.data).findDrawableResources(resourcePath);
+      }
+    });
+    sections.add(new Section(NONE, NONE, new HashSet<>(Arrays.asList("raw", "drawable"))) {
+      @Override
+      void load(Tables tables) {
+        new RawResourceLoader(resourcePath).loadTo(tables.rawResources);
+      }
+    });
+    return sections;
+  }
+
+  private Section xmlFiles(final DocumentLoader documentLoader, final String attrType, final ResType resType) {
+    return new Section(Collections.singleton(attrType), Collections.singleton(attrType), NONE) {
+      @Override
+      void load(Tables tables) throws Exception {
+        documentLoader.load(attrType, tables.data, tables.xmlDocuments, new DocumentLoader.XmlLoaders() {
+          @Override
+          public XmlLoader[] create(ResBunch data, ResBundle xmlDocuments) {
+            return new XmlLoader[] { new OpaqueFileLoader(data, attrType, resType), new XmlBlockLoader(xmlDocuments, attrType) };
+          }
+        });
+      }
+    };
   }
 
   @Override
@@ -74,4 +325,41 @@ public class PackageResourceLoader extends XResourceLoader {
   @Override public boolean providesFor(String namespace) {
     return resourcePath.getPackageName().equals(namespace);
   }
+
+  private static class Tables {
+    final ResBunch data = new ResBunch();
+    final ResBundle xmlDocuments = new ResBundle();
+    final ResBundle rawResources = new ResBundle();
+  }
+
+  /**
+   * The resources found in one group of folders, e.g. all the {@code values} folders, which are parsed together the
+   * first time a table needs any of the types they can hold.
+   */
+  private abstract static class Section extends Lazy<Tables> {
+    final Set<String> dataTypes;
+    final Set<String> xmlTypes;
+    final Set<String> rawTypes;
+
+    Section(Set<String> dataTypes, Set<String> xmlTypes, Set<String> rawTypes) {
+      this.dataTypes = dataTypes;
+      this.xmlTypes = xmlTypes;
+      this.rawTypes = rawTypes;
+    }
+
+    @Override
+    Tables create() {
+      Tables tables = new Tables();
+      try {
+        load(tables);
+      } catch (RuntimeException e) {
+        throw e;
+      } catch (Exception e) {
+        throw new RuntimeException(e);
+      }
+      return tables;
+    }
+
+    abstract void load(Tables tables) throws Exception;
+  }
 }
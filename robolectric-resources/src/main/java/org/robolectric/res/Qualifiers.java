@@ -43,6 +43,40 @@ public class Qualifiers {
     return true;
   }
 
+  /**
+   * Number of qualifier dimensions which have a numeric weight (version, height, width, smallest height and smallest
+   * width).
+   */
+  static final int WEIGHT_COUNT = TOTAL_ORDER_COUNT;
+
+  /**
+   * Copies this qualifier's weights into {@code weights}, starting at {@code offset}.
+   */
+  void copyWeightsTo(int[] weights, int offset) {
+    System.arraycopy(mWeights, 0, weights, offset, TOTAL_ORDER_COUNT);
+  }
+
+  /**
+   * Equivalent to {@link #passesRequirements(Qualifiers)} for a candidate whose weights were copied into
+   * {@code weights} at {@code offset}, with this being the qualifiers to match.
+   */
+  boolean isPassedBy(int[] weights, int offset) {
+    for (int i = 0; i < TOTAL_ORDER_COUNT; i++) {
+      int weight = weights[offset + i];
+      if (mWeights[i] != -1 && weight != -1 && mWeights[i] < weight) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * The part of {@link #matches(Qualifiers)} which isn't covered by {@link #passesRequirements(Qualifiers)}.
+   */
+  boolean defaultsMatch(Qualifiers other) {
+    return other.mDefaults.containsAll(mDefaults);
+  }
+
   public boolean isBetterThan(Qualifiers other, Qualifiers context) {
     // Compare the defaults in the order they appear in the context.
     for (String qualifier : context.mDefaults) {
@@ -1,6 +1,7 @@
 package org.robolectric.res;
 
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import org.jetbrains.annotations.NotNull;
 
@@ -21,6 +22,24 @@ public class ResBunch {
     return bundle;
   }
 
+  void putAll(ResBunch other) {
+    for (Map.Entry<String, ResBundle> entry : other.types.entrySet()) {
+      getBundle(entry.getKey()).putAll(entry.getValue());
+    }
+  }
+
+  /**
+   * Adds the values of a single type from {@code other}, as if they had been {@link #put} in the same order. Unlike
+   * {@link #get}, this never modifies {@code other}.
+   */
+  void putAll(String attrType, ResBunch other) {
+    ResBundle bundle = getBundle(attrType);
+    ResBundle otherBundle = other.types.get(attrType);
+    if (otherBundle != null) {
+      bundle.putAll(otherBundle);
+    }
+  }
+
   public TypedResource get(@NotNull ResName resName, String qualifiers) {
     ResBundle bundle = getBundle(resName.type);
     return bundle.get(resName, qualifiers);
@@ -34,6 +53,22 @@ public class ResBunch {
     return size;
   }
 
+  public long getPickCacheHits() {
+    long hits = 0;
+    for (ResBundle bundle : types.values()) {
+      hits += bundle.getPickCacheHits();
+    }
+    return hits;
+  }
+
+  public long getPickCacheMisses() {
+    long misses = 0;
+    for (ResBundle bundle : types.values()) {
+      misses += bundle.getPickCacheMisses();
+    }
+    return misses;
+  }
+
   public void makeImmutable() {
     for (ResBundle bundle : types.values()) {
       bundle.makeImmutable();
@@ -46,6 +81,26 @@ public class ResBunch {
     }
   }
 
+  /**
+   * Merges only the values of a single type from {@code fromResBunch}, as {@link #mergeLibraryStyle(ResBunch, String)}
+   * would have merged them. The type's bundle is added even if {@code fromResBunch} has no values of that type.
+   */
+  void mergeLibraryStyle(String attrType, ResBunch fromResBunch, String packageName) {
+    ResBundle bundle = getBundle(attrType);
+    ResBundle fromBundle = fromResBunch.types.get(attrType);
+    if (fromBundle != null) {
+      bundle.mergeLibraryStyle(fromBundle, packageName);
+    }
+  }
+
+  Map<ResName, List<TypedResource>> entries() {
+    Map<ResName, List<TypedResource>> entries = new LinkedHashMap<>();
+    for (ResBundle bundle : types.values()) {
+      entries.putAll(bundle.entries());
+    }
+    return entries;
+  }
+
   public void receive(ResourceLoader.Visitor visitor) {
     for (ResBundle resBundle : types.values()) {
       resBundle.receive(visitor);
@@ -1,81 +1,117 @@
 package org.robolectric.res;
 
-import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 public class ResBundle {
+  private static final Comparator<TypedResource> BY_QUALIFIERS = new Comparator<TypedResource>() {
+    @Override
+    public int compare(TypedResource o1, TypedResource o2) {
+      return o1.getQualifiers().compareTo(o2.getQualifiers());
+    }
+  };
+
+  // Tests rarely use more than a handful of qualifier strings; past this many, picks are no longer remembered.
+  private static final int MAX_CACHED_QUALIFIERS = 64;
+  private static final Object NO_MATCH = new Object();
+
   private final ResMap valuesMap = new ResMap();
+  private final ConcurrentMap<String, AtomicReferenceArray<Object>> picksByQualifiers = new ConcurrentHashMap<>();
+  private final AtomicLong pickCacheHits = new AtomicLong();
+  private final AtomicLong pickCacheMisses = new AtomicLong();
   private String overrideNamespace;
 
   public void put(String attrType, String name, TypedResource value) {
     XmlLoader.XmlContext xmlContext = value.getXmlContext();
     ResName resName = new ResName(maybeOverride(xmlContext.packageName), attrType, name);
-    List<TypedResource> values = valuesMap.find(resName);
-    values.add(value);
-
-    // todo: should sort once we're fully populated, not now
-    Collections.sort(values, new Comparator<TypedResource>() {
-      @Override
-      public int compare(TypedResource o1, TypedResource o2) {
-        return o1.getQualifiers().compareTo(o2.getQualifiers());
-      }
-    });
+    valuesMap.find(resName).add(value);
   }
 
-  public TypedResource get(ResName resName, String qualifiers) {
-    List<TypedResource> typedResources = valuesMap.find(maybeOverride(resName));
-    return pick(typedResources, qualifiers);
+  /**
+   * Adds all the values from {@code other}, as if they had been {@link #put} in the same order.
+   */
+  void putAll(ResBundle other) {
+    for (Map.Entry<ResName, Candidates> entry : other.valuesMap.map.entrySet()) {
+      valuesMap.find(maybeOverride(entry.getKey())).addAll(entry.getValue().valuesAsAdded());
+    }
   }
 
-  public static TypedResource pick(List<TypedResource> typedResources, String qualifiersStr) {
-    final int count = typedResources.size();
-    if (count == 0) return null;
-
-    // This should really follow the android algorithm specified at:
-    // http://developer.android.com/guide/topics/resources/providing-resources.html#BestMatch
-    //
-    // 1: eliminate resources that contradict the qualifiersStr
-    // 2: pick the (next) highest-precedence qualifier type in "table 2" of the reference above
-    // 3: check if any resource values use this qualifier, if no, back to 2, else move on to 4.
-    // 4: eliminate resources values that don't use this qualifier.
-    // 5: if more than one resource is left, go back to 2.
-    //
-    // However, we currently only model the smallest/available width/height and version qualifiers
-    // rather than all of the possibly qualifier classes in table 2.
-
-    Qualifiers toMatch = Qualifiers.parse(qualifiersStr);
-
-    List<TypedResource> passesRequirements = new ArrayList<>();
-    for (TypedResource candidate : typedResources) {
-      Qualifiers qualifiers = Qualifiers.parse(candidate.getQualifiers());
-      if (qualifiers.passesRequirements(toMatch)) {
-        passesRequirements.add(candidate);
+  /**
+   * Adds the values of a single type from {@code other}, as if they had been {@link #put} in the same order.
+   */
+  void putAll(String attrType, ResBundle other) {
+    for (Map.Entry<ResName, Candidates> entry : other.valuesMap.map.entrySet()) {
+      if (entry.getKey().type.equals(attrType)) {
+        valuesMap.find(maybeOverride(entry.getKey())).addAll(entry.getValue().valuesAsAdded());
       }
     }
+  }
 
-    Qualifiers bestMatchQualifiers = null;
-    TypedResource bestMatch = null;
-    for (TypedResource candidate : passesRequirements) {
-      Qualifiers qualifiers = Qualifiers.parse(candidate.getQualifiers());
-      if (qualifiers.matches(toMatch)) {
-        if (bestMatchQualifiers == null || qualifiers.isBetterThan(bestMatchQualifiers, toMatch)) {
-          bestMatchQualifiers = qualifiers;
-          bestMatch =  candidate;
-        }
-      }
+  /**
+   * Once the bundle is immutable, the value picked for each resource name is remembered per qualifier string, so
+   * repeated lookups under the same configuration skip the best-match algorithm.
+   */
+  public TypedResource get(ResName resName, String qualifiers) {
+    Candidates candidates = valuesMap.map.get(maybeOverride(resName));
+    if (candidates == null) return null;
+
+    AtomicReferenceArray<Object> picks = candidates.id == -1 ? null : picksFor(qualifiers);
+    if (picks == null) {
+      return candidates.pick(Qualifiers.parse(qualifiers));
     }
-    if (bestMatch != null) {
-      return bestMatch;
+
+    Object pick = picks.get(candidates.id);
+    if (pick != null) {
+      pickCacheHits.incrementAndGet();
+      return pick == NO_MATCH ? null : (TypedResource) pick;
     }
-    if (!passesRequirements.isEmpty()) {
-      return passesRequirements.get(0);
+
+    pickCacheMisses.incrementAndGet();
+    TypedResource typedResource = candidates.pick(Qualifiers.parse(qualifiers));
+    picks.set(candidates.id, typedResource == null ? NO_MATCH : typedResource);
+    return typedResource;
+  }
+
+  private AtomicReferenceArray<Object> picksFor(String qualifiers) {
+    AtomicReferenceArray<Object> picks = picksByQualifiers.get(qualifiers);
+    if (picks == null) {
+      if (picksByQualifiers.size() >= MAX_CACHED_QUALIFIERS) {
+        pickCacheMisses.incrementAndGet();
+        return null;
+      }
+      AtomicReferenceArray<Object> newPicks = new AtomicReferenceArray<>(valuesMap.size());
+      picks = picksByQualifiers.putIfAbsent(qualifiers, newPicks);
+      if (picks == null) picks = newPicks;
     }
-    return null;
+    return picks;
+  }
+
+  /**
+   * Returns the number of lookups answered from the per-qualifier pick cache.
+   */
+  public long getPickCacheHits() {
+    return pickCacheHits.get();
+  }
+
+  /**
+   * Returns the number of lookups on this immutable bundle which had to run the best-match algorithm.
+   */
+  public long getPickCacheMisses() {
+    return pickCacheMisses.get();
+  }
+
+  public static TypedResource pick(List<TypedResource> typedResources, String qualifiersStr) {
+    if (typedResources.isEmpty()) return null;
+    return new Candidates(typedResources).pick(Qualifiers.parse(qualifiersStr));
   }
 
   public int size() {
@@ -86,6 +122,14 @@ public class ResBundle {
     valuesMap.makeImmutable();
   }
 
+  Map<ResName, List<TypedResource>> entries() {
+    Map<ResName, List<TypedResource>> entries = new LinkedHashMap<>();
+    for (Map.Entry<ResName, Candidates> entry : valuesMap.map.entrySet()) {
+      entries.put(entry.getKey(), entry.getValue().values());
+    }
+    return entries;
+  }
+
   public void overrideNamespace(String overrideNamespace) {
     this.overrideNamespace = overrideNamespace;
     if (size() > 0) throw new RuntimeException();
@@ -100,26 +144,20 @@ public class ResBundle {
   }
 
   public void mergeLibraryStyle(ResBundle fromResBundle, String packageName) {
-    valuesMap.merge(packageName, fromResBundle.valuesMap);
+    valuesMap.merge(null, packageName, fromResBundle.valuesMap);
   }
 
-  public void receive(ResourceLoader.Visitor visitor) {
-    for (final Map.Entry<ResName, List<TypedResource>> entry : valuesMap.map.entrySet()) {
-      visitor.visit(entry.getKey(), new AbstractList<TypedResource>() {
-        List<TypedResource> typedResources;
-
-        @Override
-        public TypedResource get(int index) {
-          if (typedResources == null) typedResources = entry.getValue();
-          return typedResources.get(index);
-        }
+  /**
+   * Merges only the values of a single type from {@code fromResBundle}, as
+   * {@link #mergeLibraryStyle(ResBundle, String)} would have merged them.
+   */
+  void mergeLibraryStyle(String attrType, ResBundle fromResBundle, String packageName) {
+    valuesMap.merge(attrType, packageName, fromResBundle.valuesMap);
+  }
 
-        @Override
-        public int size() {
-          if (typedResources == null) typedResources = entry.getValue();
-          return typedResources.size();
-        }
-      });
+  public void receive(ResourceLoader.Visitor visitor) {
+    for (Map.Entry<ResName, Candidates> entry : valuesMap.map.entrySet()) {
+      visitor.visit(entry.getKey(), entry.getValue().values());
     }
   }
 
@@ -157,24 +195,178 @@ public class ResBundle {
     }
   }
 
+  /**
+   * The values for a single resource name. Values are appended as they're loaded, then sorted by qualifiers once when
+   * the bundle is made immutable. At that point each value's qualifier weights are laid out in a flat array, so
+   * {@link #pick} doesn't need to parse qualifiers or allocate.
+   *
+   * Values may be added while other threads are looking them up, so the sorted values and their weights are built
+   * under the lock and published together, as an {@link Index} that's never changed afterwards.
+   */
+  private static class Candidates {
+    // This value's slot in the pick cache, assigned when the bundle is made immutable.
+    private volatile int id = -1;
+    private List<TypedResource> values;
+    private boolean sorted;
+    private volatile Index index;
+
+    Candidates() {
+      this.values = new ArrayList<>(1);
+      this.sorted = true;
+    }
+
+    Candidates(List<TypedResource> values) {
+      this.values = values;
+      this.sorted = true;
+    }
+
+    synchronized void add(TypedResource value) {
+      values.add(value);
+      sorted = false;
+      index = null;
+    }
+
+    synchronized void addAll(List<TypedResource> values) {
+      this.values.addAll(values);
+      sorted = false;
+      index = null;
+    }
+
+    /**
+     * Values from library packages are merged in package order, and aren't sorted.
+     */
+    synchronized void merge(List<TypedResource> values) {
+      values().addAll(values);
+      index = null;
+    }
+
+    /**
+     * @return a copy of the values, in the order they were added unless they've been sorted since.
+     */
+    synchronized List<TypedResource> valuesAsAdded() {
+      return new ArrayList<>(values);
+    }
+
+    synchronized List<TypedResource> values() {
+      if (!sorted) {
+        Collections.sort(values, BY_QUALIFIERS);
+        sorted = true;
+      }
+      return values;
+    }
+
+    synchronized void makeImmutable() {
+      TypedResource[] typedResources = values().toArray(new TypedResource[values.size()]);
+      values = Collections.unmodifiableList(Arrays.asList(typedResources));
+      try {
+        index();
+      } catch (IllegalStateException e) {
+        // malformed qualifiers; leave it to pick() to complain if this resource is ever looked up
+      }
+    }
+
+    private synchronized Index index() {
+      Index index = this.index;
+      if (index == null) {
+        List<TypedResource> values = values();
+        int count = values.size();
+        TypedResource[] typedResources = values.toArray(new TypedResource[count]);
+        Qualifiers[] qualifiers = new Qualifiers[count];
+        int[] weights = new int[count * Qualifiers.WEIGHT_COUNT];
+        for (int i = 0; i < count; i++) {
+          qualifiers[i] = typedResources[i].getParsedQualifiers();
+          qualifiers[i].copyWeightsTo(weights, i * Qualifiers.WEIGHT_COUNT);
+        }
+        index = new Index(typedResources, qualifiers, weights);
+        this.index = index;
+      }
+      return index;
+    }
+
+    TypedResource pick(Qualifiers toMatch) {
+      Index index = this.index;
+      if (index == null) {
+        index = index();
+      }
+      Qualifiers[] qualifiers = index.qualifiers;
+      int[] weights = index.weights;
+
+      // This should really follow the android algorithm specified at:
+      // http://developer.android.com/guide/topics/resources/providing-resources.html#BestMatch
+      //
+      // 1: eliminate resources that contradict the qualifiersStr
+      // 2: pick the (next) highest-precedence qualifier type in "table 2" of the reference above
+      // 3: check if any resource values use this qualifier, if no, back to 2, else move on to 4.
+      // 4: eliminate resources values that don't use this qualifier.
+      // 5: if more than one resource is left, go back to 2.
+      //
+      // However, we currently only model the smallest/available width/height and version qualifiers
+      // rather than all of the possibly qualifier classes in table 2.
+
+      int firstPassing = -1;
+      int bestMatch = -1;
+      for (int i = 0; i < qualifiers.length; i++) {
+        if (!toMatch.isPassedBy(weights, i * Qualifiers.WEIGHT_COUNT)) {
+          continue;
+        }
+        if (firstPassing == -1) {
+          firstPassing = i;
+        }
+        if (qualifiers[i].defaultsMatch(toMatch)
+            && (bestMatch == -1 || qualifiers[i].isBetterThan(qualifiers[bestMatch], toMatch))) {
+          bestMatch = i;
+        }
+      }
+
+      if (bestMatch != -1) {
+        return index.values[bestMatch];
+      }
+      if (firstPassing != -1) {
+        return index.values[firstPassing];
+      }
+      return null;
+    }
+  }
+
+  /**
+   * A snapshot of a {@link Candidates}' sorted values and their qualifier weights.
+   */
+  private static class Index {
+    private final TypedResource[] values;
+    private final Qualifiers[] qualifiers;
+    private final int[] weights;
+
+    Index(TypedResource[] values, Qualifiers[] qualifiers, int[] weights) {
+      this.values = values;
+      this.qualifiers = qualifiers;
+      this.weights = weights;
+    }
+  }
+
   private static class ResMap {
-    private final Map<ResName, List<TypedResource>> map = new HashMap<>();
+    // concurrent, since values may be put while other threads are looking them up
+    private final ConcurrentMap<ResName, Candidates> map = new ConcurrentHashMap<>();
     private boolean immutable;
 
-    public List<TypedResource> find(ResName resName) {
-      List<TypedResource> values = map.get(resName);
-      if (values == null) map.put(resName, values = new ArrayList<>());
-      return values;
+    public Candidates find(ResName resName) {
+      Candidates candidates = map.get(resName);
+      if (candidates == null) {
+        Candidates newCandidates = new Candidates();
+        candidates = map.putIfAbsent(resName, newCandidates);
+        if (candidates == null) candidates = newCandidates;
+      }
+      return candidates;
     }
 
-    private void merge(String packageName, ResMap sourceMap) {
+    private void merge(String attrType, String packageName, ResMap sourceMap) {
       if (immutable) {
         throw new IllegalStateException("immutable!");
       }
 
-      for (Map.Entry<ResName, List<TypedResource>> entry : sourceMap.map.entrySet()) {
+      for (Map.Entry<ResName, Candidates> entry : sourceMap.map.entrySet()) {
+        if (attrType != null && !attrType.equals(entry.getKey().type)) continue;
         ResName resName = entry.getKey().withPackageName(packageName);
-        find(resName).addAll(entry.getValue());
+        find(resName).merge(entry.getValue().values());
       }
     }
 
@@ -183,6 +375,11 @@ public class ResBundle {
     }
 
     public void makeImmutable() {
+      int id = 0;
+      for (Candidates candidates : map.values()) {
+        candidates.makeImmutable();
+        candidates.id = id++;
+      }
       immutable = true;
     }
   }
@@ -1,31 +1,86 @@
 package org.robolectric.res;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Logger;
 
 public class ResourceExtractor extends ResourceIndex {
   private static final Logger LOGGER = Logger.getLogger(ResourceExtractor.class.getName());
 
   private final String packageName;
-  private Integer maxUsedInt = null;
-  private Integer generatedIdStart = null;
+  private final ResourceIdTable resNamesById;
+  private final ConcurrentMap<ResName, Integer> generatedIds = new ConcurrentHashMap<>();
+  private final GeneratedResNames generatedResNames;
 
   public ResourceExtractor(ResourcePath resourcePath) {
     packageName = resourcePath.getPackageName();
 
-    if (resourcePath.getRClass() != null) {
-      gatherResourceIdsAndNames(resourcePath.getRClass(), packageName);
+    Map<Integer, ResName> resNames = new HashMap<>();
+    FsFile symbolFile = resourcePath.getSymbolFile();
+    FsFile librarySymbolFile = resourcePath.getLibrarySymbolFile();
+    if (symbolFile != null && symbolFile.exists() && (librarySymbolFile == null || librarySymbolFile.exists())) {
+      Map<ResName, Integer> ids = readSymbolFile(symbolFile, packageName);
+      if (librarySymbolFile != null) {
+        ids.keySet().retainAll(readSymbolFile(librarySymbolFile, packageName).keySet());
+      }
+      for (Map.Entry<ResName, Integer> entry : ids.entrySet()) {
+        resourceNameToId.put(entry.getKey(), entry.getValue());
+        resNames.put(entry.getValue(), entry.getKey());
+      }
+    } else if (resourcePath.getRClass() != null) {
+      gatherResourceIdsAndNames(resourcePath.getRClass(), packageName, resNames);
     }
 
     if (resourcePath.getInternalRClass() != null) {
-      gatherResourceIdsAndNames(resourcePath.getInternalRClass(), packageName);
+      gatherResourceIdsAndNames(resourcePath.getInternalRClass(), packageName, resNames);
+    }
+
+    // The ids from the R classes or symbol file never change from here on, so lookups can go without locking.
+    resNamesById = new ResourceIdTable(resNames);
+    generatedResNames = new GeneratedResNames(resNamesById.getMaxId() + 1);
+  }
+
+  /**
+   * Reads ids from an {@code R.txt} symbol file, which has one {@code int <type> <name> <id>} line per resource,
+   * so none of the nested R classes need to be loaded.
+   */
+  private static Map<ResName, Integer> readSymbolFile(FsFile symbolFile, String packageName) {
+    Map<ResName, Integer> ids = new LinkedHashMap<>();
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(symbolFile.getInputStream(), StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        String[] parts = line.trim().split(" ", 4);
+        if (parts.length != 4 || !parts[0].equals("int") || parts[1].equals("styleable")) {
+          continue;
+        }
+
+        int id;
+        try {
+          id = Long.decode(parts[3]).intValue();
+        } catch (NumberFormatException e) {
+          throw new RuntimeException("malformed line in " + symbolFile + ": " + line, e);
+        }
+
+        ids.put(new ResName(packageName, parts[1], parts[2]), id);
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
     }
+    return ids;
   }
 
-  private synchronized void gatherResourceIdsAndNames(Class<?> rClass, String packageName) {
+  private void gatherResourceIdsAndNames(Class<?> rClass, String packageName, Map<Integer, ResName> resNames) {
     for (Class innerClass : rClass.getClasses()) {
       for (Field field : innerClass.getDeclaredFields()) {
         if (field.getType().equals(Integer.TYPE) && Modifier.isStatic(field.getModifiers())) {
@@ -42,7 +97,7 @@ public class ResourceExtractor extends ResourceIndex {
             ResName resName = new ResName(packageName, section, fieldName);
 
             resourceNameToId.put(resName, id);
-            resourceIdToResName.put(id, resName);
+            resNames.put(id, resName);
           }
         }
       }
@@ -50,29 +105,39 @@ public class ResourceExtractor extends ResourceIndex {
   }
 
   @Override
-  public synchronized Integer getResourceId(ResName resName) {
+  public Integer getResourceId(ResName resName) {
     if (!packageName.equals(resName.packageName)) {
       return null;
     }
     Integer id = resourceNameToId.get(resName);
+    if (id == null) {
+      id = generatedIds.get(resName);
+    }
     if (id == null && ("android".equals(resName.packageName) || "".equals(resName.packageName))) {
-      if (maxUsedInt == null) {
-        maxUsedInt = resourceIdToResName.isEmpty() ? 0 : Collections.max(resourceIdToResName.keySet());
-        generatedIdStart = maxUsedInt;
-      }
-      id = ++maxUsedInt;
-      resourceNameToId.put(resName, id);
-      resourceIdToResName.put(id, resName);
-      LOGGER.fine("no id mapping found for " + resName.getFullyQualifiedName() + "; assigning ID #0x" + Integer.toHexString(id));
+      id = generateId(resName);
     }
     if (id == null) return 0;
 
     return id;
   }
 
+  private synchronized int generateId(ResName resName) {
+    Integer id = generatedIds.get(resName);
+    if (id == null) {
+      id = generatedResNames.add(resName);
+      generatedIds.put(resName, id);
+      LOGGER.fine("no id mapping found for " + resName.getFullyQualifiedName() + "; assigning ID #0x" + Integer.toHexString(id));
+    }
+    return id;
+  }
+
   @Override
-  public synchronized ResName getResName(int resourceId) {
-    return resourceIdToResName.get(resourceId);
+  public ResName getResName(int resourceId) {
+    ResName resName = resNamesById.get(resourceId);
+    if (resName == null) {
+      resName = generatedResNames.get(resourceId);
+    }
+    return resName;
   }
 
   @Override public Collection<String> getPackages() {
@@ -0,0 +1,63 @@
+package org.robolectric.res;
+
+import java.util.Map;
+
+/**
+ * Immutable, open-addressed map from resource id to {@link ResName}. Lookups don't box the id or take a lock, so
+ * it can be shared freely between threads once built.
+ */
+class ResourceIdTable {
+  private final int[] ids;
+  private final ResName[] resNames;
+  private final int shift;
+  private final int mask;
+  private final int maxId;
+
+  ResourceIdTable(Map<Integer, ResName> resNamesById) {
+    int bits = 1;
+    while ((1 << bits) < resNamesById.size() * 2) {
+      bits++;
+    }
+    this.ids = new int[1 << bits];
+    this.resNames = new ResName[1 << bits];
+    this.shift = 32 - bits;
+    this.mask = (1 << bits) - 1;
+
+    int maxId = 0;
+    for (Map.Entry<Integer, ResName> entry : resNamesById.entrySet()) {
+      int id = entry.getKey();
+      int slot = slotFor(id);
+      while (resNames[slot] != null) {
+        slot = (slot + 1) & mask;
+      }
+      ids[slot] = id;
+      resNames[slot] = entry.getValue();
+      maxId = Math.max(maxId, id);
+    }
+    this.maxId = maxId;
+  }
+
+  ResName get(int id) {
+    int slot = slotFor(id);
+    ResName resName;
+    while ((resName = resNames[slot]) != null) {
+      if (ids[slot] == id) {
+        return resName;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return null;
+  }
+
+  /**
+   * Returns the largest id in the table, or zero if it's empty.
+   */
+  int getMaxId() {
+    return maxId;
+  }
+
+  private int slotFor(int id) {
+    // Fibonacci hashing spreads the package, type and entry bits of resource ids over the whole table.
+    return (id * 0x9E3779B9) >>> shift;
+  }
+}
@@ -6,7 +6,6 @@ import java.util.Map;
 
 public abstract class ResourceIndex {
   protected final Map<ResName, Integer> resourceNameToId = new HashMap<>();
-  protected final Map<Integer, ResName> resourceIdToResName = new HashMap<>();
 
   public abstract Integer getResourceId(ResName resName);
 
@@ -9,6 +9,7 @@ import java.util.List;
 import java.util.regex.Pattern;
 
 public abstract class ResourceLoader {
+  private final StyleCache styleCache = new StyleCache();
 
   public abstract TypedResource getValue(@NotNull ResName resName, String qualifiers);
 
@@ -69,6 +70,35 @@ public abstract class ResourceLoader {
 
   public abstract void receive(Visitor visitor);
 
+  /**
+   * Returns a rough estimate, in bytes, of the heap retained by the resources this loader has loaded so far.
+   * Loaders which haven't been initialized yet report zero.
+   */
+  public long estimateRetainedSize() {
+    return 0;
+  }
+
+  /**
+   * Returns how many lookups were answered from the per-qualifier pick caches of this loader's resource tables.
+   */
+  public long getPickCacheHits() {
+    return 0;
+  }
+
+  /**
+   * Returns how many lookups had to run the best-match algorithm because their pick wasn't cached yet.
+   */
+  public long getPickCacheMisses() {
+    return 0;
+  }
+
+  /**
+   * Returns the cache of resolved styles for the resource table which holds {@code packageName}'s styles.
+   */
+  StyleCache getStyleCache(String packageName) {
+    return styleCache;
+  }
+
   public interface Visitor <T> {
     void visit(ResName key, List<T> value);
   }
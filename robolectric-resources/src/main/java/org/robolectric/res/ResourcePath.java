@@ -6,17 +6,29 @@ public class ResourcePath {
   private final FsFile resourceBase;
   private final FsFile assetsDir;
   private final Class<?> internalRClass;
+  private final FsFile symbolFile;
+  private final FsFile librarySymbolFile;
 
   public ResourcePath(Class<?> rClass, String packageName, FsFile resourceBase, FsFile assetsDir) {
     this(rClass, packageName, resourceBase, assetsDir, null);
   }
 
   public ResourcePath(Class<?> rClass, String packageName, FsFile resourceBase, FsFile assetsDir, Class<?> internalRClass) {
+    this(rClass, packageName, resourceBase, assetsDir, internalRClass, null);
+  }
+
+  public ResourcePath(Class<?> rClass, String packageName, FsFile resourceBase, FsFile assetsDir, Class<?> internalRClass, FsFile symbolFile) {
+    this(rClass, packageName, resourceBase, assetsDir, internalRClass, symbolFile, null);
+  }
+
+  public ResourcePath(Class<?> rClass, String packageName, FsFile resourceBase, FsFile assetsDir, Class<?> internalRClass, FsFile symbolFile, FsFile librarySymbolFile) {
     this.rClass = rClass;
     this.packageName = packageName;
     this.resourceBase = resourceBase;
     this.assetsDir = assetsDir;
     this.internalRClass = internalRClass;
+    this.symbolFile = symbolFile;
+    this.librarySymbolFile = librarySymbolFile;
   }
 
   public Class<?> getRClass() {
@@ -39,6 +51,23 @@ public class ResourcePath {
     return internalRClass;
   }
 
+  /**
+   * Returns the {@code R.txt} symbol file listing this package's resource ids, or null if there isn't one. When
+   * present, ids are read from it rather than by reflecting over the R class.
+   */
+  public FsFile getSymbolFile() {
+    return symbolFile;
+  }
+
+  /**
+   * Returns the {@code R.txt} a library was built with, or null if this isn't a library or the symbol file holds
+   * only this package's ids. A library's own symbol file has the right names but provisional ids, so only the
+   * entries of {@link #getSymbolFile()} named in it are read.
+   */
+  public FsFile getLibrarySymbolFile() {
+    return librarySymbolFile;
+  }
+
   @Override
   public String toString() {
     return "ResourcePath{package=" + getPackageName() + ", path=" + resourceBase + '}';
@@ -55,7 +84,9 @@ public class ResourcePath {
     if (packageName != null ? !packageName.equals(that.packageName) : that.packageName != null) return false;
     if (resourceBase != null ? !resourceBase.equals(that.resourceBase) : that.resourceBase != null) return false;
     if (assetsDir != null ? !assetsDir.equals(that.assetsDir) : that.assetsDir != null) return false;
-    return internalRClass != null ? internalRClass.equals(that.internalRClass) : that.internalRClass == null;
+    if (internalRClass != null ? !internalRClass.equals(that.internalRClass) : that.internalRClass != null) return false;
+    if (symbolFile != null ? !symbolFile.equals(that.symbolFile) : that.symbolFile != null) return false;
+    return librarySymbolFile != null ? librarySymbolFile.equals(that.librarySymbolFile) : that.librarySymbolFile == null;
 
   }
 
@@ -66,6 +97,8 @@ public class ResourcePath {
     result = 31 * result + (resourceBase != null ? resourceBase.hashCode() : 0);
     result = 31 * result + (assetsDir != null ? assetsDir.hashCode() : 0);
     result = 31 * result + (internalRClass != null ? internalRClass.hashCode() : 0);
+    result = 31 * result + (symbolFile != null ? symbolFile.hashCode() : 0);
+    result = 31 * result + (librarySymbolFile != null ? librarySymbolFile.hashCode() : 0);
     return result;
   }
 }
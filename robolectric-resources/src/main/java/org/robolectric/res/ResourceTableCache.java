@@ -0,0 +1,582 @@
+package org.robolectric.res;
+
+import org.robolectric.res.builder.XmlBlock;
+import org.robolectric.util.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * On-disk cache of the resource tables built by {@link PackageResourceLoader}.
+ *
+ * Parsing every XML file under {@code res/} is expensive, particularly for the framework's resources, so once a
+ * package has been loaded its values, styles, attrs, plurals, XML documents and raw files are written to a compact
+ * binary snapshot, which later runs map into memory and read back instead of parsing. Snapshots are keyed by a hash
+ * of the resource tree (the paths, sizes and modification times of its files, or of the jar containing it), so
+ * changing any resource file results in a new snapshot. The key also covers the Robolectric version and the code
+ * that built the snapshot, so upgrading or rebuilding Robolectric never reads snapshots an older loader wrote.
+ * A package which can be cached is loaded in full on its first lookup, from its snapshot if there is one, or else by
+ * parsing everything and then writing the snapshot.
+ *
+ * The cache lives in {@code robolectric.resourceTableCache.dir} (by default {@code robolectric-resource-tables} in
+ * the temp directory) and can be turned off by setting {@code robolectric.resourceTableCache.enabled} to false.
+ */
+public class ResourceTableCache {
+  // Bump this whenever the snapshot format or what the resource loaders produce changes.
+  private static final int FORMAT_VERSION = 2;
+  private static final int MAGIC = 0x52525443; // "RRTC"
+  private static final String BUILD_KEY = buildKey();
+
+  private static final byte STRING = 0;
+  private static final byte ARRAY = 1;
+  private static final byte STYLE = 2;
+  private static final byte ATTR = 3;
+  private static final byte PLURALS = 4;
+  private static final byte FILE = 5;
+  private static final byte IMAGE = 6;
+  private static final byte RAW = 7;
+  private static final byte XML = 8;
+
+  private final File directory;
+
+  public ResourceTableCache(File directory) {
+    this.directory = directory;
+  }
+
+  /**
+   * @return the cache configured by system properties, or null if it has been turned off.
+   */
+  public static ResourceTableCache fromSystemProperties() {
+    if (!Boolean.parseBoolean(System.getProperty("robolectric.resourceTableCache.enabled", "true"))) {
+      return null;
+    }
+    String directory = System.getProperty("robolectric.resourceTableCache.dir");
+    return new ResourceTableCache(directory == null
+        ? new File(System.getProperty("java.io.tmpdir"), "robolectric-resource-tables")
+        : new File(directory));
+  }
+
+  /**
+   * Populates the given tables from the snapshot for {@code resourcePath}, if there is one.
+   *
+   * @return true if the tables were populated, false if they were left untouched.
+   */
+  public boolean load(ResourcePath resourcePath, ResBunch data, ResBundle xmlDocuments, ResBundle rawResources) {
+    File file = fileFor(resourcePath);
+    if (file == null || !file.isFile()) return false;
+
+    List<Runnable> puts;
+    try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+         FileChannel channel = randomAccessFile.getChannel()) {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      puts = new Reader(buffer, resourcePath).read(data, xmlDocuments, rawResources);
+    } catch (IOException | RuntimeException e) {
+      Logger.debug("Ignoring unreadable resource table cache %s: %s", file, e);
+      return false;
+    }
+
+    // only touch the tables once the whole snapshot has been read successfully
+    for (Runnable put : puts) {
+      put.run();
+    }
+    return true;
+  }
+
+  /**
+   * Writes a snapshot of the given tables for {@code resourcePath}. Tables holding anything which can't be
+   * represented in a snapshot are skipped.
+   */
+  public void save(ResourcePath resourcePath, ResBunch data, ResBundle xmlDocuments, ResBundle rawResources) {
+    File file = fileFor(resourcePath);
+    if (file == null) return;
+
+    byte[] bytes;
+    try {
+      bytes = new Writer(resourcePath).write(data, xmlDocuments, rawResources);
+    } catch (UncacheableException e) {
+      Logger.debug("Not caching resource table for %s: %s", resourcePath, e.getMessage());
+      return;
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+
+    try {
+      if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+        throw new IOException("couldn't create " + directory);
+      }
+      // write to a temporary file first, so concurrent test processes never see a partial snapshot
+      File tempFile = File.createTempFile(file.getName(), ".tmp", directory);
+      try (FileOutputStream outputStream = new FileOutputStream(tempFile)) {
+        outputStream.write(bytes);
+      }
+      try {
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      } finally {
+        Files.deleteIfExists(tempFile.toPath());
+      }
+    } catch (IOException e) {
+      Logger.debug("Couldn't write resource table cache %s: %s", file, e);
+    }
+  }
+
+  File fileFor(ResourcePath resourcePath) {
+    FsFile resourceBase = resourcePath.getResourceBase();
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-1");
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+
+    StringBuilder key = new StringBuilder();
+    key.append(FORMAT_VERSION).append('\n')
+        .append(BUILD_KEY)
+        .append(resourcePath.getPackageName()).append('\n')
+        .append(resourceBase.getPath()).append('\n');
+    if (resourceBase instanceof FileFsFile) {
+      appendTree(key, ((FileFsFile) resourceBase).getFile(), "");
+    } else if (resourceBase.getPath().startsWith("jar:")) {
+      File jarFile = new File(resourceBase.getPath().substring("jar:".length(), resourceBase.getPath().indexOf('!')));
+      key.append(jarFile.length()).append(' ').append(jarFile.lastModified()).append('\n');
+    } else {
+      return null;
+    }
+    digest.update(key.toString().getBytes(StandardCharsets.UTF_8));
+
+    StringBuilder fileName = new StringBuilder(resourcePath.getPackageName()).append('-');
+    for (byte b : digest.digest()) {
+      fileName.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+    }
+    return new File(directory, fileName.append(".bin").toString());
+  }
+
+  /**
+   * @return the Robolectric version, and the size and modification time of the jar or directory this class was
+   * loaded from, so snapshot versions and local builds are told apart too.
+   */
+  private static String buildKey() {
+    StringBuilder key = new StringBuilder();
+    ClassLoader classLoader = ResourceTableCache.class.getClassLoader();
+    try (InputStream is = classLoader.getResourceAsStream("robolectric-version.properties")) {
+      if (is != null) {
+        Properties properties = new Properties();
+        properties.load(is);
+        key.append(properties.getProperty("robolectric.version"));
+      }
+    } catch (IOException e) {
+      Logger.debug("Couldn't read Robolectric version: %s", e);
+    }
+    key.append('\n');
+
+    try {
+      CodeSource codeSource = ResourceTableCache.class.getProtectionDomain().getCodeSource();
+      if (codeSource != null && codeSource.getLocation() != null) {
+        File location = new File(codeSource.getLocation().toURI());
+        if (location.isDirectory()) {
+          appendTree(key, location, "");
+        } else {
+          key.append(location.getPath()).append(' ')
+              .append(location.length()).append(' ').append(location.lastModified()).append('\n');
+        }
+      }
+    } catch (URISyntaxException | IllegalArgumentException | SecurityException e) {
+      Logger.debug("Couldn't find where the resource loaders were loaded from: %s", e);
+    }
+    return key.toString();
+  }
+
+  private static void appendTree(StringBuilder key, File dir, String relativePath) {
+    String[] names = dir.list();
+    if (names == null) return;
+    Arrays.sort(names);
+    for (String name : names) {
+      File file = new File(dir, name);
+      if (file.isDirectory()) {
+        appendTree(key, file, relativePath + name + "/");
+      } else {
+        key.append(relativePath).append(name).append(' ')
+            .append(file.length()).append(' ').append(file.lastModified()).append('\n');
+      }
+    }
+  }
+
+  private static class Writer {
+    private final FsFile resourceBase;
+    private final Map<String, Integer> strings = new LinkedHashMap<>();
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    private final DataOutputStream out = new DataOutputStream(body);
+
+    Writer(ResourcePath resourcePath) {
+      this.resourceBase = resourcePath.getResourceBase();
+    }
+
+    byte[] write(ResBunch data, ResBundle xmlDocuments, ResBundle rawResources) throws IOException {
+      writeTable(data.entries());
+      writeTable(xmlDocuments.entries());
+      writeTable(rawResources.entries());
+
+      ByteArrayOutputStream file = new ByteArrayOutputStream(body.size() + 64 * strings.size());
+      DataOutputStream fileOut = new DataOutputStream(file);
+      fileOut.writeInt(MAGIC);
+      fileOut.writeInt(FORMAT_VERSION);
+      fileOut.writeInt(strings.size());
+      for (String string : strings.keySet()) {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        fileOut.writeInt(bytes.length);
+        fileOut.write(bytes);
+      }
+      body.writeTo(fileOut);
+      fileOut.flush();
+      return file.toByteArray();
+    }
+
+    private void writeTable(Map<ResName, List<TypedResource>> entries) throws IOException {
+      out.writeInt(entries.size());
+      for (Map.Entry<ResName, List<TypedResource>> entry : entries.entrySet()) {
+        ResName resName = entry.getKey();
+        writeString(resName.type);
+        writeString(resName.name);
+        out.writeInt(entry.getValue().size());
+        for (TypedResource typedResource : entry.getValue()) {
+          writeValue(typedResource);
+        }
+      }
+    }
+
+    private void writeValue(TypedResource typedResource) throws IOException {
+      Object data = typedResource.getData();
+      Class<?> type = typedResource.getClass();
+      XmlLoader.XmlContext xmlContext = typedResource.getXmlContext();
+
+      if (type == TypedResource.class && data instanceof String) {
+        out.writeByte(STRING);
+        writeContext(typedResource);
+        writeString((String) data);
+      } else if (type == TypedResource.class && data instanceof TypedResource[]) {
+        out.writeByte(ARRAY);
+        writeContext(typedResource);
+        TypedResource[] items = (TypedResource[]) data;
+        out.writeInt(items.length);
+        for (TypedResource item : items) {
+          if (item.getClass() != TypedResource.class || !(item.getData() instanceof String)
+              || item.getXmlContext() != xmlContext) {
+            throw new UncacheableException("array item " + item);
+          }
+          writeResType(item.getResType());
+          writeString((String) item.getData());
+        }
+      } else if (type == TypedResource.class && data instanceof StyleData) {
+        out.writeByte(STYLE);
+        writeContext(typedResource);
+        StyleData styleData = (StyleData) data;
+        writeString(styleData.getPackageName());
+        writeString(styleData.getName());
+        writeString(styleData.getParent());
+        out.writeInt(styleData.getItems().size());
+        for (AttributeResource attributeResource : styleData.getItems().values()) {
+          if (attributeResource.getReferenceResId() != null) {
+            throw new UncacheableException("attribute with resolved reference " + attributeResource);
+          }
+          writeString(attributeResource.resName.getFullyQualifiedName());
+          writeString(attributeResource.value);
+          writeString(attributeResource.contextPackageName);
+        }
+      } else if (type == TypedResource.class && data instanceof AttrData) {
+        out.writeByte(ATTR);
+        writeContext(typedResource);
+        AttrData attrData = (AttrData) data;
+        writeString(attrData.getName());
+        writeString(attrData.getFormat());
+        List<AttrData.Pair> pairs = attrData.getPairs();
+        out.writeInt(pairs == null ? -1 : pairs.size());
+        if (pairs != null) {
+          for (AttrData.Pair pair : pairs) {
+            writeString(pair.getName());
+            writeString(pair.getValue());
+          }
+        }
+      } else if (type == PluralResourceLoader.PluralRules.class) {
+        out.writeByte(PLURALS);
+        writeContext(typedResource);
+        List<Plural> plurals = ((PluralResourceLoader.PluralRules) typedResource).getData();
+        out.writeInt(plurals.size());
+        for (Plural plural : plurals) {
+          writeString(plural.quantity);
+          writeString(plural.string);
+        }
+      } else if (type == FileTypedResource.class) {
+        out.writeByte(FILE);
+        writeContext(typedResource);
+        writeFile(((FileTypedResource) typedResource).getFsFile());
+      } else if (type == FileTypedResource.Image.class) {
+        out.writeByte(IMAGE);
+        writeContext(typedResource);
+        writeFile(((FileTypedResource.Image) typedResource).getFsFile());
+        out.writeBoolean(((FileTypedResource.Image) typedResource).isNinePatch());
+      } else if (type == TypedResource.class && data instanceof FsFile) {
+        out.writeByte(RAW);
+        writeContext(typedResource);
+        writeFile((FsFile) data);
+      } else if (type == TypedResource.class && data instanceof XmlBlock) {
+        out.writeByte(XML);
+        writeContext(typedResource);
+        XmlBlock xmlBlock = (XmlBlock) data;
+        if (!xmlBlock.getFilename().equals(xmlContext.getXmlFile().getPath())
+            || !xmlBlock.getPackageName().equals(xmlContext.packageName)) {
+          throw new UncacheableException("xml block " + xmlBlock.getFilename());
+        }
+        writeXmlBlock(xmlBlock);
+      } else {
+        throw new UncacheableException("value " + typedResource);
+      }
+    }
+
+    private void writeContext(TypedResource typedResource) throws IOException {
+      writeResType(typedResource.getResType());
+      writeString(typedResource.getXmlContext().packageName);
+      writeFile(typedResource.getXmlContext().getXmlFile());
+    }
+
+    private void writeResType(ResType resType) throws IOException {
+      out.writeByte(resType == null ? -1 : resType.ordinal());
+    }
+
+    private void writeFile(FsFile fsFile) throws IOException {
+      FsFile dir = fsFile.getParent();
+      if (dir == null || !resourceBase.join(dir.getName(), fsFile.getName()).equals(fsFile)) {
+        throw new UncacheableException("file outside of " + resourceBase + ": " + fsFile);
+      }
+      writeString(dir.getName());
+      writeString(fsFile.getName());
+    }
+
+    private void writeXmlBlock(XmlBlock xmlBlock) throws IOException {
+      String[] stringPool = xmlBlock.getStringPool();
+      out.writeInt(stringPool.length);
+      for (String string : stringPool) {
+        writeString(string);
+      }
+      writeInts(xmlBlock.getNodes());
+      writeInts(xmlBlock.getAttributes());
+    }
+
+    private void writeInts(int[] ints) throws IOException {
+      out.writeInt(ints.length);
+      for (int i : ints) {
+        out.writeInt(i);
+      }
+    }
+
+    private void writeString(String string) throws IOException {
+      if (string == null) {
+        out.writeInt(-1);
+        return;
+      }
+      Integer index = strings.get(string);
+      if (index == null) {
+        strings.put(string, index = strings.size());
+      }
+      out.writeInt(index);
+    }
+  }
+
+  private static class Reader {
+    private static final ResType[] RES_TYPES = ResType.values();
+
+    private final ByteBuffer buffer;
+    private final FsFile resourceBase;
+    private final Map<Long, XmlLoader.XmlContext> xmlContexts = new HashMap<>();
+    private final Map<Long, FsFile> files = new HashMap<>();
+    private String[] strings;
+
+    Reader(ByteBuffer buffer, ResourcePath resourcePath) {
+      this.buffer = buffer;
+      this.resourceBase = resourcePath.getResourceBase();
+    }
+
+    List<Runnable> read(ResBunch data, ResBundle xmlDocuments, ResBundle rawResources) {
+      if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+        throw new IllegalStateException("unknown format");
+      }
+      strings = new String[buffer.getInt()];
+      for (int i = 0; i < strings.length; i++) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        strings[i] = new String(bytes, StandardCharsets.UTF_8);
+      }
+
+      List<Runnable> puts = new ArrayList<>();
+      readTable(puts, data, null);
+      readTable(puts, null, xmlDocuments);
+      readTable(puts, null, rawResources);
+      if (buffer.hasRemaining()) {
+        throw new IllegalStateException("trailing data");
+      }
+      return puts;
+    }
+
+    private void readTable(List<Runnable> puts, final ResBunch resBunch, final ResBundle resBundle) {
+      int entryCount = buffer.getInt();
+      for (int i = 0; i < entryCount; i++) {
+        final String type = readString();
+        final String name = readString();
+        int valueCount = buffer.getInt();
+        for (int j = 0; j < valueCount; j++) {
+          final TypedResource value = readValue();
+          puts.add(new Runnable() {
+            @Override
+            public void run() {
+              if (resBunch != null) {
+                resBunch.put(type, name, value);
+              } else {
+                resBundle.put(type, name, value);
+              }
+            }
+          });
+        }
+      }
+    }
+
+    private TypedResource readValue() {
+      byte kind = buffer.get();
+      ResType resType = readResType();
+      XmlLoader.XmlContext xmlContext = readContext();
+
+      switch (kind) {
+        case STRING:
+          return new TypedResource<>(readString(), resType, xmlContext);
+        case ARRAY: {
+          TypedResource[] items = new TypedResource[buffer.getInt()];
+          for (int i = 0; i < items.length; i++) {
+            ResType itemResType = readResType();
+            items[i] = new TypedResource<>(readString(), itemResType, xmlContext);
+          }
+          return new TypedResource<>(items, resType, xmlContext);
+        }
+        case STYLE: {
+          StyleData styleData = new StyleData(readString(), readString(), readString());
+          int itemCount = buffer.getInt();
+          for (int i = 0; i < itemCount; i++) {
+            ResName attrName = new ResName(readString());
+            styleData.add(attrName, new AttributeResource(attrName, readString(), readString()));
+          }
+          return new TypedResource<>(styleData, resType, xmlContext);
+        }
+        case ATTR: {
+          String name = readString();
+          String format = readString();
+          int pairCount = buffer.getInt();
+          List<AttrData.Pair> pairs = null;
+          if (pairCount >= 0) {
+            pairs = new ArrayList<>(pairCount);
+            for (int i = 0; i < pairCount; i++) {
+              pairs.add(new AttrData.Pair(readString(), readString()));
+            }
+          }
+          return new TypedResource<>(new AttrData(name, format, pairs), resType, xmlContext);
+        }
+        case PLURALS: {
+          int pluralCount = buffer.getInt();
+          List<Plural> plurals = new ArrayList<>(pluralCount);
+          for (int i = 0; i < pluralCount; i++) {
+            plurals.add(new Plural(readString(), readString()));
+          }
+          return new PluralResourceLoader.PluralRules(plurals, resType, xmlContext);
+        }
+        case FILE:
+          return new FileTypedResource(readFile(), resType, xmlContext);
+        case IMAGE:
+          return new FileTypedResource.Image(readFile(), buffer.get() != 0, xmlContext);
+        case RAW:
+          return new TypedResource<>(readFile(), resType, xmlContext);
+        case XML: {
+          String[] stringPool = new String[buffer.getInt()];
+          for (int i = 0; i < stringPool.length; i++) {
+            stringPool[i] = readString();
+          }
+          XmlBlock xmlBlock = XmlBlock.create(stringPool, readInts(), readInts(),
+              xmlContext.getXmlFile().getPath(), xmlContext.packageName);
+          return new TypedResource<>(xmlBlock, resType, xmlContext);
+        }
+        default:
+          throw new IllegalStateException("unknown value kind " + kind);
+      }
+    }
+
+    private XmlLoader.XmlContext readContext() {
+      String packageName = readString();
+      int dirIndex = buffer.getInt();
+      int nameIndex = buffer.getInt();
+      long key = ((long) dirIndex << 32) | (nameIndex & 0xffffffffL);
+      XmlLoader.XmlContext xmlContext = xmlContexts.get(key);
+      if (xmlContext == null || !xmlContext.packageName.equals(packageName)) {
+        xmlContext = new XmlLoader.XmlContext(packageName, file(dirIndex, nameIndex));
+        xmlContexts.put(key, xmlContext);
+      }
+      return xmlContext;
+    }
+
+    private FsFile readFile() {
+      return file(buffer.getInt(), buffer.getInt());
+    }
+
+    private FsFile file(int dirIndex, int nameIndex) {
+      long key = ((long) dirIndex << 32) | (nameIndex & 0xffffffffL);
+      FsFile fsFile = files.get(key);
+      if (fsFile == null) {
+        fsFile = resourceBase.join(strings[dirIndex], strings[nameIndex]);
+        files.put(key, fsFile);
+      }
+      return fsFile;
+    }
+
+    private int[] readInts() {
+      int[] ints = new int[buffer.getInt()];
+      for (int i = 0; i < ints.length; i++) {
+        ints[i] = buffer.getInt();
+      }
+      return ints;
+    }
+
+    private ResType readResType() {
+      byte ordinal = buffer.get();
+      return ordinal == -1 ? null : RES_TYPES[ordinal];
+    }
+
+    private String readString() {
+      int index = buffer.getInt();
+      return index == -1 ? null : strings[index];
+    }
+  }
+
+  private static class UncacheableException extends RuntimeException {
+    UncacheableException(String message) {
+      super(message);
+    }
+  }
+}
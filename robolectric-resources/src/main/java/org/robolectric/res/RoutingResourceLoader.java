@@ -3,7 +3,9 @@ package org.robolectric.res;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.InputStream;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Map;
 import java.util.Set;
 import org.robolectric.res.builder.XmlBlock;
@@ -52,6 +54,35 @@ public class RoutingResourceLoader extends ResourceLoader {
     }
   }
 
+  @Override
+  public long getPickCacheHits() {
+    long hits = 0;
+    for (ResourceLoader resourceLoader : distinctResourceLoaders()) {
+      hits += resourceLoader.getPickCacheHits();
+    }
+    return hits;
+  }
+
+  @Override
+  public long getPickCacheMisses() {
+    long misses = 0;
+    for (ResourceLoader resourceLoader : distinctResourceLoaders()) {
+      misses += resourceLoader.getPickCacheMisses();
+    }
+    return misses;
+  }
+
+  @Override
+  StyleCache getStyleCache(String packageName) {
+    return pickFor(packageName).getStyleCache(packageName);
+  }
+
+  private Set<ResourceLoader> distinctResourceLoaders() {
+    Set<ResourceLoader> distinct = Collections.newSetFromMap(new IdentityHashMap<ResourceLoader, Boolean>());
+    distinct.addAll(resourceLoaders.values());
+    return distinct;
+  }
+
   private ResourceLoader pickFor(int id) {
     ResName resName = resourceIndex.getResName(id);
     return pickFor(resName);
@@ -0,0 +1,93 @@
+package org.robolectric.res;
+
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Styles from a single resource table with their parent chains already resolved, so {@link StyleResolver} only
+ * walks a style's inheritance once per set of qualifiers, and looks up each attribute along it at most once.
+ *
+ * Parents in the {@code android} package come from the system resource loader, which differs between SDKs, so
+ * styles are kept separately for each system resource loader they were resolved against.
+ */
+class StyleCache {
+  private final Map<ResourceLoader, ConcurrentMap<Key, FlattenedStyle>> stylesBySystemResourceLoader = new WeakHashMap<>();
+
+  FlattenedStyle get(ResourceLoader systemResourceLoader, StyleData styleData, String qualifiers) {
+    return stylesFor(systemResourceLoader).get(new Key(styleData, qualifiers));
+  }
+
+  FlattenedStyle put(ResourceLoader systemResourceLoader, StyleData styleData, String qualifiers, List<StyleData> styles) {
+    FlattenedStyle flattenedStyle = new FlattenedStyle(styles);
+    FlattenedStyle existing = stylesFor(systemResourceLoader).putIfAbsent(new Key(styleData, qualifiers), flattenedStyle);
+    return existing == null ? flattenedStyle : existing;
+  }
+
+  private synchronized ConcurrentMap<Key, FlattenedStyle> stylesFor(ResourceLoader systemResourceLoader) {
+    ConcurrentMap<Key, FlattenedStyle> styles = stylesBySystemResourceLoader.get(systemResourceLoader);
+    if (styles == null) {
+      styles = new ConcurrentHashMap<>();
+      stylesBySystemResourceLoader.put(systemResourceLoader, styles);
+    }
+    return styles;
+  }
+
+  /**
+   * A style followed by all of its ancestors, with the value each attribute resolves to along the chain.
+   */
+  static class FlattenedStyle {
+    private static final Object NO_VALUE = new Object();
+
+    private final StyleData[] styles;
+    private final ConcurrentMap<ResName, Object> values = new ConcurrentHashMap<>();
+
+    FlattenedStyle(List<StyleData> styles) {
+      this.styles = styles.toArray(new StyleData[styles.size()]);
+    }
+
+    AttributeResource getAttrValue(ResName resName) {
+      Object value = values.get(resName);
+      if (value == null) {
+        value = NO_VALUE;
+        for (StyleData style : styles) {
+          AttributeResource styleValue = style.getAttrValue(resName);
+          if (styleValue != null) {
+            value = styleValue;
+            break;
+          }
+        }
+        values.putIfAbsent(resName, value);
+      }
+      return value == NO_VALUE ? null : (AttributeResource) value;
+    }
+  }
+
+  private static class Key {
+    private final StyleData styleData;
+    private final String qualifiers;
+
+    Key(StyleData styleData, String qualifiers) {
+      this.styleData = styleData;
+      this.qualifiers = qualifiers;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      // StyleData equality only compares names and sizes, so styles are matched by identity
+      return styleData == other.styleData
+          && (qualifiers == null ? other.qualifiers == null : qualifiers.equals(other.qualifiers));
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * System.identityHashCode(styleData) + (qualifiers == null ? 0 : qualifiers.hashCode());
+    }
+  }
+}
@@ -26,6 +26,10 @@ public class StyleData implements Style {
     return parent;
   }
 
+  Map<ResName, AttributeResource> getItems() {
+    return items;
+  }
+
   public void add(ResName attrName, AttributeResource attribute) {
     attrName.mustBe("attr");
     items.put(attrName, attribute);
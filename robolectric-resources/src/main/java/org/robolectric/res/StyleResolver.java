@@ -12,6 +12,8 @@ public class StyleResolver implements Style {
   private final Style theme;
   private final ResName myResName;
   private final String qualifiers;
+  private StyleCache.FlattenedStyle flattenedStyle;
+  private boolean dependsOnTheme;
 
   public StyleResolver(ResourceLoader appResourceLoader, ResourceLoader systemResourceLoader, StyleData styleData,
                        Style theme, ResName myResName, String qualifiers) {
@@ -24,11 +26,42 @@ public class StyleResolver implements Style {
   }
 
   @Override public AttributeResource getAttrValue(ResName resName) {
-    for (StyleData style : styles) {
-      AttributeResource value = style.getAttrValue(resName);
+    AttributeResource styleValue = getStyleAttrValue(resName);
+    if (styleValue != null) return styleValue;
+
+    // todo: is this tested?
+    if (theme != null) {
+      AttributeResource value = theme.getAttrValue(resName);
       if (value != null) return value;
     }
-    int initialSize = styles.size();
+
+    return null;
+  }
+
+  /**
+   * Looks up the attribute in this style and its ancestors. The ancestors are only resolved once an attribute isn't
+   * found in the style itself, and are then shared through the resource loader's {@link StyleCache}, unless a parent
+   * was found through a theme attribute.
+   */
+  private AttributeResource getStyleAttrValue(ResName resName) {
+    if (flattenedStyle == null) {
+      StyleData styleData = styles.get(0);
+      StyleCache styleCache = getResourceLoader(styleData.getPackageName()).getStyleCache(styleData.getPackageName());
+      flattenedStyle = styleCache.get(systemResourceLoader, styleData, qualifiers);
+      if (flattenedStyle == null) {
+        AttributeResource value = styleData.getAttrValue(resName);
+        if (value != null) return value;
+
+        resolveParents();
+        flattenedStyle = dependsOnTheme
+            ? new StyleCache.FlattenedStyle(styles)
+            : styleCache.put(systemResourceLoader, styleData, qualifiers, styles);
+      }
+    }
+    return flattenedStyle.getAttrValue(resName);
+  }
+
+  private void resolveParents() {
     while (hasParent(styles.get(styles.size() - 1))) {
       StyleData parent = getParent(styles.get(styles.size() - 1));
       if (parent != null) {
@@ -37,19 +70,11 @@ public class StyleResolver implements Style {
         break;
       }
     }
-    for (int i = initialSize; i < styles.size(); i++) {
-      StyleData style = styles.get(i);
-      AttributeResource value = style.getAttrValue(resName);
-      if (value != null) return value;
-    }
-
-    // todo: is this tested?
-    if (theme != null) {
-      AttributeResource value = theme.getAttrValue(resName);
-      if (value != null) return value;
-    }
+  }
 
-    return null;
+  private ResourceLoader getResourceLoader(String packageName) {
+    // TODO: Refactor this to a ResourceLoaderChooser
+    return "android".equals(packageName) ? systemResourceLoader : appResourceLoader;
   }
 
   private static String getParentStyleName(StyleData style) {
@@ -87,9 +112,7 @@ public class StyleResolver implements Style {
 
     styleRef = dereferenceResName(styleRef);
 
-    // TODO: Refactor this to a ResourceLoaderChooser
-    ResourceLoader resourceLoader = "android".equals(styleRef.packageName) ? systemResourceLoader : appResourceLoader;
-    TypedResource typedResource = resourceLoader.getValue(styleRef, qualifiers);
+    TypedResource typedResource = getResourceLoader(styleRef.packageName).getValue(styleRef, qualifiers);
 
     if (typedResource == null) {
       StringBuilder builder = new StringBuilder("Could not find any resource")
@@ -116,6 +139,7 @@ public class StyleResolver implements Style {
     ResName styleRef = res;
     boolean dereferencing = true;
     while ("attr".equals(styleRef.type) && dereferencing) {
+      dependsOnTheme = true;
       dereferencing = false;
       for (StyleData parentStyle : styles) {
         AttributeResource value = parentStyle.getAttrValue(styleRef);
@@ -5,6 +5,7 @@ public class TypedResource<T> {
   private final ResType resType;
   private final String qualifiers;
   private final XmlLoader.XmlContext xmlContext;
+  private volatile Qualifiers parsedQualifiers;
 
   public TypedResource(T data, ResType resType, XmlLoader.XmlContext xmlContext) {
     this.data = data;
@@ -27,6 +28,17 @@ public class TypedResource<T> {
     return qualifiers;
   }
 
+  /**
+   * Parsed lazily, so a resource with malformed qualifiers only fails when it's looked up.
+   */
+  Qualifiers getParsedQualifiers() {
+    Qualifiers parsedQualifiers = this.parsedQualifiers;
+    if (parsedQualifiers == null) {
+      this.parsedQualifiers = parsedQualifiers = Qualifiers.parse(qualifiers);
+    }
+    return parsedQualifiers;
+  }
+
   public XmlLoader.XmlContext getXmlContext() {
     return xmlContext;
   }
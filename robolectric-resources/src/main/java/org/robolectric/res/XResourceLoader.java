@@ -8,12 +8,16 @@ import java.io.InputStream;
 
 // TODO: Give me a better name
 abstract class XResourceLoader extends ResourceLoader {
+  // Ballpark figures for a loaded value (ResName, TypedResource, XmlContext and data) and for a parsed XmlBlock.
+  private static final long ESTIMATED_VALUE_SIZE = 512;
+  private static final long ESTIMATED_XML_DOCUMENT_SIZE = 2 * 1024;
+
   final ResBunch data = new ResBunch();
   final ResBundle xmlDocuments = new ResBundle();
   final ResBundle rawResources = new ResBundle();
   
   private final ResourceIndex resourceIndex;
-  private boolean isInitialized = false;
+  private volatile boolean isInitialized = false;
 
   XResourceLoader(ResourceIndex resourceIndex) {
     this.resourceIndex = resourceIndex;
@@ -21,12 +25,18 @@ abstract class XResourceLoader extends ResourceLoader {
 
   abstract void doInitialize();
 
-  synchronized void initialize() {
+  void initialize() {
     if (isInitialized) return;
-    doInitialize();
-    isInitialized = true;
+    synchronized (this) {
+      if (isInitialized) return;
+      doInitialize();
+      makeImmutable();
+      isInitialized = true;
+    }
+  }
 
-    makeImmutable();
+  boolean isInitialized() {
+    return isInitialized;
   }
 
   private void makeImmutable() {
@@ -71,4 +81,24 @@ abstract class XResourceLoader extends ResourceLoader {
     initialize();
     data.receive(visitor);
   }
+
+  @Override
+  public long estimateRetainedSize() {
+    if (!isInitialized) return 0;
+    return estimateRetainedSize(data.size() + rawResources.size(), xmlDocuments.size());
+  }
+
+  static long estimateRetainedSize(long valueCount, long xmlDocumentCount) {
+    return valueCount * ESTIMATED_VALUE_SIZE + xmlDocumentCount * ESTIMATED_XML_DOCUMENT_SIZE;
+  }
+
+  @Override
+  public long getPickCacheHits() {
+    return data.getPickCacheHits() + xmlDocuments.getPickCacheHits() + rawResources.getPickCacheHits();
+  }
+
+  @Override
+  public long getPickCacheMisses() {
+    return data.getPickCacheMisses() + xmlDocuments.getPickCacheMisses() + rawResources.getPickCacheMisses();
+  }
 }
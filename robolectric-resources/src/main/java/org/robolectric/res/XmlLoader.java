@@ -21,17 +21,25 @@ public abstract class XmlLoader {
     documentBuilderFactory.setIgnoringElementContentWhitespace(true);
   }
 
-  private DocumentBuilder documentBuilder;
+  // Resource files are parsed concurrently, and DocumentBuilders aren't thread-safe.
+  private static final ThreadLocal<DocumentBuilder> documentBuilder = new ThreadLocal<DocumentBuilder>() {
+    @Override protected DocumentBuilder initialValue() {
+      synchronized (documentBuilderFactory) {
+        try {
+          return documentBuilderFactory.newDocumentBuilder();
+        } catch (ParserConfigurationException e) {
+          throw new RuntimeException(e);
+        }
+      }
+    }
+  };
 
-  synchronized public Document parse(FsFile xmlFile) {
+  public Document parse(FsFile xmlFile) {
     InputStream inputStream = null;
     try {
-      if (documentBuilder == null) {
-        documentBuilder = documentBuilderFactory.newDocumentBuilder();
-      }
       inputStream = xmlFile.getInputStream();
-      return documentBuilder.parse(inputStream);
-    } catch (ParserConfigurationException | IOException | SAXException e) {
+      return documentBuilder.get().parse(inputStream);
+    } catch (IOException | SAXException e) {
       throw new RuntimeException(e);
     } finally {
       if (inputStream != null) try {
@@ -9,8 +9,7 @@ import org.w3c.dom.Document;
 public class ResourceParser {
 
   public static XmlResourceParser from(XmlBlock block, String applicationPackageName, ResourceLoader resourceLoader) {
-    return new XmlResourceParserImpl(block.getDocument(), block.getFilename(), block.getPackageName(),
-        applicationPackageName, resourceLoader);
+    return new XmlResourceParserImpl(block, applicationPackageName, resourceLoader);
   }
 
   public static XmlResourceParser create(String file, String packageName, String applicationPackageName, ResourceLoader resourceLoader) {
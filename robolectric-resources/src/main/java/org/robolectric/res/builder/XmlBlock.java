@@ -1,22 +1,94 @@
 package org.robolectric.res.builder;
 
+import org.w3c.dom.Attr;
 import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * An XML block is a parsed representation of a resource XML file. Similar in nature
  * to Android's XmlBlock class.
+ *
+ * <p>Like Android's compiled XML, the tree isn't kept as a DOM: elements and text are fixed size records of ints in a
+ * single array, attributes are records in a second one, and all names and values are indices into a string pool
+ * shared by the whole block. Blocks are immutable, so a single one can be read by any number of parsers at once.
  */
 public class XmlBlock {
-  private final Document document;
+  static final int ELEMENT = 0;
+  static final int TEXT = 1;
+  static final int CDATA = 2;
+
+  // Fields of a node record. Element names and text values both live in NODE_VALUE.
+  static final int NODE_TYPE = 0;
+  static final int NODE_PARENT = 1;
+  static final int NODE_NEXT_SIBLING = 2;
+  static final int NODE_FIRST_CHILD = 3;
+  static final int NODE_VALUE = 4;
+  static final int NODE_NAMESPACE = 5;
+  static final int NODE_FIRST_ATTRIBUTE = 6;
+  static final int NODE_ATTRIBUTE_COUNT = 7;
+  static final int NODE_SIZE = 8;
+
+  // Fields of an attribute record.
+  static final int ATTRIBUTE_NAMESPACE = 0;
+  static final int ATTRIBUTE_LOCAL_NAME = 1;
+  static final int ATTRIBUTE_NAME = 2;
+  static final int ATTRIBUTE_VALUE = 3;
+  static final int ATTRIBUTE_SIZE = 4;
+
+  static final int NONE = -1;
+
+  private final String[] strings;
+  private final int[] nodes;
+  private final int[] attributes;
   private final String filename;
   private final String packageName;
+  // Attribute values with references qualified by packageName, filled in as parsers ask for them.
+  private final String[] qualifiedValues;
 
   public static XmlBlock create(Document document, String file, String packageName) {
-    return new XmlBlock(document, file, packageName);
+    Builder builder = new Builder();
+    builder.addNode(document.getDocumentElement(), NONE);
+    return new XmlBlock(builder.strings(), builder.nodes(), builder.attributes(), file, packageName);
   }
 
+  /**
+   * Recreates a block from the arrays returned by {@link #getStringPool()}, {@link #getNodes()} and
+   * {@link #getAttributes()}, e.g. after reading them back from disk.
+   */
+  public static XmlBlock create(String[] strings, int[] nodes, int[] attributes, String file, String packageName) {
+    return new XmlBlock(strings, nodes, attributes, file, packageName);
+  }
+
+  private XmlBlock(String[] strings, int[] nodes, int[] attributes, String filename, String packageName) {
+    this.strings = strings;
+    this.nodes = nodes;
+    this.attributes = attributes;
+    this.filename = filename;
+    this.packageName = packageName;
+    this.qualifiedValues = new String[attributes.length / ATTRIBUTE_SIZE];
+  }
+
+  /**
+   * Builds a DOM equivalent to this block. The block doesn't keep one around, so this parses it anew on every call.
+   */
   public Document getDocument() {
-    return document;
+    try {
+      DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+      factory.setNamespaceAware(true);
+      Document document = factory.newDocumentBuilder().newDocument();
+      document.appendChild(toDom(document, 0));
+      return document;
+    } catch (ParserConfigurationException e) {
+      throw new RuntimeException(e);
+    }
   }
 
   public String getFilename() {
@@ -27,9 +99,250 @@ public class XmlBlock {
     return packageName;
   }
 
-  private XmlBlock(Document document, String filename, String packageName) {
-    this.document = document;
-    this.filename = filename;
-    this.packageName = packageName;
+  public String[] getStringPool() {
+    return strings.clone();
+  }
+
+  public int[] getNodes() {
+    return nodes.clone();
+  }
+
+  public int[] getAttributes() {
+    return attributes.clone();
+  }
+
+  int getType(int node) {
+    return nodes[node + NODE_TYPE];
+  }
+
+  int getParent(int node) {
+    return nodes[node + NODE_PARENT];
+  }
+
+  int getNextSibling(int node) {
+    return nodes[node + NODE_NEXT_SIBLING];
+  }
+
+  int getFirstChild(int node) {
+    return nodes[node + NODE_FIRST_CHILD];
+  }
+
+  /**
+   * @return the qualified name of an element, or the text of a text node.
+   */
+  String getValue(int node) {
+    return string(nodes[node + NODE_VALUE]);
+  }
+
+  String getNamespace(int node) {
+    return string(nodes[node + NODE_NAMESPACE]);
+  }
+
+  String getTextContent(int node) {
+    if (getType(node) != ELEMENT) {
+      return getValue(node);
+    }
+    StringBuilder text = new StringBuilder();
+    appendTextContent(node, text);
+    return text.toString();
+  }
+
+  private void appendTextContent(int node, StringBuilder text) {
+    for (int child = getFirstChild(node); child != NONE; child = getNextSibling(child)) {
+      if (getType(child) == ELEMENT) {
+        appendTextContent(child, text);
+      } else {
+        text.append(getValue(child));
+      }
+    }
+  }
+
+  int getAttributeCount(int node) {
+    return nodes[node + NODE_ATTRIBUTE_COUNT];
+  }
+
+  String getAttributeNamespace(int node, int index) {
+    return attributeString(node, index, ATTRIBUTE_NAMESPACE);
+  }
+
+  String getAttributeLocalName(int node, int index) {
+    return attributeString(node, index, ATTRIBUTE_LOCAL_NAME);
+  }
+
+  String getAttributeName(int node, int index) {
+    return attributeString(node, index, ATTRIBUTE_NAME);
+  }
+
+  String getAttributeValue(int node, int index) {
+    return attributeString(node, index, ATTRIBUTE_VALUE);
+  }
+
+  /**
+   * @return the attribute's value with any resource or style reference qualified with this block's package.
+   */
+  String getQualifiedAttributeValue(int node, int index) {
+    int attribute = nodes[node + NODE_FIRST_ATTRIBUTE] + index;
+    String qualifiedValue = qualifiedValues[attribute];
+    if (qualifiedValue == null) {
+      qualifiedValue = XmlResourceParserImpl.qualify(getAttributeValue(node, index), packageName);
+      qualifiedValues[attribute] = qualifiedValue;
+    }
+    return qualifiedValue;
+  }
+
+  /**
+   * @return the index of the element's attribute with the given namespace and local name, or -1 if it has none.
+   */
+  int indexOfAttribute(int node, String namespace, String localName) {
+    if ("".equals(namespace)) {
+      namespace = null;
+    }
+    int count = getAttributeCount(node);
+    for (int i = 0; i < count; i++) {
+      if (localName.equals(getAttributeLocalName(node, i))) {
+        String attributeNamespace = getAttributeNamespace(node, i);
+        if (namespace == null ? attributeNamespace == null : namespace.equals(attributeNamespace)) {
+          return i;
+        }
+      }
+    }
+    return NONE;
+  }
+
+  private String attributeString(int node, int index, int field) {
+    int attribute = nodes[node + NODE_FIRST_ATTRIBUTE] + index;
+    return string(attributes[attribute * ATTRIBUTE_SIZE + field]);
+  }
+
+  private String string(int index) {
+    return index == NONE ? null : strings[index];
+  }
+
+  private Node toDom(Document document, int node) {
+    switch (getType(node)) {
+      case TEXT:
+        return document.createTextNode(getValue(node));
+      case CDATA:
+        return document.createCDATASection(getValue(node));
+      default:
+        Element element = document.createElementNS(getNamespace(node), getValue(node));
+        for (int i = 0; i < getAttributeCount(node); i++) {
+          element.setAttributeNS(getAttributeNamespace(node, i), getAttributeName(node, i), getAttributeValue(node, i));
+        }
+        for (int child = getFirstChild(node); child != NONE; child = getNextSibling(child)) {
+          element.appendChild(toDom(document, child));
+        }
+        return element;
+    }
+  }
+
+  private static class Builder {
+    private final Map<String, Integer> stringIndices = new HashMap<>();
+    private String[] strings = new String[64];
+    private int stringCount;
+    private int[] nodes = new int[16 * NODE_SIZE];
+    private int nodeLength;
+    private int[] attributes = new int[32 * ATTRIBUTE_SIZE];
+    private int attributeLength;
+
+    /**
+     * Appends a node and its descendants, returning the node's offset, or -1 if it is of a kind that resource
+     * files don't need, e.g. a comment or processing instruction.
+     */
+    int addNode(Node node, int parent) {
+      int type;
+      switch (node.getNodeType()) {
+        case Node.ELEMENT_NODE:
+          type = ELEMENT;
+          break;
+        case Node.TEXT_NODE:
+          type = TEXT;
+          break;
+        case Node.CDATA_SECTION_NODE:
+          type = CDATA;
+          break;
+        default:
+          return NONE;
+      }
+
+      int offset = nodeLength;
+      nodes = ensureCapacity(nodes, nodeLength + NODE_SIZE);
+      nodeLength += NODE_SIZE;
+      nodes[offset + NODE_TYPE] = type;
+      nodes[offset + NODE_PARENT] = parent;
+      nodes[offset + NODE_NEXT_SIBLING] = NONE;
+      nodes[offset + NODE_FIRST_CHILD] = NONE;
+      nodes[offset + NODE_ATTRIBUTE_COUNT] = 0;
+      nodes[offset + NODE_FIRST_ATTRIBUTE] = attributeLength / ATTRIBUTE_SIZE;
+      if (type != ELEMENT) {
+        nodes[offset + NODE_VALUE] = add(node.getNodeValue(), false);
+        nodes[offset + NODE_NAMESPACE] = NONE;
+        return offset;
+      }
+
+      nodes[offset + NODE_VALUE] = add(node.getNodeName(), true);
+      nodes[offset + NODE_NAMESPACE] = add(node.getNamespaceURI(), true);
+      NamedNodeMap attributeMap = node.getAttributes();
+      nodes[offset + NODE_ATTRIBUTE_COUNT] = attributeMap.getLength();
+      for (int i = 0; i < attributeMap.getLength(); i++) {
+        Attr attr = (Attr) attributeMap.item(i);
+        attributes = ensureCapacity(attributes, attributeLength + ATTRIBUTE_SIZE);
+        attributes[attributeLength + ATTRIBUTE_NAMESPACE] = add(attr.getNamespaceURI(), true);
+        attributes[attributeLength + ATTRIBUTE_LOCAL_NAME] = add(attr.getLocalName() != null ? attr.getLocalName() : attr.getName(), true);
+        attributes[attributeLength + ATTRIBUTE_NAME] = add(attr.getName(), true);
+        attributes[attributeLength + ATTRIBUTE_VALUE] = add(attr.getValue(), false);
+        attributeLength += ATTRIBUTE_SIZE;
+      }
+
+      int previous = NONE;
+      for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+        int childOffset = addNode(child, offset);
+        if (childOffset == NONE) {
+          continue;
+        }
+        if (previous == NONE) {
+          nodes[offset + NODE_FIRST_CHILD] = childOffset;
+        } else {
+          nodes[previous + NODE_NEXT_SIBLING] = childOffset;
+        }
+        previous = childOffset;
+      }
+      return offset;
+    }
+
+    private int add(String string, boolean intern) {
+      if (string == null) {
+        return NONE;
+      }
+      Integer index = stringIndices.get(string);
+      if (index == null) {
+        index = stringCount;
+        strings = ensureCapacity(strings, stringCount + 1);
+        // Namespaces and names repeat across every file of a package, so share a single copy of each.
+        strings[stringCount++] = intern ? string.intern() : string;
+        stringIndices.put(string, index);
+      }
+      return index;
+    }
+
+    String[] strings() {
+      return Arrays.copyOf(strings, stringCount);
+    }
+
+    int[] nodes() {
+      return Arrays.copyOf(nodes, nodeLength);
+    }
+
+    int[] attributes() {
+      return Arrays.copyOf(attributes, attributeLength);
+    }
+
+    private static int[] ensureCapacity(int[] array, int length) {
+      return length <= array.length ? array : Arrays.copyOf(array, Math.max(length, array.length * 2));
+    }
+
+    private static String[] ensureCapacity(String[] array, int length) {
+      return length <= array.length ? array : Arrays.copyOf(array, Math.max(length, array.length * 2));
+    }
   }
 }
@@ -7,9 +7,6 @@ import org.robolectric.res.AttributeResource;
 import org.robolectric.res.ResName;
 import org.robolectric.res.ResourceLoader;
 import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.NamedNodeMap;
-import org.w3c.dom.Node;
 import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.IOException;
@@ -22,9 +19,9 @@ import java.util.List;
  * Concrete implementation of the {@link XmlResourceParser}.
  *
  * <p>Clients expects a pull parser while the resource loader
- * initialise this object with a {@link Document}.
- * This implementation navigates the dom and emulates a pull
- * parser by raising all the opportune events.
+ * initialise this object with an {@link XmlBlock}.
+ * This implementation navigates the block's nodes and emulates
+ * a pull parser by raising all the opportune events.
  *
  * <p>Note that the original android implementation is based on
  * a set of native methods calls. Here those methods are
@@ -47,13 +44,13 @@ public class XmlResourceParserImpl implements XmlResourceParser {
       XmlResourceParser.FEATURE_VALIDATION
   };
 
-  private final Document document;
+  private final XmlBlock block;
   private final String fileName;
   private final String packageName;
   private final ResourceLoader resourceLoader;
   private final String applicationNamespace;
 
-  private Node currentNode;
+  private int currentNode = XmlBlock.NONE;
 
   private boolean mStarted = false;
   private boolean mDecNextDepth = false;
@@ -62,9 +59,13 @@ public class XmlResourceParserImpl implements XmlResourceParser {
 
   public XmlResourceParserImpl(Document document, String fileName, String packageName,
                                String applicationPackageName, ResourceLoader resourceLoader) {
-    this.document = document;
-    this.fileName = fileName;
-    this.packageName = packageName;
+    this(XmlBlock.create(document, fileName, packageName), applicationPackageName, resourceLoader);
+  }
+
+  public XmlResourceParserImpl(XmlBlock block, String applicationPackageName, ResourceLoader resourceLoader) {
+    this.block = block;
+    this.fileName = block.getFilename();
+    this.packageName = block.getPackageName();
     this.resourceLoader = resourceLoader;
     this.applicationNamespace = AttributeResource.ANDROID_RES_NS_PREFIX + applicationPackageName;
   }
@@ -165,10 +166,10 @@ public class XmlResourceParserImpl implements XmlResourceParser {
 
   @Override
   public String getText() {
-    if (currentNode == null) {
+    if (currentNode == XmlBlock.NONE) {
       return "";
     }
-    return currentNode.getTextContent();
+    return block.getTextContent(currentNode);
   }
 
   @Override
@@ -221,7 +222,7 @@ public class XmlResourceParserImpl implements XmlResourceParser {
 
   @Override
   public String getNamespace() {
-    String namespace = currentNode != null ? currentNode.getNamespaceURI() : null;
+    String namespace = currentNode != XmlBlock.NONE ? block.getNamespace(currentNode) : null;
     if (namespace == null) {
       return "";
     }
@@ -231,46 +232,46 @@ public class XmlResourceParserImpl implements XmlResourceParser {
 
   @Override
   public String getName() {
-    if (currentNode == null) {
+    if (currentNode == XmlBlock.NONE) {
       return "";
     }
-    return currentNode.getNodeName();
+    switch (block.getType(currentNode)) {
+      case XmlBlock.TEXT:
+        return "#text";
+      case XmlBlock.CDATA:
+        return "#cdata-section";
+      default:
+        return block.getValue(currentNode);
+    }
   }
 
-  Node getAttributeAt(int index) {
-    if (currentNode == null) {
-      throw new IndexOutOfBoundsException(String.valueOf(index));
-    }
-    NamedNodeMap map = currentNode.getAttributes();
-    if (index >= map.getLength()) {
+  private int checkAttributeIndex(int index) {
+    if (currentNode == XmlBlock.NONE || index < 0 || index >= block.getAttributeCount(currentNode)) {
       throw new IndexOutOfBoundsException(String.valueOf(index));
     }
-    return map.item(index);
+    return index;
   }
 
   String getAttribute(String namespace, String name) {
-    if (currentNode == null) {
-      return null;
-    }
+    int index = indexOfAttribute(namespace, name);
+    return index == XmlBlock.NONE ? null : block.getAttributeValue(currentNode, index).trim();
+  }
 
-    Element element = (Element) currentNode;
-    if (element.hasAttributeNS(namespace, name)) {
-      return element.getAttributeNS(namespace, name).trim();
-    } else if (applicationNamespace.equals(namespace)
-        && element.hasAttributeNS(AttributeResource.RES_AUTO_NS_URI, name)) {
-      return element.getAttributeNS(AttributeResource.RES_AUTO_NS_URI, name).trim();
+  private int indexOfAttribute(String namespace, String name) {
+    if (currentNode == XmlBlock.NONE) {
+      return XmlBlock.NONE;
     }
 
-    return null;
+    int index = block.indexOfAttribute(currentNode, namespace, name);
+    if (index == XmlBlock.NONE && applicationNamespace.equals(namespace)) {
+      index = block.indexOfAttribute(currentNode, AttributeResource.RES_AUTO_NS_URI, name);
+    }
+    return index;
   }
 
   @Override
   public String getAttributeNamespace(int index) {
-    Node attr = getAttributeAt(index);
-    if (attr == null) {
-      return null;
-    }
-    return maybeReplaceNamespace(attr.getNamespaceURI());
+    return maybeReplaceNamespace(block.getAttributeNamespace(currentNode, checkAttributeIndex(index)));
   }
 
   private String maybeReplaceNamespace(String namespace) {
@@ -284,11 +285,10 @@ public class XmlResourceParserImpl implements XmlResourceParser {
   @Override
   public String getAttributeName(int index) {
     try {
-      Node attr = getAttributeAt(index);
-      String namespace = maybeReplaceNamespace(attr.getNamespaceURI());
+      String namespace = maybeReplaceNamespace(block.getAttributeNamespace(currentNode, checkAttributeIndex(index)));
       return applicationNamespace.equals(namespace) ?
-        attr.getLocalName() :
-        attr.getNodeName();
+        block.getAttributeLocalName(currentNode, index) :
+        block.getAttributeName(currentNode, index);
     } catch (IndexOutOfBoundsException ex) {
       return null;
     }
@@ -308,19 +308,23 @@ public class XmlResourceParserImpl implements XmlResourceParser {
 
   @Override
   public int getAttributeCount() {
-    if (currentNode == null) {
+    if (currentNode == XmlBlock.NONE || block.getType(currentNode) != XmlBlock.ELEMENT) {
       return -1;
     }
-    return currentNode.getAttributes().getLength();
+    return block.getAttributeCount(currentNode);
   }
 
   @Override
   public String getAttributeValue(int index) {
-    return qualify(getAttributeAt(index).getNodeValue());
+    return block.getQualifiedAttributeValue(currentNode, checkAttributeIndex(index));
   }
 
   // for testing only...
   public String qualify(String value) {
+    return qualify(value, packageName);
+  }
+
+  static String qualify(String value, String packageName) {
     if (value == null) return null;
     if (AttributeResource.isResourceReference(value)) {
       return "@" + ResName.qualifyResourceName(value.substring(1).replace("+", ""), packageName, "attr");
@@ -351,7 +355,13 @@ public class XmlResourceParserImpl implements XmlResourceParser {
 
   @Override
   public String getAttributeValue(String namespace, String name) {
-    return qualify(getAttribute(namespace, name));
+    int index = indexOfAttribute(namespace, name);
+    if (index == XmlBlock.NONE) {
+      return null;
+    }
+    String value = block.getAttributeValue(currentNode, index);
+    String trimmed = value.trim();
+    return trimmed.length() == value.length() ? block.getQualifiedAttributeValue(currentNode, index) : qualify(trimmed);
   }
 
   @Override
@@ -428,14 +438,14 @@ public class XmlResourceParserImpl implements XmlResourceParser {
             "PROCESSING_INSTRUCTION");
       }
       case (START_DOCUMENT): {
-        currentNode = document.getDocumentElement();
+        currentNode = 0;
         return START_TAG;
       }
       case (START_TAG): {
-        if (currentNode.hasChildNodes()) {
+        int firstChild = block.getFirstChild(currentNode);
+        if (firstChild != XmlBlock.NONE) {
           // The node has children, navigate down
-          return processNextNodeType(
-              currentNode.getFirstChild());
+          return processNextNodeType(firstChild);
         } else {
           // The node has no children
           return END_TAG;
@@ -454,45 +464,18 @@ public class XmlResourceParserImpl implements XmlResourceParser {
 
   }
 
-  /*protected*/ int processNextNodeType(Node node)
+  /*protected*/ int processNextNodeType(int node)
       throws XmlPullParserException {
-    switch (node.getNodeType()) {
-      case (Node.ATTRIBUTE_NODE): {
-        throw new IllegalArgumentException("ATTRIBUTE_NODE");
-      }
-      case (Node.CDATA_SECTION_NODE): {
-        return navigateToNextNode(node);
-      }
-      case (Node.COMMENT_NODE): {
+    switch (block.getType(node)) {
+      case (XmlBlock.CDATA): {
         return navigateToNextNode(node);
       }
-      case (Node.DOCUMENT_FRAGMENT_NODE): {
-        throw new IllegalArgumentException("DOCUMENT_FRAGMENT_NODE");
-      }
-      case (Node.DOCUMENT_NODE): {
-        throw new IllegalArgumentException("DOCUMENT_NODE");
-      }
-      case (Node.DOCUMENT_TYPE_NODE): {
-        throw new IllegalArgumentException("DOCUMENT_TYPE_NODE");
-      }
-      case (Node.ELEMENT_NODE): {
+      case (XmlBlock.ELEMENT): {
         currentNode = node;
         return START_TAG;
       }
-      case (Node.ENTITY_NODE): {
-        throw new IllegalArgumentException("ENTITY_NODE");
-      }
-      case (Node.ENTITY_REFERENCE_NODE): {
-        throw new IllegalArgumentException("ENTITY_REFERENCE_NODE");
-      }
-      case (Node.NOTATION_NODE): {
-        throw new IllegalArgumentException("DOCUMENT_TYPE_NODE");
-      }
-      case (Node.PROCESSING_INSTRUCTION_NODE): {
-        throw new IllegalArgumentException("DOCUMENT_TYPE_NODE");
-      }
-      case (Node.TEXT_NODE): {
-        if (isWhitespace(node.getNodeValue())) {
+      case (XmlBlock.TEXT): {
+        if (isWhitespace(block.getValue(node))) {
           // Skip whitespaces
           return navigateToNextNode(node);
         } else {
@@ -503,7 +486,7 @@ public class XmlResourceParserImpl implements XmlResourceParser {
       default: {
         throw new RuntimeException(
             "Robolectric -> Unknown node type: " +
-                node.getNodeType() + ".");
+                block.getType(node) + ".");
       }
     }
   }
@@ -524,19 +507,20 @@ public class XmlResourceParserImpl implements XmlResourceParser {
    * @throws XmlPullParserException if the parser fails to
    *                                parse the next node.
    */
-  int navigateToNextNode(Node node)
+  int navigateToNextNode(int node)
       throws XmlPullParserException {
-    Node nextNode = node.getNextSibling();
-    if (nextNode != null) {
+    int nextNode = block.getNextSibling(node);
+    if (nextNode != XmlBlock.NONE) {
       // Move to the next siblings
       return processNextNodeType(nextNode);
     } else {
       // Goes back to the parent
-      if (document.getDocumentElement().equals(node)) {
-        currentNode = null;
+      int parent = block.getParent(node);
+      if (parent == XmlBlock.NONE) {
+        currentNode = XmlBlock.NONE;
         return END_DOCUMENT;
       }
-      currentNode = node.getParentNode();
+      currentNode = parent;
       return END_TAG;
     }
   }
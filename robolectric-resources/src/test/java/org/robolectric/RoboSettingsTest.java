@@ -11,12 +11,14 @@ public class RoboSettingsTest {
   private String originalMavenRepositoryId;
   private String originalMavenRepositoryUrl;
   private boolean originalUseGlobalScheduler;
+  private int originalBackgroundThreadCount;
 
   @Before
   public void setUp() {
     originalMavenRepositoryId = RoboSettings.getMavenRepositoryId();
     originalMavenRepositoryUrl = RoboSettings.getMavenRepositoryUrl();
     originalUseGlobalScheduler = RoboSettings.isUseGlobalScheduler();
+    originalBackgroundThreadCount = RoboSettings.getBackgroundThreadCount();
   }
 
   @After
@@ -24,6 +26,7 @@ public class RoboSettingsTest {
     RoboSettings.setMavenRepositoryId(originalMavenRepositoryId);
     RoboSettings.setMavenRepositoryUrl(originalMavenRepositoryUrl);
     RoboSettings.setUseGlobalScheduler(originalUseGlobalScheduler);
+    RoboSettings.setBackgroundThreadCount(originalBackgroundThreadCount);
   }
 
   @Test
@@ -58,4 +61,15 @@ public class RoboSettingsTest {
     RoboSettings.setUseGlobalScheduler(true);
     assertTrue(RoboSettings.isUseGlobalScheduler());
   }
+
+  @Test
+  public void getBackgroundThreadCount_defaultZero() {
+    assertEquals(0, RoboSettings.getBackgroundThreadCount());
+  }
+
+  @Test
+  public void setBackgroundThreadCount() {
+    RoboSettings.setBackgroundThreadCount(4);
+    assertEquals(4, RoboSettings.getBackgroundThreadCount());
+  }
 }
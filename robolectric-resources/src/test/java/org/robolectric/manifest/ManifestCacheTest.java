@@ -0,0 +1,82 @@
+package org.robolectric.manifest;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.robolectric.res.Fs;
+import org.robolectric.res.FsFile;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(JUnit4.class)
+public class ManifestCacheTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private File cacheDir;
+  private FsFile manifestFile;
+
+  @Before
+  public void setUp() throws Exception {
+    cacheDir = temporaryFolder.newFolder("cache");
+    manifestFile = write("AndroidManifest.xml", "<?xml version=\"1.0\" encoding=\"utf-8\"?>" +
+        "<manifest xmlns:android=\"http://schemas.android.com/apk/res/android\" package=\"org.example\">" +
+        "<uses-sdk android:targetSdkVersion=\"18\"/>" +
+        "<uses-feature android:name=\"android.hardware.camera\"><meta-data android:name=\"ignored\"/></uses-feature>" +
+        "<application android:name=\".App\">" +
+        "<!-- comment --><activity android:name=\".Main\"><intent-filter><action android:name=\"MAIN\"/></intent-filter></activity>" +
+        "</application></manifest>");
+  }
+
+  @Test
+  public void shouldOnlyKeepConsumedElements() throws Exception {
+    ManifestElement manifest = new ManifestCache(null).get(manifestFile);
+
+    assertThat(manifest.getName()).isEqualTo("manifest");
+    assertThat(manifest.getAttribute("package")).isEqualTo("org.example");
+    assertThat(manifest.getChild("uses-sdk").getAttribute("android:targetSdkVersion")).isEqualTo("18");
+    assertThat(manifest.getChildren("uses-feature")).isEmpty();
+
+    ManifestElement activity = manifest.getChild("application").getChild("activity");
+    assertThat(activity.getAttributes()).containsEntry("android:name", ".Main");
+    assertThat(activity.getChild("intent-filter").getChild("action").getAttribute("android:name")).isEqualTo("MAIN");
+  }
+
+  @Test
+  public void shouldReadBackWhatWasWritten() throws Exception {
+    new ManifestCache(cacheDir).get(manifestFile);
+    assertThat(cacheDir.list()).hasSize(1);
+
+    // a different file with the same contents is answered from disk
+    FsFile copy = write("copy/AndroidManifest.xml", new String(manifestFile.getBytes(), StandardCharsets.UTF_8));
+    ManifestElement manifest = new ManifestCache(cacheDir).get(copy);
+    assertThat(manifest.getChild("application").getAttribute("android:name")).isEqualTo(".App");
+    assertThat(cacheDir.list()).hasSize(1);
+  }
+
+  @Test
+  public void shouldIgnoreCorruptEntries() throws Exception {
+    new ManifestCache(cacheDir).get(manifestFile);
+    try (FileOutputStream outputStream = new FileOutputStream(new File(cacheDir, cacheDir.list()[0]))) {
+      outputStream.write(new byte[] {1, 2, 3});
+    }
+
+    assertThat(new ManifestCache(cacheDir).get(manifestFile).getAttribute("package")).isEqualTo("org.example");
+  }
+
+  private FsFile write(String path, String contents) throws IOException {
+    File file = new File(temporaryFolder.getRoot(), path);
+    file.getParentFile().mkdirs();
+    try (FileOutputStream outputStream = new FileOutputStream(file)) {
+      outputStream.write(contents.getBytes(StandardCharsets.UTF_8));
+    }
+    return Fs.newFile(file);
+  }
+}
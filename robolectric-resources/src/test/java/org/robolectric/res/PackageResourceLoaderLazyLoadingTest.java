@@ -0,0 +1,77 @@
+package org.robolectric.res;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+@RunWith(JUnit4.class)
+public class PackageResourceLoaderLazyLoadingTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private ResourcePath resourcePath;
+  private PackageResourceLoader loader;
+
+  @Before
+  public void setUp() throws Exception {
+    File res = temporaryFolder.newFolder("res");
+    write(res, "values/values.xml", "<resources><string name=\"greeting\">Hello</string></resources>");
+    write(res, "values-fr/values.xml", "<resources><string name=\"greeting\">Bonjour</string></resources>");
+    write(res, "layout/broken.xml", "<LinearLayout");
+    write(res, "raw/data.txt", "data");
+
+    resourcePath = new ResourcePath(null, "org.example", Fs.newFile(res), null);
+    loader = new PackageResourceLoader(resourcePath, null, null);
+  }
+
+  @Test
+  public void shouldOnlyParseTheFoldersHoldingTheRequestedType() throws Exception {
+    assertThat(loader.getValue(new ResName("org.example", "string", "greeting"), "fr").getData()).isEqualTo("Bonjour");
+    assertThat(loader.getRawValue(new ResName("org.example", "raw", "data"), "")).isNotNull();
+    assertThat(loader.isInitialized()).isFalse();
+
+    try {
+      loader.getXml(new ResName("org.example", "layout", "broken"), "");
+      fail("expected the broken layout to be parsed");
+    } catch (RuntimeException expected) {
+    }
+  }
+
+  @Test
+  public void shouldReportTheSizeOfWhatHasBeenLoaded() throws Exception {
+    assertThat(loader.estimateRetainedSize()).isEqualTo(0);
+
+    loader.getValue(new ResName("org.example", "string", "greeting"), "");
+    assertThat(loader.estimateRetainedSize()).isGreaterThan(0);
+  }
+
+  @Test
+  public void overlayShouldOnlyLoadTheRequestedTypeFromItsSubLoaders() throws Exception {
+    PackageResourceLoader library = new PackageResourceLoader(resourcePath, new ResourceExtractor(resourcePath), null);
+    OverlayResourceLoader overlay = new OverlayResourceLoader("org.example.app", Collections.singletonList(library));
+
+    TypedResource greeting = overlay.getValue(new ResName("org.example.app", "string", "greeting"), "fr");
+    assertThat(greeting.getData()).isEqualTo("Bonjour");
+    assertThat(overlay.isInitialized()).isFalse();
+    assertThat(library.isInitialized()).isFalse();
+  }
+
+  private static void write(File dir, String path, String contents) throws IOException {
+    File file = new File(dir, path);
+    file.getParentFile().mkdirs();
+    try (FileOutputStream outputStream = new FileOutputStream(file)) {
+      outputStream.write(contents.getBytes(StandardCharsets.UTF_8));
+    }
+  }
+}
@@ -0,0 +1,41 @@
+package org.robolectric.res;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(JUnit4.class)
+public class ResourceIdTableTest {
+  @Test
+  public void shouldFindEveryId() throws Exception {
+    Map<Integer, ResName> resNamesById = new HashMap<>();
+    for (int type = 1; type <= 16; type++) {
+      for (int entry = 0; entry < 500; entry++) {
+        int id = 0x7f000000 | type << 16 | entry;
+        resNamesById.put(id, new ResName("org.example", "type" + type, "entry" + entry));
+      }
+    }
+
+    ResourceIdTable table = new ResourceIdTable(resNamesById);
+
+    for (Map.Entry<Integer, ResName> entry : resNamesById.entrySet()) {
+      assertThat(table.get(entry.getKey())).isSameAs(entry.getValue());
+    }
+    assertThat(table.get(0x7f000000)).isNull();
+    assertThat(table.get(0x7f110000)).isNull();
+    assertThat(table.getMaxId()).isEqualTo(0x7f1001f3);
+  }
+
+  @Test
+  public void shouldHandleEmptyTables() throws Exception {
+    ResourceIdTable table = new ResourceIdTable(new HashMap<Integer, ResName>());
+
+    assertThat(table.get(0x01010000)).isNull();
+    assertThat(table.getMaxId()).isEqualTo(0);
+  }
+}
@@ -0,0 +1,129 @@
+package org.robolectric.res;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.robolectric.res.builder.XmlBlock;
+import org.w3c.dom.Element;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(JUnit4.class)
+public class ResourceTableCacheTest {
+  private static final String ANDROID_NS = "http://schemas.android.com/apk/res/android";
+
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private ResourcePath resourcePath;
+  private ResourceTableCache cache;
+
+  @Before
+  public void setUp() throws Exception {
+    File res = temporaryFolder.newFolder("res");
+    write(res, "values/values.xml", "<resources>" +
+        "<string name=\"greeting\">Hello</string>" +
+        "<string-array name=\"planets\"><item>Mercury</item><item>Venus</item></string-array>" +
+        "<plurals name=\"beers\"><item quantity=\"one\">one beer</item><item quantity=\"other\">beers</item></plurals>" +
+        "<attr name=\"size\"><enum name=\"small\" value=\"1\"/><enum name=\"large\" value=\"2\"/></attr>" +
+        "<style name=\"Theme.Test\" parent=\"Theme\"><item name=\"size\">large</item></style>" +
+        "</resources>");
+    write(res, "values-fr/values.xml", "<resources><string name=\"greeting\">Bonjour</string></resources>");
+    write(res, "layout/main.xml", "<LinearLayout xmlns:android=\"" + ANDROID_NS + "\" android:orientation=\"vertical\">" +
+        "<TextView android:text=\"@string/greeting\"/><![CDATA[raw]]></LinearLayout>");
+    write(res, "raw/data.txt", "data");
+    write(res, "drawable/icon.9.png", "png");
+
+    resourcePath = new ResourcePath(null, "org.example", Fs.newFile(res), null);
+    cache = new ResourceTableCache(temporaryFolder.newFolder("cache"));
+  }
+
+  @Test
+  public void shouldNotLoadBeforeSaving() throws Exception {
+    assertThat(cache.load(resourcePath, new ResBunch(), new ResBundle(), new ResBundle())).isFalse();
+  }
+
+  @Test
+  public void shouldLoadWhatWasSaved() throws Exception {
+    PackageResourceLoader parsed = new PackageResourceLoader(resourcePath, null, cache);
+    parsed.initialize();
+    assertThat(cache.fileFor(resourcePath)).exists();
+
+    PackageResourceLoader cached = new PackageResourceLoader(resourcePath, null, cache);
+    ResBunch data = new ResBunch();
+    assertThat(cache.load(resourcePath, data, new ResBundle(), new ResBundle())).isTrue();
+    assertThat(data.size()).isEqualTo(parsed.data.size());
+
+    assertThat(value(cached, "string", "greeting", "").getData()).isEqualTo("Hello");
+    assertThat(value(cached, "string", "greeting", "fr").getData()).isEqualTo("Bonjour");
+    assertThat(((TypedResource[]) value(cached, "array", "planets", "").getData())[1].getData()).isEqualTo("Venus");
+    assertThat(((PluralResourceLoader.PluralRules) value(cached, "plurals", "beers", "")).find(1).getString()).isEqualTo("one beer");
+    assertThat(((AttrData) value(cached, "attr", "size", "").getData()).getValueFor("large")).isEqualTo("2");
+
+    StyleData style = (StyleData) value(cached, "style", "Theme_Test", "").getData();
+    assertThat(style.getParent()).isEqualTo("Theme");
+    assertThat(style.getAttrValue(new ResName("org.example", "attr", "size")).value).isEqualTo("large");
+
+    FileTypedResource.Image icon = (FileTypedResource.Image) value(cached, "drawable", "icon", "");
+    assertThat(icon.isNinePatch()).isTrue();
+    assertThat(icon.getFsFile()).isEqualTo(((FileTypedResource) value(parsed, "drawable", "icon", "")).getFsFile());
+    assertThat(value(cached, "layout", "main", "").getXmlContext().getQualifiers()).isNull();
+
+    XmlBlock layout = cached.getXml(new ResName("org.example", "layout", "main"), "");
+    assertThat(layout.getFilename()).isEqualTo(parsed.getXml(new ResName("org.example", "layout", "main"), "").getFilename());
+    Element root = layout.getDocument().getDocumentElement();
+    assertThat(root.getAttributeNS(ANDROID_NS, "orientation")).isEqualTo("vertical");
+    assertThat(((Element) root.getFirstChild()).getAttributeNS(ANDROID_NS, "text")).isEqualTo("@string/greeting");
+    assertThat(root.getTextContent()).isEqualTo("raw");
+
+    assertThat(cached.getRawValue(new ResName("org.example", "raw", "data"), "")).isNotNull();
+  }
+
+  @Test
+  public void shouldSaveASnapshotOnTheFirstLookup() throws Exception {
+    PackageResourceLoader loader = new PackageResourceLoader(resourcePath, null, cache);
+    assertThat(value(loader, "string", "greeting", "fr").getData()).isEqualTo("Bonjour");
+
+    assertThat(loader.isInitialized()).isTrue();
+    assertThat(cache.fileFor(resourcePath)).exists();
+  }
+
+  @Test
+  public void shouldUseANewSnapshotWhenResourcesChange() throws Exception {
+    File before = cache.fileFor(resourcePath);
+    write(((FileFsFile) resourcePath.getResourceBase()).getFile(), "values/more.xml", "<resources/>");
+
+    assertThat(cache.fileFor(resourcePath)).isNotEqualTo(before);
+  }
+
+  @Test
+  public void shouldIgnoreCorruptSnapshots() throws Exception {
+    new PackageResourceLoader(resourcePath, null, cache).initialize();
+    try (FileOutputStream outputStream = new FileOutputStream(cache.fileFor(resourcePath))) {
+      outputStream.write(new byte[] {1, 2, 3});
+    }
+
+    ResBunch data = new ResBunch();
+    assertThat(cache.load(resourcePath, data, new ResBundle(), new ResBundle())).isFalse();
+    assertThat(data.size()).isEqualTo(0);
+  }
+
+  private static TypedResource value(PackageResourceLoader loader, String type, String name, String qualifiers) {
+    return loader.getValue(new ResName("org.example", type, name), qualifiers);
+  }
+
+  private static void write(File dir, String path, String contents) throws IOException {
+    File file = new File(dir, path);
+    file.getParentFile().mkdirs();
+    try (FileOutputStream outputStream = new FileOutputStream(file)) {
+      outputStream.write(contents.getBytes(StandardCharsets.UTF_8));
+    }
+  }
+}
@@ -0,0 +1,88 @@
+package org.robolectric.res;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(JUnit4.class)
+public class StyleResolverTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private PackageResourceLoader appResourceLoader;
+  private ResourceLoader systemResourceLoader;
+
+  @Before
+  public void setUp() throws Exception {
+    File res = temporaryFolder.newFolder("res");
+    new File(res, "values").mkdirs();
+    try (FileOutputStream outputStream = new FileOutputStream(new File(res, "values/styles.xml"))) {
+      outputStream.write(("<resources>" +
+          "<attr name=\"parentStyle\" format=\"reference\"/>" +
+          "<style name=\"Base\"><item name=\"size\">small</item><item name=\"color\">red</item></style>" +
+          "<style name=\"Middle\" parent=\"Base\"><item name=\"size\">medium</item></style>" +
+          "<style name=\"Leaf\" parent=\"Middle\"><item name=\"parentStyle\">@style/Base</item></style>" +
+          "<style name=\"Themed\" parent=\"@attr/parentStyle\"/>" +
+          "</resources>").getBytes(StandardCharsets.UTF_8));
+    }
+
+    ResourcePath resourcePath = new ResourcePath(null, "org.example", Fs.newFile(res), null);
+    appResourceLoader = new PackageResourceLoader(resourcePath, null, null);
+    systemResourceLoader = new EmptyResourceLoader("android", null);
+  }
+
+  @Test
+  public void shouldFindInheritedValues() throws Exception {
+    StyleResolver leaf = resolver("Leaf", null);
+
+    assertThat(leaf.getAttrValue(attr("size")).value).isEqualTo("medium");
+    assertThat(leaf.getAttrValue(attr("color")).value).isEqualTo("red");
+    assertThat(leaf.getAttrValue(attr("missing"))).isNull();
+  }
+
+  @Test
+  public void shouldShareResolvedParentsBetweenResolvers() throws Exception {
+    StyleData leaf = style("Leaf");
+    StyleCache styleCache = appResourceLoader.getStyleCache("org.example");
+
+    resolver("Leaf", null).getAttrValue(attr("parentStyle"));
+    assertThat(styleCache.get(systemResourceLoader, leaf, "")).isNull();
+
+    resolver("Leaf", null).getAttrValue(attr("color"));
+    StyleCache.FlattenedStyle flattenedStyle = styleCache.get(systemResourceLoader, leaf, "");
+    assertThat(flattenedStyle).isNotNull();
+    assertThat(flattenedStyle.getAttrValue(attr("size")).value).isEqualTo("medium");
+
+    assertThat(styleCache.get(new EmptyResourceLoader("android", null), leaf, "")).isNull();
+  }
+
+  @Test
+  public void shouldNotShareParentsFoundThroughTheme() throws Exception {
+    ThemeStyleSet theme = new ThemeStyleSet();
+    theme.apply(style("Leaf"), false);
+
+    assertThat(resolver("Themed", theme).getAttrValue(attr("color")).value).isEqualTo("red");
+    assertThat(appResourceLoader.getStyleCache("org.example").get(systemResourceLoader, style("Themed"), "")).isNull();
+  }
+
+  private StyleResolver resolver(String styleName, Style theme) {
+    return new StyleResolver(appResourceLoader, systemResourceLoader, style(styleName), theme,
+        new ResName("org.example", "style", styleName), "");
+  }
+
+  private StyleData style(String name) {
+    return (StyleData) appResourceLoader.getValue(new ResName("org.example", "style", name), "").getData();
+  }
+
+  private static ResName attr(String name) {
+    return new ResName("org.example", "attr", name);
+  }
+}
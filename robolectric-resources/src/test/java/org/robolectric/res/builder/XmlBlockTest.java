@@ -0,0 +1,61 @@
+package org.robolectric.res.builder;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(JUnit4.class)
+public class XmlBlockTest {
+  private static final String ANDROID_NS = "http://schemas.android.com/apk/res/android";
+
+  @Test
+  public void shouldKeepElementsAttributesAndText() throws Exception {
+    XmlBlock block = XmlBlock.create(parse("<LinearLayout xmlns:android=\"" + ANDROID_NS + "\" android:orientation=\"vertical\">" +
+        "<!-- comment --><TextView android:text=\"@string/greeting\"/>raw<![CDATA[data]]></LinearLayout>"), "main.xml", "org.example");
+
+    assertThat(block.getType(0)).isEqualTo(XmlBlock.ELEMENT);
+    assertThat(block.getValue(0)).isEqualTo("LinearLayout");
+    assertThat(block.getParent(0)).isEqualTo(XmlBlock.NONE);
+    assertThat(block.getAttributeValue(0, block.indexOfAttribute(0, ANDROID_NS, "orientation"))).isEqualTo("vertical");
+    assertThat(block.indexOfAttribute(0, null, "orientation")).isEqualTo(XmlBlock.NONE);
+    assertThat(block.getTextContent(0)).isEqualTo("rawdata");
+
+    int textView = block.getFirstChild(0);
+    assertThat(block.getValue(textView)).isEqualTo("TextView");
+    assertThat(block.getParent(textView)).isEqualTo(0);
+    assertThat(block.getQualifiedAttributeValue(textView, 0)).isEqualTo("@org.example:string/greeting");
+
+    int text = block.getNextSibling(textView);
+    assertThat(block.getType(text)).isEqualTo(XmlBlock.TEXT);
+    int cdata = block.getNextSibling(text);
+    assertThat(block.getType(cdata)).isEqualTo(XmlBlock.CDATA);
+    assertThat(block.getNextSibling(cdata)).isEqualTo(XmlBlock.NONE);
+  }
+
+  @Test
+  public void shouldRoundTripThroughArraysAndDocuments() throws Exception {
+    XmlBlock original = XmlBlock.create(parse("<menu xmlns:android=\"" + ANDROID_NS + "\">" +
+        "<item android:id=\"@+id/first\"/><item android:id=\"@+id/second\"/></menu>"), "menu.xml", "org.example");
+    XmlBlock copy = XmlBlock.create(original.getStringPool(), original.getNodes(), original.getAttributes(),
+        original.getFilename(), original.getPackageName());
+
+    Element root = copy.getDocument().getDocumentElement();
+    assertThat(root.getNodeName()).isEqualTo("menu");
+    assertThat(root.getChildNodes().getLength()).isEqualTo(2);
+    assertThat(((Element) root.getLastChild()).getAttributeNS(ANDROID_NS, "id")).isEqualTo("@+id/second");
+  }
+
+  private static Document parse(String xml) throws Exception {
+    DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+    factory.setNamespaceAware(true);
+    return factory.newDocumentBuilder().parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+  }
+}
@@ -6,68 +6,264 @@ import android.content.Intent;
 import org.robolectric.Shadows;
 import org.robolectric.annotation.Implementation;
 import org.robolectric.annotation.Implements;
+import org.robolectric.annotation.Resetter;
+import org.robolectric.util.Scheduler;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.WeakHashMap;
 
 import static android.os.Build.VERSION_CODES.KITKAT;
 import static android.os.Build.VERSION_CODES.M;
 
 /**
  * Shadow for {@link android.app.AlarmManager}.
+ *
+ * <p>Alarms are only recorded, unless {@link #setDeliveryEnabled(boolean)} is turned on. Then each
+ * alarm's {@link PendingIntent} is sent when the foreground scheduler's clock reaches it, in time
+ * order. Repeating alarms are rescheduled without drifting. Alarms set with a window (including
+ * inexact repeating ones) go off at the end of their window, or earlier along with any other
+ * alarm that goes off while their window is open. While the device is asleep (see
+ * {@link #setDeviceAwake(boolean)}) only {@code _WAKEUP} alarms go off; the rest wait until it
+ * wakes up.</p>
  */
 @SuppressWarnings({"UnusedDeclaration"})
 @Implements(AlarmManager.class)
 public class ShadowAlarmManager {
+  private static final Comparator<ScheduledAlarm> BY_DUE_TIME = new Comparator<ScheduledAlarm>() {
+    @Override
+    public int compare(ScheduledAlarm a, ScheduledAlarm b) {
+      int byDueTime = Long.compare(a.dueTime, b.dueTime);
+      return byDueTime != 0 ? byDueTime : Long.compare(a.sequence, b.sequence);
+    }
+  };
+  private static final Comparator<ScheduledAlarm> BY_DEADLINE = new Comparator<ScheduledAlarm>() {
+    @Override
+    public int compare(ScheduledAlarm a, ScheduledAlarm b) {
+      int byDeadline = Long.compare(a.deadline, b.deadline);
+      return byDeadline != 0 ? byDeadline : Long.compare(a.sequence, b.sequence);
+    }
+  };
+
+  private static boolean deliveryEnabled;
+  private static boolean deviceAwake = true;
+  private static final Set<ShadowAlarmManager> instances = Collections.newSetFromMap(new WeakHashMap<ShadowAlarmManager, Boolean>());
 
   private List<ScheduledAlarm> scheduledAlarms = new ArrayList<ScheduledAlarm>();
+  private final TreeSet<ScheduledAlarm> alarmsByDueTime = new TreeSet<>(BY_DUE_TIME);
+  private final TreeSet<ScheduledAlarm> alarmsByDeadline = new TreeSet<>(BY_DEADLINE);
+  private long nextSequence;
+  private long deliveryTime = Long.MAX_VALUE;
+  private final Runnable deliverAlarms = new Runnable() {
+    @Override
+    public void run() {
+      deliveryTime = Long.MAX_VALUE;
+      deliverDueAlarms();
+    }
+
+    @Override
+    public String toString() {
+      return "AlarmManager alarms";
+    }
+  };
+
+  @Resetter
+  public static void reset() {
+    deliveryEnabled = false;
+    deviceAwake = true;
+    instances.clear();
+  }
+
+  /**
+   * Set whether alarms go off when the foreground scheduler's clock reaches them. Alarms that are
+   * already set go off too, straight away if they're overdue.
+   *
+   * @param enabled True to deliver alarms.
+   */
+  public static void setDeliveryEnabled(boolean enabled) {
+    deliveryEnabled = enabled;
+    for (ShadowAlarmManager alarmManager : new ArrayList<>(instances)) {
+      alarmManager.scheduleDelivery();
+    }
+  }
+
+  /**
+   * Set whether the device is awake. While it's asleep only {@code _WAKEUP} alarms are delivered;
+   * the rest are delivered as soon as it wakes up.
+   *
+   * @param awake True if the device is awake.
+   */
+  public static void setDeviceAwake(boolean awake) {
+    deviceAwake = awake;
+    for (ShadowAlarmManager alarmManager : new ArrayList<>(instances)) {
+      alarmManager.scheduleDelivery();
+    }
+  }
 
   @Implementation
   public void set(int type, long triggerAtTime, PendingIntent operation) {
-    internalSet(type, triggerAtTime, 0L, operation);
+    internalSet(type, triggerAtTime, 0L, 0L, operation);
   }
 
   @Implementation(minSdk = KITKAT)
   public void setExact(int type, long triggerAtTime, PendingIntent operation) {
-    internalSet(type, triggerAtTime, 0L, operation);
+    internalSet(type, triggerAtTime, 0L, 0L, operation);
   }
 
   @Implementation(minSdk = KITKAT)
   public void setWindow(
           int type, long windowStartMillis, long windowLengthMillis, PendingIntent operation) {
-    internalSet(type, windowStartMillis, 0L, operation);
+    internalSet(type, windowStartMillis, windowLengthMillis, 0L, operation);
   }
 
   @Implementation(minSdk = M)
   public void setAndAllowWhileIdle(int type, long triggerAtTime, PendingIntent operation) {
-    internalSet(type, triggerAtTime, 0L, operation);
+    internalSet(type, triggerAtTime, 0L, 0L, operation);
   }
 
   @Implementation(minSdk = M)
   public void setExactAndAllowWhileIdle(int type, long triggerAtTime, PendingIntent operation) {
-    internalSet(type, triggerAtTime, 0L, operation);
+    internalSet(type, triggerAtTime, 0L, 0L, operation);
   }
 
   @Implementation
   public void setRepeating(int type, long triggerAtTime, long interval, PendingIntent operation) {
-    internalSet(type, triggerAtTime, interval, operation);
+    internalSet(type, triggerAtTime, 0L, interval, operation);
   }
 
   @Implementation
   public void setInexactRepeating(int type, long triggerAtMillis, long intervalMillis, PendingIntent operation) {
-    internalSet(type, triggerAtMillis, intervalMillis, operation);
+    // the same window the framework gives inexact repeating alarms
+    internalSet(type, triggerAtMillis, intervalMillis * 3 / 4, intervalMillis, operation);
   }
 
-  private void internalSet(int type, long triggerAtTime, long interval, PendingIntent operation) {
+  private void internalSet(int type, long triggerAtTime, long windowLength, long interval, PendingIntent operation) {
     Intent intent = Shadows.shadowOf(operation).getSavedIntent();
     for (ScheduledAlarm scheduledAlarm : scheduledAlarms) {
       Intent scheduledIntent = Shadows.shadowOf(scheduledAlarm.operation).getSavedIntent();
       if (scheduledIntent.filterEquals(intent)) {
-        scheduledAlarms.remove(scheduledAlarm);
+        removeAlarm(scheduledAlarm);
         break;
       }
     }
-    scheduledAlarms.add(new ScheduledAlarm(type, triggerAtTime, interval, operation));
+    ScheduledAlarm scheduledAlarm = new ScheduledAlarm(type, triggerAtTime, interval, operation);
+    scheduledAlarm.sequence = nextSequence++;
+    scheduledAlarm.dueTime = toSchedulerTime(type, triggerAtTime);
+    scheduledAlarm.deadline = scheduledAlarm.dueTime + windowLength;
+    scheduledAlarms.add(scheduledAlarm);
+    alarmsByDueTime.add(scheduledAlarm);
+    alarmsByDeadline.add(scheduledAlarm);
+    instances.add(this);
+    scheduleDelivery();
+  }
+
+  private void removeAlarm(ScheduledAlarm scheduledAlarm) {
+    scheduledAlarms.remove(scheduledAlarm);
+    alarmsByDueTime.remove(scheduledAlarm);
+    alarmsByDeadline.remove(scheduledAlarm);
+  }
+
+  /**
+   * Sends every alarm whose window has opened, earliest first, and reschedules the repeating ones.
+   */
+  private void deliverDueAlarms() {
+    forgetAlarmsRemovedFromList();
+    long now = ShadowSystemClock.now();
+    List<ScheduledAlarm> dueAlarms = new ArrayList<>();
+    for (ScheduledAlarm scheduledAlarm : alarmsByDueTime) {
+      if (scheduledAlarm.dueTime > now) {
+        break;
+      }
+      if (isDeliverable(scheduledAlarm)) {
+        dueAlarms.add(scheduledAlarm);
+      }
+    }
+
+    for (ScheduledAlarm scheduledAlarm : dueAlarms) {
+      if (scheduledAlarm.interval > 0) {
+        alarmsByDueTime.remove(scheduledAlarm);
+        alarmsByDeadline.remove(scheduledAlarm);
+        // skipped repeats aren't made up for, but later ones stay on the original schedule
+        long shift = scheduledAlarm.interval * (1 + (now - scheduledAlarm.dueTime) / scheduledAlarm.interval);
+        scheduledAlarm.triggerAtTime += shift;
+        scheduledAlarm.dueTime += shift;
+        scheduledAlarm.deadline += shift;
+        alarmsByDueTime.add(scheduledAlarm);
+        alarmsByDeadline.add(scheduledAlarm);
+      } else {
+        removeAlarm(scheduledAlarm);
+      }
+    }
+
+    try {
+      for (ScheduledAlarm scheduledAlarm : dueAlarms) {
+        try {
+          scheduledAlarm.operation.send();
+        } catch (PendingIntent.CanceledException e) {
+          removeAlarm(scheduledAlarm);
+        }
+      }
+    } finally {
+      scheduleDelivery();
+    }
+  }
+
+  private void scheduleDelivery() {
+    if (ShadowApplication.getInstance() == null) {
+      return;
+    }
+    forgetAlarmsRemovedFromList();
+    long nextDeliveryTime = Long.MAX_VALUE;
+    if (deliveryEnabled) {
+      for (ScheduledAlarm scheduledAlarm : alarmsByDeadline) {
+        if (isDeliverable(scheduledAlarm)) {
+          nextDeliveryTime = scheduledAlarm.deadline;
+          break;
+        }
+      }
+    }
+    if (nextDeliveryTime == deliveryTime) {
+      return;
+    }
+
+    Scheduler scheduler = ShadowApplication.getInstance().getForegroundThreadScheduler();
+    scheduler.remove(deliverAlarms);
+    deliveryTime = nextDeliveryTime;
+    if (nextDeliveryTime != Long.MAX_VALUE) {
+      scheduler.postDelayed(deliverAlarms, Math.max(0, nextDeliveryTime - scheduler.getCurrentTime()));
+    }
+  }
+
+  private void forgetAlarmsRemovedFromList() {
+    // tests are free to edit the list returned by getScheduledAlarms()
+    if (alarmsByDueTime.size() != scheduledAlarms.size()) {
+      Set<ScheduledAlarm> listedAlarms = new HashSet<>(scheduledAlarms);
+      alarmsByDueTime.retainAll(listedAlarms);
+      alarmsByDeadline.retainAll(listedAlarms);
+    }
+  }
+
+  private static boolean isDeliverable(ScheduledAlarm scheduledAlarm) {
+    return deviceAwake
+        || scheduledAlarm.type == AlarmManager.RTC_WAKEUP
+        || scheduledAlarm.type == AlarmManager.ELAPSED_REALTIME_WAKEUP;
+  }
+
+  /**
+   * Converts a trigger time in an alarm type's clock to the foreground scheduler's clock.
+   */
+  private static long toSchedulerTime(int type, long triggerAtTime) {
+    long now = ShadowSystemClock.now();
+    if (type == AlarmManager.RTC || type == AlarmManager.RTC_WAKEUP) {
+      return now + triggerAtTime - ShadowSystemClock.currentTimeMillis();
+    } else {
+      return now + triggerAtTime - ShadowSystemClock.elapsedRealtime();
+    }
   }
 
   /**
@@ -81,7 +277,10 @@ public class ShadowAlarmManager {
     if (scheduledAlarms.isEmpty()) {
       return null;
     } else {
-      return scheduledAlarms.remove(0);
+      ScheduledAlarm scheduledAlarm = scheduledAlarms.get(0);
+      removeAlarm(scheduledAlarm);
+      scheduleDelivery();
+      return scheduledAlarm;
     }
   }
 
@@ -104,15 +303,27 @@ public class ShadowAlarmManager {
     return scheduledAlarms;
   }
 
+  /**
+   * Non-Android accessor returns the alarm that's due soonest without
+   * consuming it.
+   *
+   * @return the alarm due soonest, or null if there aren't any
+   */
+  public ScheduledAlarm peekEarliestScheduledAlarm() {
+    forgetAlarmsRemovedFromList();
+    return alarmsByDueTime.isEmpty() ? null : alarmsByDueTime.first();
+  }
+
   @Implementation
   public void cancel(PendingIntent pendingIntent) {
     final Intent intentTypeToRemove = Shadows.shadowOf(pendingIntent).getSavedIntent();
     for (ScheduledAlarm scheduledAlarm : new ArrayList<ScheduledAlarm>(scheduledAlarms)) {
       final Intent alarmIntent = Shadows.shadowOf(scheduledAlarm.operation).getSavedIntent();
       if (intentTypeToRemove.filterEquals(alarmIntent)) {
-        scheduledAlarms.remove(scheduledAlarm);
+        removeAlarm(scheduledAlarm);
       }
     }
+    scheduleDelivery();
   }
 
   /**
@@ -124,6 +335,9 @@ public class ShadowAlarmManager {
     public long triggerAtTime;
     public long interval;
     public PendingIntent operation;
+    long dueTime;
+    long deadline;
+    long sequence;
 
     public ScheduledAlarm(int type, long triggerAtTime, PendingIntent operation) {
       this(type, triggerAtTime, 0, operation);
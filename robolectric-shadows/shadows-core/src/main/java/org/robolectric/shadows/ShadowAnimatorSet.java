@@ -0,0 +1,47 @@
+package org.robolectric.shadows;
+
+import android.animation.AnimatorSet;
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.annotation.RealObject;
+
+import static org.robolectric.internal.Shadow.directlyOn;
+
+/**
+ * Shadow for {@link android.animation.AnimatorSet}.
+ *
+ * <p>Lets a set jump straight to its end state, with its animations started and ended in the order
+ * the set would play them, but without running any frames. See {@link ShadowValueAnimator}.</p>
+ */
+@Implements(AnimatorSet.class)
+public class ShadowAnimatorSet {
+
+  @RealObject
+  private AnimatorSet realObject;
+
+  @Implementation
+  public void start() {
+    ShadowValueAnimator.startingSetCount++;
+    try {
+      directlyOn(realObject, AnimatorSet.class).start();
+    } finally {
+      ShadowValueAnimator.startingSetCount--;
+    }
+    if (ShadowValueAnimator.isFastForwardEnabled() && ShadowValueAnimator.startingSetCount == 0) {
+      fastForwardToEnd();
+    }
+  }
+
+  /**
+   * Jump every animation in the set to its end state, starting any that haven't started yet, and
+   * end the set.
+   */
+  public void fastForwardToEnd() {
+    ShadowValueAnimator.endingSetCount++;
+    try {
+      realObject.end();
+    } finally {
+      ShadowValueAnimator.endingSetCount--;
+    }
+  }
+}
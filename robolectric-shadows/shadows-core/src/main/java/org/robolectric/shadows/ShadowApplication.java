@@ -36,6 +36,8 @@ import org.robolectric.internal.ShadowExtractor;
 import org.robolectric.manifest.AndroidManifest;
 import org.robolectric.manifest.BroadcastReceiverData;
 import org.robolectric.util.Scheduler;
+import org.robolectric.util.SchedulerTrace;
+import org.robolectric.util.VirtualClock;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -48,6 +50,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import static android.content.pm.PackageManager.PERMISSION_DENIED;
@@ -74,7 +77,7 @@ public class ShadowApplication extends ShadowContextWrapper {
   private List<Wrapper> registeredReceivers = new ArrayList<>();
   private Map<String, Intent> stickyIntents = new LinkedHashMap<>();
   private Handler mainHandler;
-  private Scheduler backgroundScheduler = RoboSettings.isUseGlobalScheduler() ? getForegroundThreadScheduler() : new Scheduler();
+  private Scheduler backgroundScheduler = RoboSettings.isUseGlobalScheduler() ? getForegroundThreadScheduler() : newBackgroundScheduler();
   private ArrayList<Toast> shownToasts = new ArrayList<>();
   private PowerManager.WakeLock latestWakeLock;
   private ShadowAlertDialog latestAlertDialog;
@@ -98,6 +101,44 @@ public class ShadowApplication extends ShadowContextWrapper {
   private PopupWindow latestPopupWindow;
   private ListPopupWindow latestListPopupWindow;
 
+  private static Scheduler newBackgroundScheduler() {
+    Scheduler scheduler = new Scheduler();
+    SchedulerTrace.setName(scheduler, "background");
+    VirtualClock clock = getMasterClock();
+    if (clock != null) {
+      followClock(clock, scheduler);
+    }
+    return scheduler;
+  }
+
+  /**
+   * @return The clock the UI thread's scheduler drives, or null if it doesn't have one.
+   */
+  static VirtualClock getMasterClock() {
+    Scheduler masterScheduler = RuntimeEnvironment.getMasterScheduler();
+    return masterScheduler == null ? null : masterScheduler.getClock();
+  }
+
+  /**
+   * Moves a scheduler to the clock's time, and keeps it up with the clock from then on, unless it's been paused.
+   *
+   * @return The listener added to the clock.
+   */
+  static VirtualClock.Listener followClock(VirtualClock clock, final Scheduler scheduler) {
+    scheduler.advanceTo(clock.getUptimeMillis());
+    VirtualClock.Listener listener = new VirtualClock.Listener() {
+      @Override
+      public void onTimeAdvanced(VirtualClock clock, long nanoTime) {
+        long uptimeMillis = TimeUnit.NANOSECONDS.toMillis(nanoTime);
+        if (!scheduler.isPaused() && uptimeMillis > scheduler.getCurrentTime()) {
+          scheduler.advanceTo(uptimeMillis);
+        }
+      }
+    };
+    clock.addListener(listener);
+    return listener;
+  }
+
   public static ShadowApplication getInstance() {
     return RuntimeEnvironment.application == null ? null : shadowOf(RuntimeEnvironment.application);
   }
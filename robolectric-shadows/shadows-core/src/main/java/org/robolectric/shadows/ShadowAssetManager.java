@@ -30,6 +30,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static android.os.Build.VERSION_CODES.KITKAT_WATCH;
 import static android.os.Build.VERSION_CODES.LOLLIPOP;
@@ -57,6 +58,8 @@ public final class ShadowAssetManager {
 
   class NativeTheme {
     private ThemeStyleSet themeStyleSet;
+    // Attribute values resolved against this theme, keyed by ResolvedValueKey; dropped whenever the theme changes.
+    private final Map<ResolvedValueKey, Object> resolvedValues = new ConcurrentHashMap<>();
 
     public NativeTheme(ThemeStyleSet themeStyleSet) {
       this.themeStyleSet = themeStyleSet;
@@ -65,6 +68,57 @@ public final class ShadowAssetManager {
     public ShadowAssetManager getShadowAssetManager() {
       return ShadowAssetManager.this;
     }
+
+    void setThemeStyleSet(ThemeStyleSet themeStyleSet) {
+      this.themeStyleSet = themeStyleSet;
+      resolvedValues.clear();
+    }
+
+    void apply(Style style, boolean force) {
+      themeStyleSet.apply(style, force);
+      resolvedValues.clear();
+    }
+  }
+
+  private static final Object NO_VALUE = new Object();
+
+  private static class ResolvedValueKey {
+    private final int resId;
+    private final int defStyleAttr;
+    private final int defStyleRes;
+    private final int styleAttribute;
+    private final String qualifiers;
+
+    ResolvedValueKey(int resId, int defStyleAttr, int defStyleRes, int styleAttribute, String qualifiers) {
+      this.resId = resId;
+      this.defStyleAttr = defStyleAttr;
+      this.defStyleRes = defStyleRes;
+      this.styleAttribute = styleAttribute;
+      this.qualifiers = qualifiers;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof ResolvedValueKey)) {
+        return false;
+      }
+      ResolvedValueKey other = (ResolvedValueKey) o;
+      return resId == other.resId
+          && defStyleAttr == other.defStyleAttr
+          && defStyleRes == other.defStyleRes
+          && styleAttribute == other.styleAttribute
+          && (qualifiers == null ? other.qualifiers == null : qualifiers.equals(other.qualifiers));
+    }
+
+    @Override
+    public int hashCode() {
+      int hashCode = resId;
+      hashCode = 31 * hashCode + defStyleAttr;
+      hashCode = 31 * hashCode + defStyleRes;
+      hashCode = 31 * hashCode + styleAttribute;
+      hashCode = 31 * hashCode + (qualifiers == null ? 0 : qualifiers.hashCode());
+      return hashCode;
+    }
   }
 
   @RealObject
@@ -474,8 +528,8 @@ public final class ShadowAssetManager {
   public static void applyThemeStyle(long themePtr, int styleRes, boolean force) {
     NativeTheme nativeTheme = getNativeTheme(themePtr);
     Style style = nativeTheme.getShadowAssetManager().resolveStyle(styleRes, null);
-    nativeTheme.themeStyleSet.apply(style, force);
-}
+    nativeTheme.apply(style, force);
+  }
 
   @HiddenApi @Implementation(maxSdk = KITKAT_WATCH)
   public static void copyTheme(int destPtr, int sourcePtr) {
@@ -486,7 +540,7 @@ public final class ShadowAssetManager {
   public static void copyTheme(long destPtr, long sourcePtr) {
     NativeTheme destNativeTheme = getNativeTheme(destPtr);
     NativeTheme sourceNativeTheme = getNativeTheme(sourcePtr);
-    destNativeTheme.themeStyleSet = sourceNativeTheme.themeStyleSet.copy();
+    destNativeTheme.setThemeStyleSet(sourceNativeTheme.themeStyleSet.copy());
   }
 
   /////////////////////////
@@ -680,14 +734,20 @@ public final class ShadowAssetManager {
     int[] indices = new int[attrs.length + 1];
     int nextIndex = 0;
 
-    Style themeStyleSet = nativeTheme == 0
+    NativeTheme theme = nativeTheme == 0 ? null : getNativeTheme(nativeTheme);
+    Style themeStyleSet = theme == null
         ? new EmptyStyle()
-        : getNativeTheme(nativeTheme).themeStyleSet;
+        : theme.themeStyleSet;
+    // Resolved values can be shared as long as nothing in the AttributeSet overrides them.
+    boolean useResolvedValues = theme != null && theme.getShadowAssetManager() == this
+        && (defStyleRes == 0 || !hasAttributeValue(set, defStyleRes));
 
     for (int i = 0; i < attrs.length; i++) {
       int offset = i * ShadowAssetManager.STYLE_NUM_ENTRIES;
 
-      TypedValue typedValue = buildTypedValue(set, attrs[i], defStyleAttr, themeStyleSet, defStyleRes);
+      TypedValue typedValue = useResolvedValues && !hasAttributeValue(set, attrs[i])
+          ? getResolvedValue(theme, set, attrs[i], defStyleAttr, defStyleRes)
+          : buildTypedValue(set, attrs[i], defStyleAttr, themeStyleSet, defStyleRes);
       if (typedValue != null) {
         //noinspection PointlessArithmeticExpression
         data[offset + ShadowAssetManager.STYLE_TYPE] = typedValue.type;
@@ -712,6 +772,29 @@ public final class ShadowAssetManager {
     return typedArray;
   }
 
+  private TypedValue getResolvedValue(NativeTheme theme, AttributeSet set, int resId, int defStyleAttr, int defStyleRes) {
+    int styleAttribute = set == null ? 0 : set.getStyleAttribute();
+    ResolvedValueKey key = new ResolvedValueKey(resId, defStyleAttr, defStyleRes, styleAttribute, RuntimeEnvironment.getQualifiers());
+    Object resolvedValue = theme.resolvedValues.get(key);
+    if (resolvedValue == null) {
+      TypedValue typedValue = buildTypedValue(set, resId, defStyleAttr, theme.themeStyleSet, defStyleRes);
+      resolvedValue = typedValue == null ? NO_VALUE : typedValue;
+      theme.resolvedValues.put(key, resolvedValue);
+    }
+    return resolvedValue == NO_VALUE ? null : (TypedValue) resolvedValue;
+  }
+
+  private static boolean hasAttributeValue(AttributeSet attributeSet, int resId) {
+    if (attributeSet != null) {
+      for (int i = 0; i < attributeSet.getAttributeCount(); i++) {
+        if (attributeSet.getAttributeNameResource(i) == resId && attributeSet.getAttributeValue(i) != null) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
   private AttributeResource findAttributeValue(int resId, AttributeSet attributeSet, Style styleAttrStyle, Style defStyleFromAttr, Style defStyleFromRes, @NotNull Style themeStyleSet) {
     if (attributeSet != null) {
       for (int i = 0; i < attributeSet.getAttributeCount(); i++) {
@@ -4,7 +4,9 @@ import android.os.AsyncTask;
 import org.robolectric.annotation.Implementation;
 import org.robolectric.annotation.Implements;
 import org.robolectric.annotation.RealObject;
+import org.robolectric.annotation.Resetter;
 import org.robolectric.util.SimpleFuture;
+import org.robolectric.util.concurrent.BackgroundThreadPool;
 
 import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
@@ -15,6 +17,12 @@ import java.util.concurrent.TimeoutException;
 
 /**
  * Shadow for {@link android.os.AsyncTask}.
+ *
+ * <p>By default {@link AsyncTask#doInBackground(Object[])} is run on the test thread by the background scheduler. If
+ * {@link org.robolectric.RoboSettings#getBackgroundThreadCount()} is greater than zero, tasks started with
+ * {@link AsyncTask#execute(Object[])}, or on {@link AsyncTask#SERIAL_EXECUTOR} or
+ * {@link AsyncTask#THREAD_POOL_EXECUTOR}, run on a {@link BackgroundThreadPool} of that many real threads instead.
+ * Either way, {@link AsyncTask#onPostExecute(Object)} and friends are delivered through the main looper.</p>
  */
 @Implements(AsyncTask.class)
 public class ShadowAsyncTask<Params, Progress, Result> {
@@ -23,7 +31,12 @@ public class ShadowAsyncTask<Params, Progress, Result> {
 
   private final SimpleFuture<Result> future;
   private final BackgroundWorker worker;
-  private AsyncTask.Status status = AsyncTask.Status.PENDING;
+  private volatile AsyncTask.Status status = AsyncTask.Status.PENDING;
+
+  @Resetter
+  public static void reset() {
+    BackgroundThreadPool.reset();
+  }
 
   public ShadowAsyncTask() {
     worker = new BackgroundWorker();
@@ -90,12 +103,18 @@ public class ShadowAsyncTask<Params, Progress, Result> {
 
     worker.params = params;
 
-    ShadowApplication.getInstance().getBackgroundThreadScheduler().post(new Runnable() {
+    Runnable runnable = new Runnable() {
       @Override
       public void run() {
         future.run();
       }
-    });
+    };
+    BackgroundThreadPool threadPool = BackgroundThreadPool.getInstance();
+    if (threadPool != null) {
+      threadPool.getSerialExecutor().execute(runnable);
+    } else {
+      ShadowApplication.getInstance().getBackgroundThreadScheduler().post(runnable);
+    }
 
     return realAsyncTask;
   }
@@ -106,7 +125,7 @@ public class ShadowAsyncTask<Params, Progress, Result> {
     getBridge().onPreExecute();
 
     worker.params = params;
-    executor.execute(new Runnable() {
+    executorFor(executor).execute(new Runnable() {
       @Override
       public void run() {
         future.run();
@@ -138,6 +157,23 @@ public class ShadowAsyncTask<Params, Progress, Result> {
     });
   }
 
+  private static Executor executorFor(Executor executor) {
+    final BackgroundThreadPool threadPool = BackgroundThreadPool.getInstance();
+    if (threadPool != null) {
+      if (executor == AsyncTask.SERIAL_EXECUTOR) {
+        return threadPool.getSerialExecutor();
+      } else if (executor == AsyncTask.THREAD_POOL_EXECUTOR) {
+        return new Executor() {
+          @Override
+          public void execute(Runnable runnable) {
+            threadPool.execute(runnable);
+          }
+        };
+      }
+    }
+    return executor;
+  }
+
   private ShadowAsyncTaskBridge<Params, Progress, Result> getBridge() {
     return new ShadowAsyncTaskBridge<>(realAsyncTask);
   }
@@ -8,24 +8,59 @@ import org.robolectric.annotation.Implementation;
 import org.robolectric.annotation.Implements;
 import org.robolectric.annotation.Resetter;
 import org.robolectric.internal.Shadow;
+import org.robolectric.util.Scheduler;
 import org.robolectric.util.SoftThreadLocal;
 import org.robolectric.util.TimeUtils;
+import org.robolectric.util.VirtualClock;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.robolectric.Shadows.shadowOf;
 
 /**
  * Shadow for {@link android.view.Choreographer}.
  *
- * <p>This class maintains its own concept of the current time aimed at making animations
- * work correctly. Time starts out at 0 and advances by "frameInterval" every time
- * {@link android.view.Choreographer#getFrameTimeNanos} is called.</p>
+ * <p>Frame times are read from the {@link VirtualClock} the looper's scheduler drives (or from the
+ * scheduler's own time, if it doesn't drive one), so they agree with {@link System#nanoTime()}. To
+ * make sure animations finish, each frame time is also at least "frameInterval" later than the last
+ * one, as is every time {@link android.view.Choreographer#getFrameTimeNanos} is called outside of
+ * a frame.</p>
+ *
+ * <p>Callbacks aren't posted to the looper one by one. Instead, all of the callbacks due when a
+ * frame runs are run together, in callback type order, and see the same frame time; callbacks they
+ * post are left for the next frame. Frames normally run as the looper's scheduler reaches them,
+ * but {@link #runFrames(int)} and {@link #runFramesUntil(long)} can run a batch of them directly.</p>
  */
 @Implements(Choreographer.class)
 public class ShadowChoreographer {
+  // the earliest time the next frame may have
   private long nanoTime = 0;
   private static long FRAME_INTERVAL = 10 * TimeUtils.NANOS_PER_MS; // 10ms
   private static final Thread MAIN_THREAD = Thread.currentThread();
   private static SoftThreadLocal<Choreographer> instance = makeThreadLocal();
   private Handler handler = new Handler(Looper.myLooper());
 
+  private final List<FrameCallbackRecord> pendingCallbacks = new ArrayList<>();
+  private long nextSequence;
+  private boolean inFrame;
+  private long frameTimeNanos;
+  private boolean pumping;
+  private long scheduledFrameTime = Long.MAX_VALUE;
+  private final Runnable frameRunnable = new Runnable() {
+    @Override public void run() {
+      scheduledFrameTime = Long.MAX_VALUE;
+      doFrame(null);
+    }
+
+    @Override public String toString() {
+      return "Choreographer frame: " + pendingCallbacks.size() + " callbacks";
+    }
+  };
+
   private static SoftThreadLocal<Choreographer> makeThreadLocal() {
     return new SoftThreadLocal<Choreographer>() {
       @Override
@@ -46,35 +81,182 @@ public class ShadowChoreographer {
 
   @Implementation
   public void postCallbackDelayed(int callbackType, Runnable action, Object token, long delayMillis) {
-    handler.postDelayed(action, delayMillis);
+    addCallback(new FrameCallbackRecord(callbackType, action, null, token, getScheduler().getCurrentTime() + delayMillis, nextSequence++));
   }
 
   @Implementation
   public void removeCallbacks(int callbackType, Runnable action, Object token) {
-    handler.removeCallbacks(action, token);
+    Iterator<FrameCallbackRecord> iterator = pendingCallbacks.iterator();
+    while (iterator.hasNext()) {
+      FrameCallbackRecord record = iterator.next();
+      if (record.callbackType == callbackType && (action == null || record.action == action)
+          && (token == null || record.token == token)) {
+        iterator.remove();
+      }
+    }
   }
 
   @Implementation
   public void postFrameCallbackDelayed(final Choreographer.FrameCallback callback, long delayMillis) {
-    handler.postAtTime(new Runnable() {
-      @Override public void run() {
-        callback.doFrame(getFrameTimeNanos());
-      }
-    }, callback, SystemClock.uptimeMillis() + delayMillis);
+    addCallback(new FrameCallbackRecord(Choreographer.CALLBACK_ANIMATION, null, callback, callback,
+        getScheduler().getCurrentTime() + delayMillis, nextSequence++));
   }
 
   @Implementation
   public void removeFrameCallback(Choreographer.FrameCallback callback) {
-    handler.removeCallbacksAndMessages(callback);
+    Iterator<FrameCallbackRecord> iterator = pendingCallbacks.iterator();
+    while (iterator.hasNext()) {
+      if (iterator.next().frameCallback == callback) {
+        iterator.remove();
+      }
+    }
   }
 
   @Implementation
   public long getFrameTimeNanos() {
-    final long now = nanoTime;
-    nanoTime += ShadowChoreographer.FRAME_INTERVAL;
+    if (inFrame) {
+      return frameTimeNanos;
+    }
+    final long now = Math.max(nanoTime, clockNanos());
+    nanoTime = now + ShadowChoreographer.FRAME_INTERVAL;
     return now;
   }
 
+  /**
+   * Run up to {@code maxFrames} frames, one after another, advancing the looper's clock to the
+   * time each is due if need be.
+   *
+   * @param maxFrames The maximum number of frames to run.
+   * @return The frames that were run.
+   */
+  public FrameStats runFrames(int maxFrames) {
+    return pump(maxFrames, Long.MAX_VALUE);
+  }
+
+  /**
+   * Run every frame due up to the given time, advancing the looper's clock to it.
+   *
+   * @param uptimeMillis The time to run to, as given by {@link SystemClock#uptimeMillis()}.
+   * @return The frames that were run.
+   */
+  public FrameStats runFramesUntil(long uptimeMillis) {
+    long endTime = getScheduler().getCurrentTime() + (uptimeMillis - SystemClock.uptimeMillis());
+    return pump(Integer.MAX_VALUE, endTime);
+  }
+
+  private FrameStats pump(int maxFrames, long endTime) {
+    Scheduler scheduler = getScheduler();
+    FrameStats stats = new FrameStats();
+    boolean wasPumping = pumping;
+    pumping = true;
+    handler.removeCallbacks(frameRunnable);
+    scheduledFrameTime = Long.MAX_VALUE;
+    // like vsync, frames run back to back are at least a frame interval apart on the looper's clock
+    long frameIntervalMillis = Math.max(1, FRAME_INTERVAL / TimeUtils.NANOS_PER_MS);
+    long lastFrameTime = Long.MIN_VALUE;
+    try {
+      while (stats.getFrameCount() < maxFrames) {
+        long now = scheduler.getCurrentTime();
+        long due = nextDueTime();
+        if (due <= now && now > lastFrameTime) {
+          doFrame(stats);
+          lastFrameTime = now;
+          continue;
+        }
+        long next = due;
+        if (due != Long.MAX_VALUE && lastFrameTime != Long.MIN_VALUE) {
+          next = Math.max(due, lastFrameTime + frameIntervalMillis);
+        }
+        if (endTime <= now || (next == Long.MAX_VALUE && endTime == Long.MAX_VALUE)) {
+          break;
+        }
+        // runs whatever else the looper has to do in the meantime, which may post more callbacks
+        scheduler.advanceTo(Math.min(next, endTime));
+      }
+    } finally {
+      pumping = wasPumping;
+      scheduleFrame();
+    }
+    return stats;
+  }
+
+  private void addCallback(FrameCallbackRecord record) {
+    pendingCallbacks.add(record);
+    scheduleFrame();
+  }
+
+  private void scheduleFrame() {
+    if (pumping || inFrame) {
+      return;
+    }
+    long due = nextDueTime();
+    if (due < scheduledFrameTime) {
+      handler.removeCallbacks(frameRunnable);
+      scheduledFrameTime = due;
+      handler.postDelayed(frameRunnable, Math.max(0, due - getScheduler().getCurrentTime()));
+    }
+  }
+
+  private long nextDueTime() {
+    long due = Long.MAX_VALUE;
+    for (FrameCallbackRecord record : pendingCallbacks) {
+      due = Math.min(due, record.dueTime);
+    }
+    return due;
+  }
+
+  /**
+   * Runs every callback that's due, with the same frame time.
+   */
+  private void doFrame(FrameStats stats) {
+    long now = getScheduler().getCurrentTime();
+    List<FrameCallbackRecord> due = new ArrayList<>();
+    Iterator<FrameCallbackRecord> iterator = pendingCallbacks.iterator();
+    while (iterator.hasNext()) {
+      FrameCallbackRecord record = iterator.next();
+      if (record.dueTime <= now) {
+        due.add(record);
+        iterator.remove();
+      }
+    }
+    if (due.isEmpty()) {
+      scheduleFrame();
+      return;
+    }
+    Collections.sort(due, FrameCallbackRecord.BY_TYPE);
+
+    boolean wasInFrame = inFrame;
+    long previousFrameTimeNanos = frameTimeNanos;
+    frameTimeNanos = getFrameTimeNanos();
+    inFrame = true;
+    try {
+      for (FrameCallbackRecord record : due) {
+        if (record.frameCallback != null) {
+          record.frameCallback.doFrame(frameTimeNanos);
+        } else {
+          record.action.run();
+        }
+      }
+    } finally {
+      inFrame = wasInFrame;
+      frameTimeNanos = previousFrameTimeNanos;
+      if (stats != null) {
+        stats.addFrame(due.size());
+      }
+      scheduleFrame();
+    }
+  }
+
+  private Scheduler getScheduler() {
+    return shadowOf(handler.getLooper()).getScheduler();
+  }
+
+  private long clockNanos() {
+    Scheduler scheduler = getScheduler();
+    VirtualClock clock = scheduler.getClock();
+    return clock == null ? scheduler.getCurrentTime() * TimeUtils.NANOS_PER_MS : clock.getNanoTime();
+  }
+
   /**
    * Return the current inter-frame interval.
    *
@@ -103,5 +285,66 @@ public class ShadowChoreographer {
     instance = makeThreadLocal();
     FRAME_INTERVAL = 10 * TimeUtils.NANOS_PER_MS; // 10ms
   }
-}
 
+  /**
+   * What was run by {@link #runFrames(int)} or {@link #runFramesUntil(long)}.
+   */
+  public static class FrameStats {
+    private final List<Integer> callbackCounts = new ArrayList<>();
+
+    private void addFrame(int callbackCount) {
+      callbackCounts.add(callbackCount);
+    }
+
+    /**
+     * @return The number of frames run.
+     */
+    public int getFrameCount() {
+      return callbackCounts.size();
+    }
+
+    /**
+     * @return The number of callbacks run, across all frames.
+     */
+    public int getCallbackCount() {
+      int callbackCount = 0;
+      for (int count : callbackCounts) {
+        callbackCount += count;
+      }
+      return callbackCount;
+    }
+
+    /**
+     * @return The number of callbacks run in each frame, in order.
+     */
+    public List<Integer> getCallbackCounts() {
+      return Collections.unmodifiableList(callbackCounts);
+    }
+  }
+
+  private static class FrameCallbackRecord {
+    static final Comparator<FrameCallbackRecord> BY_TYPE = new Comparator<FrameCallbackRecord>() {
+      @Override
+      public int compare(FrameCallbackRecord a, FrameCallbackRecord b) {
+        int byType = a.callbackType < b.callbackType ? -1 : (a.callbackType == b.callbackType ? 0 : 1);
+        return byType != 0 ? byType : Long.compare(a.sequence, b.sequence);
+      }
+    };
+
+    final int callbackType;
+    final Runnable action;
+    final Choreographer.FrameCallback frameCallback;
+    final Object token;
+    final long dueTime;
+    final long sequence;
+
+    FrameCallbackRecord(int callbackType, Runnable action, Choreographer.FrameCallback frameCallback, Object token, long dueTime, long sequence) {
+      this.callbackType = callbackType;
+      this.action = action;
+      this.frameCallback = frameCallback;
+      this.token = token;
+      this.dueTime = dueTime;
+      this.sequence = sequence;
+    }
+  }
+}
@@ -1,26 +1,127 @@
 package org.robolectric.shadows;
 
+import android.app.ActivityThread;
+import android.app.Application;
 import android.app.JobSchedulerImpl;
+import android.app.Service;
 import android.app.job.JobInfo;
+import android.app.job.JobParameters;
 import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.Context;
+import android.net.Uri;
+import android.os.IBinder;
+import android.os.PersistableBundle;
 
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.Shadows;
 import org.robolectric.annotation.Implementation;
 import org.robolectric.annotation.Implements;
+import org.robolectric.annotation.Resetter;
+import org.robolectric.util.ReflectionHelpers;
+import org.robolectric.util.Scheduler;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
 
 import static android.os.Build.VERSION_CODES.LOLLIPOP;
+import static android.os.Build.VERSION_CODES.N;
+import static org.robolectric.util.ReflectionHelpers.ClassParameter.from;
 
 /**
  * Shadow for {@link android.app.job.JobScheduler}.
+ *
+ * <p>Jobs are only recorded, unless {@link #setDispatchEnabled(boolean)} is turned on. Then each job is
+ * started on its {@link JobService} once the foreground scheduler's clock passes its minimum latency and
+ * its constraints are met, or its deadline passes. The device state that constraints depend on is
+ * stood in for by {@link #setNetworkType(int)}, {@link #setCharging(boolean)} and
+ * {@link #setDeviceIdle(boolean)}. Periodic jobs run once per period, and jobs that ask to be
+ * rescheduled are retried after their backoff delay.</p>
  */
 @Implements(value = JobScheduler.class, minSdk = LOLLIPOP)
 public abstract class ShadowJobScheduler {
+  private static boolean dispatchEnabled;
+  private static int networkType = JobInfo.NETWORK_TYPE_UNMETERED;
+  private static boolean charging;
+  private static boolean deviceIdle;
+  private static final Set<ShadowJobSchedulerImpl> instances = Collections.newSetFromMap(new WeakHashMap<ShadowJobSchedulerImpl, Boolean>());
+
+  @Resetter
+  public static void reset() {
+    dispatchEnabled = false;
+    networkType = JobInfo.NETWORK_TYPE_UNMETERED;
+    charging = false;
+    deviceIdle = false;
+    instances.clear();
+  }
+
+  /**
+   * Set whether jobs are run when they're due. Jobs that are already scheduled are run too, straight away if
+   * they're overdue.
+   *
+   * @param enabled True to run jobs.
+   */
+  public static void setDispatchEnabled(boolean enabled) {
+    dispatchEnabled = enabled;
+    for (ShadowJobSchedulerImpl jobScheduler : new ArrayList<>(instances)) {
+      jobScheduler.scheduleDispatch();
+    }
+  }
+
+  /**
+   * Set the kind of network the device is connected to, as far as job constraints are concerned. This is
+   * {@link JobInfo#NETWORK_TYPE_UNMETERED} by default.
+   *
+   * @param type One of the {@code JobInfo.NETWORK_TYPE_*} constants; {@link JobInfo#NETWORK_TYPE_NONE} if
+   *             there's no network.
+   */
+  public static void setNetworkType(int type) {
+    networkType = type;
+    constraintsChanged();
+  }
+
+  /**
+   * Set whether the device is charging, as far as job constraints are concerned.
+   *
+   * @param isCharging True if the device is charging.
+   */
+  public static void setCharging(boolean isCharging) {
+    charging = isCharging;
+    constraintsChanged();
+  }
+
+  /**
+   * Set whether the device is idle, as far as job constraints are concerned.
+   *
+   * @param isDeviceIdle True if the device is idle.
+   */
+  public static void setDeviceIdle(boolean isDeviceIdle) {
+    deviceIdle = isDeviceIdle;
+    constraintsChanged();
+  }
+
+  private static void constraintsChanged() {
+    for (ShadowJobSchedulerImpl jobScheduler : new ArrayList<>(instances)) {
+      jobScheduler.scheduleDispatch();
+    }
+  }
+
+  private static boolean constraintsMet(JobInfo job) {
+    if (job.getNetworkType() == JobInfo.NETWORK_TYPE_UNMETERED && networkType != JobInfo.NETWORK_TYPE_UNMETERED) {
+      return false;
+    }
+    if (job.getNetworkType() != JobInfo.NETWORK_TYPE_NONE && networkType == JobInfo.NETWORK_TYPE_NONE) {
+      return false;
+    }
+    return (!job.isRequireCharging() || charging) && (!job.isRequireDeviceIdle() || deviceIdle);
+  }
 
   @Implementation
   public abstract int schedule(JobInfo job);
@@ -39,8 +140,21 @@ public abstract class ShadowJobScheduler {
   @Implements(value = JobSchedulerImpl.class, isInAndroidSdk = false)
   public static class ShadowJobSchedulerImpl extends ShadowJobScheduler {
 
-    private Map<Integer, JobInfo> scheduledJobs = new HashMap<>();
+    private Map<Integer, ScheduledJob> scheduledJobs = new HashMap<>();
     private Set<Integer> jobsToFail = new HashSet<>();
+    private long dispatchTime = Long.MAX_VALUE;
+    private final Runnable dispatchJobs = new Runnable() {
+      @Override
+      public void run() {
+        dispatchTime = Long.MAX_VALUE;
+        dispatchDueJobs();
+      }
+
+      @Override
+      public String toString() {
+        return "JobScheduler jobs";
+      }
+    };
 
     @Implementation
     public int schedule(JobInfo job) {
@@ -48,28 +162,234 @@ public abstract class ShadowJobScheduler {
         return JobScheduler.RESULT_FAILURE;
       }
 
-      scheduledJobs.put(job.getId(), job);
+      ScheduledJob previous = scheduledJobs.put(job.getId(), new ScheduledJob(job, ShadowSystemClock.now()));
+      if (previous != null) {
+        previous.stop();
+      }
+      instances.add(this);
+      scheduleDispatch();
       return JobScheduler.RESULT_SUCCESS;
     }
 
     @Implementation
     public void cancel(int jobId) {
-      scheduledJobs.remove(jobId);
+      ScheduledJob scheduledJob = scheduledJobs.remove(jobId);
+      if (scheduledJob != null) {
+        scheduledJob.stop();
+      }
+      scheduleDispatch();
     }
 
     @Implementation
     public void cancelAll() {
+      List<ScheduledJob> cancelledJobs = new ArrayList<>(scheduledJobs.values());
       scheduledJobs.clear();
+      for (ScheduledJob scheduledJob : cancelledJobs) {
+        scheduledJob.stop();
+      }
+      scheduleDispatch();
     }
 
     @Implementation
     public List<JobInfo> getAllPendingJobs() {
-      return new ArrayList<>(scheduledJobs.values());
+      List<JobInfo> pendingJobs = new ArrayList<>();
+      for (ScheduledJob scheduledJob : scheduledJobs.values()) {
+        pendingJobs.add(scheduledJob.job);
+      }
+      return pendingJobs;
     }
 
     @Override
     public void failOnJob(int jobId) {
       jobsToFail.add(jobId);
     }
+
+    /**
+     * Called by {@link ShadowJobService#jobFinished(JobParameters, boolean)}.
+     */
+    void jobFinished(JobParameters params, boolean needsReschedule) {
+      ScheduledJob scheduledJob = scheduledJobs.get(params.getJobId());
+      if (scheduledJob == null || scheduledJob.params != params) {
+        return;
+      }
+      scheduledJob.finish(needsReschedule);
+      if (scheduledJob.isDone()) {
+        scheduledJobs.remove(params.getJobId());
+      }
+      scheduleDispatch();
+    }
+
+    private void dispatchDueJobs() {
+      long now = ShadowSystemClock.now();
+      List<ScheduledJob> dueJobs = new ArrayList<>();
+      for (ScheduledJob scheduledJob : scheduledJobs.values()) {
+        if (scheduledJob.params == null && scheduledJob.nextRunTime() <= now) {
+          dueJobs.add(scheduledJob);
+        }
+      }
+      Collections.sort(dueJobs, new Comparator<ScheduledJob>() {
+        @Override
+        public int compare(ScheduledJob a, ScheduledJob b) {
+          int byTime = Long.compare(a.earliestRunTime, b.earliestRunTime);
+          return byTime != 0 ? byTime : Integer.compare(a.job.getId(), b.job.getId());
+        }
+      });
+
+      try {
+        for (ScheduledJob scheduledJob : dueJobs) {
+          // an earlier job may have cancelled or replaced this one
+          if (scheduledJobs.get(scheduledJob.job.getId()) != scheduledJob) {
+            continue;
+          }
+          scheduledJob.start(now >= scheduledJob.deadline);
+        }
+      } finally {
+        scheduleDispatch();
+      }
+    }
+
+    private void scheduleDispatch() {
+      if (ShadowApplication.getInstance() == null) {
+        return;
+      }
+      long nextDispatchTime = Long.MAX_VALUE;
+      for (ScheduledJob scheduledJob : scheduledJobs.values()) {
+        if (dispatchEnabled && scheduledJob.params == null) {
+          nextDispatchTime = Math.min(nextDispatchTime, scheduledJob.nextRunTime());
+        }
+      }
+      if (nextDispatchTime == dispatchTime) {
+        return;
+      }
+
+      Scheduler scheduler = ShadowApplication.getInstance().getForegroundThreadScheduler();
+      scheduler.remove(dispatchJobs);
+      dispatchTime = nextDispatchTime;
+      if (nextDispatchTime != Long.MAX_VALUE) {
+        scheduler.postDelayed(dispatchJobs, Math.max(0, nextDispatchTime - scheduler.getCurrentTime()));
+      }
+    }
+
+    private class ScheduledJob {
+      private final JobInfo job;
+      private long earliestRunTime;
+      private long deadline;
+      private int failureCount;
+      private boolean done;
+      private JobService service;
+      private JobParameters params;
+
+      ScheduledJob(JobInfo job, long now) {
+        this.job = job;
+        if (job.isPeriodic()) {
+          setWindow(now, now + job.getIntervalMillis());
+        } else {
+          setWindow(now + job.getMinLatencyMillis(), job.hasLateConstraint() ? now + job.getMaxExecutionDelayMillis() : Long.MAX_VALUE);
+        }
+      }
+
+      private void setWindow(long earliestRunTime, long deadline) {
+        this.earliestRunTime = earliestRunTime;
+        this.deadline = deadline;
+      }
+
+      /**
+       * @return when the job can next run, given the current constraints.
+       */
+      long nextRunTime() {
+        return constraintsMet(job) ? earliestRunTime : Math.max(earliestRunTime, deadline);
+      }
+
+      boolean isDone() {
+        return done;
+      }
+
+      void start(boolean overrideDeadlineExpired) {
+        service = createService();
+        params = createParams(overrideDeadlineExpired);
+        Shadows.shadowOf(service).setJobScheduler(ShadowJobSchedulerImpl.this);
+        JobParameters startedWith = params;
+        // the service may finish the job before onStartJob() even returns
+        if (!service.onStartJob(startedWith) && params == startedWith) {
+          jobFinished(startedWith, false);
+        }
+      }
+
+      void finish(boolean needsReschedule) {
+        destroyService();
+        long now = ShadowSystemClock.now();
+        if (needsReschedule) {
+          failureCount++;
+          long backoff = job.getBackoffPolicy() == JobInfo.BACKOFF_POLICY_LINEAR
+              ? job.getInitialBackoffMillis() * failureCount
+              : job.getInitialBackoffMillis() << Math.min(failureCount - 1, 30);
+          long earliest = now + Math.min(backoff, JobInfo.MAX_BACKOFF_DELAY_MILLIS);
+          setWindow(earliest, job.isPeriodic() ? earliest + job.getIntervalMillis() : deadline);
+        } else if (job.isPeriodic()) {
+          failureCount = 0;
+          long periodEnd = Math.max(deadline, now);
+          setWindow(periodEnd, periodEnd + job.getIntervalMillis());
+        } else {
+          done = true;
+        }
+      }
+
+      /**
+       * Stops the job if it's running, because it was cancelled or replaced.
+       */
+      void stop() {
+        if (params != null) {
+          service.onStopJob(params);
+          destroyService();
+        }
+        done = true;
+      }
+
+      private void destroyService() {
+        if (service != null) {
+          service.onDestroy();
+        }
+        service = null;
+        params = null;
+      }
+
+      private JobService createService() {
+        String className = job.getService().getClassName();
+        JobService service;
+        try {
+          Class<?> serviceClass = Class.forName(className, true, ShadowJobScheduler.class.getClassLoader());
+          service = (JobService) ReflectionHelpers.callConstructor(serviceClass);
+        } catch (ClassNotFoundException e) {
+          throw new IllegalStateException("Couldn't find the JobService for job " + job.getId() + ": " + className, e);
+        }
+        ReflectionHelpers.callInstanceMethod(Service.class, service, "attach",
+            from(Context.class, RuntimeEnvironment.application.getBaseContext()),
+            from(ActivityThread.class, null),
+            from(String.class, service.getClass().getSimpleName()),
+            from(IBinder.class, null),
+            from(Application.class, RuntimeEnvironment.application),
+            from(Object.class, null));
+        service.onCreate();
+        return service;
+      }
+
+      private JobParameters createParams(boolean overrideDeadlineExpired) {
+        if (RuntimeEnvironment.getApiLevel() >= N) {
+          return ReflectionHelpers.callConstructor(JobParameters.class,
+              from(IBinder.class, null),
+              from(int.class, job.getId()),
+              from(PersistableBundle.class, job.getExtras()),
+              from(boolean.class, overrideDeadlineExpired),
+              from(Uri[].class, null),
+              from(String[].class, null));
+        } else {
+          return ReflectionHelpers.callConstructor(JobParameters.class,
+              from(IBinder.class, null),
+              from(int.class, job.getId()),
+              from(PersistableBundle.class, job.getExtras()),
+              from(boolean.class, overrideDeadlineExpired));
+        }
+      }
+    }
   }
-}
\ No newline at end of file
+}
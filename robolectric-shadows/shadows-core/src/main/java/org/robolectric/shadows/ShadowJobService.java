@@ -0,0 +1,46 @@
+package org.robolectric.shadows;
+
+import android.app.job.JobParameters;
+import android.app.job.JobService;
+
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+
+import static android.os.Build.VERSION_CODES.LOLLIPOP;
+
+/**
+ * Shadow for {@link android.app.job.JobService}.
+ */
+@Implements(value = JobService.class, minSdk = LOLLIPOP)
+public class ShadowJobService extends ShadowService {
+  private boolean isJobFinished;
+  private boolean isRescheduleNeeded;
+  private ShadowJobScheduler.ShadowJobSchedulerImpl jobScheduler;
+
+  @Implementation
+  public void jobFinished(JobParameters params, boolean needsReschedule) {
+    isJobFinished = true;
+    isRescheduleNeeded = needsReschedule;
+    if (jobScheduler != null) {
+      jobScheduler.jobFinished(params, needsReschedule);
+    }
+  }
+
+  /**
+   * @return true if {@link JobService#jobFinished(JobParameters, boolean)} has been called.
+   */
+  public boolean getIsJobFinished() {
+    return isJobFinished;
+  }
+
+  /**
+   * @return the value last passed to {@link JobService#jobFinished(JobParameters, boolean)} as {@code needsReschedule}.
+   */
+  public boolean getIsRescheduleNeeded() {
+    return isRescheduleNeeded;
+  }
+
+  void setJobScheduler(ShadowJobScheduler.ShadowJobSchedulerImpl jobScheduler) {
+    this.jobScheduler = jobScheduler;
+  }
+}
@@ -15,6 +15,8 @@ import org.robolectric.annotation.Implements;
 import org.robolectric.annotation.RealObject;
 import org.robolectric.annotation.Resetter;
 import org.robolectric.util.Scheduler;
+import org.robolectric.util.SchedulerTrace;
+import org.robolectric.util.VirtualClock;
 
 import static org.robolectric.RuntimeEnvironment.isMainThread;
 import static org.robolectric.Shadows.shadowOf;
@@ -42,6 +44,8 @@ public class ShadowLooper {
   private @RealObject Looper realObject;
 
   boolean quit;
+  private VirtualClock followedClock;
+  private VirtualClock.Listener clockListener;
 
   @Resetter
   public static synchronized void resetThreadLoopers() {
@@ -323,10 +327,28 @@ public class ShadowLooper {
 
   public void resetScheduler() {
     ShadowMessageQueue sQueue = shadowOf(realObject.getQueue());
+    if (followedClock != null) {
+      followedClock.removeListener(clockListener);
+      followedClock = null;
+      clockListener = null;
+    }
     if (this == getShadowMainLooper() || RoboSettings.isUseGlobalScheduler()) {
       sQueue.setScheduler(RuntimeEnvironment.getMasterScheduler());
     } else {
-      sQueue.setScheduler(new Scheduler());
+      Scheduler scheduler = new Scheduler();
+      SchedulerTrace.setName(scheduler, "looper on " + realObject.getThread().getName());
+      // keeps up with the time SystemClock gives, which messages' times are based on
+      VirtualClock clock = ShadowApplication.getMasterClock();
+      if (clock != null) {
+        clockListener = ShadowApplication.followClock(clock, scheduler);
+        followedClock = clock;
+      } else {
+        long uptimeMillis = ShadowSystemClock.uptimeMillis();
+        if (uptimeMillis > scheduler.getCurrentTime()) {
+          scheduler.advanceTo(uptimeMillis);
+        }
+      }
+      sQueue.setScheduler(scheduler);
     }
   }
 
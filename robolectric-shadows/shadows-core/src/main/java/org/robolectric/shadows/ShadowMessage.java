@@ -9,6 +9,8 @@ import org.robolectric.annotation.Implements;
 import org.robolectric.annotation.RealObject;
 import org.robolectric.annotation.Resetter;
 
+import java.lang.invoke.MethodHandle;
+
 import static android.os.Build.VERSION_CODES.*;
 import static org.robolectric.RuntimeEnvironment.getApiLevel;
 import static org.robolectric.Shadows.shadowOf;
@@ -23,8 +25,12 @@ public class ShadowMessage {
   @RealObject
   private Message realMessage;
   private Runnable scheduledRunnable;
+  // Kept for the next time the message is enqueued, since messages are pooled.
+  ShadowMessageQueue.MessageRunnable messageRunnable;
 
   private static final Object lock = getStaticField(Message.class, "sPoolSync");
+  private static final MethodHandle GET_NEXT = getFieldGetter(Message.class, "next");
+  private static final MethodHandle SET_NEXT = getFieldSetter(Message.class, "next");
 
   private void unschedule() {
     Handler target = realMessage.getTarget();
@@ -107,7 +113,11 @@ public class ShadowMessage {
    * @see #setNext(Message) 
    */
   public Message getNext() {
-    return getField(realMessage, "next");    
+    try {
+      return (Message) GET_NEXT.invokeExact(realMessage);
+    } catch (Throwable t) {
+      throw new RuntimeException(t);
+    }
   }
   
   /**
@@ -118,7 +128,11 @@ public class ShadowMessage {
    * @see #getNext() 
    */
   public void setNext(Message next) {
-    setField(realMessage, "next", next);
+    try {
+      SET_NEXT.invokeExact(realMessage, next);
+    } catch (Throwable t) {
+      throw new RuntimeException(t);
+    }
   }
   
   /**
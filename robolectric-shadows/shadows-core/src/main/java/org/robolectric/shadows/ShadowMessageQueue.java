@@ -10,13 +10,13 @@ import org.robolectric.annotation.Implements;
 import org.robolectric.annotation.RealObject;
 import org.robolectric.util.Scheduler;
 
+import java.lang.invoke.MethodHandle;
+
 import static android.os.Build.VERSION_CODES.KITKAT_WATCH;
 import static android.os.Build.VERSION_CODES.LOLLIPOP;
-import static org.robolectric.RuntimeEnvironment.getApiLevel;
 import static org.robolectric.Shadows.shadowOf;
 import static org.robolectric.internal.Shadow.*;
 import static org.robolectric.util.ReflectionHelpers.*;
-import static org.robolectric.util.ReflectionHelpers.ClassParameter.from;
 
 /**
  * Shadow for {@link android.os.MessageQueue}.
@@ -29,6 +29,12 @@ import static org.robolectric.util.ReflectionHelpers.ClassParameter.from;
  */
 @Implements(MessageQueue.class)
 public class ShadowMessageQueue {
+  // Looked up once, since every message goes through them.
+  private static final MethodHandle ENQUEUE_MESSAGE = getMethodHandle(MessageQueue.class, directMethodName("enqueueMessage"), Message.class, long.class);
+  private static final MethodHandle GET_MESSAGES = getFieldGetter(MessageQueue.class, "mMessages");
+  private static final MethodHandle SET_MESSAGES = getFieldSetter(MessageQueue.class, "mMessages");
+  private static final MethodHandle MARK_IN_USE = getMethodHandle(Message.class, "markInUse");
+  private static final MethodHandle RECYCLE = findRecycle();
 
   @RealObject
   private MessageQueue realQueue;
@@ -96,11 +102,19 @@ public class ShadowMessageQueue {
   }
 
   public Message getHead() {
-    return getField(realQueue, "mMessages");
+    try {
+      return (Message) GET_MESSAGES.invokeExact(realQueue);
+    } catch (Throwable t) {
+      throw new RuntimeException(t);
+    }
   }
 
   public void setHead(Message msg) {
-    setField(realQueue, "mMessages", msg);
+    try {
+      SET_MESSAGES.invokeExact(realQueue, msg);
+    } catch (Throwable t) {
+      throw new RuntimeException(t);
+    }
   }
 
   public void reset() {
@@ -109,38 +123,21 @@ public class ShadowMessageQueue {
 
   @Implementation
   public boolean enqueueMessage(final Message msg, long when) {
-    final boolean retval = directlyOn(realQueue, MessageQueue.class, "enqueueMessage", from(Message.class, msg), from(long.class, when));
+    final boolean retval;
+    try {
+      retval = (boolean) ENQUEUE_MESSAGE.invokeExact(realQueue, msg, when);
+    } catch (Throwable t) {
+      throw propagate(t);
+    }
     if (retval) {
-      final Runnable callback = new Runnable() {
-        @Override
-        public void run() {
-          synchronized (realQueue) {
-            Message m = getHead();
-            if (m == null) {
-              return;
-            }
-
-            Message n = shadowOf(m).getNext();
-            if (m == msg) {
-              setHead(n);
-              dispatchMessage(msg);
-              return;
-            }
-
-            while (n != null) {
-              if (n == msg) {
-                n = shadowOf(n).getNext();
-                shadowOf(m).setNext(n);
-                dispatchMessage(msg);
-                return;
-              }
-              m = n;
-              n = shadowOf(m).getNext();
-            }
-          }
-        }
-      };
-      shadowOf(msg).setScheduledRunnable(callback);
+      ShadowMessage shadowMessage = shadowOf(msg);
+      MessageRunnable callback = shadowMessage.messageRunnable;
+      if (callback == null) {
+        callback = new MessageRunnable(msg);
+        shadowMessage.messageRunnable = callback;
+      }
+      callback.queue = this;
+      shadowMessage.setScheduledRunnable(callback);
       if (when == 0) {
         scheduler.postAtFrontOfQueue(callback);
       } else {
@@ -154,6 +151,37 @@ public class ShadowMessageQueue {
   public void removeSyncBarrier(int token) {
   }
 
+  /**
+   * Removes a message from the queue.
+   *
+   * @return false if it had already been removed.
+   */
+  private boolean unlink(Message msg) {
+    synchronized (realQueue) {
+      Message m = getHead();
+      if (m == null) {
+        return false;
+      }
+
+      Message n = shadowOf(m).getNext();
+      if (m == msg) {
+        setHead(n);
+        return true;
+      }
+
+      while (n != null) {
+        if (n == msg) {
+          n = shadowOf(n).getNext();
+          shadowOf(m).setNext(n);
+          return true;
+        }
+        m = n;
+        n = shadowOf(m).getNext();
+      }
+      return false;
+    }
+  }
+
   private static void dispatchMessage(Message msg) {
     final Handler target = msg.getTarget();
 
@@ -161,14 +189,64 @@ public class ShadowMessageQueue {
     // If target is null it means the message has been removed
     // from the queue prior to being dispatched by the scheduler.
     if (target != null) {
-      callInstanceMethod(msg, "markInUse");
-      target.dispatchMessage(msg);
+      try {
+        MARK_IN_USE.invokeExact(msg);
+        target.dispatchMessage(msg);
+        RECYCLE.invokeExact(msg);
+      } catch (Throwable t) {
+        throw propagate(t);
+      }
+    }
+  }
 
-      if (getApiLevel() >= LOLLIPOP) {
-        callInstanceMethod(msg, "recycleUnchecked");
-      } else {
-        callInstanceMethod(msg, "recycle");
+  private static MethodHandle findRecycle() {
+    try {
+      Message.class.getDeclaredMethod("recycleUnchecked");
+      return getMethodHandle(Message.class, "recycleUnchecked");
+    } catch (NoSuchMethodException e) {
+      // before Lollipop
+      return getMethodHandle(Message.class, "recycle");
+    }
+  }
+
+  private static RuntimeException propagate(Throwable t) {
+    if (t instanceof RuntimeException) {
+      return (RuntimeException) t;
+    }
+    if (t instanceof Error) {
+      throw (Error) t;
+    }
+    return new RuntimeException(t);
+  }
+
+  /**
+   * Dispatches a message when the scheduler gets to it. Messages are pooled, and each one keeps the runnable it was
+   * first given, so enqueuing a message doesn't usually allocate anything here.
+   */
+  static class MessageRunnable implements Runnable {
+    private final Message msg;
+    private ShadowMessageQueue queue;
+
+    private MessageRunnable(Message msg) {
+      this.msg = msg;
+    }
+
+    @Override
+    public void run() {
+      // Don't hold the queue's lock while the message is handled, or other threads couldn't post meanwhile.
+      if (queue.unlink(msg)) {
+        dispatchMessage(msg);
+      }
+    }
+
+    @Override
+    public String toString() {
+      Runnable callback = msg.getCallback();
+      Handler target = msg.getTarget();
+      if (callback != null) {
+        return "Message: " + callback.getClass().getName();
       }
+      return "Message: " + (target == null ? "removed" : target.getClass().getName() + " what=" + msg.what);
     }
   }
 }
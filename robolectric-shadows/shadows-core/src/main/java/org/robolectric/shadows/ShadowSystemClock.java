@@ -4,48 +4,75 @@ import android.os.SystemClock;
 import org.robolectric.annotation.Implementation;
 import org.robolectric.annotation.Implements;
 import org.robolectric.annotation.HiddenApi;
+import org.robolectric.annotation.Resetter;
+import org.robolectric.util.Scheduler;
+import org.robolectric.util.VirtualClock;
+
+import static android.os.Build.VERSION_CODES.JELLY_BEAN_MR1;
 
 /**
  * Shadow for {@link android.os.SystemClock}.
  *
- * <p>The concept of current time is base on the current time of the UI Scheduler for
- * consistency with previous implementations. This is not ideal, since both schedulers
- * (background and foreground), can see different values for the current time.</p>
+ * <p>The current time is read from the {@link VirtualClock} driven by the UI Scheduler, so it agrees
+ * with {@link System#nanoTime()}, {@link System#currentTimeMillis()}, {@code Choreographer} frame
+ * times and the times runnables are run at. If the UI Scheduler wasn't given a clock, its own
+ * current time is used instead.</p>
  */
 @Implements(SystemClock.class)
 public class ShadowSystemClock {
   private static long bootedAt = 0;
-  private static long nanoTime = 0;
+  private static long nanoTimeOffset = 0;
   private static final int MILLIS_PER_NANO = 1000000;
 
   static long now() {
-    if (ShadowApplication.getInstance() == null) {
+    Scheduler scheduler = getScheduler();
+    if (scheduler == null) {
       return 0;
     }
-    return ShadowApplication.getInstance().getForegroundThreadScheduler().getCurrentTime();
+    VirtualClock clock = scheduler.getClock();
+    return clock == null ? scheduler.getCurrentTime() : clock.getUptimeMillis();
+  }
+
+  private static Scheduler getScheduler() {
+    if (ShadowApplication.getInstance() == null) {
+      return null;
+    }
+    return ShadowApplication.getInstance().getForegroundThreadScheduler();
+  }
+
+  private static long uptimeNanos() {
+    Scheduler scheduler = getScheduler();
+    VirtualClock clock = scheduler == null ? null : scheduler.getClock();
+    return clock == null ? now() * MILLIS_PER_NANO : clock.getNanoTime();
   }
 
   @Implementation
   public static void sleep(long millis) {
-    if (ShadowApplication.getInstance() == null) {
+    Scheduler scheduler = getScheduler();
+    if (scheduler == null) {
       return;
     }
 
-    nanoTime = millis * MILLIS_PER_NANO;
-    ShadowApplication.getInstance().getForegroundThreadScheduler().advanceBy(millis);
+    scheduler.advanceBy(millis);
   }
 
   @Implementation
   public static boolean setCurrentTimeMillis(long millis) {
-    if (ShadowApplication.getInstance() == null) {
+    Scheduler scheduler = getScheduler();
+    if (scheduler == null) {
       return false;
     }
 
     if (now() > millis) {
       return false;
     }
-    nanoTime = millis * MILLIS_PER_NANO;
-    ShadowApplication.getInstance().getForegroundThreadScheduler().advanceTo(millis);
+    scheduler.advanceTo(millis);
+    VirtualClock clock = scheduler.getClock();
+    if (clock != null) {
+      clock.setEpochMillis(millis - nanoTime() / MILLIS_PER_NANO);
+    } else {
+      nanoTimeOffset = millis * MILLIS_PER_NANO - uptimeNanos();
+    }
     return true;
   }
 
@@ -64,6 +91,11 @@ public class ShadowSystemClock {
     return uptimeMillis();
   }
 
+  @Implementation(minSdk = JELLY_BEAN_MR1)
+  public static long elapsedRealtimeNanos() {
+    return uptimeNanos() - bootedAt * MILLIS_PER_NANO;
+  }
+
   @HiddenApi
   @Implementation
   public static long currentThreadTimeMicro() {
@@ -83,7 +115,9 @@ public class ShadowSystemClock {
    */
   @SuppressWarnings("unused")
   public static long currentTimeMillis() {
-    return nanoTime / MILLIS_PER_NANO;
+    Scheduler scheduler = getScheduler();
+    VirtualClock clock = scheduler == null ? null : scheduler.getClock();
+    return (clock == null ? 0 : clock.getEpochMillis()) + nanoTime() / MILLIS_PER_NANO;
   }
 
   /**
@@ -93,10 +127,20 @@ public class ShadowSystemClock {
    */
   @SuppressWarnings("unused")
   public static long nanoTime() {
-    return nanoTime;
+    return uptimeNanos() + nanoTimeOffset;
   }
 
+  /**
+   * Make {@link System#nanoTime} return the given time. It goes on moving with the clock from there.
+   *
+   * @param nanoTime The time, in nanoseconds.
+   */
   public static void setNanoTime(long nanoTime) {
-    ShadowSystemClock.nanoTime = nanoTime;
+    nanoTimeOffset = nanoTime - uptimeNanos();
+  }
+
+  @Resetter
+  public static void reset() {
+    nanoTimeOffset = 0;
   }
 }
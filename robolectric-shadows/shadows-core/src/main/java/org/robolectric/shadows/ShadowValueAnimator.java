@@ -1,6 +1,8 @@
 package org.robolectric.shadows;
 
 import android.animation.AnimationHandler;
+import android.animation.Animator;
+import android.animation.AnimatorListenerAdapter;
 import android.animation.ValueAnimator;
 
 import org.robolectric.RuntimeEnvironment;
@@ -10,22 +12,39 @@ import org.robolectric.annotation.RealObject;
 import org.robolectric.annotation.Resetter;
 import org.robolectric.util.ReflectionHelpers;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import static android.os.Build.VERSION_CODES.N;
 import static org.robolectric.internal.Shadow.directlyOn;
 
 /**
  * Shadow for {@link android.animation.ValueAnimator}.
+ *
+ * <p>Animators normally run frame by frame, driven by the {@link android.view.Choreographer}. A test
+ * that only cares where an animation ends up can instead jump it straight to a play time with
+ * {@link #fastForwardTo(long)} or {@link #fastForwardToEnd()}, or call
+ * {@link #setFastForwardEnabled(boolean)} to have every animator (and {@link android.animation.AnimatorSet})
+ * jump to its end as soon as it's started. Repeats that are jumped over are still reported to
+ * listeners, between the start and end callbacks.</p>
  */
 @Implements(ValueAnimator.class)
 public class ShadowValueAnimator {
+  private static boolean fastForwardEnabled;
+  static int startingSetCount;
+  static int endingSetCount;
 
   @RealObject
   private ValueAnimator realObject;
 
   private int actualRepeatCount;
+  private int reportedIteration;
 
   @Resetter
   public static void reset() {
+    fastForwardEnabled = false;
+    startingSetCount = 0;
+    endingSetCount = 0;
     /* ValueAnimator.sAnimationHandler is a static thread local that otherwise would survive between
      * tests. The AnimationHandler.mAnimationScheduled is set to true when the scheduleAnimation() is
      * called and the reset to false when run() is called by the Choreographer. If an animation is
@@ -64,4 +83,149 @@ public class ShadowValueAnimator {
   public int getActualRepeatCount() {
     return actualRepeatCount;
   }
+
+  /**
+   * Set whether animators jump straight to their end state when they're started, rather than
+   * running frame by frame. Animators started by an {@link android.animation.AnimatorSet} are left
+   * for the set to end, in order.
+   *
+   * @param enabled True to jump to the end.
+   */
+  public static void setFastForwardEnabled(boolean enabled) {
+    fastForwardEnabled = enabled;
+  }
+
+  /**
+   * @return True if animators jump straight to their end state when they're started.
+   */
+  public static boolean isFastForwardEnabled() {
+    return fastForwardEnabled;
+  }
+
+  @Implementation
+  public void start() {
+    reportedIteration = 0;
+    directlyOn(realObject, ValueAnimator.class).start();
+    if (fastForwardEnabled && startingSetCount == 0) {
+      fastForwardToEnd();
+    }
+  }
+
+  @Implementation
+  public void end() {
+    if (fastForwardEnabled || endingSetCount > 0) {
+      prepareToEnd();
+    }
+    directlyOn(realObject, ValueAnimator.class).end();
+  }
+
+  /**
+   * Jump a started animation to the given play time without running the frames in between, as
+   * {@link ValueAnimator#setCurrentPlayTime(long)} does, but also telling listeners about any
+   * repeats jumped over. A play time at or past the end of the last repeat ends the animation, unless
+   * it repeats infinitely.
+   *
+   * @param playTime The time since the animation started, not counting its start delay.
+   */
+  public void fastForwardTo(long playTime) {
+    if (!realObject.isStarted()) {
+      throw new IllegalStateException("The animator hasn't been started");
+    }
+    long duration = realObject.getDuration();
+    boolean infinite = actualRepeatCount == ValueAnimator.INFINITE || realObject.getRepeatCount() == ValueAnimator.INFINITE;
+    if (duration <= 0) {
+      if (!infinite) {
+        fastForwardToEnd();
+      }
+      return;
+    }
+    if (!infinite && playTime >= duration * (realObject.getRepeatCount() + 1)) {
+      fastForwardToEnd();
+      return;
+    }
+
+    int iteration = (int) (playTime / duration);
+    skipRepeatsAlreadyReported();
+    reportRepeatsUpTo(iteration);
+    if (infinite && realObject.getRepeatCount() != ValueAnimator.INFINITE) {
+      // the animator itself only repeats once (see setRepeatCount()), so keep it in the repeat going the same way
+      iteration %= 2;
+      playTime = iteration * duration + playTime % duration;
+    }
+    if (RuntimeEnvironment.getApiLevel() >= N) {
+      realObject.setCurrentPlayTime(playTime);
+    } else {
+      // before N, the animator only moves on by one repeat per frame, so put it in the right one first
+      ReflectionHelpers.setField(realObject, "mCurrentIteration", iteration);
+      ReflectionHelpers.setField(realObject, "mPlayingBackwards", isBackwards(iteration));
+      realObject.setCurrentPlayTime(playTime % duration);
+    }
+  }
+
+  /**
+   * Jump the animation to its end state, telling listeners about any repeats jumped over before
+   * it ends, and starting it first if need be.
+   */
+  public void fastForwardToEnd() {
+    prepareToEnd();
+    directlyOn(realObject, ValueAnimator.class).end();
+  }
+
+  private void prepareToEnd() {
+    if (!realObject.isStarted()) {
+      reportedIteration = 0;
+    }
+    final int lastIteration = realObject.getRepeatCount();
+    if (RuntimeEnvironment.getApiLevel() < N) {
+      ReflectionHelpers.setField(realObject, "mPlayingBackwards", isBackwards(lastIteration));
+    }
+    if (realObject.isRunning()) {
+      skipRepeatsAlreadyReported();
+      reportRepeatsUpTo(lastIteration);
+    } else {
+      // ending an animator that isn't running starts it, so the repeats have to wait until then
+      realObject.addListener(new AnimatorListenerAdapter() {
+        @Override
+        public void onAnimationStart(Animator animation) {
+          realObject.removeListener(this);
+          reportRepeatsUpTo(lastIteration);
+        }
+
+        @Override
+        public void onAnimationEnd(Animator animation) {
+          realObject.removeListener(this);
+        }
+      });
+    }
+  }
+
+  /**
+   * Catches up with the repeats a running animator has already told its listeners about, as it ran frame by frame.
+   */
+  private void skipRepeatsAlreadyReported() {
+    int currentIteration;
+    if (RuntimeEnvironment.getApiLevel() >= N) {
+      float overallFraction = ReflectionHelpers.getField(realObject, "mOverallFraction");
+      currentIteration = (int) overallFraction;
+    } else {
+      currentIteration = ReflectionHelpers.getField(realObject, "mCurrentIteration");
+    }
+    reportedIteration = Math.max(reportedIteration, currentIteration);
+  }
+
+  private boolean isBackwards(int iteration) {
+    return realObject.getRepeatMode() == ValueAnimator.REVERSE && iteration % 2 == 1;
+  }
+
+  private void reportRepeatsUpTo(int iteration) {
+    List<Animator.AnimatorListener> listeners = realObject.getListeners();
+    while (reportedIteration < iteration) {
+      reportedIteration++;
+      if (listeners != null) {
+        for (Animator.AnimatorListener listener : new ArrayList<>(listeners)) {
+          listener.onAnimationRepeat(realObject);
+        }
+      }
+    }
+  }
 }
@@ -0,0 +1,167 @@
+package org.robolectric.util.concurrent;
+
+import org.robolectric.RoboSettings;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounded pool of real threads that background work (e.g. {@link android.os.AsyncTask#doInBackground(Object[])})
+ * runs on when {@link RoboSettings#getBackgroundThreadCount()} is greater than zero, instead of being run on the test
+ * thread by the background {@link org.robolectric.util.Scheduler}.
+ *
+ * Results still reach the main thread through the main looper's scheduler, so tests wait for the pool with
+ * {@link #awaitIdle(long, TimeUnit)} (or {@code Robolectric.flushBackgroundThreads()}) and then idle the main looper.
+ */
+public class BackgroundThreadPool {
+  private static BackgroundThreadPool instance;
+
+  private final int threadCount;
+  private final ExecutorService executorService;
+  private final Executor serialExecutor = new SerialExecutor();
+  private final Object lock = new Object();
+  private int pendingCount;
+  private Throwable failure;
+
+  private BackgroundThreadPool(final int threadCount) {
+    this.threadCount = threadCount;
+    this.executorService = Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+      private final AtomicInteger threadNumber = new AtomicInteger();
+
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "Robolectric background thread " + threadNumber.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+  /**
+   * @return the pool, or null if background work should run on the background scheduler.
+   */
+  public static synchronized BackgroundThreadPool getInstance() {
+    int threadCount = RoboSettings.getBackgroundThreadCount();
+    if (instance != null && instance.threadCount != threadCount) {
+      reset();
+    }
+    if (instance == null && threadCount > 0) {
+      instance = new BackgroundThreadPool(threadCount);
+    }
+    return instance;
+  }
+
+  /**
+   * Interrupts anything still running on the pool and discards it, so work from one test can't leak into the next.
+   */
+  public static synchronized void reset() {
+    if (instance != null) {
+      instance.executorService.shutdownNow();
+      instance = null;
+    }
+  }
+
+  /**
+   * Runs a task on the next free thread.
+   */
+  public void execute(final Runnable runnable) {
+    synchronized (lock) {
+      pendingCount++;
+    }
+    executorService.execute(new Runnable() {
+      @Override
+      public void run() {
+        Throwable thrown = null;
+        try {
+          runnable.run();
+        } catch (Throwable t) {
+          thrown = t;
+        } finally {
+          synchronized (lock) {
+            if (thrown != null && failure == null) {
+              failure = thrown;
+            }
+            pendingCount--;
+            lock.notifyAll();
+          }
+        }
+      }
+    });
+  }
+
+  /**
+   * @return an executor that runs its tasks on the pool one at a time, in the order they were given, like
+   *     {@link android.os.AsyncTask#SERIAL_EXECUTOR}.
+   */
+  public Executor getSerialExecutor() {
+    return serialExecutor;
+  }
+
+  /**
+   * @return true if no tasks are queued or running.
+   */
+  public boolean isIdle() {
+    synchronized (lock) {
+      return pendingCount == 0;
+    }
+  }
+
+  /**
+   * Waits for every queued and running task to finish.
+   *
+   * @return true if the pool became idle, or false if the timeout elapsed first.
+   * @throws RuntimeException if a task threw since the last call; the first such exception is its cause.
+   */
+  public boolean awaitIdle(long timeout, TimeUnit unit) throws InterruptedException {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    synchronized (lock) {
+      while (pendingCount > 0) {
+        long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        if (remainingMillis <= 0) {
+          return false;
+        }
+        lock.wait(remainingMillis);
+      }
+      if (failure != null) {
+        Throwable thrown = failure;
+        failure = null;
+        throw new RuntimeException("A background task failed", thrown);
+      }
+      return true;
+    }
+  }
+
+  private class SerialExecutor implements Executor {
+    private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+    private Runnable active;
+
+    @Override
+    public synchronized void execute(final Runnable runnable) {
+      tasks.offer(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            runnable.run();
+          } finally {
+            scheduleNext();
+          }
+        }
+      });
+      if (active == null) {
+        scheduleNext();
+      }
+    }
+
+    private synchronized void scheduleNext() {
+      active = tasks.poll();
+      if (active != null) {
+        BackgroundThreadPool.this.execute(active);
+      }
+    }
+  }
+}
@@ -1,6 +1,8 @@
 package org.robolectric.util;
 
 import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationHandler;
@@ -112,6 +114,58 @@ public class ReflectionHelpers {
     }
   }
 
+  /**
+   * Look up a field once, for code that reads it over and over.
+   *
+   * @param clazz The class that declares the field.
+   * @param fieldName The field name.
+   * @return A handle that takes the target object and returns the value of the field on it.
+   */
+  public static MethodHandle getFieldGetter(Class<?> clazz, String fieldName) {
+    try {
+      Field field = clazz.getDeclaredField(fieldName);
+      field.setAccessible(true);
+      return MethodHandles.lookup().unreflectGetter(field);
+    } catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Look up a field once, for code that sets it over and over.
+   *
+   * @param clazz The class that declares the field.
+   * @param fieldName The field name.
+   * @return A handle that takes the target object and the new value.
+   */
+  public static MethodHandle getFieldSetter(Class<?> clazz, String fieldName) {
+    try {
+      Field field = clazz.getDeclaredField(fieldName);
+      field.setAccessible(true);
+      return MethodHandles.lookup().unreflectSetter(field);
+    } catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Look up a method once, for code that calls it over and over.
+   *
+   * @param clazz The class that declares the method.
+   * @param methodName The method name.
+   * @param parameterTypes The method's parameter types.
+   * @return A handle that takes the target object (for an instance method) and the method's parameters.
+   */
+  public static MethodHandle getMethodHandle(Class<?> clazz, String methodName, Class<?>... parameterTypes) {
+    try {
+      Method method = clazz.getDeclaredMethod(methodName, parameterTypes);
+      method.setAccessible(true);
+      return MethodHandles.lookup().unreflect(method);
+    } catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+  }
+
   /**
    * Reflectively get the value of a static field.
    *
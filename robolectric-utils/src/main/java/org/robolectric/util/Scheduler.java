@@ -1,10 +1,15 @@
 package org.robolectric.util;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
-import java.util.ListIterator;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.robolectric.util.Scheduler.IdleState.*;
 
@@ -24,6 +29,21 @@ import static org.robolectric.util.Scheduler.IdleState.*;
  * <tt>true</tt>, then the Scheduler will continue looping through posted events
  * (including future events), advancing its clock as it goes.</li>
  * </ul>
+ *
+ * Queued runnables are kept in a binary heap ordered by scheduled time, with runnables scheduled for the same time
+ * run in the order they were posted, so posting is O(log n) however many runnables are waiting. Removed runnables are
+ * only marked as cancelled, and are dropped from the heap when they reach its head.
+ *
+ * When the clock is advanced, all of the runnables due by the new time are taken off the heap at once, and then run
+ * without holding the scheduler's lock, so other threads may post to it meanwhile. Runnables posted while they run
+ * are still run in order with them. Runnables the scheduler's own thread posts to run straight away, and the ones
+ * run when it's unpaused or set to idle constantly, are run without the lock too.
+ *
+ * Threads other than the one that created the scheduler never wait for its lock to post: their runnables go on a
+ * lock-free queue, which is merged into the heap the next time the scheduler looks at what's queued.
+ *
+ * A scheduler may be given a {@link VirtualClock} to drive, in which case the clock is moved forwards along with the
+ * scheduler's time, before each runnable runs.
  */
 public class Scheduler {
 
@@ -47,11 +67,37 @@ public class Scheduler {
     CONSTANT_IDLE
   }
 
-  private long currentTime = 100;
-  private boolean isExecutingRunnable = false;
+  private volatile long currentTime = 100;
+  // Written by whichever thread runs the scheduler's runnables, and read when its own thread posts.
+  private volatile boolean isExecutingRunnable = false;
   private final Thread associatedThread = Thread.currentThread();
-  private final List<ScheduledRunnable> runnables = new ArrayList<>();
+  private final PriorityQueue<ScheduledRunnable> runnables = new PriorityQueue<>();
+  // Runnables taken off the heap to be run by advanceTo(), in order; they still count as queued until they run.
+  private final ArrayDeque<ScheduledRunnable> dueRunnables = new ArrayDeque<>();
+  // Runnables posted by other threads, which haven't been merged into the heap yet.
+  private final ConcurrentLinkedQueue<ScheduledRunnable> postedFromOtherThreads = new ConcurrentLinkedQueue<>();
+  // The queued (and not cancelled) instances of each runnable, so they can be removed without searching the queue.
+  private final Map<Runnable, ScheduledRunnable> runnablesByIdentity = new IdentityHashMap<>();
+  private int queuedCount;
+  private int cancelledCount;
+  private final AtomicLong nextSequence = new AtomicLong();
+  private final AtomicLong nextFrontOfQueueSequence = new AtomicLong(-1);
   private IdleState idleState = UNPAUSED;
+  private final VirtualClock clock;
+
+  public Scheduler() {
+    this(null);
+  }
+
+  /**
+   * Create a scheduler that drives the given clock.
+   *
+   * @param clock The clock, or null for none.
+   */
+  public Scheduler(VirtualClock clock) {
+    this.clock = clock;
+    syncClock();
+  }
 
   /**
    * Retrieves the current idling state of this <tt>Scheduler</tt>.
@@ -72,8 +118,10 @@ public class Scheduler {
    * @see #setIdleState(IdleState)
    * @see #isPaused()
    */
-  public synchronized void setIdleState(IdleState idleState) {
-    this.idleState = idleState;
+  public void setIdleState(IdleState idleState) {
+    synchronized (this) {
+      this.idleState = idleState;
+    }
     switch (idleState) {
       case UNPAUSED:
         advanceBy(0);
@@ -89,17 +137,26 @@ public class Scheduler {
    *
    * @return  Current time in milliseconds.
    */
-  public synchronized long getCurrentTime() {
+  public long getCurrentTime() {
     return currentTime;
   }
 
+  /**
+   * Get the clock this scheduler drives.
+   *
+   * @return The clock, or null if it wasn't given one.
+   */
+  public VirtualClock getClock() {
+    return clock;
+  }
+
   /**
    * Pause the scheduler. Equivalent to <tt>setIdleState(PAUSED)</tt>.
    *
    * @see #unPause()
    * @see #setIdleState(IdleState)
    */
-  public synchronized void pause() {
+  public void pause() {
     setIdleState(PAUSED);
   }
 
@@ -109,7 +166,7 @@ public class Scheduler {
    * @see #pause()
    * @see #setIdleState(IdleState)
    */
-  public synchronized void unPause() {
+  public void unPause() {
     setIdleState(UNPAUSED);
   }
 
@@ -127,7 +184,7 @@ public class Scheduler {
    *
    * @param runnable    Runnable to add.
    */
-  public synchronized void post(Runnable runnable) {
+  public void post(Runnable runnable) {
     postDelayed(runnable, 0, TimeUnit.MILLISECONDS);
   }
 
@@ -137,20 +194,28 @@ public class Scheduler {
    * @param runnable    Runnable to add.
    * @param delayMillis Delay in millis.
    */
-  public synchronized void postDelayed(Runnable runnable, long delayMillis) {
+  public void postDelayed(Runnable runnable, long delayMillis) {
     postDelayed(runnable, delayMillis, TimeUnit.MILLISECONDS);
   }
 
   /**
    * Add a runnable to the queue to be run after a delay.
    */
-  public synchronized void postDelayed(Runnable runnable, long delay, TimeUnit unit) {
+  public void postDelayed(Runnable runnable, long delay, TimeUnit unit) {
     long delayMillis = unit.toMillis(delay);
-    if ((idleState != CONSTANT_IDLE && (isPaused() || delayMillis > 0)) || Thread.currentThread() != associatedThread) {
-      queueRunnableAndSort(runnable, currentTime + delayMillis);
-    } else {
-      runOrQueueRunnable(runnable, currentTime + delayMillis);
+    if (Thread.currentThread() != associatedThread) {
+      postFromOtherThread(runnable, currentTime + delayMillis, nextSequence.getAndIncrement());
+      return;
+    }
+    long scheduledTime;
+    synchronized (this) {
+      scheduledTime = currentTime + delayMillis;
+      if ((idleState != CONSTANT_IDLE && (isPaused() || delayMillis > 0)) || isExecutingRunnable) {
+        queueRunnableAndSort(runnable, scheduledTime);
+        return;
+      }
     }
+    runNow(runnable, scheduledTime);
   }
 
   /**
@@ -158,12 +223,24 @@ public class Scheduler {
    *
    * @param runnable  Runnable to add.
    */
-  public synchronized void postAtFrontOfQueue(Runnable runnable) {
-    if (isPaused() || Thread.currentThread() != associatedThread) {
-      runnables.add(0, new ScheduledRunnable(runnable, currentTime));
-    } else {
-      runOrQueueRunnable(runnable, currentTime);
+  public void postAtFrontOfQueue(Runnable runnable) {
+    if (Thread.currentThread() != associatedThread) {
+      postFromOtherThread(runnable, currentTime, nextFrontOfQueueSequence.getAndDecrement());
+      return;
     }
+    long scheduledTime;
+    synchronized (this) {
+      scheduledTime = currentTime;
+      if (isPaused()) {
+        queueRunnable(runnable, scheduledTime, nextFrontOfQueueSequence.getAndDecrement());
+        return;
+      }
+      if (isExecutingRunnable) {
+        queueRunnableAndSort(runnable, scheduledTime);
+        return;
+      }
+    }
+    runNow(runnable, scheduledTime);
   }
 
   /**
@@ -172,12 +249,11 @@ public class Scheduler {
    * @param runnable  Runnable to remove.
    */
   public synchronized void remove(Runnable runnable) {
-    ListIterator<ScheduledRunnable> iterator = runnables.listIterator();
-    while (iterator.hasNext()) {
-      ScheduledRunnable next = iterator.next();
-      if (next.runnable == runnable) {
-        iterator.remove();
-      }
+    mergePostedFromOtherThreads();
+    ScheduledRunnable scheduledRunnable = runnablesByIdentity.remove(runnable);
+    while (scheduledRunnable != null) {
+      cancel(scheduledRunnable);
+      scheduledRunnable = scheduledRunnable.nextWithSameRunnable;
     }
   }
 
@@ -186,8 +262,15 @@ public class Scheduler {
    *
    * @return  True if a runnable was executed.
    */
-  public synchronized boolean advanceToLastPostedRunnable() {
-    return size() >= 1 && advanceTo(runnables.get(runnables.size() - 1).scheduledTime);
+  public boolean advanceToLastPostedRunnable() {
+    long endTime;
+    synchronized (this) {
+      if (size() < 1) {
+        return false;
+      }
+      endTime = lastScheduledTime();
+    }
+    return advanceTo(endTime);
   }
 
   /**
@@ -195,8 +278,15 @@ public class Scheduler {
    *
    * @return  True if a runnable was executed.
    */
-  public synchronized boolean advanceToNextPostedRunnable() {
-    return size() >= 1 && advanceTo(runnables.get(0).scheduledTime);
+  public boolean advanceToNextPostedRunnable() {
+    long endTime;
+    synchronized (this) {
+      if (size() < 1) {
+        return false;
+      }
+      endTime = nextScheduledRunnable().scheduledTime;
+    }
+    return advanceTo(endTime);
   }
 
   /**
@@ -206,7 +296,7 @@ public class Scheduler {
    * @return  True if a runnable was executed.
    * @deprecated Use {@link #advanceBy(long, TimeUnit)}.
    */
-  public synchronized boolean advanceBy(long interval) {
+  public boolean advanceBy(long interval) {
     return advanceBy(interval, TimeUnit.MILLISECONDS);
   }
 
@@ -215,8 +305,11 @@ public class Scheduler {
    *
    * @return  True if a runnable was executed.
    */
-  public synchronized boolean advanceBy(long amount, TimeUnit unit) {
-    long endingTime = currentTime + unit.toMillis(amount);
+  public boolean advanceBy(long amount, TimeUnit unit) {
+    long endingTime;
+    synchronized (this) {
+      endingTime = currentTime + unit.toMillis(amount);
+    }
     return advanceTo(endingTime);
   }
 
@@ -226,18 +319,32 @@ public class Scheduler {
    * @param   endTime   Future time.
    * @return  True if a runnable was executed.
    */
-  public synchronized boolean advanceTo(long endTime) {
-    if (endTime - currentTime < 0 || size() < 1) {
-      currentTime = endTime;
+  public boolean advanceTo(long endTime) {
+    boolean anyDue;
+    synchronized (this) {
+      anyDue = endTime - currentTime >= 0 && size() > 0;
+      if (anyDue) {
+        drainRunnablesDueBy(endTime);
+      } else {
+        currentTime = endTime;
+      }
+    }
+    if (!anyDue) {
+      syncClock();
       return false;
     }
 
     int runCount = 0;
-    while (nextTaskIsScheduledBefore(endTime)) {
-      runOneTask();
+    ScheduledRunnable next;
+    while ((next = takeRunnableDueBy(endTime)) != null) {
+      syncClock();
+      next.run();
       ++runCount;
     }
-    currentTime = endTime;
+    synchronized (this) {
+      currentTime = endTime;
+    }
+    syncClock();
     return runCount > 0;
   }
 
@@ -246,13 +353,12 @@ public class Scheduler {
    *
    * @return  True if a runnable was executed.
    */
-  public synchronized boolean runOneTask() {
-    if (size() < 1) {
+  public boolean runOneTask() {
+    ScheduledRunnable postedRunnable = takeRunnableDueBy(Long.MAX_VALUE);
+    if (postedRunnable == null) {
       return false;
     }
-
-    ScheduledRunnable postedRunnable = runnables.remove(0);
-    currentTime = postedRunnable.scheduledTime;
+    syncClock();
     postedRunnable.run();
     return true;
   }
@@ -271,6 +377,11 @@ public class Scheduler {
    */
   public synchronized void reset() {
     runnables.clear();
+    dueRunnables.clear();
+    postedFromOtherThreads.clear();
+    runnablesByIdentity.clear();
+    queuedCount = 0;
+    cancelledCount = 0;
     idleState = UNPAUSED;
   }
 
@@ -280,7 +391,8 @@ public class Scheduler {
    * @return  Number of enqueues runnables.
    */
   public synchronized int size() {
-    return runnables.size();
+    mergePostedFromOtherThreads();
+    return queuedCount;
   }
 
   /**
@@ -299,27 +411,39 @@ public class Scheduler {
   }
 
   private boolean nextTaskIsScheduledBefore(long endingTime) {
-    return size() > 0 && runnables.get(0).scheduledTime <= endingTime;
+    return size() > 0 && nextScheduledRunnable().scheduledTime <= endingTime;
   }
 
-  private void runOrQueueRunnable(Runnable runnable, long scheduledTime) {
-    if (isExecutingRunnable) {
-      queueRunnableAndSort(runnable, scheduledTime);
-      return;
-    }
+  /**
+   * Runs a runnable posted by the scheduler's own thread straight away, and then whatever else is due. Called without
+   * holding the scheduler's lock.
+   */
+  private void runNow(Runnable runnable, long scheduledTime) {
+    SchedulerTrace trace = SchedulerTrace.current;
     isExecutingRunnable = true;
     try {
-      runnable.run();
+      if (trace == null) {
+        runnable.run();
+      } else {
+        trace.run(this, runnable, trace.posted(currentTime, scheduledTime));
+      }
     } finally {
       isExecutingRunnable = false;
     }
-    if (scheduledTime > currentTime) {
-      currentTime = scheduledTime;
+    boolean timeMoved;
+    synchronized (this) {
+      timeMoved = scheduledTime > currentTime;
+      if (timeMoved) {
+        currentTime = scheduledTime;
+      }
+    }
+    if (timeMoved) {
+      syncClock();
     }
     // The runnable we just ran may have queued other runnables. If there are
     // any pending immediate execution we should run these now too, unless we are
     // paused.
-    switch (idleState) {
+    switch (getIdleState()) {
       case CONSTANT_IDLE:
         advanceToLastPostedRunnable();
         break;
@@ -329,29 +453,208 @@ public class Scheduler {
     }
   }
 
+  /**
+   * Moves the clock, if there is one, up to the current time. Called after the current time changes, outside of the
+   * scheduler's lock where possible, since the clock's listeners may do anything.
+   */
+  private void syncClock() {
+    if (clock != null) {
+      clock.advanceTo(TimeUnit.MILLISECONDS.toNanos(currentTime));
+    }
+  }
+
   private void queueRunnableAndSort(Runnable runnable, long scheduledTime) {
-    runnables.add(new ScheduledRunnable(runnable, scheduledTime));
-    Collections.sort(runnables);
+    queueRunnable(runnable, scheduledTime, nextSequence.getAndIncrement());
+  }
+
+  private void queueRunnable(Runnable runnable, long scheduledTime, long sequence) {
+    queue(new ScheduledRunnable(runnable, scheduledTime, sequence));
+  }
+
+  private void postFromOtherThread(Runnable runnable, long scheduledTime, long sequence) {
+    postedFromOtherThreads.add(new ScheduledRunnable(runnable, scheduledTime, sequence));
+  }
+
+  private void mergePostedFromOtherThreads() {
+    ScheduledRunnable posted;
+    while ((posted = postedFromOtherThreads.poll()) != null) {
+      queue(posted);
+    }
+  }
+
+  private void queue(ScheduledRunnable scheduledRunnable) {
+    Runnable runnable = scheduledRunnable.runnable;
+    ScheduledRunnable next = runnablesByIdentity.put(runnable, scheduledRunnable);
+    if (next != null) {
+      scheduledRunnable.nextWithSameRunnable = next;
+      next.previousWithSameRunnable = scheduledRunnable;
+    }
+    runnables.add(scheduledRunnable);
+    queuedCount++;
+  }
+
+  /**
+   * Moves the runnables due by {@code endTime} from the heap to {@link #dueRunnables}, in the order they'll run.
+   */
+  private void drainRunnablesDueBy(long endTime) {
+    ScheduledRunnable next = nextQueuedRunnable();
+    while (next != null && next.scheduledTime <= endTime) {
+      ScheduledRunnable last = dueRunnables.peekLast();
+      if (last != null && next.compareTo(last) < 0) {
+        // posted to the front of the queue after an earlier drain; leave it to be merged in by nextScheduledRunnable()
+        break;
+      }
+      runnables.poll();
+      next.due = true;
+      dueRunnables.addLast(next);
+      next = nextQueuedRunnable();
+    }
+  }
+
+  /**
+   * Takes the next runnable due by {@code endTime} off the queue and moves the clock to its scheduled time.
+   *
+   * @return the runnable, or null if none are due.
+   */
+  private synchronized ScheduledRunnable takeRunnableDueBy(long endTime) {
+    ScheduledRunnable next = nextScheduledRunnable();
+    if (next == null || next.scheduledTime > endTime) {
+      return null;
+    }
+    dequeue(next);
+    currentTime = next.scheduledTime;
+    return next;
+  }
+
+  /**
+   * @return the queued runnable that should run next, or null if there isn't one.
+   */
+  private ScheduledRunnable nextScheduledRunnable() {
+    ScheduledRunnable due = dueRunnables.peekFirst();
+    while (due != null && due.cancelled) {
+      dueRunnables.pollFirst();
+      due = dueRunnables.peekFirst();
+    }
+    ScheduledRunnable queued = nextQueuedRunnable();
+    if (due == null) {
+      return queued;
+    }
+    return queued == null || due.compareTo(queued) < 0 ? due : queued;
+  }
+
+  /**
+   * @return the head of the heap, discarding any cancelled runnables ahead of it, or null if it's empty.
+   */
+  private ScheduledRunnable nextQueuedRunnable() {
+    mergePostedFromOtherThreads();
+    ScheduledRunnable next = runnables.peek();
+    while (next != null && next.cancelled) {
+      runnables.poll();
+      cancelledCount--;
+      next = runnables.peek();
+    }
+    return next;
+  }
+
+  private long lastScheduledTime() {
+    mergePostedFromOtherThreads();
+    long lastScheduledTime = Long.MIN_VALUE;
+    for (ScheduledRunnable scheduledRunnable : runnables) {
+      if (!scheduledRunnable.cancelled && scheduledRunnable.scheduledTime > lastScheduledTime) {
+        lastScheduledTime = scheduledRunnable.scheduledTime;
+      }
+    }
+    Iterator<ScheduledRunnable> dueIterator = dueRunnables.descendingIterator();
+    while (dueIterator.hasNext()) {
+      ScheduledRunnable lastDue = dueIterator.next();
+      if (!lastDue.cancelled) {
+        return Math.max(lastScheduledTime, lastDue.scheduledTime);
+      }
+    }
+    return lastScheduledTime;
+  }
+
+  /**
+   * Removes the given runnable, which must be the one returned by {@link #nextScheduledRunnable()}, from the queue.
+   */
+  private void dequeue(ScheduledRunnable scheduledRunnable) {
+    if (scheduledRunnable.due) {
+      dueRunnables.pollFirst();
+    } else {
+      runnables.poll();
+    }
+    queuedCount--;
+
+    ScheduledRunnable previous = scheduledRunnable.previousWithSameRunnable;
+    ScheduledRunnable next = scheduledRunnable.nextWithSameRunnable;
+    if (next != null) {
+      next.previousWithSameRunnable = previous;
+    }
+    if (previous != null) {
+      previous.nextWithSameRunnable = next;
+    } else if (next != null) {
+      runnablesByIdentity.put(scheduledRunnable.runnable, next);
+    } else {
+      runnablesByIdentity.remove(scheduledRunnable.runnable);
+    }
+  }
+
+  private void cancel(ScheduledRunnable scheduledRunnable) {
+    scheduledRunnable.cancelled = true;
+    queuedCount--;
+    if (scheduledRunnable.due) {
+      return;
+    }
+    cancelledCount++;
+
+    // Don't let cancelled runnables pile up in the heap if they're never reached, e.g. repeatedly rescheduled timeouts.
+    if (cancelledCount > 64 && cancelledCount > queuedCount) {
+      List<ScheduledRunnable> queued = new ArrayList<>(queuedCount);
+      for (ScheduledRunnable next : runnables) {
+        if (!next.cancelled) {
+          queued.add(next);
+        }
+      }
+      runnables.clear();
+      runnables.addAll(queued);
+      cancelledCount = 0;
+    }
   }
 
   private class ScheduledRunnable implements Comparable<ScheduledRunnable> {
     private final Runnable runnable;
     private final long scheduledTime;
-
-    private ScheduledRunnable(Runnable runnable, long scheduledTime) {
+    // Orders runnables scheduled for the same time; negative for runnables posted at the front of the queue.
+    private final long sequence;
+    private final SchedulerTrace.Post post;
+    private ScheduledRunnable previousWithSameRunnable;
+    private ScheduledRunnable nextWithSameRunnable;
+    private boolean cancelled;
+    private boolean due;
+
+    private ScheduledRunnable(Runnable runnable, long scheduledTime, long sequence) {
       this.runnable = runnable;
       this.scheduledTime = scheduledTime;
+      this.sequence = sequence;
+      SchedulerTrace trace = SchedulerTrace.current;
+      this.post = trace == null ? null : trace.posted(currentTime, scheduledTime);
     }
 
     @Override
     public int compareTo(ScheduledRunnable runnable) {
-      return (int) (scheduledTime - runnable.scheduledTime);
+      int byTime = Long.compare(scheduledTime, runnable.scheduledTime);
+      return byTime != 0 ? byTime : Long.compare(sequence, runnable.sequence);
     }
 
     public void run() {
+      SchedulerTrace trace = SchedulerTrace.current;
       isExecutingRunnable = true;
       try {
-        runnable.run();
+        if (trace == null) {
+          runnable.run();
+        } else {
+          trace.run(Scheduler.this, runnable, post);
+        }
       } finally {
         isExecutingRunnable = false;
       }
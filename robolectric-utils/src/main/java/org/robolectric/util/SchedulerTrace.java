@@ -0,0 +1,293 @@
+package org.robolectric.util;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Records what every {@link Scheduler} (and so every looper, including the ones driving
+ * {@code Choreographer} frames) runs, for writing out in the Chrome trace event format, which
+ * {@code chrome://tracing} and other trace viewers can open.
+ *
+ * <p>Each runnable that runs is recorded with the virtual time it was posted at, the virtual time it
+ * was due and ran at, how long it took in real time, the first frame of the code that posted it, and
+ * the scheduler it ran on. Events are laid out on a real-time axis, one track per scheduler, with a
+ * counter track showing each scheduler's virtual clock.</p>
+ *
+ * <p>Tracing is off unless {@link #start()} is called, or the {@code robolectric.scheduling.trace}
+ * system property names a directory; in that case tracing starts as soon as the first scheduler is
+ * used and a {@code scheduler-trace-*.json} file is written there when the JVM exits. While tracing
+ * is off the only cost to a scheduler is reading a volatile field.</p>
+ */
+public class SchedulerTrace {
+  private static final int MAX_EVENTS = 1000000;
+  private static final Map<Scheduler, String> names = Collections.synchronizedMap(new WeakHashMap<Scheduler, String>());
+
+  static volatile SchedulerTrace current;
+
+  static {
+    String directory = System.getProperty("robolectric.scheduling.trace");
+    if (directory != null) {
+      final SchedulerTrace trace = start();
+      final File traceDirectory = new File(directory);
+      Runtime.getRuntime().addShutdownHook(new Thread() {
+        @Override
+        public void run() {
+          try {
+            if (!traceDirectory.isDirectory() && !traceDirectory.mkdirs()) {
+              throw new IOException("couldn't create " + traceDirectory);
+            }
+            trace.writeTo(File.createTempFile("scheduler-trace-", ".json", traceDirectory));
+          } catch (IOException e) {
+            Logger.error("Couldn't write scheduler trace to %s: %s", traceDirectory, e);
+          }
+        }
+      });
+    }
+  }
+
+  private final long startNanos = System.nanoTime();
+  private final Map<Scheduler, Track> tracks = new WeakHashMap<>();
+  private final List<Event> events = new ArrayList<>();
+  private int droppedEventCount;
+
+  /**
+   * Start recording, replacing any trace that was already being recorded.
+   *
+   * @return The new trace.
+   */
+  public static SchedulerTrace start() {
+    SchedulerTrace trace = new SchedulerTrace();
+    current = trace;
+    return trace;
+  }
+
+  /**
+   * Stop recording.
+   *
+   * @return The trace that was being recorded, or null if there wasn't one.
+   */
+  public static SchedulerTrace stop() {
+    SchedulerTrace trace = current;
+    current = null;
+    return trace;
+  }
+
+  /**
+   * Give a scheduler a name to show in traces, e.g. the looper it belongs to.
+   *
+   * @param scheduler The scheduler.
+   * @param name      Its name.
+   */
+  public static void setName(Scheduler scheduler, String name) {
+    names.put(scheduler, name);
+  }
+
+  /**
+   * Called when a runnable is posted to a scheduler.
+   *
+   * @return what's known about the post, to be passed to {@link #run(Scheduler, Runnable, Post)}.
+   */
+  Post posted(long postTime, long dueTime) {
+    return new Post(postTime, dueTime, Thread.currentThread().getName(), poster());
+  }
+
+  /**
+   * Runs a runnable, recording how long it took.
+   *
+   * @param post What was recorded when it was posted, or null if that was before tracing started.
+   */
+  void run(Scheduler scheduler, Runnable runnable, Post post) {
+    long virtualTime = scheduler.getCurrentTime();
+    // described up front, since running it may change what it describes (e.g. recycle a message)
+    String name = describe(runnable);
+    long start = System.nanoTime();
+    try {
+      runnable.run();
+    } finally {
+      long end = System.nanoTime();
+      add(new Event(track(scheduler), name, post, virtualTime, start - startNanos, end - start));
+    }
+  }
+
+  private synchronized Track track(Scheduler scheduler) {
+    Track track = tracks.get(scheduler);
+    if (track == null) {
+      String name = names.get(scheduler);
+      track = new Track(tracks.size() + 1, name == null ? "Scheduler " + (tracks.size() + 1) : name);
+      tracks.put(scheduler, track);
+    }
+    return track;
+  }
+
+  private synchronized void add(Event event) {
+    if (events.size() < MAX_EVENTS) {
+      events.add(event);
+    } else {
+      droppedEventCount++;
+    }
+  }
+
+  /**
+   * @return the number of runnables recorded so far.
+   */
+  public synchronized int getEventCount() {
+    return events.size();
+  }
+
+  /**
+   * Write the trace out, in the Chrome trace event format.
+   *
+   * @param file The file to write.
+   */
+  public void writeTo(File file) throws IOException {
+    try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), Charset.forName("UTF-8")))) {
+      writeTo(writer);
+    }
+  }
+
+  /**
+   * Write the trace out, in the Chrome trace event format.
+   *
+   * @param writer Where to write it.
+   */
+  public synchronized void writeTo(Writer writer) throws IOException {
+    writer.write("{\"displayTimeUnit\":\"ms\",\"otherData\":{\"droppedEvents\":" + droppedEventCount + "},\"traceEvents\":[\n");
+    boolean first = true;
+    List<Track> namedTracks = new ArrayList<>();
+    for (Event event : events) {
+      if (!namedTracks.contains(event.track)) {
+        namedTracks.add(event.track);
+        first = separate(writer, first);
+        writer.write("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":" + event.track.id
+            + ",\"args\":{\"name\":" + quote(event.track.name) + "}}");
+      }
+
+      first = separate(writer, first);
+      writer.write("{\"name\":" + quote(event.name) + ",\"cat\":\"runnable\",\"ph\":\"X\",\"pid\":1,\"tid\":" + event.track.id
+          + ",\"ts\":" + micros(event.startNanos) + ",\"dur\":" + micros(event.durationNanos) + ",\"args\":{\"ranAt\":" + event.virtualTime);
+      if (event.post != null) {
+        writer.write(",\"postedAt\":" + event.post.postTime + ",\"dueAt\":" + event.post.dueTime
+            + ",\"postedFrom\":" + quote(event.post.poster) + ",\"postingThread\":" + quote(event.post.threadName));
+      }
+      writer.write("}}");
+
+      writer.write(",\n{\"name\":\"virtual time\",\"ph\":\"C\",\"pid\":1,\"ts\":" + micros(event.startNanos)
+          + ",\"args\":{" + quote(event.track.name) + ":" + event.virtualTime + "}}");
+    }
+    writer.write("\n]}\n");
+  }
+
+  private static boolean separate(Writer writer, boolean first) throws IOException {
+    if (!first) {
+      writer.write(",\n");
+    }
+    return false;
+  }
+
+  private static String micros(long nanos) {
+    return String.valueOf(nanos / 1000) + "." + String.format("%03d", nanos % 1000);
+  }
+
+  private static String quote(String string) {
+    StringBuilder builder = new StringBuilder(string.length() + 2).append('"');
+    for (int i = 0; i < string.length(); i++) {
+      char c = string.charAt(i);
+      if (c == '"' || c == '\\') {
+        builder.append('\\').append(c);
+      } else if (c < 0x20) {
+        builder.append(String.format("\\u%04x", (int) c));
+      } else {
+        builder.append(c);
+      }
+    }
+    return builder.append('"').toString();
+  }
+
+  private static String describe(Runnable runnable) {
+    String className = runnable.getClass().getName();
+    String description = String.valueOf(runnable);
+    // Object.toString() would give every instance its own name
+    return description.startsWith(className + "@") ? className : description;
+  }
+
+  private static String poster() {
+    StackTraceElement[] stackTrace = new Throwable().getStackTrace();
+    for (StackTraceElement element : stackTrace) {
+      if (!isScheduling(element.getClassName()) && !isFramework(element.getClassName())) {
+        return element.toString();
+      }
+    }
+    for (StackTraceElement element : stackTrace) {
+      if (!isScheduling(element.getClassName())) {
+        return element.toString();
+      }
+    }
+    return "unknown";
+  }
+
+  private static boolean isScheduling(String className) {
+    return className.equals(SchedulerTrace.class.getName())
+        || className.equals(Scheduler.class.getName())
+        || className.startsWith(Scheduler.class.getName() + "$");
+  }
+
+  private static boolean isFramework(String className) {
+    return className.startsWith("org.robolectric.shadows.")
+        || className.startsWith("org.robolectric.internal.")
+        || className.startsWith("android.os.")
+        || className.startsWith("java.")
+        || className.startsWith("sun.");
+  }
+
+  static class Post {
+    private final long postTime;
+    private final long dueTime;
+    private final String threadName;
+    private final String poster;
+
+    private Post(long postTime, long dueTime, String threadName, String poster) {
+      this.postTime = postTime;
+      this.dueTime = dueTime;
+      this.threadName = threadName;
+      this.poster = poster;
+    }
+  }
+
+  private static class Track {
+    private final int id;
+    private final String name;
+
+    private Track(int id, String name) {
+      this.id = id;
+      this.name = name;
+    }
+  }
+
+  private static class Event {
+    private final Track track;
+    private final String name;
+    private final Post post;
+    private final long virtualTime;
+    private final long startNanos;
+    private final long durationNanos;
+
+    private Event(Track track, String name, Post post, long virtualTime, long startNanos, long durationNanos) {
+      this.track = track;
+      this.name = name;
+      this.post = post;
+      this.virtualTime = virtualTime;
+      this.startNanos = startNanos;
+      this.durationNanos = durationNanos;
+    }
+  }
+}
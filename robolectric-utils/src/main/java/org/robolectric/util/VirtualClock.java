@@ -0,0 +1,134 @@
+package org.robolectric.util;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A monotonic virtual clock, with nanosecond resolution, shared by everything in a test that needs
+ * to know the time, so that {@code SystemClock.uptimeMillis()}, {@code System.nanoTime()},
+ * {@code System.currentTimeMillis()}, {@code Choreographer} frame times and the times scheduled
+ * runnables run at all agree.
+ *
+ * <p>The clock is driven by the {@link Scheduler} it was given to: as that scheduler's time moves
+ * forwards, so does the clock. It never moves backwards, even if its scheduler is moved back to an
+ * earlier time. Wall clock time is the epoch plus the time on the clock.</p>
+ *
+ * <p>{@link Listener}s are told after the clock moves, which lets other schedulers follow it.</p>
+ */
+public class VirtualClock {
+
+  /**
+   * Told whenever a {@link VirtualClock} moves forwards.
+   */
+  public interface Listener {
+    /**
+     * Called after the clock has moved. If the clock is moved again while listeners are being
+     * told, they'll be told again once they've all seen this time.
+     *
+     * @param clock    The clock.
+     * @param nanoTime Its new time, in nanoseconds.
+     */
+    void onTimeAdvanced(VirtualClock clock, long nanoTime);
+  }
+
+  private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+  private volatile long nanoTime;
+  private volatile long epochMillis;
+  private boolean notifying;
+
+  /**
+   * Get the time on the clock.
+   *
+   * @return Current time in nanoseconds.
+   */
+  public long getNanoTime() {
+    return nanoTime;
+  }
+
+  /**
+   * Get the time on the clock.
+   *
+   * @return Current time in milliseconds.
+   */
+  public long getUptimeMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(nanoTime);
+  }
+
+  /**
+   * Get the wall clock time the clock started at.
+   *
+   * @return The epoch, in milliseconds.
+   * @see #setEpochMillis(long)
+   */
+  public long getEpochMillis() {
+    return epochMillis;
+  }
+
+  /**
+   * Set the wall clock time the clock started at. This doesn't move the clock.
+   *
+   * @param epochMillis The epoch, in milliseconds.
+   */
+  public void setEpochMillis(long epochMillis) {
+    this.epochMillis = epochMillis;
+  }
+
+  /**
+   * Get the wall clock time.
+   *
+   * @return The epoch plus the time on the clock, in milliseconds.
+   */
+  public long getWallClockMillis() {
+    return epochMillis + getUptimeMillis();
+  }
+
+  public void addListener(Listener listener) {
+    listeners.add(listener);
+  }
+
+  public void removeListener(Listener listener) {
+    listeners.remove(listener);
+  }
+
+  /**
+   * Move the clock forwards, and tell the listeners. Times earlier than the current time are ignored.
+   *
+   * @param nanoTime The new time, in nanoseconds.
+   */
+  void advanceTo(long nanoTime) {
+    synchronized (this) {
+      if (nanoTime <= this.nanoTime) {
+        return;
+      }
+      this.nanoTime = nanoTime;
+      if (notifying) {
+        // a listener moved the clock, or another thread did; the listeners are told again below
+        return;
+      }
+      notifying = true;
+    }
+
+    boolean done = false;
+    try {
+      while (!done) {
+        long notifiedTime = this.nanoTime;
+        for (Listener listener : listeners) {
+          listener.onTimeAdvanced(this, notifiedTime);
+        }
+        synchronized (this) {
+          done = notifiedTime == this.nanoTime;
+          if (done) {
+            notifying = false;
+          }
+        }
+      }
+    } finally {
+      if (!done) {
+        synchronized (this) {
+          notifying = false;
+        }
+      }
+    }
+  }
+}
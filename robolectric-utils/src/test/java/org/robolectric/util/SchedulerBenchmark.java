@@ -0,0 +1,101 @@
+package org.robolectric.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how many runnables per second a {@link Scheduler} can queue and run, the way a busy main looper would see
+ * them. This isn't run as part of the test suite; run its {@code main} method directly.
+ */
+public class SchedulerBenchmark {
+  private static final int[] TASK_COUNTS = {10000, 100000};
+  private static final int WARMUP_ROUNDS = 5;
+  private static final int MEASURED_ROUNDS = 10;
+
+  public static void main(String[] args) {
+    for (Scenario scenario : Scenario.values()) {
+      for (int taskCount : TASK_COUNTS) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+          scenario.run(taskCount);
+        }
+        long elapsedNanos = 0;
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+          elapsedNanos += scenario.run(taskCount);
+        }
+        double tasksPerSecond = (double) taskCount * MEASURED_ROUNDS * TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+        System.out.println(String.format("%-28s %7d tasks: %,14.0f tasks/s", scenario, taskCount, tasksPerSecond));
+      }
+    }
+  }
+
+  private enum Scenario {
+    /** Everything is posted up front, then run by a single call, like {@code ShadowLooper.runToEndOfTasks()}. */
+    POST_THEN_RUN_TO_END {
+      @Override
+      void exercise(Scheduler scheduler, int taskCount) {
+        Runnable runnable = new CountingRunnable();
+        for (int i = 0; i < taskCount; i++) {
+          scheduler.postDelayed(runnable, i % 1000);
+        }
+        scheduler.advanceToLastPostedRunnable();
+      }
+    },
+
+    /** Each runnable posts the next one, like a polling loop or an animation driven from the main looper. */
+    CHAINED_POSTS {
+      @Override
+      void exercise(final Scheduler scheduler, final int taskCount) {
+        scheduler.post(new Runnable() {
+          private int remaining = taskCount;
+
+          @Override
+          public void run() {
+            if (--remaining > 0) {
+              scheduler.postDelayed(this, 1);
+            }
+          }
+        });
+        scheduler.advanceToLastPostedRunnable();
+        while (scheduler.size() > 0) {
+          scheduler.advanceToLastPostedRunnable();
+        }
+      }
+    },
+
+    /** Runnables are posted and most are removed again before they run, like rescheduled timeouts. */
+    POST_AND_REMOVE {
+      @Override
+      void exercise(Scheduler scheduler, int taskCount) {
+        for (int i = 0; i < taskCount; i++) {
+          Runnable timeout = new CountingRunnable();
+          scheduler.postDelayed(timeout, 1000 + i);
+          scheduler.postDelayed(new CountingRunnable(), i % 100);
+          scheduler.remove(timeout);
+        }
+        scheduler.advanceToLastPostedRunnable();
+      }
+    };
+
+    abstract void exercise(Scheduler scheduler, int taskCount);
+
+    long run(int taskCount) {
+      Scheduler scheduler = new Scheduler();
+      scheduler.pause();
+      long start = System.nanoTime();
+      exercise(scheduler, taskCount);
+      long elapsed = System.nanoTime() - start;
+      if (scheduler.size() != 0) {
+        throw new IllegalStateException(this + " left " + scheduler.size() + " runnables queued");
+      }
+      return elapsed;
+    }
+  }
+
+  private static class CountingRunnable implements Runnable {
+    private static int count;
+
+    @Override
+    public void run() {
+      count++;
+    }
+  }
+}
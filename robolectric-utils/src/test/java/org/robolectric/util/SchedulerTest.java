@@ -234,6 +234,218 @@ public class SchedulerTest {
     assertThat(runnable.wasRun).isFalse();
   }
 
+  @Test
+  public void remove_shouldOnlyRemoveThatRunnable() throws Exception {
+    AddToTranscript two = new AddToTranscript("two");
+    scheduler.post(new AddToTranscript("one"));
+    scheduler.postDelayed(two, 10);
+    scheduler.post(two);
+    scheduler.postDelayed(new AddToTranscript("three"), 20);
+    scheduler.remove(two);
+    assertThat(scheduler.size()).isEqualTo(2);
+
+    scheduler.advanceToLastPostedRunnable();
+    transcript.assertEventsSoFar("one", "three");
+    assertThat(scheduler.getCurrentTime()).isEqualTo(startTime + 20);
+    assertThat(scheduler.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void remove_afterManyCancellations_shouldRunRemainingRunnablesInOrder() throws Exception {
+    for (int i = 0; i < 1000; i++) {
+      TestRunnable cancelled = new TestRunnable();
+      scheduler.postDelayed(cancelled, i);
+      scheduler.postDelayed(new AddToTranscript(String.valueOf(i)), 1000 - i);
+      scheduler.remove(cancelled);
+    }
+    assertThat(scheduler.size()).isEqualTo(1000);
+
+    scheduler.advanceBy(2);
+    transcript.assertEventsSoFar("999", "998");
+    assertThat(scheduler.size()).isEqualTo(998);
+  }
+
+  @Test
+  public void postDelayed_shouldRunRunnablesScheduledForTheSameTimeInTheOrderTheyWerePosted() throws Exception {
+    List<String> expected = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      scheduler.postDelayed(new AddToTranscript("late" + i), 20);
+      scheduler.postDelayed(new AddToTranscript("early" + i), 10);
+    }
+    for (int i = 0; i < 100; i++) {
+      expected.add("early" + i);
+    }
+    for (int i = 0; i < 100; i++) {
+      expected.add("late" + i);
+    }
+
+    scheduler.advanceToLastPostedRunnable();
+    transcript.assertEventsSoFar(expected.toArray(new String[expected.size()]));
+  }
+
+  @Test
+  public void postDelayed_shouldOrderRunnablesWhoseTimesDifferByMoreThanAnInt() throws Exception {
+    scheduler.postDelayed(new AddToTranscript("later"), (1L << 32) + 1);
+    scheduler.postDelayed(new AddToTranscript("sooner"), 1);
+
+    scheduler.runOneTask();
+    transcript.assertEventsSoFar("sooner");
+    scheduler.runOneTask();
+    transcript.assertEventsSoFar("later");
+  }
+
+  @Test
+  public void advanceBy_shouldRunRunnablesPostedWhileAdvancingInOrder() throws Exception {
+    scheduler.postDelayed(new Runnable() {
+      @Override
+      public void run() {
+        transcript.add("one");
+        scheduler.post(new AddToTranscript("four"));
+        scheduler.postAtFrontOfQueue(new AddToTranscript("two"));
+      }
+    }, 10);
+    scheduler.postDelayed(new AddToTranscript("three"), 10);
+    scheduler.postDelayed(new AddToTranscript("five"), 20);
+
+    assertThat(scheduler.advanceBy(20)).isTrue();
+    transcript.assertEventsSoFar("one", "two", "three", "four", "five");
+    assertThat(scheduler.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void advanceBy_shouldNotRunRunnablesRemovedWhileAdvancing() throws Exception {
+    final AddToTranscript two = new AddToTranscript("two");
+    scheduler.post(new Runnable() {
+      @Override
+      public void run() {
+        transcript.add("one");
+        scheduler.remove(two);
+      }
+    });
+    scheduler.post(two);
+    scheduler.post(new AddToTranscript("three"));
+
+    scheduler.advanceBy(0);
+    transcript.assertEventsSoFar("one", "three");
+    assertThat(scheduler.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void advanceBy_whenARunnableAdvancesTheScheduler_shouldRunEachRunnableOnce() throws Exception {
+    scheduler.post(new Runnable() {
+      @Override
+      public void run() {
+        transcript.add("one");
+        scheduler.advanceBy(0);
+      }
+    });
+    scheduler.post(new AddToTranscript("two"));
+    scheduler.postDelayed(new AddToTranscript("three"), 10);
+
+    scheduler.advanceBy(10);
+    transcript.assertEventsSoFar("one", "two", "three");
+    assertThat(scheduler.getCurrentTime()).isEqualTo(startTime + 10);
+  }
+
+  @Test
+  public void advanceBy_shouldLetOtherThreadsPostWhileRunnablesRun() throws Exception {
+    scheduler.post(new Runnable() {
+      @Override
+      public void run() {
+        Thread thread = new Thread() {
+          @Override
+          public void run() {
+            scheduler.post(new AddToTranscript("two"));
+          }
+        };
+        thread.start();
+        try {
+          thread.join();
+        } catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        }
+        transcript.add("one");
+      }
+    });
+
+    scheduler.advanceBy(0);
+    transcript.assertEventsSoFar("one", "two");
+  }
+
+  @Test
+  public void postFromAnotherThread_shouldNotWaitForTheSchedulersLock() throws Exception {
+    Thread thread = new Thread() {
+      @Override
+      public void run() {
+        scheduler.postDelayed(new AddToTranscript("one"), 10);
+        scheduler.postAtFrontOfQueue(new AddToTranscript("two"));
+      }
+    };
+    synchronized (scheduler) {
+      thread.start();
+      thread.join(5000);
+      assertThat(thread.isAlive()).isFalse();
+    }
+
+    assertThat(scheduler.size()).isEqualTo(2);
+    scheduler.advanceBy(10);
+    transcript.assertEventsSoFar("two", "one");
+  }
+
+  @Test
+  public void postFromOtherThreads_shouldRunEachThreadsRunnablesInOrder() throws Exception {
+    final int threadCount = 4;
+    final int postsPerThread = 1000;
+    final List<List<Integer>> runOrder = new ArrayList<>();
+    Thread[] threads = new Thread[threadCount];
+    for (int i = 0; i < threadCount; i++) {
+      final List<Integer> order = new ArrayList<>();
+      runOrder.add(order);
+      threads[i] = new Thread() {
+        @Override
+        public void run() {
+          for (int j = 0; j < postsPerThread; j++) {
+            final int value = j;
+            scheduler.post(new Runnable() {
+              @Override
+              public void run() {
+                order.add(value);
+              }
+            });
+          }
+        }
+      };
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertThat(scheduler.size()).isEqualTo(threadCount * postsPerThread);
+    scheduler.advanceBy(0);
+    for (List<Integer> order : runOrder) {
+      assertThat(order).hasSize(postsPerThread).isSorted();
+    }
+  }
+
+  @Test
+  public void remove_shouldRemoveRunnablesPostedFromOtherThreads() throws Exception {
+    final TestRunnable runnable = new TestRunnable();
+    Thread thread = new Thread() {
+      @Override
+      public void run() {
+        scheduler.post(runnable);
+      }
+    };
+    thread.start();
+    thread.join();
+
+    scheduler.remove(runnable);
+    assertThat(scheduler.size()).isEqualTo(0);
+    scheduler.advanceBy(0);
+    assertThat(runnable.wasRun).isFalse();
+  }
+
   @Test
   public void reset_shouldUnPause() throws Exception {
     scheduler.pause();
@@ -0,0 +1,76 @@
+package org.robolectric.util;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.StringWriter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SchedulerTraceTest {
+  private final Scheduler scheduler = new Scheduler();
+
+  @After
+  public void tearDown() throws Exception {
+    SchedulerTrace.stop();
+  }
+
+  @Test
+  public void shouldNotRecordAnythingUnlessStarted() throws Exception {
+    scheduler.post(new TestRunnable());
+    assertThat(SchedulerTrace.stop()).isNull();
+  }
+
+  @Test
+  public void shouldRecordEachRunnableThatRuns() throws Exception {
+    SchedulerTrace.setName(scheduler, "test scheduler");
+    SchedulerTrace trace = SchedulerTrace.start();
+    scheduler.pause();
+    scheduler.postDelayed(new NamedRunnable("first \"quoted\""), 10);
+    scheduler.postDelayed(new TestRunnable(), 20);
+    scheduler.advanceBy(10);
+    assertThat(SchedulerTrace.stop()).isSameAs(trace);
+    scheduler.advanceBy(10);
+
+    assertThat(trace.getEventCount()).isEqualTo(1);
+    StringWriter json = new StringWriter();
+    trace.writeTo(json);
+    assertThat(json.toString())
+        .startsWith("{")
+        .contains("\"traceEvents\":[")
+        .contains("\"args\":{\"name\":\"test scheduler\"}")
+        .contains("\"name\":\"first \\\"quoted\\\"\",\"cat\":\"runnable\",\"ph\":\"X\"")
+        .contains("\"ranAt\":110,\"postedAt\":100,\"dueAt\":110")
+        .contains("\"postedFrom\":\"" + getClass().getName() + ".shouldRecordEachRunnableThatRuns(")
+        .doesNotContain(TestRunnable.class.getName());
+  }
+
+  @Test
+  public void shouldRecordRunnablesRunAsSoonAsTheyArePosted() throws Exception {
+    SchedulerTrace trace = SchedulerTrace.start();
+    scheduler.post(new TestRunnable());
+
+    StringWriter json = new StringWriter();
+    trace.writeTo(json);
+    assertThat(json.toString())
+        .contains("\"name\":\"" + TestRunnable.class.getName() + "\"")
+        .contains("\"ranAt\":100,\"postedAt\":100,\"dueAt\":100");
+  }
+
+  private static class NamedRunnable implements Runnable {
+    private final String name;
+
+    NamedRunnable(String name) {
+      this.name = name;
+    }
+
+    @Override
+    public void run() {
+    }
+
+    @Override
+    public String toString() {
+      return name;
+    }
+  }
+}
@@ -0,0 +1,67 @@
+package org.robolectric.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class VirtualClockTest {
+  private final VirtualClock clock = new VirtualClock();
+  private final Scheduler scheduler = new Scheduler(clock);
+
+  @Test
+  public void shouldStartAtTheSchedulersTime() throws Exception {
+    assertThat(clock.getUptimeMillis()).isEqualTo(100);
+    assertThat(clock.getNanoTime()).isEqualTo(100 * TimeUtils.NANOS_PER_MS);
+  }
+
+  @Test
+  public void shouldBeAtEachRunnablesTimeWhenItRuns() throws Exception {
+    final List<Long> times = new ArrayList<>();
+    Runnable recordTime = new Runnable() {
+      @Override
+      public void run() {
+        times.add(clock.getUptimeMillis());
+      }
+    };
+    scheduler.postDelayed(recordTime, 10);
+    scheduler.postDelayed(recordTime, 30);
+    scheduler.advanceBy(50);
+
+    assertThat(times).containsExactly(110L, 130L);
+    assertThat(clock.getUptimeMillis()).isEqualTo(150);
+  }
+
+  @Test
+  public void shouldNotMoveBackwards() throws Exception {
+    scheduler.advanceTo(1000);
+    scheduler.advanceTo(500);
+    assertThat(clock.getUptimeMillis()).isEqualTo(1000);
+  }
+
+  @Test
+  public void shouldAddTheEpochToGetWallClockTime() throws Exception {
+    clock.setEpochMillis(1000000);
+    scheduler.advanceBy(5);
+    assertThat(clock.getWallClockMillis()).isEqualTo(1000105);
+  }
+
+  @Test
+  public void shouldTellListenersAgainWhenTheyMoveTheClock() throws Exception {
+    final List<Long> times = new ArrayList<>();
+    clock.addListener(new VirtualClock.Listener() {
+      @Override
+      public void onTimeAdvanced(VirtualClock clock, long nanoTime) {
+        times.add(nanoTime / TimeUtils.NANOS_PER_MS);
+        if (times.size() == 1) {
+          scheduler.advanceBy(10);
+        }
+      }
+    });
+    scheduler.advanceTo(200);
+
+    assertThat(times).containsExactly(200L, 210L);
+  }
+}
@@ -9,7 +9,6 @@ import org.junit.runners.model.InitializationError;
 import org.junit.runners.model.Statement;
 import org.junit.runners.model.TestClass;
 import org.robolectric.annotation.Config;
-import org.robolectric.internal.DeepCloner;
 import org.robolectric.internal.SdkEnvironment;
 import org.robolectric.manifest.AndroidManifest;
 import org.robolectric.res.EmptyResourceLoader;
@@ -105,8 +104,7 @@ public final class ParameterizedRobolectricTestRunner extends Suite {
     Statement methodBlock(FrameworkMethod method, Config config, AndroidManifest appManifest, SdkEnvironment environment) {
       configureShadows(environment, config);
 
-      DeepCloner deepCloner = new DeepCloner(environment.getRobolectricClassLoader());
-      parameters = deepCloner.clone(parameters);
+      parameters = environment.getDeepCloner().clone(parameters);
 
       return super.methodBlock(method, config, appManifest, environment);
     }
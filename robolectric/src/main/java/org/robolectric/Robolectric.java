@@ -16,7 +16,9 @@ import org.robolectric.res.ResName;
 import org.robolectric.res.ResourceLoader;
 import org.robolectric.res.builder.XmlResourceParserImpl;
 import org.robolectric.shadows.ShadowApplication;
+import org.robolectric.shadows.ShadowLooper;
 import org.robolectric.util.*;
+import org.robolectric.util.concurrent.BackgroundThreadPool;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
@@ -24,6 +26,7 @@ import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import java.util.ServiceLoader;
+import java.util.concurrent.TimeUnit;
 
 public class Robolectric {
   private static ShadowsAdapter shadowsAdapter = null;
@@ -202,6 +205,44 @@ public class Robolectric {
     getBackgroundThreadScheduler().advanceToLastPostedRunnable();
   }
 
+  /**
+   * Wait for all work on real background threads (see {@link RoboSettings#setBackgroundThreadCount(int)}) to finish,
+   * idling the main looper after it does, until neither has anything left to run. Gives up after ten seconds.
+   */
+  public static void flushBackgroundThreads() {
+    flushBackgroundThreads(10, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Wait for all work on real background threads (see {@link RoboSettings#setBackgroundThreadCount(int)}) to finish,
+   * idling the main looper after it does, until neither has anything left to run.
+   *
+   * @param timeout How long to wait for background work, in total.
+   * @param unit    The unit of {@code timeout}.
+   * @throws IllegalStateException if background work is still running when the timeout elapses.
+   */
+  public static void flushBackgroundThreads(long timeout, TimeUnit unit) {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    while (true) {
+      BackgroundThreadPool threadPool = BackgroundThreadPool.getInstance();
+      if (threadPool != null) {
+        try {
+          if (!threadPool.awaitIdle(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+            throw new IllegalStateException("background work was still running after " + unit.toMillis(timeout) + "ms");
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new RuntimeException(e);
+        }
+      }
+      // Anything the background work posted is queued before the pool counts it as done.
+      if ((threadPool == null || threadPool.isIdle()) && !getForegroundThreadScheduler().areAnyRunnable()) {
+        return;
+      }
+      ShadowLooper.idleMainLooper();
+    }
+  }
+
   private static ShadowsAdapter instantiateShadowsAdapter() {
     ShadowsAdapter result = null;
     for (ShadowsAdapter adapter : ServiceLoader.load(ShadowsAdapter.class)) {
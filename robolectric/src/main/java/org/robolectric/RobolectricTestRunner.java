@@ -27,6 +27,7 @@ import org.robolectric.internal.ParallelUniverse;
 import org.robolectric.internal.ParallelUniverseInterface;
 import org.robolectric.internal.SdkConfig;
 import org.robolectric.internal.SdkEnvironment;
+import org.robolectric.internal.WeightedCache;
 import org.robolectric.internal.bytecode.ClassHandler;
 import org.robolectric.internal.bytecode.InstrumentationConfiguration;
 import org.robolectric.internal.bytecode.InvokeDynamic;
@@ -62,7 +63,6 @@ import java.lang.reflect.Method;
 import java.net.URL;
 import java.security.SecureRandom;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -78,8 +78,22 @@ import static com.google.common.collect.Lists.reverse;
  */
 public class RobolectricTestRunner extends BlockJUnit4ClassRunner {
   private static final String CONFIG_PROPERTIES = "robolectric.properties";
-  private static final Map<AndroidManifest, ResourceLoader> appResourceLoaderCache = new HashMap<>();
-  private static final Map<ManifestIdentifier, AndroidManifest> appManifestsCache = new HashMap<>();
+  private static final WeightedCache<AndroidManifest, ResourceLoader> appResourceLoaderCache = new WeightedCache<>(
+      Long.getLong("robolectric.resourceLoaderCache.maxBytes", Runtime.getRuntime().maxMemory() / 4),
+      new WeightedCache.Weigher<ResourceLoader>() {
+        @Override
+        public long weigh(ResourceLoader resourceLoader) {
+          return resourceLoader.estimateRetainedSize();
+        }
+      });
+  private static final WeightedCache<ManifestIdentifier, AndroidManifest> appManifestsCache = new WeightedCache<>(
+      Integer.getInteger("robolectric.manifestCache.maxEntries", 100),
+      new WeightedCache.Weigher<AndroidManifest>() {
+        @Override
+        public long weigh(AndroidManifest androidManifest) {
+          return 1;
+        }
+      });
   private static ResourceLoader compiletimeSdkResourceLoader;
 
   private TestLifecycle<Application> testLifecycle;
@@ -345,19 +359,15 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner {
   }
 
   protected AndroidManifest getAppManifest(Config config) {
-    ManifestFactory manifestFactory = getManifestFactory(config);
+    final ManifestFactory manifestFactory = getManifestFactory(config);
     ManifestIdentifier identifier = manifestFactory.identify(config);
 
-    synchronized (appManifestsCache) {
-      AndroidManifest appManifest;
-      appManifest = appManifestsCache.get(identifier);
-      if (appManifest == null) {
-        appManifest = manifestFactory.create(identifier);
-        appManifestsCache.put(identifier, appManifest);
+    return appManifestsCache.get(identifier, new WeightedCache.Loader<ManifestIdentifier, AndroidManifest>() {
+      @Override
+      public AndroidManifest load(ManifestIdentifier manifestIdentifier) {
+        return manifestFactory.create(manifestIdentifier);
       }
-
-      return appManifest;
-    }
+    });
   }
 
   public Config getConfig(Method method) {
@@ -538,16 +548,16 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner {
   }
 
   private final ResourceLoader getAppResourceLoader(final AndroidManifest appManifest) {
-    ResourceLoader resourceLoader = appResourceLoaderCache.get(appManifest);
-    if (resourceLoader == null) {
-      List<PackageResourceLoader> appAndLibraryResourceLoaders = new ArrayList<>();
-      for (ResourcePath resourcePath : appManifest.getIncludedResourcePaths()) {
-        appAndLibraryResourceLoaders.add(new PackageResourceLoader(resourcePath, new ResourceExtractor(resourcePath)));
+    return appResourceLoaderCache.get(appManifest, new WeightedCache.Loader<AndroidManifest, ResourceLoader>() {
+      @Override
+      public ResourceLoader load(AndroidManifest manifest) {
+        List<PackageResourceLoader> appAndLibraryResourceLoaders = new ArrayList<>();
+        for (ResourcePath resourcePath : manifest.getIncludedResourcePaths()) {
+          appAndLibraryResourceLoaders.add(new PackageResourceLoader(resourcePath, new ResourceExtractor(resourcePath)));
+        }
+        return new OverlayResourceLoader(manifest.getPackageName(), appAndLibraryResourceLoaders);
       }
-      resourceLoader = new OverlayResourceLoader(appManifest.getPackageName(), appAndLibraryResourceLoaders);
-      appResourceLoaderCache.put(appManifest, resourceLoader);
-    }
-    return resourceLoader;
+    });
   }
 
   protected ShadowMap createShadowMap() {
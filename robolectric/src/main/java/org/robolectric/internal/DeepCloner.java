@@ -1,22 +1,102 @@
 package org.robolectric.internal;
 
 import com.thoughtworks.xstream.XStream;
+import org.robolectric.util.Logger;
+import sun.misc.Unsafe;
+
+import java.io.File;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.URI;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Currency;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.regex.Pattern;
 
 /**
  * The purpose of the deep cloner is to create a deep clone of an object. An
  * object can also be cloned to a different class-loader.
  *
+ * Object graphs are copied structurally: each object is allocated as the corresponding class from the target
+ * class-loader and its fields are copied directly, with the field layout of each class computed once. Cycles and
+ * shared references are preserved, immutable JDK types are passed through by reference, and JDK collections and
+ * maps are rebuilt so that their elements are rehashed in the target class-loader. Anything which can't be copied
+ * this way falls back to serializing the whole graph through XStream.
+ *
  * Based on PowerMock's DeepCloner class.
  */
 public class DeepCloner {
-  private final XStream xStream;
+  private static final Unsafe UNSAFE;
+  // -1 if the JDK's LinkedHashMap has no accessOrder field, in which case LinkedHashMaps are left to XStream.
+  private static final long ACCESS_ORDER_OFFSET;
+
+  static {
+    Unsafe unsafe = null;
+    long accessOrderOffset = -1;
+    try {
+      Field unsafeField = Unsafe.class.getDeclaredField("theUnsafe");
+      unsafeField.setAccessible(true);
+      unsafe = (Unsafe) unsafeField.get(null);
+      accessOrderOffset = unsafe.objectFieldOffset(LinkedHashMap.class.getDeclaredField("accessOrder"));
+    } catch (NoSuchFieldException | IllegalAccessException | RuntimeException e) {
+      Logger.debug("Deep cloning will fall back to XStream more often: %s", e);
+    }
+    UNSAFE = unsafe;
+    ACCESS_ORDER_OFFSET = accessOrderOffset;
+  }
+
+  private static final Set<Class<?>> IMMUTABLE_TYPES = new HashSet<Class<?>>(Arrays.asList(
+      String.class, Boolean.class, Character.class, Byte.class, Short.class, Integer.class, Long.class,
+      Float.class, Double.class, BigInteger.class, BigDecimal.class, UUID.class, Locale.class, Currency.class,
+      Pattern.class, URI.class, URL.class, File.class));
+
+  private static final ClassValue<Map<String, Field>> DECLARED_FIELDS = new ClassValue<Map<String, Field>>() {
+    @Override protected Map<String, Field> computeValue(Class<?> type) {
+      Map<String, Field> fields = new LinkedHashMap<>();
+      for (Field field : type.getDeclaredFields()) {
+        if (!Modifier.isStatic(field.getModifiers())) {
+          fields.put(field.getName(), field);
+        }
+      }
+      return fields;
+    }
+  };
+
+  private final ClassLoader classLoader;
+  // Both caches live as long as the cloner, which should be shared by everything cloning into the same class-loader.
+  private final ConcurrentMap<Class<?>, Class<?>> targetClasses = new ConcurrentHashMap<>();
+  private final ConcurrentMap<Class<?>, FieldCopier[]> fieldCopiers = new ConcurrentHashMap<>();
+  private XStream xStream;
 
   /**
-   * Clone using the supplied ClassLoader.
+   * Clone using the supplied ClassLoader. Cloners are safe to share between threads, and since they cache the field
+   * layout of each class they've cloned, one should be kept for each target class-loader; see
+   * {@link SdkEnvironment#getDeepCloner()}.
    */
   public DeepCloner(ClassLoader classLoader) {
-    xStream = new XStream();
-    xStream.setClassLoader(classLoader);
+    this.classLoader = classLoader;
   }
 
   /**
@@ -24,8 +104,251 @@ public class DeepCloner {
    *
    * @return A deep clone of the object to clone.
    */
+  @SuppressWarnings("unchecked")
   public <T> T clone(T objectToClone) {
+    if (UNSAFE == null) {
+      return xStreamClone(objectToClone);
+    }
+    try {
+      return (T) deepClone(objectToClone, new IdentityHashMap<Object, Object>());
+    } catch (CannotCloneException e) {
+      Logger.debug("Falling back to XStream to clone %s: %s", objectToClone, e.getMessage());
+      return xStreamClone(objectToClone);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private synchronized <T> T xStreamClone(T objectToClone) {
+    if (xStream == null) {
+      xStream = new XStream();
+      xStream.setClassLoader(classLoader);
+    }
     final String serialized = xStream.toXML(objectToClone);
     return (T) xStream.fromXML(serialized);
   }
+
+  private Object deepClone(Object original, IdentityHashMap<Object, Object> clones) {
+    if (original == null) return null;
+
+    Object clone = clones.get(original);
+    if (clone != null) return clone;
+
+    Class<?> type = original.getClass();
+    if (type == Class.class) {
+      return targetClass((Class<?>) original);
+    }
+
+    Class<?> targetType = targetClass(type);
+    if (targetType == type && (IMMUTABLE_TYPES.contains(type) || type.isEnum())) {
+      return original;
+    } else if (type.isEnum()) {
+      return targetType.getEnumConstants()[((Enum<?>) original).ordinal()];
+    } else if (original instanceof Enum) {
+      // constant-specific class bodies are subclasses of the enum
+      return targetType.getSuperclass().getEnumConstants()[((Enum<?>) original).ordinal()];
+    } else if (type.isArray()) {
+      return cloneArray(original, targetType, clones);
+    } else if (isRebuildable(type)) {
+      return rebuild(original, targetType, clones);
+    } else if ((original instanceof Collection || original instanceof Map) && type.getClassLoader() != null) {
+      throw new CannotCloneException("can't rebuild " + type.getName());
+    }
+
+    try {
+      clone = UNSAFE.allocateInstance(targetType);
+    } catch (InstantiationException e) {
+      throw new CannotCloneException("can't allocate " + targetType.getName());
+    }
+    clones.put(original, clone);
+
+    for (FieldCopier fieldCopier : fieldCopiers(type, targetType)) {
+      fieldCopier.copy(original, clone, clones);
+    }
+    return clone;
+  }
+
+  private Object cloneArray(Object original, Class<?> targetType, IdentityHashMap<Object, Object> clones) {
+    Class<?> componentType = targetType.getComponentType();
+    int length = Array.getLength(original);
+    Object clone;
+    if (componentType.isPrimitive()) {
+      clone = Array.newInstance(componentType, length);
+      System.arraycopy(original, 0, clone, 0, length);
+      clones.put(original, clone);
+    } else {
+      Object[] source = (Object[]) original;
+      Object[] target = (Object[]) Array.newInstance(componentType, length);
+      clones.put(original, target);
+      for (int i = 0; i < length; i++) {
+        target[i] = deepClone(source[i], clones);
+      }
+      clone = target;
+    }
+    return clone;
+  }
+
+  /**
+   * JDK collections and maps are rebuilt element by element, since their internal layout may depend on hash codes
+   * which differ between class-loaders (e.g. for enums). Their comparators, and the access order of a
+   * {@link LinkedHashMap}, are carried over.
+   */
+  private static boolean isRebuildable(Class<?> type) {
+    return type.getClassLoader() == null
+        && (Collection.class.isAssignableFrom(type) || Map.class.isAssignableFrom(type))
+        && noArgConstructor(type) != null;
+  }
+
+  @SuppressWarnings("unchecked")
+  private Object rebuild(Object original, Class<?> targetType, IdentityHashMap<Object, Object> clones) {
+    Object clone;
+    try {
+      clone = newEmptyCopy(original, targetType, clones);
+    } catch (ReflectiveOperationException e) {
+      throw new CannotCloneException("can't instantiate " + targetType.getName());
+    }
+    clones.put(original, clone);
+
+    if (original instanceof Map) {
+      Map<Object, Object> target = (Map<Object, Object>) clone;
+      for (Map.Entry<?, ?> entry : ((Map<?, ?>) original).entrySet()) {
+        target.put(deepClone(entry.getKey(), clones), deepClone(entry.getValue(), clones));
+      }
+    } else {
+      Collection<Object> target = (Collection<Object>) clone;
+      for (Object element : (Collection<?>) original) {
+        target.add(deepClone(element, clones));
+      }
+    }
+    return clone;
+  }
+
+  /**
+   * Creates an empty instance of {@code targetType} set up like {@code original}.
+   */
+  private Object newEmptyCopy(Object original, Class<?> targetType, IdentityHashMap<Object, Object> clones) throws ReflectiveOperationException {
+    Comparator<?> comparator = comparatorOf(original);
+    if (comparator != null) {
+      Object targetComparator = deepClone(comparator, clones);
+      if (original instanceof Queue) {
+        // PriorityQueue and PriorityBlockingQueue only take a comparator along with an initial capacity
+        int initialCapacity = Math.max(1, ((Queue<?>) original).size());
+        return targetType.getConstructor(int.class, Comparator.class).newInstance(initialCapacity, targetComparator);
+      }
+      return targetType.getConstructor(Comparator.class).newInstance(targetComparator);
+    }
+    if (original instanceof LinkedHashMap) {
+      if (ACCESS_ORDER_OFFSET < 0) {
+        throw new CannotCloneException("can't tell the access order of " + targetType.getName());
+      }
+      if (UNSAFE.getBoolean(original, ACCESS_ORDER_OFFSET)) {
+        return targetType.getConstructor(int.class, float.class, boolean.class).newInstance(16, 0.75f, true);
+      }
+    }
+    return noArgConstructor(targetType).newInstance();
+  }
+
+  private static Comparator<?> comparatorOf(Object collection) {
+    if (collection instanceof SortedMap) {
+      return ((SortedMap<?, ?>) collection).comparator();
+    } else if (collection instanceof SortedSet) {
+      return ((SortedSet<?>) collection).comparator();
+    } else if (collection instanceof PriorityQueue) {
+      return ((PriorityQueue<?>) collection).comparator();
+    } else if (collection instanceof PriorityBlockingQueue) {
+      return ((PriorityBlockingQueue<?>) collection).comparator();
+    }
+    return null;
+  }
+
+  private static Constructor<?> noArgConstructor(Class<?> type) {
+    if (!Modifier.isPublic(type.getModifiers())) return null;
+    try {
+      return type.getConstructor();
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+  }
+
+  private Class<?> targetClass(Class<?> type) {
+    if (type.isPrimitive()) return type;
+
+    Class<?> targetClass = targetClasses.get(type);
+    if (targetClass == null) {
+      try {
+        targetClass = type.isArray()
+            ? Array.newInstance(targetClass(type.getComponentType()), 0).getClass()
+            : Class.forName(type.getName(), false, classLoader);
+      } catch (ClassNotFoundException e) {
+        throw new CannotCloneException("can't find " + type.getName());
+      }
+      Class<?> raced = targetClasses.putIfAbsent(type, targetClass);
+      targetClass = raced == null ? targetClass : raced;
+    }
+    return targetClass;
+  }
+
+  private FieldCopier[] fieldCopiers(Class<?> type, Class<?> targetType) {
+    FieldCopier[] copiers = fieldCopiers.get(type);
+    if (copiers == null) {
+      List<FieldCopier> copierList = new ArrayList<>();
+      for (Class<?> clazz = type, targetClazz = targetType; clazz != null; clazz = clazz.getSuperclass(), targetClazz = targetClazz.getSuperclass()) {
+        if (targetClazz == null || !clazz.getName().equals(targetClazz.getName())) {
+          throw new CannotCloneException("class hierarchy of " + type.getName() + " differs");
+        }
+
+        Map<String, Field> targetFields = DECLARED_FIELDS.get(targetClazz);
+        for (Field field : DECLARED_FIELDS.get(clazz).values()) {
+          Field targetField = targetFields.get(field.getName());
+          if (targetField == null || (field.getType().isPrimitive() && field.getType() != targetField.getType())) {
+            throw new CannotCloneException("no matching field for " + field);
+          }
+          copierList.add(new FieldCopier(field, targetField));
+        }
+      }
+      copiers = copierList.toArray(new FieldCopier[copierList.size()]);
+      FieldCopier[] raced = fieldCopiers.putIfAbsent(type, copiers);
+      copiers = raced == null ? copiers : raced;
+    }
+    return copiers;
+  }
+
+  private class FieldCopier {
+    private final Class<?> type;
+    private final long sourceOffset;
+    private final long targetOffset;
+
+    FieldCopier(Field source, Field target) {
+      type = source.getType();
+      sourceOffset = UNSAFE.objectFieldOffset(source);
+      targetOffset = UNSAFE.objectFieldOffset(target);
+    }
+
+    void copy(Object source, Object target, IdentityHashMap<Object, Object> clones) {
+      if (!type.isPrimitive()) {
+        UNSAFE.putObject(target, targetOffset, deepClone(UNSAFE.getObject(source, sourceOffset), clones));
+      } else if (type == int.class) {
+        UNSAFE.putInt(target, targetOffset, UNSAFE.getInt(source, sourceOffset));
+      } else if (type == long.class) {
+        UNSAFE.putLong(target, targetOffset, UNSAFE.getLong(source, sourceOffset));
+      } else if (type == boolean.class) {
+        UNSAFE.putBoolean(target, targetOffset, UNSAFE.getBoolean(source, sourceOffset));
+      } else if (type == double.class) {
+        UNSAFE.putDouble(target, targetOffset, UNSAFE.getDouble(source, sourceOffset));
+      } else if (type == float.class) {
+        UNSAFE.putFloat(target, targetOffset, UNSAFE.getFloat(source, sourceOffset));
+      } else if (type == char.class) {
+        UNSAFE.putChar(target, targetOffset, UNSAFE.getChar(source, sourceOffset));
+      } else if (type == short.class) {
+        UNSAFE.putShort(target, targetOffset, UNSAFE.getShort(source, sourceOffset));
+      } else {
+        UNSAFE.putByte(target, targetOffset, UNSAFE.getByte(source, sourceOffset));
+      }
+    }
+  }
+
+  private static class CannotCloneException extends RuntimeException {
+    CannotCloneException(String message) {
+      super(message);
+    }
+  }
 }
@@ -63,7 +63,10 @@ public class GradleManifestFactory implements ManifestFactory {
       manifest = FileFsFile.from(buildOutputDir, "bundles", flavor, abiSplit, type, manifestName);
     }
 
-    return new ManifestIdentifier(manifest, res, assets, packageName, null);
+    // R.txt with the app's final ids, including those of its libraries
+    FileFsFile symbols = FileFsFile.from(buildOutputDir, "symbols", flavor, type, "R.txt");
+
+    return new ManifestIdentifier(manifest, res, assets, packageName, null, symbols);
   }
 
   @Override
@@ -77,7 +80,9 @@ public class GradleManifestFactory implements ManifestFactory {
     Logger.debug("   Robolectric res directory: " + resDir.getPath());
     Logger.debug("   Robolectric manifest path: " + manifestFile.getPath());
     Logger.debug("    Robolectric package name: " + packageName);
-    return new AndroidManifest(manifestFile, resDir, assetDir, packageName);
+    AndroidManifest appManifest = new AndroidManifest(manifestFile, resDir, assetDir, packageName);
+    appManifest.setSymbolFile(manifestIdentifier.getSymbolFile());
+    return appManifest;
   }
 
   private static String getBuildOutputDir(Config config) {
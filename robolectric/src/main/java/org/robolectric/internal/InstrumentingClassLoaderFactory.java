@@ -7,8 +7,6 @@ import org.robolectric.internal.dependency.DependencyResolver;
 import org.robolectric.util.Pair;
 
 import java.net.URL;
-import java.util.LinkedHashMap;
-import java.util.Map;
 
 public class InstrumentingClassLoaderFactory {
 
@@ -18,13 +16,12 @@ public class InstrumentingClassLoaderFactory {
   /** We need to set the cache size of class loaders more than the number of supported APIs as different tests may have different configurations. */
   private static final int CACHE_SIZE = SdkConfig.getSupportedApis().size() * CACHE_SIZE_FACTOR;
 
-  // Simple LRU Cache. SdkEnvironments are unique across InstrumentingClassloaderConfig and SdkConfig
-  private static final LinkedHashMap<Pair<InstrumentationConfiguration, SdkConfig>, SdkEnvironment> sdkToEnvironment = new LinkedHashMap<Pair<InstrumentationConfiguration, SdkConfig>, SdkEnvironment>() {
-    @Override
-    protected boolean removeEldestEntry(Map.Entry<Pair<InstrumentationConfiguration, SdkConfig>, SdkEnvironment> eldest) {
-      return size() > CACHE_SIZE;
-    }
-  };
+  // LRU Cache bounded by estimated heap usage. SdkEnvironments are unique across InstrumentingClassloaderConfig and SdkConfig
+  private static final SdkEnvironmentCache sdkToEnvironment = SdkEnvironmentCache.fromSystemProperties(CACHE_SIZE);
+
+  static {
+    sdkToEnvironment.register();
+  }
 
   private final InstrumentationConfiguration instrumentationConfig;
   private final DependencyResolver dependencyResolver;
@@ -10,14 +10,21 @@ public class ManifestIdentifier {
   private final FsFile assetDir;
   private final String packageName;
   private final List<FsFile> libraryDirs;
+  private final FsFile symbolFile;
 
   public ManifestIdentifier(FsFile manifestFile, FsFile resDir, FsFile assetDir, String packageName,
                             List<FsFile> libraryDirs) {
+    this(manifestFile, resDir, assetDir, packageName, libraryDirs, null);
+  }
+
+  public ManifestIdentifier(FsFile manifestFile, FsFile resDir, FsFile assetDir, String packageName,
+                            List<FsFile> libraryDirs, FsFile symbolFile) {
     this.manifestFile = manifestFile;
     this.resDir = resDir;
     this.assetDir = assetDir;
     this.packageName = packageName;
     this.libraryDirs = libraryDirs;
+    this.symbolFile = symbolFile;
   }
 
   public FsFile getManifestFile() {
@@ -40,6 +47,13 @@ public class ManifestIdentifier {
     return libraryDirs;
   }
 
+  /**
+   * Returns where the build writes the app's {@code R.txt} symbol file, or null to look for it next to the manifest.
+   */
+  public FsFile getSymbolFile() {
+    return symbolFile;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) return true;
@@ -51,7 +65,8 @@ public class ManifestIdentifier {
     if (resDir != null ? !resDir.equals(that.resDir) : that.resDir != null) return false;
     if (assetDir != null ? !assetDir.equals(that.assetDir) : that.assetDir != null) return false;
     if (packageName != null ? !packageName.equals(that.packageName) : that.packageName != null) return false;
-    return libraryDirs != null ? libraryDirs.equals(that.libraryDirs) : that.libraryDirs == null;
+    if (libraryDirs != null ? !libraryDirs.equals(that.libraryDirs) : that.libraryDirs != null) return false;
+    return symbolFile != null ? symbolFile.equals(that.symbolFile) : that.symbolFile == null;
 
   }
 
@@ -62,6 +77,7 @@ public class ManifestIdentifier {
     result = 31 * result + (assetDir != null ? assetDir.hashCode() : 0);
     result = 31 * result + (packageName != null ? packageName.hashCode() : 0);
     result = 31 * result + (libraryDirs != null ? libraryDirs.hashCode() : 0);
+    result = 31 * result + (symbolFile != null ? symbolFile.hashCode() : 0);
     return result;
   }
 }
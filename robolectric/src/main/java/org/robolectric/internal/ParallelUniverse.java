@@ -28,6 +28,8 @@ import org.robolectric.shadows.ShadowLooper;
 import org.robolectric.util.ApplicationTestUtil;
 import org.robolectric.util.ReflectionHelpers;
 import org.robolectric.util.Scheduler;
+import org.robolectric.util.SchedulerTrace;
+import org.robolectric.util.VirtualClock;
 
 import java.lang.reflect.Method;
 import java.security.Security;
@@ -69,7 +71,9 @@ public class ParallelUniverse implements ParallelUniverseInterface {
     ReflectionHelpers.setStaticField(RuntimeEnvironment.class, "apiLevel", sdkConfig.getApiLevel());
 
     RuntimeEnvironment.application = null;
-    RuntimeEnvironment.setMasterScheduler(new Scheduler());
+    Scheduler masterScheduler = new Scheduler(new VirtualClock());
+    SchedulerTrace.setName(masterScheduler, "main looper");
+    RuntimeEnvironment.setMasterScheduler(masterScheduler);
     RuntimeEnvironment.setMainThread(Thread.currentThread());
 
     DefaultPackageManager packageManager = new DefaultPackageManager();
@@ -1,5 +1,6 @@
 package org.robolectric.internal;
 
+import org.robolectric.internal.bytecode.InstrumentingClassLoader;
 import org.robolectric.internal.bytecode.ShadowInvalidator;
 import org.robolectric.internal.dependency.DependencyResolver;
 import org.robolectric.internal.bytecode.ShadowMap;
@@ -14,11 +15,18 @@ import java.util.HashMap;
 import java.util.Map;
 
 public class SdkEnvironment {
+  /**
+   * Instrumented classes retain considerably more than their bytecode: the class itself, its constant pool,
+   * reflection data and the call sites bound by {@link org.robolectric.internal.bytecode.InvokeDynamicSupport}.
+   */
+  private static final int CLASS_BYTES_FACTOR = 4;
+
   private final SdkConfig sdkConfig;
   private final ClassLoader robolectricClassLoader;
   private final ShadowInvalidator shadowInvalidator;
   private ShadowMap shadowMap = ShadowMap.EMPTY;
   private ResourceLoader systemResourceLoader;
+  private DeepCloner deepCloner;
 
   public SdkEnvironment(SdkConfig sdkConfig, ClassLoader robolectricClassLoader) {
     this.sdkConfig = sdkConfig;
@@ -44,6 +52,25 @@ public class SdkEnvironment {
     return systemResourceLoader;
   }
 
+  /**
+   * Returns a rough estimate, in bytes, of the heap retained by this environment's class loader and
+   * system {@link ResourceLoader}. The estimate grows as classes and resources are loaded.
+   */
+  public long estimateRetainedSize() {
+    long size = 0;
+    if (robolectricClassLoader instanceof InstrumentingClassLoader) {
+      size += ((InstrumentingClassLoader) robolectricClassLoader).getDefinedClassBytes() * CLASS_BYTES_FACTOR;
+    }
+    ResourceLoader systemResourceLoader;
+    synchronized (this) {
+      systemResourceLoader = this.systemResourceLoader;
+    }
+    if (systemResourceLoader != null) {
+      size += systemResourceLoader.estimateRetainedSize();
+    }
+    return size;
+  }
+
   public Class<?> bootstrappedClass(Class<?> testClass) {
     try {
       return robolectricClassLoader.loadClass(testClass.getName());
@@ -56,6 +83,17 @@ public class SdkEnvironment {
     return robolectricClassLoader;
   }
 
+  /**
+   * @return A cloner into this environment's class-loader, shared so the field layouts it works out are kept between
+   * tests.
+   */
+  public synchronized DeepCloner getDeepCloner() {
+    if (deepCloner == null) {
+      deepCloner = new DeepCloner(robolectricClassLoader);
+    }
+    return deepCloner;
+  }
+
   public ShadowInvalidator getShadowInvalidator() {
     return shadowInvalidator;
   }
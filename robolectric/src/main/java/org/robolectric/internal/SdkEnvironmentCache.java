@@ -0,0 +1,167 @@
+package org.robolectric.internal;
+
+import org.robolectric.internal.bytecode.InstrumentationConfiguration;
+import org.robolectric.util.Logger;
+import org.robolectric.util.Pair;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LRU cache of {@link SdkEnvironment}s, bounded by an estimate of the heap they retain.
+ *
+ * Each environment pins an instrumented android-all class loader and its system resources, so the number of
+ * environments which fit depends on how much of each has been loaded. Least recently used environments are evicted
+ * once their combined {@link SdkEnvironment#estimateRetainedSize() estimated size} goes over budget; the most
+ * recently used environment is always kept. Optionally, evicted environments are held through soft references
+ * and reused if the garbage collector hasn't reclaimed them yet.
+ *
+ * The cache is configured with the following system properties:
+ * <ul>
+ *   <li>{@code robolectric.sdkEnvironmentCache.maxBytes}: the memory budget, defaults to half the max heap size.</li>
+ *   <li>{@code robolectric.sdkEnvironmentCache.maxEntries}: a hard limit on the number of environments.</li>
+ *   <li>{@code robolectric.sdkEnvironmentCache.softReferences}: hold evicted environments softly.</li>
+ * </ul>
+ */
+public class SdkEnvironmentCache implements SdkEnvironmentCacheMXBean {
+  public static final String OBJECT_NAME = "org.robolectric:type=SdkEnvironmentCache";
+
+  private final LinkedHashMap<Pair<InstrumentationConfiguration, SdkConfig>, SdkEnvironment> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private final Map<Pair<InstrumentationConfiguration, SdkConfig>, SoftReference<SdkEnvironment>> evictedEntries = new HashMap<>();
+  private final long maxBytes;
+  private final int maxEntries;
+  private final boolean useSoftReferences;
+
+  private long hits;
+  private long misses;
+  private long evictions;
+
+  public SdkEnvironmentCache(long maxBytes, int maxEntries, boolean useSoftReferences) {
+    this.maxBytes = maxBytes;
+    this.maxEntries = maxEntries;
+    this.useSoftReferences = useSoftReferences;
+  }
+
+  public static SdkEnvironmentCache fromSystemProperties(int defaultMaxEntries) {
+    long maxBytes = Long.getLong("robolectric.sdkEnvironmentCache.maxBytes", Runtime.getRuntime().maxMemory() / 2);
+    int maxEntries = Integer.getInteger("robolectric.sdkEnvironmentCache.maxEntries", defaultMaxEntries);
+    boolean useSoftReferences = Boolean.getBoolean("robolectric.sdkEnvironmentCache.softReferences");
+    return new SdkEnvironmentCache(maxBytes, maxEntries, useSoftReferences);
+  }
+
+  public synchronized SdkEnvironment get(Pair<InstrumentationConfiguration, SdkConfig> key) {
+    SdkEnvironment sdkEnvironment = entries.get(key);
+    if (sdkEnvironment == null && useSoftReferences) {
+      SoftReference<SdkEnvironment> reference = evictedEntries.remove(key);
+      sdkEnvironment = reference == null ? null : reference.get();
+      if (sdkEnvironment != null) {
+        entries.put(key, sdkEnvironment);
+      }
+    }
+
+    if (sdkEnvironment == null) {
+      misses++;
+    } else {
+      hits++;
+      // environments keep growing as they're used, so re-check the budget
+      evictIfNecessary();
+    }
+    return sdkEnvironment;
+  }
+
+  public synchronized void put(Pair<InstrumentationConfiguration, SdkConfig> key, SdkEnvironment sdkEnvironment) {
+    entries.put(key, sdkEnvironment);
+    evictIfNecessary();
+  }
+
+  private void evictIfNecessary() {
+    long retainedBytes = getEstimatedRetainedBytes();
+    Iterator<Map.Entry<Pair<InstrumentationConfiguration, SdkConfig>, SdkEnvironment>> iterator = entries.entrySet().iterator();
+    while (entries.size() > 1 && (entries.size() > maxEntries || retainedBytes > maxBytes)) {
+      Map.Entry<Pair<InstrumentationConfiguration, SdkConfig>, SdkEnvironment> eldest = iterator.next();
+      retainedBytes -= eldest.getValue().estimateRetainedSize();
+      iterator.remove();
+      evictions++;
+      Logger.debug("Evicted %s from SdkEnvironment cache, %d bytes still retained", eldest.getKey(), retainedBytes);
+
+      if (useSoftReferences) {
+        evictedEntries.put(eldest.getKey(), new SoftReference<>(eldest.getValue()));
+      }
+    }
+
+    Iterator<SoftReference<SdkEnvironment>> references = evictedEntries.values().iterator();
+    while (references.hasNext()) {
+      if (references.next().get() == null) references.remove();
+    }
+  }
+
+  @Override
+  public synchronized int getEntries() {
+    return entries.size();
+  }
+
+  @Override
+  public synchronized long getEstimatedRetainedBytes() {
+    long retainedBytes = 0;
+    for (SdkEnvironment sdkEnvironment : entries.values()) {
+      retainedBytes += sdkEnvironment.estimateRetainedSize();
+    }
+    return retainedBytes;
+  }
+
+  @Override
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  @Override
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  @Override
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  @Override
+  public synchronized long getEvictions() {
+    return evictions;
+  }
+
+  /**
+   * Registers this cache with the platform MBean server, and logs its statistics when the JVM exits.
+   */
+  public void register() {
+    try {
+      ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+    } catch (JMException e) {
+      Logger.debug("Couldn't register %s: %s", OBJECT_NAME, e);
+    }
+
+    Runtime.getRuntime().addShutdownHook(new Thread() {
+      @Override
+      public void run() {
+        Logger.info("%s", SdkEnvironmentCache.this);
+      }
+    });
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "SdkEnvironmentCache{" +
+        "entries=" + getEntries() +
+        ", estimatedRetainedBytes=" + getEstimatedRetainedBytes() +
+        ", maxBytes=" + maxBytes +
+        ", hits=" + hits +
+        ", misses=" + misses +
+        ", evictions=" + evictions +
+        '}';
+  }
+}
@@ -0,0 +1,18 @@
+package org.robolectric.internal;
+
+/**
+ * Management interface for {@link SdkEnvironmentCache}, registered as {@value SdkEnvironmentCache#OBJECT_NAME}.
+ */
+public interface SdkEnvironmentCacheMXBean {
+  int getEntries();
+
+  long getEstimatedRetainedBytes();
+
+  long getMaxBytes();
+
+  long getHits();
+
+  long getMisses();
+
+  long getEvictions();
+}
@@ -0,0 +1,114 @@
+package org.robolectric.internal;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Thread-safe LRU cache which loads each value at most once, and is bounded by the combined weight of its values.
+ *
+ * Threads asking for a value which is still being loaded wait for it rather than loading it again. Weights are
+ * re-evaluated every time the cache is accessed, so values which keep growing after they've been loaded (like lazily
+ * populated {@link org.robolectric.res.ResourceLoader}s) are accounted for. The most recently used entry is always kept.
+ */
+public class WeightedCache<K, V> {
+  public interface Loader<K, V> {
+    V load(K key);
+  }
+
+  public interface Weigher<V> {
+    long weigh(V value);
+  }
+
+  private final LinkedHashMap<K, FutureTask<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private final long maxWeight;
+  private final Weigher<? super V> weigher;
+
+  public WeightedCache(long maxWeight, Weigher<? super V> weigher) {
+    this.maxWeight = maxWeight;
+    this.weigher = weigher;
+  }
+
+  /**
+   * Returns the value for {@code key}, loading it with {@code loader} if it isn't cached yet.
+   */
+  public V get(final K key, final Loader<? super K, ? extends V> loader) {
+    FutureTask<V> task;
+    boolean shouldLoad = false;
+    synchronized (this) {
+      task = entries.get(key);
+      if (task == null) {
+        task = new FutureTask<>(new Callable<V>() {
+          @Override
+          public V call() throws Exception {
+            return loader.load(key);
+          }
+        });
+        entries.put(key, task);
+        shouldLoad = true;
+      }
+    }
+
+    if (shouldLoad) {
+      task.run();
+    }
+
+    V value;
+    try {
+      value = task.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      synchronized (this) {
+        if (entries.get(key) == task) entries.remove(key);
+      }
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+      if (cause instanceof Error) throw (Error) cause;
+      throw new RuntimeException(cause);
+    }
+
+    evictIfNecessary(key);
+    return value;
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  private synchronized void evictIfNecessary(K mostRecentKey) {
+    List<Long> weights = new ArrayList<>(entries.size());
+    long totalWeight = 0;
+    for (FutureTask<V> task : entries.values()) {
+      long weight = weigh(task);
+      weights.add(weight);
+      totalWeight += weight;
+    }
+
+    Iterator<Map.Entry<K, FutureTask<V>>> iterator = entries.entrySet().iterator();
+    Iterator<Long> weightIterator = weights.iterator();
+    while (totalWeight > maxWeight && iterator.hasNext()) {
+      Map.Entry<K, FutureTask<V>> entry = iterator.next();
+      long weight = weightIterator.next();
+      if (entry.getValue().isDone() && !entry.getKey().equals(mostRecentKey)) {
+        iterator.remove();
+        totalWeight -= weight;
+      }
+    }
+  }
+
+  private long weigh(FutureTask<V> task) {
+    if (!task.isDone()) return 0;
+    try {
+      return weigher.weigh(task.get());
+    } catch (InterruptedException | ExecutionException e) {
+      return 0;
+    }
+  }
+}
@@ -44,6 +44,7 @@ import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static java.lang.invoke.MethodType.methodType;
 import static org.objectweb.asm.Type.ARRAY;
@@ -94,6 +95,7 @@ public class InstrumentingClassLoader extends ClassLoader implements Opcodes {
   private final Map<String, Class> classes = new HashMap<>();
   private final Map<String, String> classesToRemap;
   private final Set<MethodRef> methodsToIntercept;
+  private final AtomicLong definedClassBytes = new AtomicLong();
 
   public InstrumentingClassLoader(InstrumentationConfiguration config, URL... urls) {
     super(InstrumentingClassLoader.class.getClassLoader());
@@ -174,6 +176,7 @@ public class InstrumentingClassLoader extends ClassLoader implements Opcodes {
           bytes = origClassBytes;
         }
         ensurePackage(className);
+        definedClassBytes.addAndGet(bytes.length);
         return defineClass(className, bytes, 0, bytes.length);
       } catch (Exception e) {
         throw new ClassNotFoundException("couldn't load " + className, e);
@@ -186,6 +189,13 @@ public class InstrumentingClassLoader extends ClassLoader implements Opcodes {
     }
   }
 
+  /**
+   * Returns the total size of the bytecode this class loader has defined so far.
+   */
+  public long getDefinedClassBytes() {
+    return definedClassBytes.get();
+  }
+
   protected byte[] getByteCode(String className) throws ClassNotFoundException {
     String classFilename = className.replace('.', '/') + ".class";
     try (InputStream classBytesStream = getResourceAsStream(classFilename)) {
@@ -0,0 +1,190 @@
+package org.robolectric.internal;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.robolectric.internal.bytecode.InstrumentationConfiguration;
+import org.robolectric.internal.bytecode.InstrumentingClassLoader;
+
+import java.lang.reflect.Field;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DeepClonerTest {
+  private ClassLoader classLoader;
+  private DeepCloner deepCloner;
+
+  @Before
+  public void setUp() throws Exception {
+    classLoader = new InstrumentingClassLoader(InstrumentationConfiguration.newBuilder().build());
+    deepCloner = new DeepCloner(classLoader);
+  }
+
+  @Test
+  public void shouldPassImmutableJdkTypesThroughByReference() throws Exception {
+    String string = new String("hello");
+    Integer integer = 123456;
+
+    assertThat(deepCloner.clone(string)).isSameAs(string);
+    assertThat(deepCloner.clone(integer)).isSameAs(integer);
+  }
+
+  @Test
+  public void shouldCloneIntoTargetClassLoader() throws Exception {
+    Fixture fixture = new Fixture("name", 42, new int[] {1, 2, 3});
+
+    Object clone = deepCloner.clone(fixture);
+
+    assertThat(clone.getClass().getClassLoader()).isSameAs(classLoader);
+    assertThat(clone.getClass().getName()).isEqualTo(Fixture.class.getName());
+    assertThat(field(clone, "name")).isEqualTo("name");
+    assertThat(field(clone, "number")).isEqualTo(42);
+    assertThat((int[]) field(clone, "numbers")).containsExactly(1, 2, 3);
+    assertThat(field(clone, "numbers")).isNotSameAs(fixture.numbers);
+  }
+
+  @Test
+  public void shouldPreserveCyclesAndSharedReferences() throws Exception {
+    Fixture fixture = new Fixture("cycle", 1, null);
+    fixture.other = fixture;
+    Object[] parameters = new Object[] { fixture, fixture };
+
+    Object[] clone = deepCloner.clone(parameters);
+
+    assertThat(clone[0]).isSameAs(clone[1]);
+    assertThat(field(clone[0], "other")).isSameAs(clone[0]);
+  }
+
+  @Test
+  public void shouldMapEnumsToTargetConstants() throws Exception {
+    Object clone = deepCloner.clone(Color.GREEN);
+
+    assertThat(clone.getClass().getClassLoader()).isSameAs(classLoader);
+    assertThat(((Enum<?>) clone).name()).isEqualTo("GREEN");
+  }
+
+  @Test
+  public void shouldRehashMapsWithTargetKeys() throws Exception {
+    Map<Color, String> map = new HashMap<>();
+    map.put(Color.RED, "red");
+    map.put(Color.GREEN, "green");
+
+    Map<?, ?> clone = deepCloner.clone(map);
+
+    Object red = classLoader.loadClass(Color.class.getName()).getEnumConstants()[0];
+    assertThat(clone).hasSize(2);
+    assertThat(clone.get(red)).isEqualTo("red");
+  }
+
+  @Test
+  public void shouldKeepComparatorsOfSortedCollections() throws Exception {
+    TreeMap<String, Integer> map = new TreeMap<>(new ReverseComparator());
+    map.put("a", 1);
+    map.put("b", 2);
+    PriorityQueue<String> queue = new PriorityQueue<>(1, new ReverseComparator());
+    queue.add("a");
+    queue.add("b");
+
+    TreeMap<?, ?> mapClone = deepCloner.clone(map);
+    PriorityQueue<?> queueClone = deepCloner.clone(queue);
+
+    assertThat(mapClone.keySet()).containsExactly("b", "a");
+    assertThat(mapClone.comparator().getClass().getClassLoader()).isSameAs(classLoader);
+    assertThat(queueClone.peek()).isEqualTo("b");
+  }
+
+  @Test
+  public void shouldKeepAccessOrderOfLinkedHashMaps() throws Exception {
+    LinkedHashMap<String, Integer> map = new LinkedHashMap<>(16, 0.75f, true);
+    map.put("a", 1);
+    map.put("b", 2);
+    map.get("a");
+
+    LinkedHashMap<String, ?> clone = deepCloner.clone(map);
+    assertThat(clone.keySet()).containsExactly("b", "a");
+    clone.get("b");
+    assertThat(clone.keySet()).containsExactly("a", "b");
+  }
+
+  @Test
+  public void shouldCloneJdkCollectionsWithoutNoArgConstructors() throws Exception {
+    List<Fixture> list = Collections.unmodifiableList(new ArrayList<>(Arrays.asList(new Fixture("a", 1, null))));
+
+    List<?> clone = deepCloner.clone(list);
+
+    assertThat(clone).hasSize(1);
+    assertThat(clone.get(0).getClass().getClassLoader()).isSameAs(classLoader);
+  }
+
+  @Test
+  public void shouldFallBackToXStreamForCustomCollections() throws Exception {
+    CustomCollection customCollection = new CustomCollection();
+    customCollection.add("element");
+
+    Object clone = deepCloner.clone(customCollection);
+
+    assertThat(clone.getClass().getClassLoader()).isSameAs(classLoader);
+    assertThat((Collection<?>) clone).containsExactly("element");
+  }
+
+  private static Object field(Object object, String name) throws Exception {
+    Field field = object.getClass().getDeclaredField(name);
+    field.setAccessible(true);
+    return field.get(object);
+  }
+
+  public enum Color {
+    RED, GREEN
+  }
+
+  public static class Fixture {
+    private final String name;
+    private final int number;
+    private final int[] numbers;
+    private Fixture other;
+
+    public Fixture(String name, int number, int[] numbers) {
+      this.name = name;
+      this.number = number;
+      this.numbers = numbers;
+    }
+  }
+
+  public static class ReverseComparator implements Comparator<String> {
+    @Override
+    public int compare(String a, String b) {
+      return b.compareTo(a);
+    }
+  }
+
+  public static class CustomCollection extends AbstractCollection<String> {
+    private final List<String> elements = new ArrayList<>();
+
+    @Override
+    public boolean add(String element) {
+      return elements.add(element);
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+      return elements.iterator();
+    }
+
+    @Override
+    public int size() {
+      return elements.size();
+    }
+  }
+}
@@ -45,6 +45,7 @@ public class GradleManifestFactoryTest {
     delete(FileFsFile.from("build", "intermediates", "manifests", "full").getFile());
     delete(FileFsFile.from("build", "intermediates", "manifests", "aapt").getFile());
     delete(FileFsFile.from("build", "intermediates", "res", "merged").getFile());
+    delete(FileFsFile.from("build", "intermediates", "symbols").getFile());
 
     delete(FileFsFile.from("custom_build", "intermediates", "res").getFile());
     delete(FileFsFile.from("custom_build", "intermediates", "assets").getFile());
@@ -163,6 +164,18 @@ public class GradleManifestFactoryTest {
     assertThat(manifest.getAndroidManifestFile()).isEqualTo(file("build/intermediates/manifests/full/flavor1/type1/AndroidManifest.xml"));
   }
 
+  @Test
+  public void getAppManifest_withSymbols_shouldUseSymbolFile() throws Exception {
+    File symbolFile = new File(joinPath("build", "intermediates", "symbols", "flavor1", "type1"), "R.txt");
+    symbolFile.getParentFile().mkdirs();
+    newFile(symbolFile, "int string app_name 0x7f050000\n");
+
+    final AndroidManifest manifest = createManifest(
+        configBuilder.setConstants(BuildConfig.class).build());
+
+    assertThat(manifest.getSymbolFile()).isEqualTo(file("build/intermediates/symbols/flavor1/type1/R.txt"));
+  }
+
   @Test
   public void rClassShouldBeInTheSamePackageAsBuildConfig() throws Exception {
     File manifestFile = new File(
@@ -186,6 +199,8 @@ public class GradleManifestFactoryTest {
         .isEqualTo("build/intermediates/manifests/full/flavor1/type1/AndroidManifest.xml");
     assertThat(manifestIdentifier.getResDir().toString())
         .isEqualTo("build/intermediates/res/flavor1/type1");
+    assertThat(manifestIdentifier.getSymbolFile().toString())
+        .isEqualTo("build/intermediates/symbols/flavor1/type1/R.txt");
   }
 
   ////////////////////////////////
@@ -0,0 +1,103 @@
+package org.robolectric.internal;
+
+import org.junit.Test;
+import org.robolectric.internal.bytecode.InstrumentationConfiguration;
+import org.robolectric.util.Pair;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SdkEnvironmentCacheTest {
+  private final InstrumentationConfiguration config = InstrumentationConfiguration.newBuilder().build();
+
+  @Test
+  public void shouldCountHitsAndMisses() throws Exception {
+    SdkEnvironmentCache cache = new SdkEnvironmentCache(Long.MAX_VALUE, 10, false);
+    FakeSdkEnvironment environment = new FakeSdkEnvironment(16, 100);
+
+    assertThat(cache.get(key(16))).isNull();
+    cache.put(key(16), environment);
+    assertThat(cache.get(key(16))).isSameAs(environment);
+
+    assertThat(cache.getHits()).isEqualTo(1);
+    assertThat(cache.getMisses()).isEqualTo(1);
+    assertThat(cache.getEntries()).isEqualTo(1);
+    assertThat(cache.getEstimatedRetainedBytes()).isEqualTo(100);
+  }
+
+  @Test
+  public void shouldEvictLeastRecentlyUsedWhenOverBudget() throws Exception {
+    SdkEnvironmentCache cache = new SdkEnvironmentCache(250, 10, false);
+    cache.put(key(16), new FakeSdkEnvironment(16, 100));
+    cache.put(key(17), new FakeSdkEnvironment(17, 100));
+    cache.get(key(16));
+    cache.put(key(18), new FakeSdkEnvironment(18, 100));
+
+    assertThat(cache.get(key(17))).isNull();
+    assertThat(cache.get(key(16))).isNotNull();
+    assertThat(cache.get(key(18))).isNotNull();
+    assertThat(cache.getEvictions()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldEvictWhenEnvironmentsGrow() throws Exception {
+    SdkEnvironmentCache cache = new SdkEnvironmentCache(250, 10, false);
+    FakeSdkEnvironment growing = new FakeSdkEnvironment(16, 100);
+    cache.put(key(16), growing);
+    cache.put(key(17), new FakeSdkEnvironment(17, 100));
+
+    growing.size = 200;
+    cache.get(key(17));
+
+    assertThat(cache.getEntries()).isEqualTo(1);
+    assertThat(cache.get(key(16))).isNull();
+  }
+
+  @Test
+  public void shouldAlwaysKeepMostRecentlyUsedEnvironment() throws Exception {
+    SdkEnvironmentCache cache = new SdkEnvironmentCache(10, 10, false);
+    FakeSdkEnvironment environment = new FakeSdkEnvironment(16, 100);
+    cache.put(key(16), environment);
+
+    assertThat(cache.get(key(16))).isSameAs(environment);
+  }
+
+  @Test
+  public void shouldRespectMaxEntries() throws Exception {
+    SdkEnvironmentCache cache = new SdkEnvironmentCache(Long.MAX_VALUE, 2, false);
+    cache.put(key(16), new FakeSdkEnvironment(16, 0));
+    cache.put(key(17), new FakeSdkEnvironment(17, 0));
+    cache.put(key(18), new FakeSdkEnvironment(18, 0));
+
+    assertThat(cache.getEntries()).isEqualTo(2);
+    assertThat(cache.get(key(16))).isNull();
+  }
+
+  @Test
+  public void shouldReuseSoftlyHeldEnvironmentsAfterEviction() throws Exception {
+    SdkEnvironmentCache cache = new SdkEnvironmentCache(150, 10, true);
+    FakeSdkEnvironment environment = new FakeSdkEnvironment(16, 100);
+    cache.put(key(16), environment);
+    cache.put(key(17), new FakeSdkEnvironment(17, 100));
+
+    assertThat(cache.getEvictions()).isEqualTo(1);
+    assertThat(cache.get(key(16))).isSameAs(environment);
+  }
+
+  private Pair<InstrumentationConfiguration, SdkConfig> key(int apiLevel) {
+    return Pair.create(config, new SdkConfig(apiLevel));
+  }
+
+  private static class FakeSdkEnvironment extends SdkEnvironment {
+    long size;
+
+    FakeSdkEnvironment(int apiLevel, long size) {
+      super(new SdkConfig(apiLevel), FakeSdkEnvironment.class.getClassLoader());
+      this.size = size;
+    }
+
+    @Override
+    public long estimateRetainedSize() {
+      return size;
+    }
+  }
+}
@@ -0,0 +1,136 @@
+package org.robolectric.internal;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class WeightedCacheTest {
+  private static final WeightedCache.Weigher<StringBuilder> LENGTH_WEIGHER = new WeightedCache.Weigher<StringBuilder>() {
+    @Override
+    public long weigh(StringBuilder value) {
+      return value.length();
+    }
+  };
+
+  private final AtomicInteger loads = new AtomicInteger();
+  private final WeightedCache.Loader<String, StringBuilder> loader = new WeightedCache.Loader<String, StringBuilder>() {
+    @Override
+    public StringBuilder load(String key) {
+      loads.incrementAndGet();
+      return new StringBuilder(key);
+    }
+  };
+
+  @Test
+  public void shouldLoadValuesOnce() throws Exception {
+    WeightedCache<String, StringBuilder> cache = new WeightedCache<>(100, LENGTH_WEIGHER);
+
+    StringBuilder value = cache.get("abc", loader);
+
+    assertThat(cache.get("abc", loader)).isSameAs(value);
+    assertThat(loads.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldLoadValuesOnceWhenRequestedConcurrently() throws Exception {
+    final WeightedCache<String, StringBuilder> cache = new WeightedCache<>(100, LENGTH_WEIGHER);
+    final CountDownLatch started = new CountDownLatch(1);
+    final WeightedCache.Loader<String, StringBuilder> slowLoader = new WeightedCache.Loader<String, StringBuilder>() {
+      @Override
+      public StringBuilder load(String key) {
+        started.countDown();
+        try {
+          Thread.sleep(50);
+        } catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        }
+        return loader.load(key);
+      }
+    };
+
+    ExecutorService executorService = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<StringBuilder>> futures = new ArrayList<>();
+      for (int i = 0; i < 4; i++) {
+        futures.add(executorService.submit(new Callable<StringBuilder>() {
+          @Override
+          public StringBuilder call() throws Exception {
+            return cache.get("abc", slowLoader);
+          }
+        }));
+      }
+
+      StringBuilder value = futures.get(0).get();
+      for (Future<StringBuilder> future : futures) {
+        assertThat(future.get()).isSameAs(value);
+      }
+      assertThat(loads.get()).isEqualTo(1);
+    } finally {
+      executorService.shutdown();
+    }
+  }
+
+  @Test
+  public void shouldEvictLeastRecentlyUsedWhenOverWeight() throws Exception {
+    WeightedCache<String, StringBuilder> cache = new WeightedCache<>(5, LENGTH_WEIGHER);
+    cache.get("aa", loader);
+    cache.get("bb", loader);
+    cache.get("aa", loader);
+    cache.get("cc", loader);
+
+    assertThat(cache.size()).isEqualTo(2);
+    cache.get("aa", loader);
+    assertThat(loads.get()).isEqualTo(3);
+    cache.get("bb", loader);
+    assertThat(loads.get()).isEqualTo(4);
+  }
+
+  @Test
+  public void shouldReweighValuesAsTheyGrow() throws Exception {
+    WeightedCache<String, StringBuilder> cache = new WeightedCache<>(5, LENGTH_WEIGHER);
+    StringBuilder growing = cache.get("a", loader);
+    cache.get("b", loader);
+
+    growing.append("bcdef");
+    cache.get("b", loader);
+
+    assertThat(cache.size()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldAlwaysKeepMostRecentlyUsedValue() throws Exception {
+    WeightedCache<String, StringBuilder> cache = new WeightedCache<>(1, LENGTH_WEIGHER);
+    StringBuilder value = cache.get("abcdef", loader);
+
+    assertThat(cache.get("abcdef", loader)).isSameAs(value);
+    assertThat(loads.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldNotCacheFailedLoads() throws Exception {
+    WeightedCache<String, StringBuilder> cache = new WeightedCache<>(100, LENGTH_WEIGHER);
+    try {
+      cache.get("abc", new WeightedCache.Loader<String, StringBuilder>() {
+        @Override
+        public StringBuilder load(String key) {
+          throw new IllegalStateException("boom");
+        }
+      });
+      fail("should have thrown");
+    } catch (IllegalStateException e) {
+      assertThat(e.getMessage()).isEqualTo("boom");
+    }
+
+    assertThat(cache.get("abc", loader).toString()).isEqualTo("abc");
+  }
+}
@@ -32,10 +32,12 @@ import org.junit.runner.RunWith;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
 import org.robolectric.res.Fs;
+import org.robolectric.res.ResourcePath;
 import org.robolectric.test.TemporaryFolder;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -408,6 +410,54 @@ public class AndroidManifestTest {
     assertTrue(hasFlag(config.getApplicationFlags(), FLAG_VM_SAFE_MODE));
   }
 
+  @Test
+  public void shouldUseSymbolFileNextToManifest() throws Exception {
+    AndroidManifest withoutSymbols = newConfigWith("");
+    assertThat(withoutSymbols.getSymbolFile()).isNull();
+    assertThat(withoutSymbols.getResourcePath().getSymbolFile()).isNull();
+
+    File symbolFile = temporaryFolder.newFile("R.txt", "int string app_name 0x7f050000\n");
+    AndroidManifest withSymbols = newConfigWith("");
+    assertThat(withSymbols.getSymbolFile()).isEqualTo(Fs.newFile(symbolFile));
+    assertThat(withSymbols.getResourcePath().getSymbolFile()).isEqualTo(Fs.newFile(symbolFile));
+  }
+
+  @Test
+  public void shouldUseConfiguredSymbolFile() throws Exception {
+    File symbolFile = temporaryFolder.newFile("symbols/R.txt", "int string app_name 0x7f050000\n");
+    AndroidManifest manifest = newConfigWith("");
+    manifest.setSymbolFile(Fs.newFile(symbolFile));
+
+    assertThat(manifest.getSymbolFile()).isEqualTo(Fs.newFile(symbolFile));
+    assertThat(manifest.getResourcePath().getSymbolFile()).isEqualTo(Fs.newFile(symbolFile));
+  }
+
+  @Test
+  public void shouldReadLibraryIdsFromTheAppSymbolFile() throws Exception {
+    File appSymbolFile = temporaryFolder.newFile("R.txt", "int string lib_name 0x7f050001\n");
+    File librarySymbolFile = temporaryFolder.newFile("lib/R.txt", "int string lib_name 0x7f050000\n");
+    AndroidManifest appManifest = newConfigWith("");
+    appManifest.setLibraryManifests(Collections.singletonList(newLibraryManifest()));
+
+    List<ResourcePath> resourcePaths = appManifest.getIncludedResourcePaths();
+    assertThat(resourcePaths).hasSize(2);
+    assertThat(resourcePaths.get(1).getPackageName()).isEqualTo("org.robolectric.lib1");
+    assertThat(resourcePaths.get(1).getSymbolFile()).isEqualTo(Fs.newFile(appSymbolFile));
+    assertThat(resourcePaths.get(1).getLibrarySymbolFile()).isEqualTo(Fs.newFile(librarySymbolFile));
+  }
+
+  @Test
+  public void shouldNotUseSymbolFilesOfLibrariesWithoutTheAppSymbolFile() throws Exception {
+    temporaryFolder.newFile("lib/R.txt", "int string lib_name 0x7f050000\n");
+    AndroidManifest appManifest = newConfigWith("");
+    appManifest.setLibraryManifests(Collections.singletonList(newLibraryManifest()));
+
+    List<ResourcePath> resourcePaths = appManifest.getIncludedResourcePaths();
+    assertThat(resourcePaths).hasSize(2);
+    assertThat(resourcePaths.get(1).getSymbolFile()).isNull();
+    assertThat(resourcePaths.get(1).getLibrarySymbolFile()).isNull();
+  }
+
   /////////////////////////////
 
   public AndroidManifest newConfigWith(String usesSdkAttrs) throws IOException {
@@ -420,6 +470,14 @@ public class AndroidManifestTest {
     return new AndroidManifest(Fs.newFile(f), null, null);
   }
 
+  private AndroidManifest newLibraryManifest() throws IOException {
+    File f = temporaryFolder.newFile("lib/AndroidManifest.xml",
+        "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n" +
+            "<manifest xmlns:android=\"http://schemas.android.com/apk/res/android\"\n" +
+            "          package=\"org.robolectric.lib1\"/>\n");
+    return new AndroidManifest(Fs.newFile(f), null, null);
+  }
+
   private boolean hasFlag(final int flags, final int flag) {
     return (flags & flag) != 0;
   }
@@ -3,10 +3,13 @@ package org.robolectric.res;
 import java.io.File;
 
 import org.jetbrains.annotations.NotNull;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class FileFsFileTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
 
   @Test
   public void from_shouldConstructPath() {
@@ -42,6 +45,38 @@ public class FileFsFileTest {
     assertThat(path).isEqualTo(safe("./some/path/to/here"));
   }
 
+  @Test public void listFiles_shouldKnowWhatEachEntryIs() throws Exception {
+    File dir = temporaryFolder.newFolder("res");
+    assertThat(new File(dir, "values").mkdir()).isTrue();
+    assertThat(new File(dir, "raw.txt").createNewFile()).isTrue();
+
+    FsFile[] values = Fs.newFile(dir).listFiles(new FsFile.Filter() {
+      @Override public boolean accept(@NotNull FsFile fsFile) {
+        return fsFile.isDirectory();
+      }
+    });
+    assertThat(values).hasSize(1);
+    assertThat(values[0].getName()).isEqualTo("values");
+    assertThat(values[0].exists()).isTrue();
+    assertThat(values[0].isFile()).isFalse();
+    assertThat(Fs.newFile(dir).listFileNames()).containsOnly("values", "raw.txt");
+    assertThat(Fs.newFile(dir).join("raw.txt").isFile()).isTrue();
+    assertThat(Fs.newFile(dir).join("missing.txt").exists()).isFalse();
+  }
+
+  @Test public void listFiles_shouldSeeFilesAddedLater() throws Exception {
+    File dir = temporaryFolder.newFolder("res");
+    assertThat(Fs.newFile(dir).listFiles()).isEmpty();
+
+    assertThat(new File(dir, "layout").mkdir()).isTrue();
+    assertThat(Fs.newFile(dir).listFileNames()).containsOnly("layout");
+    assertThat(Fs.newFile(dir).join("layout").isDirectory()).isTrue();
+  }
+
+  @Test public void listFiles_shouldReturnNullForMissingDirectories() throws Exception {
+    assertThat(Fs.newFile(new File(temporaryFolder.getRoot(), "missing")).listFiles()).isNull();
+  }
+
   @NotNull
   private String safe(String path) {
     return path.replace("/", File.separator);
@@ -2,6 +2,8 @@ package org.robolectric.res;
 
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
 import org.junit.Test;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -34,6 +36,39 @@ public class OverlayResourceIndexTest {
     assertThat(overlayResourceIndex.getResName(456)).isNull();
   }
 
+  @Test public void shouldGiveEachUnknownResNameOneIdAcrossThreads() throws Exception {
+    final OverlayResourceIndex overlayResourceIndex = new OverlayResourceIndex("merged.package",
+        new DummyResourceIndex("package.a", new ResName("package.a", "id", "item"), 123)
+    );
+
+    final int nameCount = 100;
+    final Integer[][] idsByThread = new Integer[4][nameCount];
+    Thread[] threads = new Thread[idsByThread.length];
+    for (int i = 0; i < threads.length; i++) {
+      final Integer[] ids = idsByThread[i];
+      threads[i] = new Thread() {
+        @Override public void run() {
+          for (int j = 0; j < nameCount; j++) {
+            ids[j] = overlayResourceIndex.getResourceId(new ResName("package.a", "id", "unknown" + j));
+          }
+        }
+      };
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    Set<Integer> distinctIds = new HashSet<>(Arrays.asList(idsByThread[0]));
+    assertThat(distinctIds).hasSize(nameCount);
+    for (int j = 0; j < nameCount; j++) {
+      for (Integer[] ids : idsByThread) {
+        assertThat(ids[j]).isEqualTo(idsByThread[0][j]);
+      }
+      assertThat(overlayResourceIndex.getResName(idsByThread[0][j])).isEqualTo(new ResName("merged.package", "id", "unknown" + j));
+    }
+  }
+
   private static class DummyResourceIndex extends ResourceIndex {
     private final String packageName;
 
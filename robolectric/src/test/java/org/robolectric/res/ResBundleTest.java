@@ -167,6 +167,63 @@ public class ResBundleTest {
         "sw320dp-sh320dp").asString());
   }
 
+  @Test
+  public void shouldSortValuesByQualifiersWhenMadeImmutable() throws Exception {
+    ResBundle bundle = new ResBundle();
+    bundle.put("string", "title", createStringTypedResourceInDir("v17", "values-v17"));
+    bundle.put("string", "title", createStringTypedResourceInDir("default", "values"));
+    bundle.makeImmutable();
+
+    ResName title = new ResName("org.example:string/title");
+    assertThat(bundle.get(title, "").asString()).isEqualTo("default");
+    assertThat(bundle.get(title, "v16").asString()).isEqualTo("default");
+    assertThat(bundle.get(title, "v18").asString()).isEqualTo("v17");
+  }
+
+  @Test
+  public void shouldNotAddEntriesForMissingValues() throws Exception {
+    ResBundle bundle = new ResBundle();
+    bundle.put("string", "title", createStringTypedResourceInDir("default", "values"));
+    bundle.makeImmutable();
+
+    assertThat(bundle.get(new ResName("org.example:string/missing"), "")).isNull();
+    assertThat(bundle.size()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldRememberPicksPerQualifiersOnceImmutable() throws Exception {
+    ResBundle bundle = new ResBundle();
+    bundle.put("string", "title", createStringTypedResourceInDir("v17", "values-v17"));
+    bundle.put("string", "title", createStringTypedResourceInDir("default", "values"));
+    ResName title = new ResName("org.example:string/title");
+
+    bundle.get(title, "v18");
+    assertThat(bundle.getPickCacheMisses()).isEqualTo(0);
+
+    bundle.makeImmutable();
+    TypedResource v18 = bundle.get(title, "v18");
+    TypedResource v16 = bundle.get(title, "v16");
+    assertThat(bundle.get(title, "v18")).isSameAs(v18);
+    assertThat(bundle.get(title, "v16")).isSameAs(v16);
+
+    assertThat(v18.asString()).isEqualTo("v17");
+    assertThat(v16.asString()).isEqualTo("default");
+    assertThat(bundle.getPickCacheMisses()).isEqualTo(2);
+    assertThat(bundle.getPickCacheHits()).isEqualTo(2);
+  }
+
+  @Test
+  public void shouldRememberWhenNothingMatches() throws Exception {
+    ResBundle bundle = new ResBundle();
+    bundle.put("string", "title", createStringTypedResourceInDir("v17", "values-v17"));
+    bundle.makeImmutable();
+    ResName title = new ResName("org.example:string/title");
+
+    assertThat(bundle.get(title, "v16")).isNull();
+    assertThat(bundle.get(title, "v16")).isNull();
+    assertThat(bundle.getPickCacheHits()).isEqualTo(1);
+  }
+
   private List<TypedResource> asValues(String... qualifierses) {
     List<TypedResource> values = new ArrayList<>();
     for (String qualifiers : qualifierses) {
@@ -179,6 +236,11 @@ public class ResBundleTest {
     return createStringTypedResource("title from resourceLoader1", qualifiers);
   }
 
+  private static TypedResource<String> createStringTypedResourceInDir(String str, String dir) {
+    XmlLoader.XmlContext xmlContext = new XmlLoader.XmlContext("org.example", Fs.fileFromPath("res/" + dir + "/strings.xml"));
+    return new TypedResource<>(str, ResType.CHAR_SEQUENCE, xmlContext);
+  }
+
   @NotNull
   private static TypedResource<String> createStringTypedResource(String str, String qualifiers) {
     XmlLoader.XmlContext mockXmlContext = mock(XmlLoader.XmlContext.class);
@@ -1,13 +1,19 @@
 package org.robolectric.res;
 
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
 import org.robolectric.R;
+import org.robolectric.test.TemporaryFolder;
+
+import java.io.File;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.robolectric.util.TestUtil.*;
 
 public class ResourceExtractorTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
   private ResourceIndex resourceIndex;
 
   @Before
@@ -62,4 +68,35 @@ public class ResourceExtractorTest {
     assertThat(resourceIndex.getResourceId(new ResName("org.robolectric.lib2", "string", "in_all_libs"))).isEqualTo(R.string.in_all_libs);
     assertThat(resourceIndex.getResourceId(new ResName("org.robolectric.lib3", "string", "in_all_libs"))).isEqualTo(R.string.in_all_libs);
   }
+
+  @Test
+  public void shouldReadIdsFromSymbolFileInsteadOfRClass() throws Exception {
+    File symbolFile = temporaryFolder.newFile("R.txt",
+        "int string in_all_libs 0x7f050001\n" +
+        "int id burritos 0x7f060002\n" +
+        "int[] styleable TitleBar { 0x7f010000, 0x7f010001 }\n" +
+        "int styleable TitleBar_textStyle 1\n");
+    ResourceIndex symbolIndex = new ResourceExtractor(
+        new ResourcePath(R.class, "org.robolectric", null, null, null, Fs.newFile(symbolFile)));
+
+    assertThat(symbolIndex.getResourceId(new ResName("org.robolectric", "string", "in_all_libs"))).isEqualTo(0x7f050001);
+    assertThat(symbolIndex.getResName(0x7f060002)).isEqualTo(new ResName("org.robolectric", "id", "burritos"));
+    assertThat(symbolIndex.getResourceId(new ResName("org.robolectric", "styleable", "TitleBar_textStyle"))).isEqualTo(0);
+    assertThat(symbolIndex.getResourceId(new ResName("org.robolectric", "id", "text1"))).isEqualTo(0);
+  }
+
+  @Test
+  public void shouldReadLibraryIdsFromTheAppSymbolFile() throws Exception {
+    File appSymbolFile = temporaryFolder.newFile("R.txt",
+        "int string in_all_libs 0x7f050001\n" +
+        "int string only_in_app 0x7f050002\n");
+    File librarySymbolFile = temporaryFolder.newFile("lib1/R.txt",
+        "int string in_all_libs 0x7f050000\n");
+    ResourceIndex libraryIndex = new ResourceExtractor(new ResourcePath(null, "org.robolectric.lib1", null, null, null,
+        Fs.newFile(appSymbolFile), Fs.newFile(librarySymbolFile)));
+
+    assertThat(libraryIndex.getResourceId(new ResName("org.robolectric.lib1", "string", "in_all_libs"))).isEqualTo(0x7f050001);
+    assertThat(libraryIndex.getResourceId(new ResName("org.robolectric.lib1", "string", "only_in_app"))).isEqualTo(0);
+    assertThat(libraryIndex.getResName(0x7f050000)).isNull();
+  }
 }
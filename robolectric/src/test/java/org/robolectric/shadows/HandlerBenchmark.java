@@ -0,0 +1,162 @@
+package org.robolectric.shadows;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Message;
+import org.junit.Test;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Result;
+import org.junit.runner.RunWith;
+import org.junit.runner.notification.Failure;
+import org.robolectric.TestRunners;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Measures how many messages per second go through a {@link Handler} on the main looper, the way
+ * event buses and code that sends itself messages use it. This isn't run as part of the test suite;
+ * run its {@code main} method directly.
+ */
+public class HandlerBenchmark {
+  private static final int MESSAGE_COUNT = 100000;
+  private static final int WARMUP_ROUNDS = 5;
+  private static final int MEASURED_ROUNDS = 10;
+
+  public static void main(String[] args) {
+    // the scenarios need Robolectric's environment, so they run as tests under its runner; the build skips nested
+    // classes, so they aren't picked up by the test suite
+    Result result = JUnitCore.runClasses(Scenarios.class);
+    for (Failure failure : result.getFailures()) {
+      System.err.println(failure.getTrace());
+    }
+    System.exit(result.wasSuccessful() ? 0 : 1);
+  }
+
+  @RunWith(TestRunners.WithDefaults.class)
+  public static class Scenarios {
+    private final ShadowLooper mainLooper = ShadowLooper.getShadowMainLooper();
+    private int handledCount;
+
+    @Test
+    public void sendMessagesThenRunToEnd() throws Exception {
+      final Handler handler = new CountingHandler();
+      measure("send then run to end", new Scenario() {
+        @Override
+        public void run() {
+          mainLooper.pause();
+          for (int i = 0; i < MESSAGE_COUNT; i++) {
+            handler.sendEmptyMessageDelayed(i % 10, i % 100);
+          }
+          mainLooper.runToEndOfTasks();
+        }
+      });
+    }
+
+    @Test
+    public void postRunnablesThenRunToEnd() throws Exception {
+      final Handler handler = new Handler(Looper.getMainLooper());
+      final Runnable runnable = new Runnable() {
+        @Override
+        public void run() {
+          handledCount++;
+        }
+      };
+      measure("post then run to end", new Scenario() {
+        @Override
+        public void run() {
+          mainLooper.pause();
+          for (int i = 0; i < MESSAGE_COUNT; i++) {
+            handler.post(runnable);
+          }
+          mainLooper.runToEndOfTasks();
+        }
+      });
+    }
+
+    @Test
+    public void messagesThatSendTheNextOne() throws Exception {
+      final Handler handler = new CountingHandler() {
+        @Override
+        public void handleMessage(Message msg) {
+          super.handleMessage(msg);
+          if (msg.what > 1) {
+            sendEmptyMessage(msg.what - 1);
+          }
+        }
+      };
+      measure("chained messages", new Scenario() {
+        @Override
+        public void run() {
+          mainLooper.unPause();
+          handler.sendEmptyMessage(MESSAGE_COUNT);
+        }
+      });
+    }
+
+    @Test
+    public void pingPongBetweenHandlers() throws Exception {
+      final Handler[] handlers = new Handler[2];
+      for (int i = 0; i < handlers.length; i++) {
+        final int other = 1 - i;
+        handlers[i] = new CountingHandler() {
+          @Override
+          public void handleMessage(Message msg) {
+            super.handleMessage(msg);
+            if (msg.arg1 > 1) {
+              handlers[other].obtainMessage(0, msg.arg1 - 1, 0).sendToTarget();
+            }
+          }
+        };
+      }
+      measure("ping-pong", new Scenario() {
+        @Override
+        public void run() {
+          mainLooper.unPause();
+          handlers[0].obtainMessage(0, MESSAGE_COUNT, 0).sendToTarget();
+        }
+      });
+    }
+
+    private void measure(String name, Scenario scenario) {
+      for (int i = 0; i < WARMUP_ROUNDS; i++) {
+        runRound(scenario);
+      }
+      long elapsedNanos = 0;
+      for (int i = 0; i < MEASURED_ROUNDS; i++) {
+        elapsedNanos += runRound(scenario);
+      }
+      double messagesPerSecond = (double) MESSAGE_COUNT * MEASURED_ROUNDS * TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+      System.out.println(String.format("%-28s %7d messages: %,14.0f messages/s", name, MESSAGE_COUNT, messagesPerSecond));
+    }
+
+    private long runRound(Scenario scenario) {
+      handledCount = 0;
+      // System.nanoTime() gives virtual time in here, so this uses the CPU time the test thread has used instead
+      ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+      long start = threads.getCurrentThreadCpuTime();
+      scenario.run();
+      long elapsed = threads.getCurrentThreadCpuTime() - start;
+      assertThat(handledCount).isEqualTo(MESSAGE_COUNT);
+      return elapsed;
+    }
+
+    private interface Scenario {
+      void run();
+    }
+
+    private class CountingHandler extends Handler {
+      CountingHandler() {
+        super(Looper.getMainLooper());
+      }
+
+      @Override
+      public void handleMessage(Message msg) {
+        handledCount++;
+      }
+    }
+  }
+}
@@ -6,6 +6,7 @@ import android.app.PendingIntent;
 import android.content.Context;
 import android.content.Intent;
 import android.os.Build;
+import android.os.SystemClock;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -15,8 +16,11 @@ import org.robolectric.RuntimeEnvironment;
 import org.robolectric.Shadows;
 import org.robolectric.TestRunners;
 import org.robolectric.annotation.Config;
+import org.robolectric.util.Scheduler;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 
 import static android.os.Build.VERSION_CODES.KITKAT;
 import static android.os.Build.VERSION_CODES.M;
@@ -173,6 +177,118 @@ public class ShadowAlarmManagerTest {
     assertThat(shadowAlarmManager.getScheduledAlarms()).hasSize(0);
   }
 
+  @Test
+  public void whenDeliveryIsEnabled_shouldSendAlarmWhenTheClockReachesIt() {
+    ShadowAlarmManager.setDeliveryEnabled(true);
+    Scheduler scheduler = Robolectric.getForegroundThreadScheduler();
+    scheduler.pause();
+    alarmManager.set(AlarmManager.ELAPSED_REALTIME, SystemClock.elapsedRealtime() + 1000, broadcast("alarm"));
+
+    scheduler.advanceBy(999);
+    assertThat(broadcastActions()).isEmpty();
+
+    scheduler.advanceBy(1);
+    assertThat(broadcastActions()).containsExactly("alarm");
+    assertThat(shadowAlarmManager.getScheduledAlarms()).isEmpty();
+  }
+
+  @Test
+  public void whenDeliveryIsEnabled_shouldSendAlarmsInTimeOrderAndRepeatThem() {
+    ShadowAlarmManager.setDeliveryEnabled(true);
+    Scheduler scheduler = Robolectric.getForegroundThreadScheduler();
+    scheduler.pause();
+    long now = SystemClock.elapsedRealtime();
+    alarmManager.setRepeating(AlarmManager.ELAPSED_REALTIME, now + 100, 100, broadcast("repeating"));
+    alarmManager.set(AlarmManager.ELAPSED_REALTIME, now + 250, broadcast("once"));
+    alarmManager.set(AlarmManager.ELAPSED_REALTIME, now + 50, broadcast("first"));
+
+    assertThat(Shadows.shadowOf(shadowAlarmManager.peekEarliestScheduledAlarm().operation).getSavedIntent().getAction()).isEqualTo("first");
+
+    scheduler.advanceBy(350);
+    assertThat(broadcastActions()).containsExactly("first", "repeating", "repeating", "once", "repeating");
+    assertThat(shadowAlarmManager.getScheduledAlarms()).hasSize(1);
+    assertThat(shadowAlarmManager.getScheduledAlarms().get(0).triggerAtTime).isEqualTo(now + 400);
+  }
+
+  @Test
+  @Config(minSdk = KITKAT)
+  public void whenDeliveryIsEnabled_shouldSendWindowedAlarmsAlongWithOthersDuringTheirWindow() {
+    ShadowAlarmManager.setDeliveryEnabled(true);
+    Scheduler scheduler = Robolectric.getForegroundThreadScheduler();
+    scheduler.pause();
+    long now = SystemClock.elapsedRealtime();
+    alarmManager.setWindow(AlarmManager.ELAPSED_REALTIME, now + 100, 100, broadcast("windowed"));
+    alarmManager.setWindow(AlarmManager.ELAPSED_REALTIME, now + 300, 100, broadcast("later windowed"));
+    alarmManager.set(AlarmManager.ELAPSED_REALTIME, now + 150, broadcast("exact"));
+
+    scheduler.advanceBy(150);
+    assertThat(broadcastActions()).containsExactly("windowed", "exact");
+
+    scheduler.advanceBy(249);
+    assertThat(broadcastActions()).containsExactly("windowed", "exact");
+    scheduler.advanceBy(1);
+    assertThat(broadcastActions()).containsExactly("windowed", "exact", "later windowed");
+  }
+
+  @Test
+  public void setDeliveryEnabled_shouldSendAlarmsThatWereAlreadySet() {
+    Scheduler scheduler = Robolectric.getForegroundThreadScheduler();
+    scheduler.pause();
+    long now = SystemClock.elapsedRealtime();
+    alarmManager.set(AlarmManager.ELAPSED_REALTIME, now + 100, broadcast("overdue"));
+    alarmManager.set(AlarmManager.ELAPSED_REALTIME, now + 300, broadcast("later"));
+
+    scheduler.advanceBy(200);
+    assertThat(broadcastActions()).isEmpty();
+
+    ShadowAlarmManager.setDeliveryEnabled(true);
+    scheduler.advanceBy(0);
+    assertThat(broadcastActions()).containsExactly("overdue");
+    scheduler.advanceBy(100);
+    assertThat(broadcastActions()).containsExactly("overdue", "later");
+  }
+
+  @Test
+  public void peekEarliestScheduledAlarm_shouldIgnoreAlarmsRemovedFromTheList() {
+    long now = SystemClock.elapsedRealtime();
+    alarmManager.set(AlarmManager.ELAPSED_REALTIME, now + 100, broadcast("first"));
+    alarmManager.set(AlarmManager.ELAPSED_REALTIME, now + 200, broadcast("second"));
+
+    shadowAlarmManager.getScheduledAlarms().remove(0);
+
+    assertThat(Shadows.shadowOf(shadowAlarmManager.peekEarliestScheduledAlarm().operation).getSavedIntent().getAction()).isEqualTo("second");
+  }
+
+  @Test
+  public void whenDeviceIsAsleep_shouldOnlySendWakeupAlarmsUntilItWakes() {
+    ShadowAlarmManager.setDeliveryEnabled(true);
+    ShadowAlarmManager.setDeviceAwake(false);
+    Scheduler scheduler = Robolectric.getForegroundThreadScheduler();
+    scheduler.pause();
+    long now = SystemClock.elapsedRealtime();
+    alarmManager.set(AlarmManager.ELAPSED_REALTIME, now + 100, broadcast("non-wakeup"));
+    alarmManager.set(AlarmManager.ELAPSED_REALTIME_WAKEUP, now + 200, broadcast("wakeup"));
+
+    scheduler.advanceBy(300);
+    assertThat(broadcastActions()).containsExactly("wakeup");
+
+    ShadowAlarmManager.setDeviceAwake(true);
+    scheduler.runOneTask();
+    assertThat(broadcastActions()).containsExactly("wakeup", "non-wakeup");
+  }
+
+  private PendingIntent broadcast(String action) {
+    return PendingIntent.getBroadcast(RuntimeEnvironment.application, 0, new Intent(action), 0);
+  }
+
+  private List<String> broadcastActions() {
+    List<String> actions = new ArrayList<>();
+    for (Intent intent : ShadowApplication.getInstance().getBroadcastIntents()) {
+      actions.add(intent.getAction());
+    }
+    return actions;
+  }
+
   private void assertScheduledAlarm(long now, PendingIntent pendingIntent, ShadowAlarmManager.ScheduledAlarm scheduledAlarm) {
     assertRepeatingScheduledAlarm(now, 0L, pendingIntent, scheduledAlarm);
   }
@@ -0,0 +1,76 @@
+package org.robolectric.shadows;
+
+import android.animation.AnimatorSet;
+import android.animation.ObjectAnimator;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.TestRunners;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(TestRunners.MultiApiWithDefaults.class)
+public class ShadowAnimatorSetTest {
+  private final ShadowObjectAnimatorTest.AnimatorTarget target = new ShadowObjectAnimatorTest.AnimatorTarget();
+  private final List<String> events = new ArrayList<>();
+
+  @After
+  public void tearDown() {
+    ShadowValueAnimator.setFastForwardEnabled(false);
+  }
+
+  @Test
+  public void start_whenFastForwardIsEnabled_shouldPlayAnimationsInOrderWithoutRunningFrames() {
+    ShadowValueAnimator.setFastForwardEnabled(true);
+    AnimatorSet set = newSequentialSet();
+
+    Robolectric.getForegroundThreadScheduler().pause();
+    set.start();
+
+    assertEventsInOrder("first start", "first end", "second start", "second repeat", "second end", "set end");
+    assertThat(events.get(events.size() - 1)).isEqualTo("set end");
+    assertThat(target.getTransparency()).isEqualTo(10);
+    assertThat(set.isRunning()).isFalse();
+  }
+
+  @Test
+  public void fastForwardToEnd_shouldEndEveryAnimation() {
+    AnimatorSet set = newSequentialSet();
+
+    Robolectric.getForegroundThreadScheduler().pause();
+    set.start();
+    shadowOf(set).fastForwardToEnd();
+
+    assertEventsInOrder("first start", "first end", "second start", "second repeat", "second end", "set end");
+    assertThat(target.getTransparency()).isEqualTo(10);
+  }
+
+  private AnimatorSet newSequentialSet() {
+    ObjectAnimator first = ObjectAnimator.ofInt(target, "transparency", 0, 5);
+    first.setDuration(100);
+    first.addListener(new ShadowValueAnimatorTest.RecordingListener(events, "first "));
+    ObjectAnimator second = ObjectAnimator.ofInt(target, "transparency", 5, 10);
+    second.setDuration(100);
+    second.setRepeatCount(1);
+    second.addListener(new ShadowValueAnimatorTest.RecordingListener(events, "second "));
+
+    AnimatorSet set = new AnimatorSet();
+    set.playSequentially(first, second);
+    set.addListener(new ShadowValueAnimatorTest.RecordingListener(events, "set "));
+    return set;
+  }
+
+  private void assertEventsInOrder(String... expected) {
+    int previous = -1;
+    for (String event : expected) {
+      int index = events.indexOf(event);
+      assertThat(index).as(event + " in " + events).isGreaterThan(previous);
+      previous = index;
+    }
+  }
+}
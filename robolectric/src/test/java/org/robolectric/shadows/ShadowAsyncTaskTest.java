@@ -1,14 +1,17 @@
 package org.robolectric.shadows;
 
 import android.os.AsyncTask;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.robolectric.RoboSettings;
 import org.robolectric.Robolectric;
 import org.robolectric.TestRunners;
 import org.robolectric.util.Join;
 import org.robolectric.util.Transcript;
 
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
@@ -29,6 +32,11 @@ public class ShadowAsyncTaskTest {
     Robolectric.getForegroundThreadScheduler().pause();
   }
 
+  @After
+  public void tearDown() throws Exception {
+    RoboSettings.setBackgroundThreadCount(0);
+  }
+
   @Test
   public void testNormalFlow() throws Exception {
     AsyncTask<String, String, String> asyncTask = new MyAsyncTask();
@@ -164,6 +172,62 @@ public class ShadowAsyncTaskTest {
     transcript.assertEventsSoFar("onPostExecute c");
   }
 
+  @Test
+  public void execute_withBackgroundThreads_runsDoInBackgroundOnAnotherThread() throws Exception {
+    RoboSettings.setBackgroundThreadCount(2);
+    final Thread[] backgroundThread = new Thread[1];
+    AsyncTask<String, String, String> asyncTask = new MyAsyncTask() {
+      @Override
+      protected String doInBackground(String... strings) {
+        backgroundThread[0] = Thread.currentThread();
+        return super.doInBackground(strings);
+      }
+    };
+
+    asyncTask.execute("a", "b");
+    Robolectric.flushBackgroundThreads();
+
+    transcript.assertEventsSoFar("onPreExecute", "doInBackground a, b", "onPostExecute c");
+    assertThat(backgroundThread[0]).isNotNull().isNotSameAs(Thread.currentThread());
+    assertThat(asyncTask.getStatus()).isEqualTo(AsyncTask.Status.FINISHED);
+  }
+
+  @Test
+  public void execute_withBackgroundThreads_deliversResultsThroughTheMainLooper() throws Exception {
+    RoboSettings.setBackgroundThreadCount(2);
+    AsyncTask<String, String, String> asyncTask = new MyAsyncTask();
+
+    asyncTask.execute("a", "b");
+    assertEquals("c", asyncTask.get(5, TimeUnit.SECONDS));
+    transcript.assertEventsSoFar("onPreExecute", "doInBackground a, b");
+
+    Robolectric.flushBackgroundThreads();
+    transcript.assertEventsSoFar("onPostExecute c");
+  }
+
+  @Test
+  public void executeOnThreadPoolExecutor_withBackgroundThreads_runsTasksConcurrently() throws Exception {
+    RoboSettings.setBackgroundThreadCount(2);
+    final CountDownLatch bothStarted = new CountDownLatch(2);
+    class WaitForEachOther extends AsyncTask<Void, Void, Boolean> {
+      @Override
+      protected Boolean doInBackground(Void... params) {
+        bothStarted.countDown();
+        try {
+          return bothStarted.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          return false;
+        }
+      }
+    }
+    AsyncTask<Void, Void, Boolean> first = new WaitForEachOther().executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+    AsyncTask<Void, Void, Boolean> second = new WaitForEachOther().executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+
+    Robolectric.flushBackgroundThreads();
+    assertTrue(first.get());
+    assertTrue(second.get());
+  }
+
   private class MyAsyncTask extends AsyncTask<String, String, String> {
     @Override
     protected void onPreExecute() {
@@ -1,14 +1,21 @@
 package org.robolectric.shadows;
 
+import android.os.SystemClock;
 import android.view.Choreographer;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mockito;
+import org.robolectric.Robolectric;
 import org.robolectric.TestRunners;
 import org.robolectric.util.TimeUtils;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.robolectric.Shadows.shadowOf;
 import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
@@ -46,4 +53,79 @@ public class ShadowChoreographerTest {
     ShadowChoreographer.reset();
     assertThat(ShadowChoreographer.getFrameInterval()).isEqualTo(10 * TimeUtils.NANOS_PER_MS);
   }
+
+  @Test
+  public void callbacksDueTogether_shouldRunInOneFrameWithTheSameFrameTime() {
+    Robolectric.getForegroundThreadScheduler().pause();
+    final Choreographer instance = ShadowChoreographer.getInstance();
+    final List<String> ran = new ArrayList<>();
+    final List<Long> frameTimes = new ArrayList<>();
+    instance.postFrameCallback(new Choreographer.FrameCallback() {
+      @Override
+      public void doFrame(long frameTimeNanos) {
+        ran.add("frame callback");
+        frameTimes.add(frameTimeNanos);
+      }
+    });
+    instance.postFrameCallback(new Choreographer.FrameCallback() {
+      @Override
+      public void doFrame(long frameTimeNanos) {
+        ran.add("second frame callback");
+        frameTimes.add(frameTimeNanos);
+        frameTimes.add(instance.getFrameTimeNanos());
+      }
+    });
+
+    ShadowChoreographer.FrameStats stats = shadowOf(instance).runFrames(10);
+
+    assertThat(ran).containsExactly("frame callback", "second frame callback");
+    assertThat(frameTimes).hasSize(3);
+    assertThat(frameTimes.get(1)).isEqualTo(frameTimes.get(0));
+    assertThat(frameTimes.get(2)).isEqualTo(frameTimes.get(0));
+    assertThat(stats.getFrameCount()).isEqualTo(1);
+    assertThat(stats.getCallbackCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void runFrames_shouldStopAfterTheGivenNumberOfFrames() {
+    Robolectric.getForegroundThreadScheduler().pause();
+    final Choreographer instance = ShadowChoreographer.getInstance();
+    final List<Long> frameTimes = new ArrayList<>();
+    instance.postFrameCallback(new Choreographer.FrameCallback() {
+      @Override
+      public void doFrame(long frameTimeNanos) {
+        frameTimes.add(frameTimeNanos);
+        instance.postFrameCallback(this);
+      }
+    });
+    long startTime = Robolectric.getForegroundThreadScheduler().getCurrentTime();
+
+    ShadowChoreographer.FrameStats stats = shadowOf(instance).runFrames(3);
+
+    assertThat(stats.getFrameCount()).isEqualTo(3);
+    assertThat(stats.getCallbackCounts()).containsExactly(1, 1, 1);
+    assertThat(frameTimes).hasSize(3);
+    assertThat(frameTimes.get(1) - frameTimes.get(0)).isEqualTo(ShadowChoreographer.getFrameInterval());
+    assertThat(Robolectric.getForegroundThreadScheduler().getCurrentTime() - startTime).isEqualTo(20);
+  }
+
+  @Test
+  public void runFramesUntil_shouldRunEveryFrameDueByThen() {
+    Robolectric.getForegroundThreadScheduler().pause();
+    final Choreographer instance = ShadowChoreographer.getInstance();
+    Runnable action = mock(Runnable.class);
+    Choreographer.FrameCallback callback = mock(Choreographer.FrameCallback.class);
+    Choreographer.FrameCallback lateCallback = mock(Choreographer.FrameCallback.class);
+    instance.postFrameCallbackDelayed(callback, 50);
+    instance.postFrameCallbackDelayed(lateCallback, 150);
+    instance.postCallbackDelayed(Choreographer.CALLBACK_TRAVERSAL, action, null, 50);
+
+    ShadowChoreographer.FrameStats stats = shadowOf(instance).runFramesUntil(SystemClock.uptimeMillis() + 100);
+
+    assertThat(stats.getFrameCount()).isEqualTo(1);
+    assertThat(stats.getCallbackCounts()).containsExactly(2);
+    verify(callback).doFrame(anyLong());
+    verify(action).run();
+    verify(lateCallback, never()).doFrame(anyLong());
+  }
 }
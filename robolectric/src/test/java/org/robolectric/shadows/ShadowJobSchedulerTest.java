@@ -1,15 +1,22 @@
 package org.robolectric.shadows;
 
 import android.app.job.JobInfo;
+import android.app.job.JobParameters;
 import android.app.job.JobScheduler;
+import android.app.job.JobService;
 import android.content.ComponentName;
 import android.content.Context;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
 import org.robolectric.RuntimeEnvironment;
 import org.robolectric.TestRunners;
 import org.robolectric.annotation.Config;
+import org.robolectric.util.Scheduler;
+
+import java.util.ArrayList;
+import java.util.List;
 
 import static android.os.Build.VERSION_CODES.LOLLIPOP;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -24,6 +31,8 @@ public class ShadowJobSchedulerTest {
   @Before
   public void setUp() {
     jobScheduler = (JobScheduler) RuntimeEnvironment.application.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+    TestJobService.startedJobs.clear();
+    TestJobService.rescheduleJobs = false;
   }
 
   @Test
@@ -103,4 +112,123 @@ public class ShadowJobSchedulerTest {
 
     assertThat(result).isEqualTo(JobScheduler.RESULT_FAILURE);
   }
+
+  @Test
+  public void whenDispatchIsEnabled_shouldRunJobAfterItsMinimumLatency() {
+    ShadowJobScheduler.setDispatchEnabled(true);
+    Scheduler scheduler = Robolectric.getForegroundThreadScheduler();
+    scheduler.pause();
+    jobScheduler.schedule(new JobInfo.Builder(99, testJobService())
+        .setMinimumLatency(1000)
+        .build());
+
+    scheduler.advanceBy(999);
+    assertThat(TestJobService.startedJobs).isEmpty();
+
+    scheduler.advanceBy(1);
+    assertThat(TestJobService.startedJobs).containsExactly(99);
+    assertThat(jobScheduler.getAllPendingJobs()).isEmpty();
+  }
+
+  @Test
+  public void setDispatchEnabled_shouldRunJobsThatWereAlreadyScheduled() {
+    Scheduler scheduler = Robolectric.getForegroundThreadScheduler();
+    scheduler.pause();
+    jobScheduler.schedule(new JobInfo.Builder(99, testJobService())
+        .setMinimumLatency(1000)
+        .build());
+
+    scheduler.advanceBy(2000);
+    assertThat(TestJobService.startedJobs).isEmpty();
+
+    ShadowJobScheduler.setDispatchEnabled(true);
+    scheduler.advanceBy(0);
+    assertThat(TestJobService.startedJobs).containsExactly(99);
+  }
+
+  @Test
+  public void whenDispatchIsEnabled_shouldWaitForConstraintsUntilTheDeadline() {
+    ShadowJobScheduler.setDispatchEnabled(true);
+    Scheduler scheduler = Robolectric.getForegroundThreadScheduler();
+    scheduler.pause();
+    jobScheduler.schedule(new JobInfo.Builder(1, testJobService())
+        .setRequiresCharging(true)
+        .build());
+    jobScheduler.schedule(new JobInfo.Builder(2, testJobService())
+        .setRequiredNetworkType(JobInfo.NETWORK_TYPE_ANY)
+        .setOverrideDeadline(5000)
+        .build());
+    ShadowJobScheduler.setNetworkType(JobInfo.NETWORK_TYPE_NONE);
+
+    scheduler.advanceBy(1000);
+    assertThat(TestJobService.startedJobs).isEmpty();
+
+    ShadowJobScheduler.setCharging(true);
+    scheduler.advanceBy(0);
+    assertThat(TestJobService.startedJobs).containsExactly(1);
+
+    scheduler.advanceBy(4000);
+    assertThat(TestJobService.startedJobs).containsExactly(1, 2);
+  }
+
+  @Test
+  public void whenDispatchIsEnabled_shouldRunPeriodicJobsOncePerPeriod() {
+    ShadowJobScheduler.setDispatchEnabled(true);
+    Scheduler scheduler = Robolectric.getForegroundThreadScheduler();
+    scheduler.pause();
+    JobInfo jobInfo = new JobInfo.Builder(7, testJobService())
+        .setPeriodic(1000)
+        .build();
+    jobScheduler.schedule(jobInfo);
+
+    // newer platforms have a minimum period
+    scheduler.advanceBy(3 * jobInfo.getIntervalMillis());
+    assertThat(TestJobService.startedJobs).containsExactly(7, 7, 7, 7);
+    assertThat(jobScheduler.getAllPendingJobs()).hasSize(1);
+  }
+
+  @Test
+  public void whenDispatchIsEnabled_shouldRetryJobsThatAskToBeRescheduled() {
+    ShadowJobScheduler.setDispatchEnabled(true);
+    TestJobService.rescheduleJobs = true;
+    Scheduler scheduler = Robolectric.getForegroundThreadScheduler();
+    scheduler.pause();
+    JobInfo jobInfo = new JobInfo.Builder(3, testJobService())
+        .setRequiredNetworkType(JobInfo.NETWORK_TYPE_ANY)
+        .setBackoffCriteria(1000, JobInfo.BACKOFF_POLICY_LINEAR)
+        .build();
+    jobScheduler.schedule(jobInfo);
+
+    scheduler.advanceBy(0);
+    assertThat(TestJobService.startedJobs).containsExactly(3);
+
+    scheduler.advanceBy(jobInfo.getInitialBackoffMillis() - 1);
+    assertThat(TestJobService.startedJobs).containsExactly(3);
+    scheduler.advanceBy(1);
+    assertThat(TestJobService.startedJobs).containsExactly(3, 3);
+  }
+
+  private ComponentName testJobService() {
+    return new ComponentName(RuntimeEnvironment.application, TestJobService.class);
+  }
+
+  public static class TestJobService extends JobService {
+    static final List<Integer> startedJobs = new ArrayList<>();
+    static boolean rescheduleJobs;
+
+    @Override
+    public boolean onStartJob(JobParameters params) {
+      startedJobs.add(params.getJobId());
+      if (rescheduleJobs) {
+        jobFinished(params, true);
+        return true;
+      }
+      return false;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+      return false;
+    }
+  }
 }
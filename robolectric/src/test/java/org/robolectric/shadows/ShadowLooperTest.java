@@ -5,6 +5,7 @@ import android.content.Context;
 import android.os.Handler;
 import android.os.HandlerThread;
 import android.os.Looper;
+import android.os.SystemClock;
 
 import org.junit.After;
 import org.junit.Rule;
@@ -19,6 +20,8 @@ import org.robolectric.util.Scheduler;
 
 import java.util.ArrayList;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -210,6 +213,26 @@ public class ShadowLooperTest {
     assertThat(old).isNotSameAs(sLooper.getScheduler());
   }
 
+  @Test
+  public void backgroundLooper_shouldKeepUpWithTheMainClock() {
+    HandlerThread ht = getHandlerThread();
+    Handler h = new Handler(ht.getLooper());
+    ShadowLooper.idleMainLooper(1000, TimeUnit.MILLISECONDS);
+    assertThat(shadowOf(ht.getLooper()).getScheduler().getCurrentTime()).isEqualTo(SystemClock.uptimeMillis());
+
+    final AtomicBoolean ran = new AtomicBoolean();
+    h.postDelayed(new Runnable() {
+      @Override
+      public void run() {
+        ran.set(true);
+      }
+    }, 10);
+    ShadowLooper.idleMainLooper(9, TimeUnit.MILLISECONDS);
+    assertThat(ran.get()).as("ran after 9ms").isFalse();
+    ShadowLooper.idleMainLooper(1, TimeUnit.MILLISECONDS);
+    assertThat(ran.get()).as("ran after 10ms").isTrue();
+  }
+
   @Test
   public void resetThreadLoopers_shouldQuitAllNonMainLoopers() throws InterruptedException {
     QuitThread test = getQuitThread();
@@ -1,11 +1,14 @@
 package org.robolectric.shadows;
 
+import android.os.Build;
 import android.os.SystemClock;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.robolectric.Robolectric;
 import org.robolectric.TestRunners;
+import org.robolectric.annotation.Config;
 import org.robolectric.internal.bytecode.RobolectricInternals;
+import org.robolectric.util.TimeUtils;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.assertFalse;
@@ -47,4 +50,39 @@ public class ShadowSystemClockTest {
         "java/lang/System/currentTimeMillis()J", null, null, getClass());
     assertThat(systemMilliTime).isEqualTo(3L);
   }
+
+  @Test
+  public void systemTimeCalls_shouldMoveWithTheScheduler() throws Throwable {
+    assertTrue(SystemClock.setCurrentTimeMillis(1000));
+    long nanoTime = systemNanoTime();
+    assertThat(systemCurrentTimeMillis()).isEqualTo(1000);
+
+    Robolectric.getForegroundThreadScheduler().advanceBy(25);
+    assertThat(SystemClock.uptimeMillis()).isEqualTo(1025);
+    assertThat(systemNanoTime() - nanoTime).isEqualTo(25 * TimeUtils.NANOS_PER_MS);
+    assertThat(systemCurrentTimeMillis()).isEqualTo(1025);
+  }
+
+  @Test
+  @Config(sdk = {
+      Build.VERSION_CODES.JELLY_BEAN_MR1,
+      Build.VERSION_CODES.JELLY_BEAN_MR2,
+      Build.VERSION_CODES.KITKAT,
+      Build.VERSION_CODES.LOLLIPOP,
+      Build.VERSION_CODES.LOLLIPOP_MR1,
+      Build.VERSION_CODES.M,
+      Build.VERSION_CODES.N
+  })
+  public void elapsedRealtimeNanos_shouldAgreeWithElapsedRealtime() {
+    Robolectric.getForegroundThreadScheduler().advanceTo(1000);
+    assertThat(SystemClock.elapsedRealtimeNanos()).isEqualTo(SystemClock.elapsedRealtime() * TimeUtils.NANOS_PER_MS);
+  }
+
+  private long systemNanoTime() throws Throwable {
+    return (Long) RobolectricInternals.intercept("java/lang/System/nanoTime()J", null, null, getClass());
+  }
+
+  private long systemCurrentTimeMillis() throws Throwable {
+    return (Long) RobolectricInternals.intercept("java/lang/System/currentTimeMillis()J", null, null, getClass());
+  }
 }
@@ -281,6 +281,20 @@ public class ShadowThemeTest {
         .isEqualTo("string 1 from Theme.Robolectric");
   }
 
+  @Test
+  public void obtainStyledAttributes_shouldPreferAttributeSetValuesOverValuesAlreadyResolvedFromTheme() throws Exception {
+    Resources.Theme theme = resources.newTheme();
+    theme.applyStyle(R.style.Theme_Robolectric, false);
+    assertThat(theme.obtainStyledAttributes(null, new int[]{R.attr.string1}, 0, 0).getString(0))
+        .isEqualTo("string 1 from Theme.Robolectric");
+
+    assertThat(theme.obtainStyledAttributes(
+        Robolectric.buildAttributeSet().addAttribute(R.attr.string1, "from layout").build(), new int[]{R.attr.string1}, 0, 0).getString(0))
+        .isEqualTo("from layout");
+    assertThat(theme.obtainStyledAttributes(null, new int[]{R.attr.string1}, 0, 0).getString(0))
+        .isEqualTo("string 1 from Theme.Robolectric");
+  }
+
   @Test
   public void whenStyleSpecifiesAttr_obtainStyledAttribute_findsCorrectValue() throws Exception {
     Resources.Theme theme = resources.newTheme();
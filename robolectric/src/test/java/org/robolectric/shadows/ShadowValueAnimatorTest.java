@@ -1,9 +1,13 @@
 package org.robolectric.shadows;
 
+import android.animation.Animator;
+import android.animation.AnimatorListenerAdapter;
 import android.animation.ValueAnimator;
+import android.view.animation.LinearInterpolator;
 
 import com.google.common.collect.Ordering;
 
+import org.junit.After;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.robolectric.Robolectric;
@@ -19,6 +23,11 @@ import static org.assertj.core.api.Assertions.assertThat;
 @RunWith(TestRunners.MultiApiWithDefaults.class)
 public class ShadowValueAnimatorTest {
 
+  @After
+  public void tearDown() {
+    ShadowValueAnimator.setFastForwardEnabled(false);
+  }
+
   @Test
   public void start_shouldRunAnimation() {
     final List<Integer> values = new ArrayList<>();
@@ -62,4 +71,128 @@ public class ShadowValueAnimatorTest {
     Robolectric.flushForegroundThreadScheduler();
     assertThat(animator.isRunning()).isFalse();
   }
+
+  @Test
+  public void start_whenFastForwardIsEnabled_shouldJumpToTheEndWithoutRunningFrames() {
+    ShadowValueAnimator.setFastForwardEnabled(true);
+    final List<String> events = new ArrayList<>();
+    final ValueAnimator animator = ValueAnimator.ofInt(0, 10);
+    animator.setDuration(1000);
+    animator.setRepeatCount(2);
+    animator.addListener(new RecordingListener(events));
+
+    Robolectric.getForegroundThreadScheduler().pause();
+    animator.start();
+
+    assertThat(events).containsExactly("start", "repeat", "repeat", "end");
+    assertThat(animator.getAnimatedValue()).isEqualTo(10);
+    assertThat(animator.isRunning()).isFalse();
+  }
+
+  @Test
+  public void fastForwardToEnd_shouldEndReversingAnimationAtTheRightEnd() {
+    final ValueAnimator animator = ValueAnimator.ofInt(0, 10);
+    animator.setDuration(1000);
+    animator.setRepeatCount(1);
+    animator.setRepeatMode(ValueAnimator.REVERSE);
+
+    Robolectric.getForegroundThreadScheduler().pause();
+    animator.start();
+    Shadows.shadowOf(animator).fastForwardToEnd();
+
+    assertThat(animator.getAnimatedValue()).isEqualTo(0);
+    assertThat(animator.isRunning()).isFalse();
+  }
+
+  @Test
+  public void fastForwardTo_shouldJumpToThePlayTimeAndReportRepeats() {
+    final List<String> events = new ArrayList<>();
+    final ValueAnimator animator = ValueAnimator.ofInt(0, 100);
+    animator.setDuration(100);
+    animator.setRepeatCount(3);
+    animator.setInterpolator(new LinearInterpolator());
+    animator.addListener(new RecordingListener(events));
+
+    Robolectric.getForegroundThreadScheduler().pause();
+    animator.start();
+    Shadows.shadowOf(animator).fastForwardTo(250);
+
+    assertThat(events).containsExactly("start", "repeat", "repeat");
+    assertThat(animator.getAnimatedValue()).isEqualTo(50);
+    assertThat(animator.isRunning()).isTrue();
+
+    Shadows.shadowOf(animator).fastForwardTo(1000);
+
+    assertThat(events).containsExactly("start", "repeat", "repeat", "repeat", "end");
+    assertThat(animator.getAnimatedValue()).isEqualTo(100);
+  }
+
+  @Test
+  public void fastForwardTo_shouldNotReportRepeatsThatFramesAlreadyRan() {
+    ShadowChoreographer.setFrameInterval(100 * TimeUtils.NANOS_PER_MS);
+    final List<String> events = new ArrayList<>();
+    final ValueAnimator animator = ValueAnimator.ofInt(0, 100);
+    animator.setDuration(100);
+    animator.setRepeatCount(3);
+    animator.addListener(new RecordingListener(events));
+
+    Robolectric.getForegroundThreadScheduler().pause();
+    animator.start();
+    Robolectric.getForegroundThreadScheduler().advanceBy(150);
+    Shadows.shadowOf(animator).fastForwardTo(250);
+
+    assertThat(events).containsExactly("start", "repeat", "repeat");
+  }
+
+  @Test
+  public void fastForwardTo_shouldNotEndInfiniteAnimations() {
+    final List<String> events = new ArrayList<>();
+    final ValueAnimator animator = ValueAnimator.ofInt(0, 100);
+    animator.setDuration(100);
+    animator.setRepeatCount(ValueAnimator.INFINITE);
+    animator.setInterpolator(new LinearInterpolator());
+    animator.addListener(new RecordingListener(events));
+
+    Robolectric.getForegroundThreadScheduler().pause();
+    animator.start();
+    Shadows.shadowOf(animator).fastForwardTo(1050);
+
+    List<String> expected = new ArrayList<>();
+    expected.add("start");
+    for (int i = 0; i < 10; i++) {
+      expected.add("repeat");
+    }
+    assertThat(events).isEqualTo(expected);
+    assertThat(animator.getAnimatedValue()).isEqualTo(50);
+    assertThat(animator.isRunning()).isTrue();
+  }
+
+  static class RecordingListener extends AnimatorListenerAdapter {
+    private final List<String> events;
+    private final String prefix;
+
+    RecordingListener(List<String> events) {
+      this(events, "");
+    }
+
+    RecordingListener(List<String> events, String prefix) {
+      this.events = events;
+      this.prefix = prefix;
+    }
+
+    @Override
+    public void onAnimationStart(Animator animation) {
+      events.add(prefix + "start");
+    }
+
+    @Override
+    public void onAnimationRepeat(Animator animation) {
+      events.add(prefix + "repeat");
+    }
+
+    @Override
+    public void onAnimationEnd(Animator animation) {
+      events.add(prefix + "end");
+    }
+  }
 }